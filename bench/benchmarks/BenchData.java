@@ -0,0 +1,64 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Abstract base of the benchmark states which holds the parameters shared by
+ *  every stage: the vocabulary sizes, the N-gram length distribution and the
+ *  sparsity of L, and generates the matching synthetic words and N-grams.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+public abstract class BenchData {
+
+    /** Constant for the seed of the generated words. */
+    private static final long WORD_SEED = 1L;
+
+    /** Constant for the seed of the generated N-grams. */
+    private static final long NGRAM_SEED = 2L;
+
+    /** Constant for the shortest N-gram length beyond single letters. */
+    private static final int MIN_LENGTH = 2;
+
+    /** The number of words, which is the number of rows of L. */
+    @Param({"1000", "4000", "16000"})
+    public int wordCount;
+
+    /** The number of N-grams, which is the number of columns of L. */
+    @Param({"100", "1000", "10000"})
+    public int ngramCount;
+
+    /** The longest N-gram length; lengths are uniform from 2 up to it. */
+    @Param({"3", "5"})
+    public int maxLength;
+
+    /** The share of N-grams which occur in the words; lower is sparser. */
+    @Param({"0.2", "0.8"})
+    public double hitRate;
+
+    /** Whether the single letters are N-grams, which makes LLt dense. */
+    @Param({"false"})
+    public boolean letters;
+
+    /** String array holding the generated words. */
+    protected String[] myWords;
+
+    /** String array holding the generated N-grams. */
+    protected String[] myNgrams;
+
+
+    /**
+     * Method to generate the words and N-grams for the current parameters.
+     */
+    protected void generate() {
+        myWords = SyntheticData.words(wordCount, WORD_SEED);
+        myNgrams = SyntheticData.ngrams(myWords, ngramCount, MIN_LENGTH,
+                                        maxLength, hitRate, letters,
+                                        NGRAM_SEED);
+    }//END generate() METHOD
+
+}//END BenchData.java CLASS
@@ -0,0 +1,99 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import matrices.LLtMaker;
+import matrices.MatTranspose;
+import matrices.MatrixMult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the dense kernels, the symmetric LLt of a dense L and the
+ *  general product of a dense L and its transpose, on random matrices of
+ *  small counts.  Dense matrices of the sizes used by the other benchmarks
+ *  would not fit in memory, so the sizes here are their own.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DenseBenchmark {
+
+    /** Constant for the seed of the random matrix. */
+    private static final long SEED = 1;
+
+    /** Constant for the largest value of an entry of L. */
+    private static final int MAX_VALUE = 3;
+
+    /** The number of rows of L, the words. */
+    @Param({"500", "2000"})
+    public int rows;
+
+    /** The number of columns of L, the n-grams. */
+    @Param({"256", "2048"})
+    public int cols;
+
+    /** A 2D integer array holding L. */
+    private int[][] myL;
+
+    /** A 2D integer array holding the transpose of L. */
+    private int[][] myLt;
+
+
+    /**
+     * Method to generate L and its transpose.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random aRandom = new Random(SEED);
+
+        myL = new int[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int k = 0; k < cols; k++) {
+                myL[i][k] = aRandom.nextInt(MAX_VALUE + 1);
+            }//END for (INDEX k)
+        }//END for (INDEX i)
+        myLt = new MatTranspose(myL).getLt();
+    }//END setUp() METHOD
+
+    /**
+     * Benchmark of computing LLt with the symmetric dense kernel.
+     *
+     * @return The LLt matrix.
+     */
+    @Benchmark
+    public int[][] computeDenseLLt() {
+        return new LLtMaker(myL).getDenseLLt();
+    }//END computeDenseLLt() METHOD
+
+    /**
+     * Benchmark of computing LLt as the general dense product of L and its
+     *  transpose.
+     *
+     * @return The LLt matrix.
+     */
+    @Benchmark
+    public int[][] multiplyDenseLLt() {
+        return new MatrixMult(myL, myLt).getC();
+    }//END multiplyDenseLLt() METHOD
+
+}//END DenseBenchmark.java CLASS
@@ -0,0 +1,194 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package benchmarks;
+
+import files.BinaryReader;
+import files.BinaryWriter;
+import files.ChunkReader;
+import files.MappedReader;
+import files.Reader;
+import files.Writer;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import matrices.LmatMaker;
+import matrices.SparseMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the I/O stages: reading the words file with each of the
+ *  readers, and writing L as text and in the binary format, and reading it
+ *  back.  The files live in a temporary directory removed after the trial.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IoBenchmark extends BenchData {
+
+    /** Constant for the number of lines in each chunk of ChunkReader. */
+    private static final int CHUNK_LINES = 8192;
+
+    /** The temporary directory holding the files. */
+    private File myDir;
+
+    /** The words file. */
+    private String myWordsFile;
+
+    /** The L matrix written in the binary format, for reading back. */
+    private String myBinaryFile;
+
+    /** The file each write benchmark writes to. */
+    private String myOutFile;
+
+    /** Sparse matrix holding L. */
+    private SparseMatrix myL;
+
+
+    /**
+     * Method to generate the data, compute L and write the input files.
+     *
+     * @throws IOException If the files cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        generate();
+        myL = new LmatMaker(myWords, myNgrams).getL();
+
+        myDir = File.createTempFile("jscbench", "");
+        if (!myDir.delete() || !myDir.mkdir()) {
+            throw new IOException("Cannot create " + myDir);
+        }//END if
+        myWordsFile = new File(myDir, "words.txt").getPath();
+        myBinaryFile = new File(myDir, "L.bin").getPath();
+        myOutFile = new File(myDir, "out").getPath();
+
+        SyntheticData.write(myWordsFile, myWords);
+        BinaryWriter.write(myBinaryFile, myL);
+    }//END setUp() METHOD
+
+    /**
+     * Method to remove the temporary files.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        final File[] someFiles = myDir.listFiles();
+        if (someFiles != null) {
+            for (final File aFile : someFiles) {
+                aFile.delete();
+            }//END for
+        }//END if
+        myDir.delete();
+    }//END tearDown() METHOD
+
+    /**
+     * Benchmark of reading the words file whole with Reader.
+     *
+     * @return The words read.
+     */
+    @Benchmark
+    public String[] readWhole() {
+        final Reader aReader = new Reader(myWordsFile);
+        aReader.readIt();
+
+        return aReader.getIt();
+    }//END readWhole() METHOD
+
+    /**
+     * Benchmark of reading the words file in chunks with ChunkReader.
+     *
+     * @return The number of lines read.
+     * @throws IOException If the file cannot be read.
+     */
+    @Benchmark
+    public long readChunks() throws IOException {
+        final ChunkReader aReader = new ChunkReader(myWordsFile, CHUNK_LINES);
+        try {
+            while (aReader.readChunk() > 0) {
+                // Only the reading is measured.
+            }//END while LOOP
+
+            return aReader.getLinesRead();
+        } finally {
+            aReader.close();
+        }//END try/finally BLOCK
+    }//END readChunks() METHOD
+
+    /**
+     * Benchmark of mapping the words file and decoding every line into one
+     *  char array with MappedReader.
+     *
+     * @return The number of chars decoded.
+     * @throws IOException If the file cannot be read.
+     */
+    @Benchmark
+    public int readMapped() throws IOException {
+        final MappedReader aReader = new MappedReader(myWordsFile);
+        try {
+            final int aLines = aReader.getLineCount();
+            final char[] someChars;
+            someChars = new char[(int) aReader.getByteCount(0, aLines)];
+
+            return aReader.decodeLines(0, aLines, someChars,
+                                       new int[aLines + 1]);
+        } finally {
+            aReader.close();
+        }//END try/finally BLOCK
+    }//END readMapped() METHOD
+
+    /**
+     * Benchmark of writing L as text, row by row.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    @Benchmark
+    public void writeText() throws IOException {
+        final Writer aWriter = new Writer(myOutFile);
+        try {
+            for (int i = 0; i < myL.getRowCount(); i++) {
+                aWriter.writeRow(myL, i);
+            }//END for (INDEX i)
+        } finally {
+            aWriter.close();
+        }//END try/finally BLOCK
+    }//END writeText() METHOD
+
+    /**
+     * Benchmark of writing L in the binary format.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    @Benchmark
+    public void writeBinary() throws IOException {
+        BinaryWriter.write(myOutFile, myL);
+    }//END writeBinary() METHOD
+
+    /**
+     * Benchmark of reading L back from the binary format.
+     *
+     * @return The L matrix.
+     * @throws IOException If the file cannot be read.
+     */
+    @Benchmark
+    public SparseMatrix readBinary() throws IOException {
+        return BinaryReader.read(myBinaryFile);
+    }//END readBinary() METHOD
+
+}//END IoBenchmark.java CLASS
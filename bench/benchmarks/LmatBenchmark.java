@@ -0,0 +1,90 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package benchmarks;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import matrices.LmatMaker;
+import matrices.SparseMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the construction of the L matrix from the words and
+ *  N-grams, with the words either held as Strings or packed into one char
+ *  array as they are when the words file is memory mapped.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LmatBenchmark extends BenchData {
+
+    /** The words packed back to back into one char array. */
+    private char[] myChars;
+
+    /** Integer array holding where each packed word starts. */
+    private int[] myStarts;
+
+
+    /**
+     * Method to generate the data and pack the words.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        generate();
+
+        myStarts = new int[wordCount + 1];
+        int aLength = 0;
+        for (int i = 0; i < wordCount; i++) {
+            myStarts[i] = aLength;
+            aLength += myWords[i].length();
+        }//END for (INDEX i)
+        myStarts[wordCount] = aLength;
+
+        myChars = new char[aLength];
+        for (int i = 0; i < wordCount; i++) {
+            myWords[i].getChars(0, myWords[i].length(), myChars, myStarts[i]);
+        }//END for (INDEX i)
+    }//END setUp() METHOD
+
+    /**
+     * Benchmark of computing L from the words as Strings.
+     *
+     * @return The L matrix.
+     */
+    @Benchmark
+    public SparseMatrix computeL() {
+        return new LmatMaker(myWords, myNgrams).getL();
+    }//END computeL() METHOD
+
+    /**
+     * Benchmark of computing L from the words packed into a char array.
+     *
+     * @return The L matrix.
+     */
+    @Benchmark
+    public SparseMatrix computePackedL() {
+        final LmatMaker aMaker = new LmatMaker(myNgrams,
+                                                 (ForkJoinPool) null);
+        aMaker.addWords(myChars, myStarts, wordCount);
+
+        return aMaker.buildL();
+    }//END computePackedL() METHOD
+
+}//END LmatBenchmark.java CLASS
@@ -0,0 +1,89 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import matrices.LLtMaker;
+import matrices.LmatMaker;
+import matrices.MatTranspose;
+import matrices.MatrixMult;
+import matrices.SparseMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the matrix stages which follow the construction of L: the
+ *  transpose, the symmetric LLt kernel, and LLt as a general product of L
+ *  and its transpose for comparison.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MatrixBenchmark extends BenchData {
+
+    /** Sparse matrix holding L. */
+    private SparseMatrix myL;
+
+    /** Sparse matrix holding the transpose of L. */
+    private SparseMatrix myLt;
+
+
+    /**
+     * Method to generate the data and compute L and its transpose.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        generate();
+
+        myL = new LmatMaker(myWords, myNgrams).getL();
+        myLt = new MatTranspose(myL).getSparseLt();
+    }//END setUp() METHOD
+
+    /**
+     * Benchmark of transposing L.
+     *
+     * @return The transpose of L.
+     */
+    @Benchmark
+    public SparseMatrix transpose() {
+        return new MatTranspose(myL).getSparseLt();
+    }//END transpose() METHOD
+
+    /**
+     * Benchmark of computing LLt with the symmetric kernel.
+     *
+     * @return The LLt matrix.
+     */
+    @Benchmark
+    public SparseMatrix computeLLt() {
+        return new LLtMaker(myL).getLLt();
+    }//END computeLLt() METHOD
+
+    /**
+     * Benchmark of computing LLt as the general product of L and its
+     *  transpose.
+     *
+     * @return The LLt matrix.
+     */
+    @Benchmark
+    public SparseMatrix multiplyLLt() {
+        return new MatrixMult(myL, myLt).getSparseC();
+    }//END multiplyLLt() METHOD
+
+}//END MatrixBenchmark.java CLASS
@@ -0,0 +1,204 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Utility class which generates synthetic word and N-gram lists shaped like
+ *  TextFiles/words.txt and TextFiles/ngrams.txt: words are made of a shared
+ *  stem plus one of a few common suffixes, so that families of words such as
+ *  "politic", "politics" and "political" share most of their N-grams, and
+ *  the N-grams mix single characters with longer pieces of those words.
+ *  The same seed always gives the same data.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.2
+ */
+public final class SyntheticData {
+
+    /** Constant for the consonants used to build stems. */
+    private static final String CONSONANTS = "bcdfghlmnprstvw";
+
+    /** Constant for the vowels used to build stems. */
+    private static final String VOWELS = "aeiou";
+
+    /** Constant for the suffixes attached to stems. */
+    private static final String[] SUFFIXES = {
+        "", "s", "al", "er", "ers", "ing", "ic", "ics", "ical", "ce", "ner",
+        "ning", "ity", "ed"
+    };
+
+    /** Constant for the number of words which share each stem, on average. */
+    private static final int WORDS_PER_STEM = 4;
+
+    /** Constant for the command line argument count of main(). */
+    private static final int MAIN_ARGS = 6;
+
+
+    /** Private constructor to prevent instantiation. */
+    private SyntheticData() {
+        // No instantiation.
+    }//END constructor
+
+
+    /**
+     * Method to generate a list of distinct words.
+     *
+     * @param theCount The number of words.
+     * @param theSeed The seed of the random generator.
+     * @return someWords String array holding the words.
+     */
+    public static String[] words(final int theCount, final long theSeed) {
+        final Random aRandom = new Random(theSeed);
+        final Set<String> someWords = new LinkedHashSet<String>();
+
+        String aStem = stem(aRandom);
+        while (someWords.size() < theCount) {
+            if (aRandom.nextInt(WORDS_PER_STEM) == 0) {
+                aStem = stem(aRandom);
+            }//END if
+            someWords.add(aStem + SUFFIXES[aRandom.nextInt(SUFFIXES.length)]);
+        }//END while LOOP
+
+        return someWords.toArray(new String[theCount]);
+    }//END words() METHOD
+
+    /**
+     * Method to generate a list of distinct N-grams.  A share of them, given
+     *  by theHitRate, are cut from the passed words so that they occur in
+     *  the data; the rest are random strings which mostly do not, so the
+     *  hit rate sets how sparse L is.  Every single letter used by the words
+     *  may also be included, as in ngrams.txt, when there is room for it,
+     *  though it makes LLt close to dense.
+     *
+     * @param theWords The words the N-grams are cut from.
+     * @param theCount The number of N-grams.
+     * @param theMinLength The shortest N-gram length beyond single letters.
+     * @param theMaxLength The longest N-gram length.
+     * @param theHitRate The share of N-grams taken from the words, 0 to 1.
+     * @param theLetters True to include the single letters.
+     * @param theSeed The seed of the random generator.
+     * @return someNgrams String array holding the N-grams.
+     */
+    public static String[] ngrams(final String[] theWords, final int theCount,
+                                  final int theMinLength,
+                                  final int theMaxLength,
+                                  final double theHitRate,
+                                  final boolean theLetters,
+                                  final long theSeed) {
+        final Random aRandom = new Random(theSeed);
+        final Set<String> someNgrams = new LinkedHashSet<String>();
+        final String aLetters = CONSONANTS + VOWELS;
+
+        if (theLetters) {
+            for (int c = 0; c < aLetters.length()
+                    && someNgrams.size() < theCount / 2; c++) {
+                someNgrams.add(aLetters.substring(c, c + 1));
+            }//END for (INDEX c)
+        }//END if
+
+        final int aSpan = theMaxLength - theMinLength + 1;
+        while (someNgrams.size() < theCount) {
+            final int aLength = theMinLength + aRandom.nextInt(aSpan);
+
+            if (aRandom.nextDouble() < theHitRate) {
+                final String aWord = theWords[aRandom.nextInt(theWords.length)];
+                if (aWord.length() >= aLength) {
+                    final int aStart = aRandom.nextInt(aWord.length()
+                                                       - aLength + 1);
+                    someNgrams.add(aWord.substring(aStart, aStart + aLength));
+                }//END if
+            } else {
+                final StringBuilder aBuilder = new StringBuilder();
+                for (int k = 0; k < aLength; k++) {
+                    aBuilder.append(aLetters.charAt(
+                            aRandom.nextInt(aLetters.length())));
+                }//END for (INDEX k)
+                someNgrams.add(aBuilder.toString());
+            }//END if
+        }//END while LOOP
+
+        return someNgrams.toArray(new String[theCount]);
+    }//END ngrams() METHOD
+
+    /**
+     * Method to write a list of Strings to a file, one per line, in UTF-8
+     *  as the program reads them.
+     *
+     * @param theFileName Name of the file to write to.
+     * @param theLines The lines to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(final String theFileName, final String[] theLines)
+            throws IOException {
+        final BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(theFileName), StandardCharsets.UTF_8));
+        try {
+            for (final String aLine : theLines) {
+                out.write(aLine);
+                out.newLine();
+            }//END for
+        } finally {
+            out.close();
+        }//END try/finally BLOCK
+    }//END write() METHOD
+
+    /**
+     * Main method which writes a synthetic words file and N-grams file, for
+     *  trying the full program on large inputs.
+     *
+     * @param theArgs The words file, the N-grams file, the number of words,
+     *  the number of N-grams, the longest N-gram length and the hit rate.
+     * @throws IOException If the files cannot be written.
+     */
+    public static void main(final String[] theArgs) throws IOException {
+        if (theArgs.length != MAIN_ARGS) {
+            System.out.println("usage: SyntheticData wordsFile ngramsFile"
+                               + " wordCount ngramCount maxLength hitRate");
+            return;
+        }//END if
+
+        final String[] someWords = words(Integer.parseInt(theArgs[2]), 1L);
+        final String[] someNgrams = ngrams(someWords,
+                                           Integer.parseInt(theArgs[3]), 2,
+                                           Integer.parseInt(theArgs[4]),
+                                           Double.parseDouble(theArgs[5]),
+                                           true, 2L);
+
+        write(theArgs[0], someWords);
+        write(theArgs[1], someNgrams);
+    }//END main METHOD
+
+    /**
+     * Private helper to build a random stem of two or three syllables.
+     *
+     * @param theRandom The random generator.
+     * @return The stem.
+     */
+    private static String stem(final Random theRandom) {
+        final StringBuilder aBuilder = new StringBuilder();
+
+        final int aSyllables = 2 + theRandom.nextInt(2);
+        for (int s = 0; s < aSyllables; s++) {
+            aBuilder.append(CONSONANTS.charAt(
+                    theRandom.nextInt(CONSONANTS.length())));
+            aBuilder.append(VOWELS.charAt(theRandom.nextInt(VOWELS.length())));
+        }//END for (INDEX s)
+        if (theRandom.nextBoolean()) {
+            aBuilder.append(CONSONANTS.charAt(
+                    theRandom.nextInt(CONSONANTS.length())));
+        }//END if
+
+        return aBuilder.toString();
+    }//END stem() METHOD
+
+}//END SyntheticData.java CLASS
@@ -0,0 +1,170 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+
+package files;
+
+import java.nio.ByteOrder;
+
+
+/**
+ * Package private class holding the constants which describe the binary
+ *  matrix file format shared by BinaryWriter and BinaryReader.
+ *
+ * <p>A file starts with a fixed size header: the magic bytes "JSCM", a
+ *  version byte, a layout byte (dense or sparse), an element width byte, a
+ *  reserved byte, the number of rows and columns as 32 bit integers and the
+ *  number of non-zero entries as a 64 bit integer, all little endian.  A
+ *  dense body holds every entry, row by row, as a signed little endian
+ *  integer of the element width, 1, 2, 4 or 8 bytes.  A sparse body holds,
+ *  for each row, the number of entries as a varint followed by each
+ *  entry's column as a varint delta from the previous column (minus one,
+ *  so adjacent columns cost a zero) and its value as a zig-zag varint of
+ *  up to 64 bits; its element width is 0.  A value in the 32 bit range is
+ *  encoded the same whichever width it was zig-zag encoded at.</p>
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.2
+ */
+final class BinaryFormat {
+
+    /** Constant for the magic bytes which start every file. */
+    static final byte[] MAGIC = {'J', 'S', 'C', 'M'};
+
+    /** Constant for the version of the format. */
+    static final byte VERSION = 1;
+
+    /** Constant for the layout byte of a dense body. */
+    static final byte DENSE = 0;
+
+    /** Constant for the layout byte of a sparse body. */
+    static final byte SPARSE = 1;
+
+    /** Constant for the position of the row count in the header. */
+    static final int ROWS_POS = 8;
+
+    /** Constant for the position of the non-zero count in the header. */
+    static final int NON_ZEROS_POS = 16;
+
+    /** Constant for the size of the header in bytes. */
+    static final int HEADER_SIZE = 24;
+
+    /** Constant for the byte order of every multi-byte value. */
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /** Constant for the size of the buffers used for reading and writing. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** Constant for the most bytes taken by a single 32 bit varint. */
+    static final int MAX_VARINT = 5;
+
+    /** Constant for the most bytes taken by a single 64 bit varint. */
+    static final int MAX_LONG_VARINT = 10;
+
+
+    /** Private constructor to prevent instantiation. */
+    private BinaryFormat() {
+        // No instantiation.
+    }//END constructor
+
+
+    /**
+     * Method to return the narrowest element width, in bytes, which holds
+     *  every value in the passed range.
+     *
+     * @param theMin The smallest value.
+     * @param theMax The largest value.
+     * @return The element width, 1, 2, 4 or 8.
+     */
+    static int widthFor(final long theMin, final long theMax) {
+        int aWidth = Long.SIZE / Byte.SIZE;
+
+        if (theMin >= Byte.MIN_VALUE && theMax <= Byte.MAX_VALUE) {
+            aWidth = 1;
+        } else if (theMin >= Short.MIN_VALUE && theMax <= Short.MAX_VALUE) {
+            aWidth = 2;
+        } else if (theMin >= Integer.MIN_VALUE
+                   && theMax <= Integer.MAX_VALUE) {
+            aWidth = Integer.SIZE / Byte.SIZE;
+        }//END if
+
+        return aWidth;
+    }//END widthFor() METHOD
+
+    /**
+     * Method to return the number of bytes taken by an unsigned varint.
+     *
+     * @param theValue The value, treated as unsigned.
+     * @return The number of bytes from 1 to 5.
+     */
+    static int varintSize(final int theValue) {
+        int aSize = 1;
+        int aRest = theValue >>> 7;
+        while (aRest != 0) {
+            aSize++;
+            aRest >>>= 7;
+        }//END while LOOP
+
+        return aSize;
+    }//END varintSize() METHOD
+
+    /**
+     * Method to return the number of bytes taken by an unsigned 64 bit
+     *  varint.
+     *
+     * @param theValue The value, treated as unsigned.
+     * @return The number of bytes from 1 to 10.
+     */
+    static int varintSize(final long theValue) {
+        int aSize = 1;
+        long aRest = theValue >>> 7;
+        while (aRest != 0) {
+            aSize++;
+            aRest >>>= 7;
+        }//END while LOOP
+
+        return aSize;
+    }//END varintSize() METHOD
+
+    /**
+     * Method to zig-zag encode a signed value so that small magnitudes of
+     *  either sign make small varints.
+     *
+     * @param theValue The signed value.
+     * @return The encoded value.
+     */
+    static int zigZag(final int theValue) {
+        return (theValue << 1) ^ (theValue >> 31);
+    }//END zigZag() METHOD
+
+    /**
+     * Method to zig-zag encode a signed 64 bit value.
+     *
+     * @param theValue The signed value.
+     * @return The encoded value.
+     */
+    static long zigZag(final long theValue) {
+        return (theValue << 1) ^ (theValue >> 63);
+    }//END zigZag() METHOD
+
+    /**
+     * Method to undo zig-zag encoding.
+     *
+     * @param theValue The encoded value.
+     * @return The signed value.
+     */
+    static int unZigZag(final int theValue) {
+        return (theValue >>> 1) ^ -(theValue & 1);
+    }//END unZigZag() METHOD
+
+    /**
+     * Method to undo 64 bit zig-zag encoding.
+     *
+     * @param theValue The encoded value.
+     * @return The signed value.
+     */
+    static long unZigZag(final long theValue) {
+        return (theValue >>> 1) ^ -(theValue & 1);
+    }//END unZigZag() METHOD
+
+}//END BinaryFormat.java CLASS
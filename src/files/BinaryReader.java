@@ -0,0 +1,424 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+
+package files;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import matrices.SparseMatrix;
+
+
+/**
+ * Provides a file reading utility class which loads a matrix written in the
+ *  binary format described by BinaryFormat, either row by row or all at
+ *  once as a sparse matrix.  A matrix with values past the integer range
+ *  is loaded with its values held in longs.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.2
+ */
+public class BinaryReader implements Closeable {
+
+    /** The channel the file is read through. */
+    private final FileChannel myChannel;
+
+    /** The buffer holding the bytes read but not yet decoded. */
+    private final ByteBuffer myBuffer;
+
+    /** Boolean indicating if the body is dense rather than sparse. */
+    private final boolean myDense;
+
+    /** Integer representing the element width of a dense body. */
+    private final int myWidth;
+
+    /** Integer representing the number of rows in the matrix. */
+    private final int myRows;
+
+    /** Integer representing the number of columns in the matrix. */
+    private final int myCols;
+
+    /** Long representing the number of non-zero entries in the matrix. */
+    private final long myNonZeros;
+
+    /** Integer representing the number of rows read so far. */
+    private int myRowsRead;
+
+    /** Boolean indicating if the end of the file has been reached. */
+    private boolean myAtEnd;
+
+
+    /**
+     * Opens the file with the passed name and reads its header.
+     *
+     * @param theFileName The filename of the file to be read.
+     * @throws IOException If the file cannot be read or is not in the
+     *  binary matrix format.
+     */
+    public BinaryReader(final String theFileName) throws IOException {
+        myChannel = FileChannel.open(Paths.get(theFileName),
+                                     StandardOpenOption.READ);
+        myBuffer = ByteBuffer.allocateDirect(BinaryFormat.BUFFER_SIZE);
+        myBuffer.order(BinaryFormat.ORDER);
+        myBuffer.flip();
+        myAtEnd = false;
+        myRowsRead = 0;
+
+        try {
+            fill(BinaryFormat.HEADER_SIZE);
+            final byte[] aMagic = new byte[BinaryFormat.MAGIC.length];
+            myBuffer.get(aMagic);
+            if (!Arrays.equals(aMagic, BinaryFormat.MAGIC)
+                    || myBuffer.get() != BinaryFormat.VERSION) {
+                throw new IOException("Not a binary matrix file: "
+                                      + theFileName);
+            }//END if
+
+            myDense = myBuffer.get() == BinaryFormat.DENSE;
+            myWidth = myBuffer.get();
+            myBuffer.get();
+            if (myDense && myWidth != 1 && myWidth != 2 && myWidth != 4
+                    && myWidth != 8) {
+                throw new IOException("Bad element width " + myWidth + ": "
+                                      + theFileName);
+            }//END if
+            myRows = myBuffer.getInt();
+            myCols = myBuffer.getInt();
+            myNonZeros = myBuffer.getLong();
+        } catch (final BufferUnderflowException e) {
+            myChannel.close();
+            throw new IOException("Truncated header: " + theFileName);
+        } catch (final IOException e) {
+            myChannel.close();
+            throw e;
+        }//END try/catch BLOCK
+
+        if (myNonZeros > Integer.MAX_VALUE - 8) {
+            myChannel.close();
+            throw new IOException("Too many entries to load: " + myNonZeros);
+        }//END if
+    }//END constructor
+
+
+    /**
+     * Method to load the whole matrix from the file with the passed name.
+     *
+     * @param theFileName The filename of the file to be read.
+     * @return The matrix held by the file.
+     * @throws IOException If the file cannot be read.
+     */
+    public static SparseMatrix read(final String theFileName)
+            throws IOException {
+        final BinaryReader aReader = new BinaryReader(theFileName);
+        try {
+            return aReader.readMatrix();
+        } finally {
+            aReader.close();
+        }//END try/finally BLOCK
+    }//END read() METHOD
+
+    /**
+     * Method to return the number of rows in the matrix.
+     *
+     * @return myRows The number of rows.
+     */
+    public int getRowCount() {
+        return myRows;
+    }//END getRowCount() METHOD
+
+    /**
+     * Method to return the number of columns in the matrix.
+     *
+     * @return myCols The number of columns.
+     */
+    public int getColCount() {
+        return myCols;
+    }//END getColCount() METHOD
+
+    /**
+     * Method to return the number of non-zero entries in the matrix.
+     *
+     * @return myNonZeros The number of non-zero entries.
+     */
+    public long getNonZeroCount() {
+        return myNonZeros;
+    }//END getNonZeroCount() METHOD
+
+    /**
+     * Method to return whether the file holds every entry rather than only
+     *  the non-zero ones.
+     *
+     * @return myDense True if the body is dense.
+     */
+    public boolean isDense() {
+        return myDense;
+    }//END isDense() METHOD
+
+    /**
+     * Method to read the next row into parallel arrays of increasing column
+     *  indices and non-zero values.
+     *
+     * @param theCols Integer array receiving the column indices, which must
+     *  be able to hold a full row.
+     * @param theValues Integer array receiving the values, which must be
+     *  able to hold a full row.
+     * @return The number of non-zero entries in the row, or -1 if every row
+     *  has been read.
+     * @throws IOException If the file cannot be read or is truncated, or a
+     *  value of the row is past the integer range.
+     */
+    public int readRow(final int[] theCols, final int[] theValues)
+            throws IOException {
+        return readRow(theCols, theValues, null);
+    }//END readRow() METHOD
+
+    /**
+     * Method to read the next row into parallel arrays of increasing column
+     *  indices and non-zero long values.
+     *
+     * @param theCols Integer array receiving the column indices, which must
+     *  be able to hold a full row.
+     * @param theValues Long array receiving the values, which must be able
+     *  to hold a full row.
+     * @return The number of non-zero entries in the row, or -1 if every row
+     *  has been read.
+     * @throws IOException If the file cannot be read or is truncated.
+     */
+    public int readRow(final int[] theCols, final long[] theValues)
+            throws IOException {
+        return readRow(theCols, null, theValues);
+    }//END readRow() METHOD
+
+    /**
+     * Method to read every remaining row into a sparse matrix.  The values
+     *  are held in integers until one past the integer range is read, from
+     *  when they are held in longs.
+     *
+     * @return The matrix made of the remaining rows.
+     * @throws IOException If the file cannot be read or is truncated.
+     */
+    public SparseMatrix readMatrix() throws IOException {
+        final int aFirst = myRowsRead;
+        final int aRows = myRows - aFirst;
+        final int[] aRowPtr = new int[aRows + 1];
+        int[] aColIdx = new int[(int) myNonZeros];
+        int[] aValues = new int[(int) myNonZeros];
+        long[] aLongValues = null;
+
+        final int[] someCols = new int[myCols];
+        final long[] someVals = new long[myCols];
+        for (int i = 0; i < aRows; i++) {
+            final int aCount = readRow(someCols, someVals);
+            final int aStart = aRowPtr[i];
+            if (aStart + aCount > aColIdx.length) {
+                throw new IOException("More entries than the header gives");
+            }//END if
+
+            System.arraycopy(someCols, 0, aColIdx, aStart, aCount);
+            for (int k = 0; aLongValues == null && k < aCount; k++) {
+                if (someVals[k] != (int) someVals[k]) {
+                    aLongValues = new long[aColIdx.length];
+                    for (int p = 0; p < aStart; p++) {
+                        aLongValues[p] = aValues[p];
+                    }//END for (INDEX p)
+                    aValues = null;
+                }//END if
+            }//END for (INDEX k)
+            for (int k = 0; k < aCount; k++) {
+                if (aLongValues == null) {
+                    aValues[aStart + k] = (int) someVals[k];
+                } else {
+                    aLongValues[aStart + k] = someVals[k];
+                }//END if
+            }//END for (INDEX k)
+            aRowPtr[i + 1] = aStart + aCount;
+        }//END for (INDEX i)
+
+        final int aNonZeros = aRowPtr[aRows];
+        if (aNonZeros != aColIdx.length) {
+            aColIdx = Arrays.copyOf(aColIdx, aNonZeros);
+        }//END if
+
+        final SparseMatrix aMatrix;
+        if (aLongValues == null) {
+            aMatrix = new SparseMatrix(aRows, myCols, aRowPtr, aColIdx,
+                                       Arrays.copyOf(aValues, aNonZeros));
+        } else {
+            aMatrix = new SparseMatrix(aRows, myCols, aRowPtr, aColIdx,
+                                       Arrays.copyOf(aLongValues,
+                                                     aNonZeros));
+        }//END if
+
+        return aMatrix;
+    }//END readMatrix() METHOD
+
+    /**
+     * Method to close the file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        myChannel.close();
+    }//END close() METHOD
+
+    /**
+     * Private helper to read the next row into parallel arrays of column
+     *  indices and values, taking the values into whichever of the two
+     *  value arrays is passed.
+     *
+     * @param theCols Integer array receiving the column indices.
+     * @param theInts Integer array receiving the values, or null.
+     * @param theLongs Long array receiving the values, or null.
+     * @return aCount The number of non-zero entries in the row, or -1 if
+     *  every row has been read.
+     * @throws IOException If the file cannot be read or is truncated, or a
+     *  value is past the integer range and is read into integers.
+     */
+    private int readRow(final int[] theCols, final int[] theInts,
+                        final long[] theLongs) throws IOException {
+        if (myRowsRead == myRows) {
+            return -1;
+        }//END if
+
+        int aCount = 0;
+        try {
+            if (myDense) {
+                for (int j = 0; j < myCols; j++) {
+                    fill(myWidth);
+                    final long aValue;
+                    if (myWidth == 1) {
+                        aValue = myBuffer.get();
+                    } else if (myWidth == 2) {
+                        aValue = myBuffer.getShort();
+                    } else if (myWidth == 4) {
+                        aValue = myBuffer.getInt();
+                    } else {
+                        aValue = myBuffer.getLong();
+                    }//END if
+
+                    if (aValue != 0) {
+                        theCols[aCount] = j;
+                        putValue(theInts, theLongs, aCount, aValue);
+                        aCount++;
+                    }//END if
+                }//END for (INDEX j)
+            } else {
+                fill(BinaryFormat.MAX_VARINT);
+                aCount = getVarint();
+
+                int aCol = -1;
+                for (int k = 0; k < aCount; k++) {
+                    fill(BinaryFormat.MAX_VARINT
+                         + BinaryFormat.MAX_LONG_VARINT);
+                    aCol += getVarint() + 1;
+                    theCols[k] = aCol;
+                    putValue(theInts, theLongs, k,
+                             BinaryFormat.unZigZag(getLongVarint()));
+                }//END for (INDEX k)
+            }//END if
+        } catch (final BufferUnderflowException e) {
+            throw new IOException("Truncated matrix file at row "
+                                  + myRowsRead);
+        }//END try/catch BLOCK
+
+        myRowsRead++;
+
+        return aCount;
+    }//END readRow() METHOD
+
+    /**
+     * Private helper to store a value read into whichever of the two value
+     *  arrays is passed.
+     *
+     * @param theInts Integer array receiving the value, or null.
+     * @param theLongs Long array receiving the value, or null.
+     * @param thePos The position the value is stored at.
+     * @param theValue The value.
+     * @throws IOException If the value is past the integer range and is
+     *  stored into integers.
+     */
+    private void putValue(final int[] theInts, final long[] theLongs,
+                          final int thePos, final long theValue)
+            throws IOException {
+        if (theLongs != null) {
+            theLongs[thePos] = theValue;
+        } else if (theValue == (int) theValue) {
+            theInts[thePos] = (int) theValue;
+        } else {
+            throw new IOException("Value past the integer range at row "
+                                  + myRowsRead + ": " + theValue);
+        }//END if
+    }//END putValue() METHOD
+
+    /**
+     * Private helper to decode an unsigned varint from the buffer.
+     *
+     * @return The decoded value.
+     * @throws IOException If the varint is longer than five bytes.
+     */
+    private int getVarint() throws IOException {
+        int aValue = 0;
+        int aShift = 0;
+
+        byte b = myBuffer.get();
+        while ((b & 0x80) != 0) {
+            aValue |= (b & 0x7F) << aShift;
+            aShift += 7;
+            if (aShift >= Integer.SIZE) {
+                throw new IOException("Malformed varint");
+            }//END if
+            b = myBuffer.get();
+        }//END while LOOP
+
+        return aValue | (b << aShift);
+    }//END getVarint() METHOD
+
+    /**
+     * Private helper to decode an unsigned 64 bit varint from the buffer.
+     *
+     * @return The decoded value.
+     * @throws IOException If the varint is longer than ten bytes.
+     */
+    private long getLongVarint() throws IOException {
+        long aValue = 0;
+        int aShift = 0;
+
+        byte b = myBuffer.get();
+        while ((b & 0x80) != 0) {
+            aValue |= (long) (b & 0x7F) << aShift;
+            aShift += 7;
+            if (aShift >= Long.SIZE) {
+                throw new IOException("Malformed varint");
+            }//END if
+            b = myBuffer.get();
+        }//END while LOOP
+
+        return aValue | ((long) b << aShift);
+    }//END getLongVarint() METHOD
+
+    /**
+     * Private helper to read more of the file, if needed and possible, so
+     *  that at least the passed number of bytes are buffered.  Fewer may be
+     *  buffered at the end of the file.
+     *
+     * @param theBytes The number of bytes wanted.
+     * @throws IOException If the file cannot be read.
+     */
+    private void fill(final int theBytes) throws IOException {
+        if (myBuffer.remaining() < theBytes && !myAtEnd) {
+            myBuffer.compact();
+            while (myBuffer.position() < theBytes && !myAtEnd) {
+                myAtEnd = myChannel.read(myBuffer) < 0;
+            }//END while LOOP
+            myBuffer.flip();
+        }//END if
+    }//END fill() METHOD
+
+}//END BinaryReader.java CLASS
@@ -0,0 +1,409 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+
+package files;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import matrices.SparseMatrix;
+
+
+/**
+ * Provides a file writing utility class which writes a matrix, row by row,
+ *  to a file in the compact binary format described by BinaryFormat, through
+ *  a FileChannel.  The header is completed when the writer is closed, so the
+ *  number of rows need not be known up front.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.3
+ */
+public class BinaryWriter implements Closeable {
+
+    /** The channel the file is written through. */
+    private final FileChannel myChannel;
+
+    /** The buffer the encoded bytes are gathered in. */
+    private final ByteBuffer myBuffer;
+
+    /** Boolean indicating if the body is dense rather than sparse. */
+    private final boolean myDense;
+
+    /** Integer representing the element width of a dense body. */
+    private final int myWidth;
+
+    /** Integer representing the number of columns in the matrix. */
+    private final int myCols;
+
+    /** Integer representing the number of rows written so far. */
+    private int myRows;
+
+    /** Long representing the number of non-zero entries written so far. */
+    private long myNonZeros;
+
+
+    /**
+     * Creates the file with the passed name, replacing any existing file,
+     *  ready for rows to be written to it.
+     *
+     * @param theFileName Name of the file to write to.
+     * @param theCols The number of columns in the matrix.
+     * @param theDense True to write every entry, false to write only the
+     *  non-zero entries.
+     * @param theWidth The element width in bytes of a dense body, 1, 2, 4
+     *  or 8; ignored for a sparse body.
+     * @throws IOException If the file cannot be created.
+     */
+    public BinaryWriter(final String theFileName, final int theCols,
+                        final boolean theDense, final int theWidth)
+            throws IOException {
+        if (theDense && theWidth != 1 && theWidth != 2 && theWidth != 4
+                && theWidth != 8) {
+            throw new IllegalArgumentException("Element width must be 1, 2,"
+                                               + " 4 or 8 bytes");
+        }//END if
+
+        myCols = theCols;
+        myDense = theDense;
+        if (theDense) {
+            myWidth = theWidth;
+        } else {
+            myWidth = 0;
+        }//END if
+        myRows = 0;
+        myNonZeros = 0;
+
+        myChannel = FileChannel.open(Paths.get(theFileName),
+                                     StandardOpenOption.CREATE,
+                                     StandardOpenOption.WRITE,
+                                     StandardOpenOption.TRUNCATE_EXISTING);
+        myBuffer = ByteBuffer.allocateDirect(BinaryFormat.BUFFER_SIZE);
+        myBuffer.order(BinaryFormat.ORDER);
+
+        putHeader(myBuffer);
+    }//END constructor
+
+
+    /**
+     * Method to write a matrix to the file with the passed name in whichever
+     *  of the dense and sparse layouts takes fewer bytes.
+     *
+     * @param theFileName Name of the file to write to.
+     * @param theMatrix The matrix to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(final String theFileName,
+                             final SparseMatrix theMatrix) throws IOException {
+        final int aRows = theMatrix.getRowCount();
+        final int aCols = theMatrix.getColCount();
+
+        long aMin = 0;
+        long aMax = 0;
+        long aSparseBytes = 0;
+        for (int i = 0; i < aRows; i++) {
+            final int anEnd = theMatrix.getRowEnd(i);
+            int aPrev = -1;
+
+            aSparseBytes += BinaryFormat.varintSize(anEnd
+                                                    - theMatrix.getRowStart(i));
+            for (int k = theMatrix.getRowStart(i); k < anEnd; k++) {
+                final long aValue = theMatrix.getLongValue(k);
+                final int aCol = theMatrix.getColumn(k);
+
+                aMin = Math.min(aMin, aValue);
+                aMax = Math.max(aMax, aValue);
+                aSparseBytes += BinaryFormat.varintSize(aCol - aPrev - 1)
+                        + BinaryFormat.varintSize(BinaryFormat.zigZag(aValue));
+                aPrev = aCol;
+            }//END for (INDEX k)
+        }//END for (INDEX i)
+
+        final int aWidth = BinaryFormat.widthFor(aMin, aMax);
+        final long aDenseBytes = (long) aRows * aCols * aWidth;
+
+        final BinaryWriter aWriter = new BinaryWriter(theFileName, aCols,
+                                                      aDenseBytes < aSparseBytes,
+                                                      aWidth);
+        try {
+            for (int i = 0; i < aRows; i++) {
+                aWriter.writeRow(theMatrix, i);
+            }//END for (INDEX i)
+        } finally {
+            aWriter.close();
+        }//END try/finally BLOCK
+    }//END write() METHOD
+
+    /**
+     * Method to write one row of the passed matrix as the next row.
+     *
+     * @param theMatrix The matrix holding the row.
+     * @param theRow The index of the row in the matrix.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeRow(final SparseMatrix theMatrix, final int theRow)
+            throws IOException {
+        final int aStart = theMatrix.getRowStart(theRow);
+        final int anEnd = theMatrix.getRowEnd(theRow);
+
+        if (myDense) {
+            int aPos = aStart;
+            for (int j = 0; j < myCols; j++) {
+                long aValue = 0;
+                if (aPos < anEnd && theMatrix.getColumn(aPos) == j) {
+                    aValue = theMatrix.getLongValue(aPos);
+                    aPos++;
+                }//END if
+                putElement(aValue);
+            }//END for (INDEX j)
+        } else {
+            room(BinaryFormat.MAX_VARINT);
+            putVarint(anEnd - aStart);
+
+            int aPrev = -1;
+            for (int k = aStart; k < anEnd; k++) {
+                final int aCol = theMatrix.getColumn(k);
+                room(BinaryFormat.MAX_VARINT + BinaryFormat.MAX_LONG_VARINT);
+                putVarint(aCol - aPrev - 1);
+                putVarint(BinaryFormat.zigZag(theMatrix.getLongValue(k)));
+                aPrev = aCol;
+            }//END for (INDEX k)
+        }//END if
+
+        countRow(anEnd - aStart);
+    }//END writeRow() METHOD
+
+    /**
+     * Method to write the next row, given as parallel ranges of increasing
+     *  column indices and their non-zero values.
+     *
+     * @param theCols Integer array holding the row's column indices.
+     * @param theValues Integer array holding the row's values.
+     * @param theFrom The position of the row's first entry in the arrays.
+     * @param theTo The position just past the row's last entry.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeRow(final int[] theCols, final int[] theValues,
+                         final int theFrom, final int theTo)
+            throws IOException {
+        if (myDense) {
+            int aPos = theFrom;
+            for (int j = 0; j < myCols; j++) {
+                int aValue = 0;
+                if (aPos < theTo && theCols[aPos] == j) {
+                    aValue = theValues[aPos];
+                    aPos++;
+                }//END if
+                putElement(aValue);
+            }//END for (INDEX j)
+        } else {
+            room(BinaryFormat.MAX_VARINT);
+            putVarint(theTo - theFrom);
+
+            int aPrev = -1;
+            for (int k = theFrom; k < theTo; k++) {
+                room(2 * BinaryFormat.MAX_VARINT);
+                putVarint(theCols[k] - aPrev - 1);
+                putVarint(BinaryFormat.zigZag(theValues[k]));
+                aPrev = theCols[k];
+            }//END for (INDEX k)
+        }//END if
+
+        countRow(theTo - theFrom);
+    }//END writeRow() METHOD
+
+    /**
+     * Method to write the next row, given as parallel ranges of increasing
+     *  column indices and their non-zero values held in longs.
+     *
+     * @param theCols Integer array holding the row's column indices.
+     * @param theValues Long array holding the row's values.
+     * @param theFrom The position of the row's first entry in the arrays.
+     * @param theTo The position just past the row's last entry.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeRow(final int[] theCols, final long[] theValues,
+                         final int theFrom, final int theTo)
+            throws IOException {
+        if (myDense) {
+            int aPos = theFrom;
+            for (int j = 0; j < myCols; j++) {
+                long aValue = 0;
+                if (aPos < theTo && theCols[aPos] == j) {
+                    aValue = theValues[aPos];
+                    aPos++;
+                }//END if
+                putElement(aValue);
+            }//END for (INDEX j)
+        } else {
+            room(BinaryFormat.MAX_VARINT);
+            putVarint(theTo - theFrom);
+
+            int aPrev = -1;
+            for (int k = theFrom; k < theTo; k++) {
+                room(BinaryFormat.MAX_VARINT + BinaryFormat.MAX_LONG_VARINT);
+                putVarint(theCols[k] - aPrev - 1);
+                putVarint(BinaryFormat.zigZag(theValues[k]));
+                aPrev = theCols[k];
+            }//END for (INDEX k)
+        }//END if
+
+        countRow(theTo - theFrom);
+    }//END writeRow() METHOD
+
+    /**
+     * Method to return the number of rows written so far.
+     *
+     * @return myRows The number of rows.
+     */
+    public int getRowCount() {
+        return myRows;
+    }//END getRowCount() METHOD
+
+    /**
+     * Method to flush the remaining bytes, complete the header with the
+     *  final number of rows and non-zero entries, and close the file.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+
+            final ByteBuffer aHeader = ByteBuffer.allocate(BinaryFormat.HEADER_SIZE);
+            aHeader.order(BinaryFormat.ORDER);
+            putHeader(aHeader);
+            aHeader.flip();
+
+            long aPos = 0;
+            while (aHeader.hasRemaining()) {
+                aPos += myChannel.write(aHeader, aPos);
+            }//END while LOOP
+        } finally {
+            myChannel.close();
+        }//END try/finally BLOCK
+    }//END close() METHOD
+
+    /**
+     * Private helper to put the header, as it stands, into a buffer.
+     *
+     * @param theBuffer The buffer to put the header in.
+     */
+    private void putHeader(final ByteBuffer theBuffer) {
+        theBuffer.put(BinaryFormat.MAGIC);
+        theBuffer.put(BinaryFormat.VERSION);
+        if (myDense) {
+            theBuffer.put(BinaryFormat.DENSE);
+        } else {
+            theBuffer.put(BinaryFormat.SPARSE);
+        }//END if
+        theBuffer.put((byte) myWidth);
+        theBuffer.put((byte) 0);
+        theBuffer.putInt(myRows);
+        theBuffer.putInt(myCols);
+        theBuffer.putLong(myNonZeros);
+    }//END putHeader() METHOD
+
+    /**
+     * Private helper to count a finished row.
+     *
+     * @param theNonZeros The number of non-zero entries in the row.
+     */
+    private void countRow(final int theNonZeros) {
+        myRows++;
+        myNonZeros += theNonZeros;
+    }//END countRow() METHOD
+
+    /**
+     * Private helper to put one dense element of the element width.
+     *
+     * @param theValue The value of the element.
+     * @throws IOException If the file cannot be written.
+     */
+    private void putElement(final long theValue) throws IOException {
+        room(myWidth);
+
+        if (myWidth == 1) {
+            if (theValue != (byte) theValue) {
+                throw new IllegalArgumentException("Value too wide: "
+                                                   + theValue);
+            }//END if
+            myBuffer.put((byte) theValue);
+        } else if (myWidth == 2) {
+            if (theValue != (short) theValue) {
+                throw new IllegalArgumentException("Value too wide: "
+                                                   + theValue);
+            }//END if
+            myBuffer.putShort((short) theValue);
+        } else if (myWidth == 4) {
+            if (theValue != (int) theValue) {
+                throw new IllegalArgumentException("Value too wide: "
+                                                   + theValue);
+            }//END if
+            myBuffer.putInt((int) theValue);
+        } else {
+            myBuffer.putLong(theValue);
+        }//END if
+    }//END putElement() METHOD
+
+    /**
+     * Private helper to put an unsigned varint, seven bits per byte with the
+     *  high bit set on every byte but the last.
+     *
+     * @param theValue The value, treated as unsigned.
+     */
+    private void putVarint(final int theValue) {
+        int aRest = theValue;
+        while ((aRest & ~0x7F) != 0) {
+            myBuffer.put((byte) ((aRest & 0x7F) | 0x80));
+            aRest >>>= 7;
+        }//END while LOOP
+        myBuffer.put((byte) aRest);
+    }//END putVarint() METHOD
+
+    /**
+     * Private helper to put an unsigned 64 bit varint, seven bits per byte
+     *  with the high bit set on every byte but the last.
+     *
+     * @param theValue The value, treated as unsigned.
+     */
+    private void putVarint(final long theValue) {
+        long aRest = theValue;
+        while ((aRest & ~0x7FL) != 0) {
+            myBuffer.put((byte) ((aRest & 0x7F) | 0x80));
+            aRest >>>= 7;
+        }//END while LOOP
+        myBuffer.put((byte) aRest);
+    }//END putVarint() METHOD
+
+    /**
+     * Private helper to make sure the buffer has room for the passed number
+     *  of bytes, flushing it if it does not.
+     *
+     * @param theBytes The number of bytes needed.
+     * @throws IOException If the file cannot be written.
+     */
+    private void room(final int theBytes) throws IOException {
+        if (myBuffer.remaining() < theBytes) {
+            flush();
+        }//END if
+    }//END room() METHOD
+
+    /**
+     * Private helper to write out everything in the buffer.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    private void flush() throws IOException {
+        myBuffer.flip();
+        while (myBuffer.hasRemaining()) {
+            myChannel.write(myBuffer);
+        }//END while LOOP
+        myBuffer.clear();
+    }//END flush() METHOD
+
+}//END BinaryWriter.java CLASS
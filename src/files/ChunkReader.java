@@ -0,0 +1,116 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+
+package files;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Provides a file reading utility class which streams an input file
+ *  containing a single word or N-gram per line in chunks of a bounded number
+ *  of lines, so that the whole file never has to be held in memory.  The
+ *  file is decoded as UTF-8, as MappedReader decodes it, so both give the
+ *  same lines whatever the platform's default charset.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.2
+ */
+public class ChunkReader implements Closeable {
+
+    /** The reader the lines are read from. */
+    private final BufferedReader myIn;
+
+    /** String array reused to hold each chunk of lines. */
+    private final String[] myChunk;
+
+    /** Integer representing the number of lines read so far. */
+    private long myLinesRead;
+
+    /**
+     * Opens the file with the passed filename for reading in chunks of at
+     *  most the passed number of lines.
+     *
+     * @param theFileName The filename of the file to be read.
+     * @param theChunkSize The largest number of lines in a chunk.
+     * @throws IOException If the file cannot be opened.
+     */
+    public ChunkReader(final String theFileName, final int theChunkSize)
+            throws IOException {
+        if (theChunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        } // END if
+
+        myIn = new BufferedReader(new InputStreamReader(
+                new FileInputStream(theFileName), StandardCharsets.UTF_8));
+        myChunk = new String[theChunkSize];
+        myLinesRead = 0;
+    } // END constructor
+
+    /**
+     * Method to read the next chunk of lines.  The returned array is reused
+     *  by the next call, so its contents must be used before then.
+     *
+     * @return The number of lines read into the array returned by
+     *         getChunk(), which is 0 once the end of the file is reached.
+     * @throws IOException If the file cannot be read.
+     */
+    public int readChunk() throws IOException {
+        int aCount = 0;
+
+        String line = myIn.readLine();
+        while (line != null) {
+            myChunk[aCount] = line;
+            aCount++;
+
+            line = null;
+            if (aCount < myChunk.length) {
+                line = myIn.readLine();
+            } // END if
+        } // END while LOOP
+
+        for (int i = aCount; i < myChunk.length && myChunk[i] != null; i++) {
+            myChunk[i] = null;
+        } // END for (INDEX i)
+
+        myLinesRead += aCount;
+
+        return aCount;
+    } // END readChunk() METHOD
+
+    /**
+     * Method to return the array holding the chunk read by the last call to
+     *  readChunk().  The array is not a copy.
+     *
+     * @return myChunk The String array holding the last chunk.
+     */
+    public String[] getChunk() {
+        return myChunk;
+    } // END getChunk() METHOD
+
+    /**
+     * Method to return the number of lines read so far.
+     *
+     * @return myLinesRead The number of lines read.
+     */
+    public long getLinesRead() {
+        return myLinesRead;
+    } // END getLinesRead() METHOD
+
+    /**
+     * Method to close the file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        myIn.close();
+    } // END close() METHOD
+
+} // END ChunkReader.java CLASS
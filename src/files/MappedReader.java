@@ -0,0 +1,354 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+
+package files;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * Provides a file reading utility class which memory maps a UTF-8 input file
+ *  containing a single word or N-gram per line and indexes where each line
+ *  starts, so that lines can be decoded straight from the mapped bytes into
+ *  a reusable char array without creating a String for every line.  Lines
+ *  end at a line feed, a carriage return, or a carriage return followed by a
+ *  line feed, as with BufferedReader.readLine().
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+public class MappedReader implements Closeable {
+
+    /** Constant for the log base 2 of the size of each mapped region. */
+    private static final int REGION_SHIFT = 30;
+
+    /** Constant for the mask giving an offset within a mapped region. */
+    private static final long REGION_MASK = (1L << REGION_SHIFT) - 1;
+
+    /** Constant for the initial capacity of the line index. */
+    private static final int INITIAL_LINES = 1024;
+
+    /** Constant for the character used in place of malformed input. */
+    private static final char REPLACEMENT = '\uFFFD';
+
+    /** The file the regions are mapped from. */
+    private final RandomAccessFile myFile;
+
+    /** The mapped regions of the file, each but the last of full size. */
+    private final MappedByteBuffer[] myRegions;
+
+    /** Long representing the size of the file in bytes. */
+    private final long mySize;
+
+    /** Long array holding the start of each line, plus the file size. */
+    private final long[] myLineStarts;
+
+    /** Integer representing the number of lines in the file. */
+    private final int myLineCnt;
+
+    /** Integer representing the length in bytes of the longest line. */
+    private final int myMaxLineBytes;
+
+
+    /**
+     * Maps the file with the passed filename and indexes its lines.
+     *
+     * @param theFileName The filename of the file to be read.
+     * @throws IOException If the file cannot be opened or mapped, or has
+     *  more lines than an array can index.
+     */
+    public MappedReader(final String theFileName) throws IOException {
+        myFile = new RandomAccessFile(theFileName, "r");
+        final FileChannel aChannel = myFile.getChannel();
+        mySize = aChannel.size();
+
+        final int aRegionCnt = (int) ((mySize + REGION_MASK) >>> REGION_SHIFT);
+        myRegions = new MappedByteBuffer[aRegionCnt];
+        for (int r = 0; r < aRegionCnt; r++) {
+            final long aStart = (long) r << REGION_SHIFT;
+            final long aLength = Math.min(REGION_MASK + 1, mySize - aStart);
+            myRegions[r] = aChannel.map(FileChannel.MapMode.READ_ONLY,
+                                        aStart, aLength);
+        } // END for (INDEX r)
+
+        long[] someStarts = new long[INITIAL_LINES];
+        int aLines = 0;
+        long aLineStart = 0;
+        int aMaxLine = 0;
+        long aPos = 0;
+        while (aPos < mySize) {
+            final byte b = byteAt(aPos);
+            aPos++;
+
+            if (b == '\n' || b == '\r') {
+                if (b == '\r' && aPos < mySize && byteAt(aPos) == '\n') {
+                    aPos++;
+                } // END if
+
+                someStarts = addStart(someStarts, aLines, aLineStart);
+                aLines++;
+                aMaxLine = (int) Math.max(aMaxLine, aPos - aLineStart);
+                aLineStart = aPos;
+            } // END if
+        } // END while LOOP
+        if (aLineStart < mySize) {
+            someStarts = addStart(someStarts, aLines, aLineStart);
+            aLines++;
+            aMaxLine = (int) Math.max(aMaxLine, mySize - aLineStart);
+        } // END if
+
+        someStarts = addStart(someStarts, aLines, mySize);
+        myLineStarts = someStarts;
+        myLineCnt = aLines;
+        myMaxLineBytes = aMaxLine;
+    } // END constructor
+
+    /**
+     * Method to return the number of lines in the file.
+     *
+     * @return myLineCnt The number of lines.
+     */
+    public int getLineCount() {
+        return myLineCnt;
+    } // END getLineCount() METHOD
+
+    /**
+     * Method to return a length which any decoded line fits in, for sizing
+     *  the arrays passed to decodeLine().
+     *
+     * @return myMaxLineBytes The length in bytes of the longest line.
+     */
+    public int getMaxLineLength() {
+        return myMaxLineBytes;
+    } // END getMaxLineLength() METHOD
+
+    /**
+     * Method to decode a line, without its terminator, into the passed char
+     *  array.  Only the mapped bytes are read, so several threads may decode
+     *  lines at once, each into its own array.
+     *
+     * @param theLine The index of the line.
+     * @param theChars The char array to decode into, which must be at least
+     *  getMaxLineLength() long.
+     * @return aCount The number of chars written.
+     */
+    public int decodeLine(final int theLine, final char[] theChars) {
+        return decodeLine(theLine, theChars, 0);
+    } // END decodeLine() METHOD
+
+    /**
+     * Private helper to decode a line, without its terminator, into the
+     *  passed char array starting at the passed offset.
+     *
+     * @param theLine The index of the line.
+     * @param theChars The char array to decode into.
+     * @param theOffset The position of the first char written.
+     * @return The number of chars written.
+     */
+    private int decodeLine(final int theLine, final char[] theChars,
+                           final int theOffset) {
+        final long aStart = myLineStarts[theLine];
+        final long anEnd = lineEnd(theLine);
+
+        int aCount = theOffset;
+        long aPos = aStart;
+        while (aPos < anEnd) {
+            final int b = byteAt(aPos) & 0xFF;
+            aPos++;
+
+            if (b < 0x80) {
+                theChars[aCount++] = (char) b;
+            } else {
+                int aNeeded = 0;
+                int aCode = 0;
+                if (b >= 0xC2 && b < 0xE0) {
+                    aNeeded = 1;
+                    aCode = b & 0x1F;
+                } else if (b >= 0xE0 && b < 0xF0) {
+                    aNeeded = 2;
+                    aCode = b & 0x0F;
+                } else if (b >= 0xF0 && b < 0xF5) {
+                    aNeeded = 3;
+                    aCode = b & 0x07;
+                } // END if
+
+                int aFollowing = 0;
+                while (aFollowing < aNeeded && aPos + aFollowing < anEnd
+                        && (byteAt(aPos + aFollowing) & 0xC0) == 0x80) {
+                    aCode = (aCode << 6) | (byteAt(aPos + aFollowing) & 0x3F);
+                    aFollowing++;
+                } // END while LOOP
+
+                boolean isValid = aNeeded > 0 && aFollowing == aNeeded;
+
+                if (isValid && aNeeded == 2
+                        && (aCode < 0x800 || Character.isSurrogate((char) aCode))) {
+                    isValid = false;
+                } else if (isValid && aNeeded == 3
+                        && (aCode < 0x10000 || aCode > Character.MAX_CODE_POINT)) {
+                    isValid = false;
+                } // END if
+
+                if (!isValid) {
+                    // A malformed sequence is replaced by a single char.
+                    aPos += aFollowing;
+                    theChars[aCount++] = REPLACEMENT;
+                } else {
+                    aPos += aNeeded;
+                    if (aNeeded == 3) {
+                        theChars[aCount++] = Character.highSurrogate(aCode);
+                        theChars[aCount++] = Character.lowSurrogate(aCode);
+                    } else {
+                        theChars[aCount++] = (char) aCode;
+                    } // END if
+                } // END if
+            } // END if
+        } // END while LOOP
+
+        return aCount - theOffset;
+    } // END decodeLine() METHOD
+
+    /**
+     * Method to return the number of bytes, terminators included, taken up
+     *  by a range of lines, which is an upper bound on the number of chars
+     *  they decode to.
+     *
+     * @param theFrom The index of the first line.
+     * @param theTo The index just past the last line.
+     * @return The number of bytes in the range.
+     */
+    public long getByteCount(final int theFrom, final int theTo) {
+        return myLineStarts[theTo] - myLineStarts[theFrom];
+    } // END getByteCount() METHOD
+
+    /**
+     * Method to decode a range of lines, back to back and without their
+     *  terminators, into one char array, recording where each line starts.
+     *  Line theFrom + i then occupies theChars[theStarts[i]] up to, but not
+     *  including, theChars[theStarts[i + 1]].
+     *
+     * @param theFrom The index of the first line.
+     * @param theTo The index just past the last line.
+     * @param theChars The char array to decode into, which must be at least
+     *  getByteCount(theFrom, theTo) long.
+     * @param theStarts Integer array receiving the line starts, which must
+     *  be at least theTo - theFrom + 1 long.
+     * @return aCount The total number of chars written.
+     */
+    public int decodeLines(final int theFrom, final int theTo,
+                           final char[] theChars, final int[] theStarts) {
+        int aCount = 0;
+        for (int i = theFrom; i < theTo; i++) {
+            theStarts[i - theFrom] = aCount;
+            aCount += decodeLine(i, theChars, aCount);
+        } // END for (INDEX i)
+        theStarts[theTo - theFrom] = aCount;
+
+        return aCount;
+    } // END decodeLines() METHOD
+
+    /**
+     * Method to decode a line, without its terminator, into a new String.
+     *
+     * @param theLine The index of the line.
+     * @return The line as a String.
+     */
+    public String getLine(final int theLine) {
+        final char[] someChars = new char[(int) (lineEnd(theLine)
+                                                 - myLineStarts[theLine])];
+        final int aCount = decodeLine(theLine, someChars);
+
+        return new String(someChars, 0, aCount);
+    } // END getLine() METHOD
+
+    /**
+     * Method to decode every line into a String array.
+     *
+     * @return aStrings String array holding every line of the file.
+     */
+    public String[] getLines() {
+        final String[] aStrings = new String[myLineCnt];
+        for (int i = 0; i < myLineCnt; i++) {
+            aStrings[i] = getLine(i);
+        } // END for (INDEX i)
+
+        return aStrings;
+    } // END getLines() METHOD
+
+    /**
+     * Method to close the file.  The mapped regions stay valid until they
+     *  are garbage collected.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        myFile.close();
+    } // END close() METHOD
+
+    /**
+     * Private helper to find where a line ends, before its terminator.
+     *
+     * @param theLine The index of the line.
+     * @return anEnd The position just past the last byte of the line.
+     */
+    private long lineEnd(final int theLine) {
+        final long aStart = myLineStarts[theLine];
+        long anEnd = myLineStarts[theLine + 1];
+
+        if (anEnd > aStart && byteAt(anEnd - 1) == '\n') {
+            anEnd--;
+        } // END if
+        if (anEnd > aStart && byteAt(anEnd - 1) == '\r') {
+            anEnd--;
+        } // END if
+
+        return anEnd;
+    } // END lineEnd() METHOD
+
+    /**
+     * Private helper to read the byte at a position in the file.
+     *
+     * @param thePos The position in the file.
+     * @return The byte at that position.
+     */
+    private byte byteAt(final long thePos) {
+        return myRegions[(int) (thePos >>> REGION_SHIFT)]
+                .get((int) (thePos & REGION_MASK));
+    } // END byteAt() METHOD
+
+    /**
+     * Private helper to store a line start, growing the index if needed.
+     *
+     * @param theStarts The current index.
+     * @param theIndex The position to store the start at.
+     * @param theStart The start to store.
+     * @return aStarts The index, grown if it was full.
+     * @throws IOException If the index cannot grow any further.
+     */
+    private static long[] addStart(final long[] theStarts, final int theIndex,
+                                   final long theStart) throws IOException {
+        long[] aStarts = theStarts;
+
+        if (theIndex == aStarts.length) {
+            if (theIndex == Integer.MAX_VALUE - 8) {
+                throw new IOException("Too many lines to index");
+            } // END if
+            final long aSize = Math.min(theIndex + (long) (theIndex >> 1),
+                                        Integer.MAX_VALUE - 8);
+            final long[] aGrown = new long[(int) aSize];
+            System.arraycopy(aStarts, 0, aGrown, 0, theIndex);
+            aStarts = aGrown;
+        } // END if
+
+        aStarts[theIndex] = theStart;
+
+        return aStarts;
+    } // END addStart() METHOD
+
+} // END MappedReader.java CLASS
@@ -0,0 +1,132 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+
+package files;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import matrices.OffHeapMatrix;
+
+
+/**
+ * Provides a file writing utility class which writes a matrix to a file in
+ *  the dense layout of the binary format described by BinaryFormat by
+ *  memory mapping the body of the file as an OffHeapMatrix.  Whatever sets
+ *  the entries of the matrix writes the file, without the matrix being
+ *  held on the heap or copied through a buffer; the header is completed
+ *  with the number of non-zero entries when the writer is closed.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.2
+ */
+public class MappedWriter implements Closeable {
+
+    /** The channel the file is mapped from. */
+    private final FileChannel myChannel;
+
+    /** The matrix mapped from the body of the file. */
+    private final OffHeapMatrix myMatrix;
+
+    /** Long representing the number of non-zero entries in the matrix. */
+    private long myNonZeros;
+
+
+    /**
+     * Creates the file with the passed name, replacing any existing file,
+     *  and maps a matrix of zeros of the passed shape as its body.
+     *
+     * @param theFileName Name of the file to write to.
+     * @param theRows The number of rows in the matrix.
+     * @param theCols The number of columns in the matrix.
+     * @param theWidth The element width in bytes, 1, 2, 4 or 8.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    public MappedWriter(final String theFileName, final int theRows,
+                        final int theCols, final int theWidth)
+            throws IOException {
+        myNonZeros = 0;
+        myChannel = FileChannel.open(Paths.get(theFileName),
+                                     StandardOpenOption.CREATE,
+                                     StandardOpenOption.READ,
+                                     StandardOpenOption.WRITE,
+                                     StandardOpenOption.TRUNCATE_EXISTING);
+
+        boolean isMapped = false;
+        try {
+            myMatrix = OffHeapMatrix.map(myChannel, BinaryFormat.HEADER_SIZE,
+                                         theRows, theCols, theWidth);
+            putHeader();
+            isMapped = true;
+        } finally {
+            if (!isMapped) {
+                myChannel.close();
+            }//END if
+        }//END try/finally BLOCK
+    }//END constructor
+
+
+    /**
+     * Method to return the matrix mapped from the body of the file, whose
+     *  entries are written to the file as they are set.
+     *
+     * @return myMatrix The mapped matrix.
+     */
+    public OffHeapMatrix getMatrix() {
+        return myMatrix;
+    }//END getMatrix() METHOD
+
+    /**
+     * Method to set the number of non-zero entries recorded in the header.
+     *
+     * @param theNonZeros The number of non-zero entries.
+     */
+    public void setNonZeroCount(final long theNonZeros) {
+        myNonZeros = theNonZeros;
+    }//END setNonZeroCount() METHOD
+
+    /**
+     * Method to write the mapped entries out, complete the header and
+     *  close the file.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            myMatrix.force();
+            putHeader();
+        } finally {
+            myChannel.close();
+        }//END try/finally BLOCK
+    }//END close() METHOD
+
+    /**
+     * Private helper to write the header, as it stands, to the file.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    private void putHeader() throws IOException {
+        final ByteBuffer aHeader = ByteBuffer.allocate(BinaryFormat.HEADER_SIZE);
+        aHeader.order(BinaryFormat.ORDER);
+        aHeader.put(BinaryFormat.MAGIC);
+        aHeader.put(BinaryFormat.VERSION);
+        aHeader.put(BinaryFormat.DENSE);
+        aHeader.put((byte) myMatrix.getWidth());
+        aHeader.put((byte) 0);
+        aHeader.putInt(myMatrix.getRowCount());
+        aHeader.putInt(myMatrix.getColCount());
+        aHeader.putLong(myNonZeros);
+        aHeader.flip();
+
+        long aPos = 0;
+        while (aHeader.hasRemaining()) {
+            aPos += myChannel.write(aHeader, aPos);
+        }//END while LOOP
+    }//END putHeader() METHOD
+
+}//END MappedWriter.java CLASS
@@ -0,0 +1,551 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+
+package files;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+import matrices.SparseMatrix;
+
+
+/**
+ * Provides a cache of computed matrices kept as files in a directory, so
+ *  that a run over the same inputs as an earlier one can load its matrices
+ *  instead of computing them again.  Each matrix is stored under a name and
+ *  a 64 bit key, a hash of everything it was computed from, as its raw CSR
+ *  arrays: the row pointers, column indices and values as little endian
+ *  integers after a fixed header, so that a cached matrix is loaded by
+ *  mapping the file and copying each array out in bulk, with no decoding.
+ *  The values are 64 bit integers when any is past the 32 bit range.
+ *
+ * <p>The header holds the magic bytes "JSCC", a version byte, the width in
+ *  bytes of the values (0 in older entries, meaning 4), two reserved
+ *  bytes, the number of rows and columns as 32 bit integers, the
+ *  key, the number of non-zero entries and a CRC32 of the body as 64 bit
+ *  integers.  An entry whose header does not match its name, or whose body
+ *  does not match its checksum, is deleted and treated as missing.  Each
+ *  entry is written to a temporary file and then moved into place, so an
+ *  entry is never seen half written.  Loading an entry marks it as used by
+ *  its modification time, and once a new entry is stored the least recently
+ *  used entries are deleted until the directory is within its size.</p>
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.2
+ */
+public class MatrixCache {
+
+    /** Constant for the magic bytes which start every entry. */
+    private static final byte[] MAGIC = {'J', 'S', 'C', 'C'};
+
+    /** Constant for the version of the entry format. */
+    private static final byte VERSION = 1;
+
+    /** Constant for the position of the checksum in the header. */
+    private static final int CRC_POS = 32;
+
+    /** Constant for the size of the header in bytes. */
+    private static final int HEADER_SIZE = 40;
+
+    /** Constant for the number of bytes in each integer of the body. */
+    private static final int INT_BYTES = Integer.SIZE / Byte.SIZE;
+
+    /** Constant for the number of bytes in each long value of the body. */
+    private static final int LONG_BYTES = Long.SIZE / Byte.SIZE;
+
+    /** Constant for the suffix of every entry file. */
+    private static final String ENTRY_SUFFIX = ".csr";
+
+    /** Constant for the suffix of an entry file being written. */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** Constant for the starting value of a key. */
+    private static final long HASH_SEED = 0xCBF29CE484222325L;
+
+    /** Constant for the multiplier of a key. */
+    private static final long HASH_PRIME = 0x100000001B3L;
+
+    /** The directory the entries are kept in. */
+    private final Path myDir;
+
+    /** Long representing the most bytes the entries may take together. */
+    private final long myMaxBytes;
+
+    /** Integer representing the number of entries found corrupt. */
+    private int myCorruptCnt;
+
+
+    /**
+     * Opens the passed cache directory, creating it if needed.
+     *
+     * @param theDir Name of the cache directory.
+     * @param theMaxBytes The most bytes the entries may take together.
+     * @throws IOException If the directory cannot be created.
+     */
+    public MatrixCache(final String theDir, final long theMaxBytes)
+            throws IOException {
+        myDir = Paths.get(theDir);
+        myMaxBytes = theMaxBytes;
+        myCorruptCnt = 0;
+
+        Files.createDirectories(myDir);
+    }//END constructor
+
+
+    /**
+     * Method to return a 64 bit key for a computation from the contents of
+     *  the files it reads and a description of its settings, so that a
+     *  change to any input byte or setting gives a different key.  Each
+     *  file is read once, a buffer at a time.
+     *
+     * @param theFileNames The names of the files read.
+     * @param theSettings A description of every setting the result depends
+     *  on.
+     * @return aKey The key.
+     * @throws IOException If a file cannot be read.
+     */
+    public static long makeKey(final String[] theFileNames,
+                               final String theSettings) throws IOException {
+        long aKey = HASH_SEED;
+        final ByteBuffer aBuffer;
+        aBuffer = ByteBuffer.allocateDirect(BinaryFormat.BUFFER_SIZE);
+
+        for (final String aFileName : theFileNames) {
+            final FileChannel aChannel;
+            aChannel = FileChannel.open(Paths.get(aFileName),
+                                        StandardOpenOption.READ);
+            try {
+                aKey = mixHash(aKey, aChannel.size());
+                aBuffer.clear();
+                while (aChannel.read(aBuffer) >= 0) {
+                    aBuffer.flip();
+                    while (aBuffer.hasRemaining()) {
+                        aKey ^= aBuffer.get() & 0xFF;
+                        aKey *= HASH_PRIME;
+                    }//END while LOOP
+                    aBuffer.clear();
+                }//END while LOOP
+            } finally {
+                aChannel.close();
+            }//END try/finally BLOCK
+        }//END for
+
+        final byte[] someBytes = theSettings.getBytes(StandardCharsets.UTF_8);
+        aKey = mixHash(aKey, someBytes.length);
+        for (final byte b : someBytes) {
+            aKey ^= b & 0xFF;
+            aKey *= HASH_PRIME;
+        }//END for
+
+        return aKey;
+    }//END makeKey() METHOD
+
+    /**
+     * Method to return the number of entries found corrupt, and deleted,
+     *  since the cache was opened.
+     *
+     * @return myCorruptCnt The number of corrupt entries.
+     */
+    public int getCorruptCount() {
+        return myCorruptCnt;
+    }//END getCorruptCount() METHOD
+
+    /**
+     * Method to load the matrix stored under the passed name and key,
+     *  marking it as the most recently used entry.
+     *
+     * @param theName The name of the matrix, such as L.
+     * @param theKey The key of the computation which gave it.
+     * @return aMatrix The matrix, or null if it is not stored or its entry
+     *  is corrupt.
+     * @throws IOException If the entry cannot be read or deleted.
+     */
+    public SparseMatrix get(final String theName, final long theKey)
+            throws IOException {
+        final Path aPath = entryPath(theName, theKey);
+        if (!Files.exists(aPath)) {
+            return null;
+        }//END if
+
+        final SparseMatrix aMatrix;
+        final FileChannel aChannel;
+        try {
+            aChannel = FileChannel.open(aPath, StandardOpenOption.READ);
+        } catch (final NoSuchFileException e) {
+            // Evicted by another run since it was found.
+            return null;
+        }//END try/catch BLOCK
+        try {
+            aMatrix = load(aChannel, theKey);
+        } finally {
+            aChannel.close();
+        }//END try/finally BLOCK
+
+        if (aMatrix == null) {
+            myCorruptCnt++;
+            Files.deleteIfExists(aPath);
+        } else {
+            Files.setLastModifiedTime(aPath, FileTime.fromMillis(
+                    System.currentTimeMillis()));
+        }//END if
+
+        return aMatrix;
+    }//END get() METHOD
+
+    /**
+     * Method to store a matrix under the passed name and key, replacing any
+     *  entry already there, then delete the least recently used entries
+     *  until the directory is within its size.  A matrix whose entry would
+     *  not fit in the cache on its own is not stored.
+     *
+     * @param theName The name of the matrix, such as L.
+     * @param theKey The key of the computation which gave it.
+     * @param theMatrix The matrix to store.
+     * @throws IOException If the entry cannot be written.
+     */
+    public void put(final String theName, final long theKey,
+                    final SparseMatrix theMatrix) throws IOException {
+        final long aBytes = HEADER_SIZE + INT_BYTES
+                * ((long) theMatrix.getRowCount() + 1
+                   + theMatrix.getNonZeroCount())
+                + (long) valueBytes(theMatrix) * theMatrix.getNonZeroCount();
+        if (aBytes > myMaxBytes || aBytes > Integer.MAX_VALUE) {
+            return;
+        }//END if
+
+        final Path aPath = entryPath(theName, theKey);
+        final Path aTemp = aPath.resolveSibling(aPath.getFileName()
+                                                + TEMP_SUFFIX);
+        final FileChannel aChannel;
+        aChannel = FileChannel.open(aTemp, StandardOpenOption.CREATE,
+                                    StandardOpenOption.WRITE,
+                                    StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            store(aChannel, theKey, theMatrix);
+        } finally {
+            aChannel.close();
+        }//END try/finally BLOCK
+
+        Files.move(aTemp, aPath, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        evict();
+    }//END put() METHOD
+
+    /**
+     * Private helper to return the path of an entry.
+     *
+     * @param theName The name of the matrix.
+     * @param theKey The key of the computation.
+     * @return The path of the entry file.
+     */
+    private Path entryPath(final String theName, final long theKey) {
+        return myDir.resolve(theName + "-" + Long.toHexString(theKey)
+                             + ENTRY_SUFFIX);
+    }//END entryPath() METHOD
+
+    /**
+     * Private helper to map an entry and load its matrix, checking its
+     *  header and checksum first.
+     *
+     * @param theChannel The channel of the entry file.
+     * @param theKey The key the entry must hold.
+     * @return The matrix, or null if the entry is corrupt.
+     * @throws IOException If the entry cannot be read.
+     */
+    private static SparseMatrix load(final FileChannel theChannel,
+                                     final long theKey) throws IOException {
+        final long aSize = theChannel.size();
+        if (aSize < HEADER_SIZE || aSize > Integer.MAX_VALUE) {
+            return null;
+        }//END if
+
+        final MappedByteBuffer aMap;
+        aMap = theChannel.map(FileChannel.MapMode.READ_ONLY, 0, aSize);
+        aMap.order(BinaryFormat.ORDER);
+
+        final byte[] aMagic = new byte[MAGIC.length];
+        aMap.get(aMagic);
+        final byte aVersion = aMap.get();
+        int aWidth = aMap.get();
+        if (aWidth == 0) {
+            aWidth = INT_BYTES;
+        }//END if
+        aMap.position(aMap.position() + 2);
+        final int aRows = aMap.getInt();
+        final int aCols = aMap.getInt();
+        final long aKey = aMap.getLong();
+        final long aNonZeros = aMap.getLong();
+        final long aCrc = aMap.getLong();
+        if (!Arrays.equals(aMagic, MAGIC) || aVersion != VERSION
+                || aKey != theKey || aRows < 0 || aCols < 0 || aNonZeros < 0
+                || (aWidth != INT_BYTES && aWidth != LONG_BYTES)
+                || aSize != HEADER_SIZE + INT_BYTES * (aRows + 1 + aNonZeros)
+                            + aWidth * aNonZeros) {
+            return null;
+        }//END if
+
+        final CRC32 aCheck = new CRC32();
+        aCheck.update(aMap.duplicate());
+        if (aCheck.getValue() != aCrc) {
+            return null;
+        }//END if
+
+        final IntBuffer someInts = aMap.asIntBuffer();
+        final int[] aRowPtr = new int[aRows + 1];
+        final int[] aColIdx = new int[(int) aNonZeros];
+        someInts.get(aRowPtr);
+        someInts.get(aColIdx);
+        if (aRowPtr[0] != 0 || aRowPtr[aRows] != aNonZeros) {
+            return null;
+        }//END if
+
+        final SparseMatrix aMatrix;
+        if (aWidth == LONG_BYTES) {
+            aMap.position(HEADER_SIZE + INT_BYTES * (aRows + 1
+                                                     + (int) aNonZeros));
+            final LongBuffer someLongs = aMap.asLongBuffer();
+            final long[] aValues = new long[(int) aNonZeros];
+            someLongs.get(aValues);
+            aMatrix = new SparseMatrix(aRows, aCols, aRowPtr, aColIdx,
+                                       aValues);
+        } else {
+            final int[] aValues = new int[(int) aNonZeros];
+            someInts.get(aValues);
+            aMatrix = new SparseMatrix(aRows, aCols, aRowPtr, aColIdx,
+                                       aValues);
+        }//END if
+
+        return aMatrix;
+    }//END load() METHOD
+
+    /**
+     * Private helper to write a matrix to an entry file: the header with no
+     *  checksum, then the body a buffer at a time, then the checksum of the
+     *  body into the header.
+     *
+     * @param theChannel The channel of the entry file.
+     * @param theKey The key of the computation.
+     * @param theMatrix The matrix to write.
+     * @throws IOException If the entry cannot be written.
+     */
+    private static void store(final FileChannel theChannel, final long theKey,
+                              final SparseMatrix theMatrix)
+            throws IOException {
+        final int aRows = theMatrix.getRowCount();
+        final int aNonZeros = theMatrix.getNonZeroCount();
+        final int aWidth = valueBytes(theMatrix);
+        final ByteBuffer aBuffer;
+        aBuffer = ByteBuffer.allocateDirect(BinaryFormat.BUFFER_SIZE);
+        aBuffer.order(BinaryFormat.ORDER);
+
+        aBuffer.put(MAGIC).put(VERSION).put((byte) aWidth).put(new byte[2]);
+        aBuffer.putInt(aRows).putInt(theMatrix.getColCount());
+        aBuffer.putLong(theKey).putLong(aNonZeros).putLong(0);
+        aBuffer.flip();
+        writeFully(theChannel, aBuffer);
+        aBuffer.clear();
+
+        final CRC32 aCheck = new CRC32();
+        for (int i = 0; i <= aRows; i++) {
+            int aStart = aNonZeros;
+            if (i < aRows) {
+                aStart = theMatrix.getRowStart(i);
+            }//END if
+            putInt(theChannel, aBuffer, aCheck, aStart);
+        }//END for (INDEX i)
+        for (int k = 0; k < aNonZeros; k++) {
+            putInt(theChannel, aBuffer, aCheck, theMatrix.getColumn(k));
+        }//END for (INDEX k)
+        for (int k = 0; k < aNonZeros; k++) {
+            if (aWidth == LONG_BYTES) {
+                putLong(theChannel, aBuffer, aCheck,
+                        theMatrix.getLongValue(k));
+            } else {
+                putInt(theChannel, aBuffer, aCheck, theMatrix.getValue(k));
+            }//END if
+        }//END for (INDEX k)
+        drain(theChannel, aBuffer, aCheck);
+
+        aBuffer.putLong(aCheck.getValue());
+        aBuffer.flip();
+        while (aBuffer.hasRemaining()) {
+            theChannel.write(aBuffer, CRC_POS + aBuffer.position());
+        }//END while LOOP
+    }//END store() METHOD
+
+    /**
+     * Private helper to add one integer of the body to the buffer, writing
+     *  the buffer out first if it is full.
+     *
+     * @param theChannel The channel of the entry file.
+     * @param theBuffer The buffer of the body.
+     * @param theCheck The checksum of the body written so far.
+     * @param theValue The integer.
+     * @throws IOException If the entry cannot be written.
+     */
+    private static void putInt(final FileChannel theChannel,
+                               final ByteBuffer theBuffer,
+                               final CRC32 theCheck, final int theValue)
+            throws IOException {
+        if (theBuffer.remaining() < INT_BYTES) {
+            drain(theChannel, theBuffer, theCheck);
+        }//END if
+        theBuffer.putInt(theValue);
+    }//END putInt() METHOD
+
+    /**
+     * Private helper to add one long value of the body to the buffer,
+     *  writing the buffer out first if it is full.
+     *
+     * @param theChannel The channel of the entry file.
+     * @param theBuffer The buffer of the body.
+     * @param theCheck The checksum of the body written so far.
+     * @param theValue The value.
+     * @throws IOException If the entry cannot be written.
+     */
+    private static void putLong(final FileChannel theChannel,
+                                final ByteBuffer theBuffer,
+                                final CRC32 theCheck, final long theValue)
+            throws IOException {
+        if (theBuffer.remaining() < LONG_BYTES) {
+            drain(theChannel, theBuffer, theCheck);
+        }//END if
+        theBuffer.putLong(theValue);
+    }//END putLong() METHOD
+
+    /**
+     * Private helper to return the width in bytes each value of a matrix
+     *  is stored in: 8 when it holds its values in longs, 4 otherwise.
+     *
+     * @param theMatrix The matrix.
+     * @return The bytes per value.
+     */
+    private static int valueBytes(final SparseMatrix theMatrix) {
+        int aWidth = INT_BYTES;
+        if (theMatrix.getValueWidth() == LONG_BYTES) {
+            aWidth = LONG_BYTES;
+        }//END if
+
+        return aWidth;
+    }//END valueBytes() METHOD
+
+    /**
+     * Private helper to write out the bytes of the body in the buffer,
+     *  adding them to the checksum, and empty it.
+     *
+     * @param theChannel The channel of the entry file.
+     * @param theBuffer The buffer of the body.
+     * @param theCheck The checksum of the body written so far.
+     * @throws IOException If the entry cannot be written.
+     */
+    private static void drain(final FileChannel theChannel,
+                              final ByteBuffer theBuffer,
+                              final CRC32 theCheck) throws IOException {
+        theBuffer.flip();
+        theCheck.update(theBuffer.duplicate());
+        writeFully(theChannel, theBuffer);
+        theBuffer.clear();
+    }//END drain() METHOD
+
+    /**
+     * Private helper to write every remaining byte of a buffer.
+     *
+     * @param theChannel The channel to write to.
+     * @param theBuffer The buffer.
+     * @throws IOException If the bytes cannot be written.
+     */
+    private static void writeFully(final FileChannel theChannel,
+                                   final ByteBuffer theBuffer)
+            throws IOException {
+        while (theBuffer.hasRemaining()) {
+            theChannel.write(theBuffer);
+        }//END while LOOP
+    }//END writeFully() METHOD
+
+    /**
+     * Private helper to delete the least recently used entries, by their
+     *  modification times, until the rest take no more than the size of
+     *  the cache.
+     *
+     * @throws IOException If the directory cannot be read.
+     */
+    private void evict() throws IOException {
+        final List<Path> someEntries = new ArrayList<Path>();
+        final DirectoryStream<Path> aListing;
+        aListing = Files.newDirectoryStream(myDir, "*" + ENTRY_SUFFIX);
+        try {
+            for (final Path aPath : aListing) {
+                someEntries.add(aPath);
+            }//END for
+        } finally {
+            aListing.close();
+        }//END try/finally BLOCK
+
+        final List<long[]> someStats = new ArrayList<long[]>();
+        for (int n = 0; n < someEntries.size(); n++) {
+            try {
+                final Path aPath = someEntries.get(n);
+                someStats.add(new long[] {
+                    Files.getLastModifiedTime(aPath).toMillis(),
+                    Files.size(aPath), n});
+            } catch (final NoSuchFileException e) {
+                // Deleted by another run since it was listed.
+                continue;
+            }//END try/catch BLOCK
+        }//END for (INDEX n)
+
+        // Most recently used first.
+        Collections.sort(someStats, new Comparator<long[]>() {
+            @Override
+            public int compare(final long[] theOne, final long[] theOther) {
+                return Long.compare(theOther[0], theOne[0]);
+            }//END compare() METHOD
+        });
+
+        long aKept = 0;
+        for (final long[] aStat : someStats) {
+            if (aKept + aStat[1] > myMaxBytes) {
+                Files.deleteIfExists(someEntries.get((int) aStat[2]));
+            } else {
+                aKept += aStat[1];
+            }//END if
+        }//END for
+    }//END evict() METHOD
+
+    /**
+     * Private helper to mix the eight bytes of a long into a key.
+     *
+     * @param theHash The key so far.
+     * @param theValue The value to mix in.
+     * @return aHash The new key.
+     */
+    private static long mixHash(final long theHash, final long theValue) {
+        long aHash = theHash;
+        for (int b = 0; b < Long.SIZE; b += Byte.SIZE) {
+            aHash ^= (theValue >>> b) & 0xFF;
+            aHash *= HASH_PRIME;
+        }//END for (INDEX b)
+
+        return aHash;
+    }//END mixHash() METHOD
+
+}//END MatrixCache.java CLASS
@@ -5,8 +5,10 @@
 package files;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -14,10 +16,10 @@ import java.util.List;
 
 /**
  * Provides a file reading utility class which will read input files containing
- * a single word or N-gram per line.
+ * a single word or N-gram per line, decoded as UTF-8 like every other reader.
  * 
  * @author Jonathan McFadden (mcfaddja@uw.edu)
- * @version 0.1
+ * @version 0.2
  */
 public class Reader {
 
@@ -46,8 +48,9 @@ public class Reader {
      */
     public void readIt() {
         try {
-            final FileReader aReader;
-            aReader = new FileReader(myFileName);
+            final InputStreamReader aReader;
+            aReader = new InputStreamReader(new FileInputStream(myFileName), 
+                                            StandardCharsets.UTF_8);
             final BufferedReader in = new BufferedReader(aReader);
 
             String line = in.readLine();
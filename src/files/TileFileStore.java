@@ -0,0 +1,395 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+
+package files;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import matrices.RowSink;
+import matrices.SparseMatrix;
+import matrices.TileStore;
+
+
+/**
+ * Provides a tile store which keeps each tile of a tiled LLt as its own
+ *  file, in the binary format, in a spill directory, and which assembles the
+ *  tiles into the full LLt file one block of rows at a time.  Each tile is
+ *  written to a temporary file and then moved into place, so a tile file is
+ *  never seen half written.  A manifest records the shape of LLt and a hash
+ *  of the L it was computed from; tiles left by a run for a different L are
+ *  cleared rather than reused, so a stopped run resumes only when it would
+ *  give the same result.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.2
+ */
+public class TileFileStore implements TileStore {
+
+    /** Constant for the name of the manifest file. */
+    private static final String MANIFEST = "manifest";
+
+    /** Constant for the prefix of every tile file. */
+    private static final String TILE_PREFIX = "tile-";
+
+    /** Constant for the suffix of every tile file. */
+    private static final String TILE_SUFFIX = ".bin";
+
+    /** Constant for the suffix of a tile file being written. */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** The spill directory the tiles are kept in. */
+    private final Path myDir;
+
+    /** Integer representing the number of rows, and columns, of LLt. */
+    private final int myRows;
+
+    /** Integer representing the number of rows in each block. */
+    private final int myTileRows;
+
+    /** Integer array reused to read the column indices of a tile row. */
+    private final int[] myPieceCols;
+
+    /** Integer array reused to read the values of a tile row. */
+    private final int[] myPieceVals;
+
+
+    /**
+     * Opens the passed spill directory, creating it if needed, for the tiles
+     *  of an LLt of the passed shape.  Tiles already there are kept only if
+     *  the manifest matches the shape and fingerprint.
+     *
+     * @param theDir Name of the spill directory.
+     * @param theRows The number of rows of LLt.
+     * @param theTileRows The number of rows in each block.
+     * @param theFingerprint A hash of the L which LLt is computed from.
+     * @throws IOException If the directory cannot be read or written.
+     */
+    public TileFileStore(final String theDir, final int theRows,
+                         final int theTileRows, final long theFingerprint)
+            throws IOException {
+        myDir = Paths.get(theDir);
+        myRows = theRows;
+        myTileRows = theTileRows;
+        myPieceCols = new int[theTileRows];
+        myPieceVals = new int[theTileRows];
+
+        Files.createDirectories(myDir);
+
+        final String aManifest = theRows + " " + theTileRows + " "
+                                 + Long.toHexString(theFingerprint);
+        final Path aManifestFile = myDir.resolve(MANIFEST);
+        boolean isMatch = false;
+        if (Files.exists(aManifestFile)) {
+            final List<String> someLines;
+            someLines = Files.readAllLines(aManifestFile,
+                                           StandardCharsets.UTF_8);
+            isMatch = someLines.size() == 1
+                      && aManifest.equals(someLines.get(0));
+        }//END if
+
+        if (!isMatch) {
+            deleteTiles();
+            Files.write(aManifestFile, Collections.singletonList(aManifest),
+                        StandardCharsets.UTF_8);
+        }//END if
+    }//END constructor
+
+
+    /**
+     * Method to return whether a tile has already been written.
+     *
+     * @param theRowBlock The row block of the tile.
+     * @param theColBlock The column block of the tile.
+     * @return True if the tile file exists.
+     */
+    @Override
+    public boolean hasTile(final int theRowBlock, final int theColBlock) {
+        return Files.exists(tilePath(theRowBlock, theColBlock));
+    }//END hasTile() METHOD
+
+    /**
+     * Method to write a finished tile to its own file.
+     *
+     * @param theRowBlock The row block of the tile.
+     * @param theColBlock The column block of the tile.
+     * @param theTile The rows of the tile.
+     * @throws IOException If the tile cannot be written.
+     */
+    @Override
+    public void putTile(final int theRowBlock, final int theColBlock,
+                        final SparseMatrix theTile) throws IOException {
+        final Path aPath = tilePath(theRowBlock, theColBlock);
+        final Path aTemp = aPath.resolveSibling(aPath.getFileName()
+                                                + TEMP_SUFFIX);
+
+        final BinaryWriter aWriter = new BinaryWriter(aTemp.toString(),
+                                                      myRows, false, 0);
+        try {
+            for (int i = 0; i < theTile.getRowCount(); i++) {
+                aWriter.writeRow(theTile, i);
+            }//END for (INDEX i)
+        } finally {
+            aWriter.close();
+        }//END try/finally BLOCK
+
+        Files.move(aTemp, aPath, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }//END putTile() METHOD
+
+    /**
+     * Method to assemble the tiles into the full LLt, written as text or in
+     *  the binary format exactly as if LLt had been held whole.  Only one
+     *  block of rows is read at a time, one row from each of its tiles.
+     *  The binary layout is chosen by a first pass over the tiles.  Each
+     *  row is also sent to the listener, if there is one, as it is written.
+     *  Not safe to call from several threads at once.
+     *
+     * @param theFileName Name of the file to write to.
+     * @param theBinary True to write the binary format, false for text.
+     * @param theRowsDone The counter advanced as rows are written, or null.
+     * @param theListener The sink each row is also sent to, or null.
+     * @return The number of non-zero entries in LLt.
+     * @throws IOException If a tile is missing or a file cannot be written.
+     */
+    public long writeMatrix(final String theFileName, final boolean theBinary,
+                            final AtomicLong theRowsDone,
+                            final RowSink theListener) throws IOException {
+        final int[] someCols = new int[myRows];
+        final int[] someVals = new int[myRows];
+
+        Writer aText = null;
+        BinaryWriter aBinary = null;
+        if (theBinary) {
+            // Pick the smaller layout, as BinaryWriter.write does.
+            final long[] someStats = scanTiles();
+            final int aWidth = BinaryFormat.widthFor(someStats[0],
+                                                     someStats[1]);
+            final long aDenseBytes = (long) myRows * myRows * aWidth;
+            aBinary = new BinaryWriter(theFileName, myRows,
+                                       aDenseBytes < someStats[2], aWidth);
+        } else {
+            aText = new Writer(theFileName);
+        }//END if
+
+        long aNonZeros = 0;
+        try {
+            final int aBlocks = getBlockCount();
+            for (int bi = 0; bi < aBlocks; bi++) {
+                final BinaryReader[] someTiles = openRowBlock(bi);
+                try {
+                    final int aBlockRows = Math.min(myTileRows,
+                                                    myRows - bi * myTileRows);
+                    for (int r = 0; r < aBlockRows; r++) {
+                        final int aCount = readRow(someTiles, someCols,
+                                                   someVals);
+                        if (theBinary) {
+                            aBinary.writeRow(someCols, someVals, 0, aCount);
+                        } else {
+                            aText.writeRow(someCols, someVals, 0, aCount,
+                                           myRows);
+                        }//END if
+                        aNonZeros += aCount;
+
+                        if (theListener != null) {
+                            theListener.addRow(bi * myTileRows + r, someCols,
+                                               someVals, 0, aCount);
+                        }//END if
+                        if (theRowsDone != null) {
+                            theRowsDone.incrementAndGet();
+                        }//END if
+                    }//END for (INDEX r)
+                } finally {
+                    closeAll(someTiles);
+                }//END try/finally BLOCK
+            }//END for (INDEX bi)
+        } finally {
+            if (aBinary != null) {
+                aBinary.close();
+            } else {
+                aText.close();
+            }//END if
+        }//END try/finally BLOCK
+
+        return aNonZeros;
+    }//END writeMatrix() METHOD
+
+    /**
+     * Method to delete the tiles and the manifest, and the spill directory
+     *  if nothing else is left in it, once LLt has been assembled.
+     *
+     * @throws IOException If the files cannot be deleted.
+     */
+    public void delete() throws IOException {
+        deleteTiles();
+        Files.deleteIfExists(myDir.resolve(MANIFEST));
+
+        final DirectoryStream<Path> aListing = Files.newDirectoryStream(myDir);
+        final boolean isEmpty;
+        try {
+            isEmpty = !aListing.iterator().hasNext();
+        } finally {
+            aListing.close();
+        }//END try/finally BLOCK
+
+        if (isEmpty) {
+            Files.delete(myDir);
+        }//END if
+    }//END delete() METHOD
+
+    /**
+     * Private helper to return the number of row blocks.
+     *
+     * @return The number of blocks.
+     */
+    private int getBlockCount() {
+        return (myRows + myTileRows - 1) / myTileRows;
+    }//END getBlockCount() METHOD
+
+    /**
+     * Private helper to return the path of a tile file.
+     *
+     * @param theRowBlock The row block of the tile.
+     * @param theColBlock The column block of the tile.
+     * @return The path of the tile file.
+     */
+    private Path tilePath(final int theRowBlock, final int theColBlock) {
+        return myDir.resolve(TILE_PREFIX + theRowBlock + "-" + theColBlock
+                             + TILE_SUFFIX);
+    }//END tilePath() METHOD
+
+    /**
+     * Private helper to open the tiles of one block of rows, in column
+     *  order.
+     *
+     * @param theRowBlock The row block.
+     * @return someTiles Readers for the tiles, each at its first row.
+     * @throws IOException If a tile is missing or cannot be read.
+     */
+    private BinaryReader[] openRowBlock(final int theRowBlock)
+            throws IOException {
+        final BinaryReader[] someTiles = new BinaryReader[getBlockCount()];
+
+        try {
+            for (int bj = 0; bj < someTiles.length; bj++) {
+                someTiles[bj] = new BinaryReader(tilePath(theRowBlock, bj)
+                                                 .toString());
+            }//END for (INDEX bj)
+        } catch (final IOException e) {
+            closeAll(someTiles);
+            throw e;
+        }//END try/catch BLOCK
+
+        return someTiles;
+    }//END openRowBlock() METHOD
+
+    /**
+     * Private helper to read the next row of LLt from the tiles of a block
+     *  of rows.  Each tile holds later columns than the one before, so the
+     *  pieces are simply placed one after another.
+     *
+     * @param theTiles Readers for the tiles of the block, in column order.
+     * @param theCols Integer array receiving the column indices.
+     * @param theVals Integer array receiving the values.
+     * @return aCount The number of non-zero entries in the row.
+     * @throws IOException If a tile cannot be read or ends early.
+     */
+    private int readRow(final BinaryReader[] theTiles, final int[] theCols,
+                        final int[] theVals) throws IOException {
+        int aCount = 0;
+        for (final BinaryReader aTile : theTiles) {
+            final int aPiece = aTile.readRow(myPieceCols, myPieceVals);
+            if (aPiece < 0) {
+                throw new IOException("Tile ended early in " + myDir);
+            }//END if
+
+            System.arraycopy(myPieceCols, 0, theCols, aCount, aPiece);
+            System.arraycopy(myPieceVals, 0, theVals, aCount, aPiece);
+            aCount += aPiece;
+        }//END for
+
+        return aCount;
+    }//END readRow() METHOD
+
+    /**
+     * Private helper to read through every tile, in row order, for the
+     *  smallest and largest values of LLt and the size of its sparse body.
+     *
+     * @return someStats Long array holding the smallest value, the largest
+     *  value and the number of bytes of the sparse body.
+     * @throws IOException If a tile cannot be read.
+     */
+    private long[] scanTiles() throws IOException {
+        final long[] someStats = new long[3];
+        final int[] someCols = new int[myRows];
+        final int[] someVals = new int[myRows];
+
+        for (int bi = 0; bi < getBlockCount(); bi++) {
+            final BinaryReader[] someTiles = openRowBlock(bi);
+            try {
+                final int aBlockRows = Math.min(myTileRows,
+                                                myRows - bi * myTileRows);
+                for (int r = 0; r < aBlockRows; r++) {
+                    final int aCount = readRow(someTiles, someCols, someVals);
+
+                    someStats[2] += BinaryFormat.varintSize(aCount);
+                    int aPrev = -1;
+                    for (int k = 0; k < aCount; k++) {
+                        someStats[0] = Math.min(someStats[0], someVals[k]);
+                        someStats[1] = Math.max(someStats[1], someVals[k]);
+                        someStats[2] += BinaryFormat.varintSize(someCols[k]
+                                                                - aPrev - 1)
+                                + BinaryFormat.varintSize(
+                                        BinaryFormat.zigZag(someVals[k]));
+                        aPrev = someCols[k];
+                    }//END for (INDEX k)
+                }//END for (INDEX r)
+            } finally {
+                closeAll(someTiles);
+            }//END try/finally BLOCK
+        }//END for (INDEX bi)
+
+        return someStats;
+    }//END scanTiles() METHOD
+
+    /**
+     * Private helper to delete every tile file and partly written tile.
+     *
+     * @throws IOException If a file cannot be deleted.
+     */
+    private void deleteTiles() throws IOException {
+        final DirectoryStream<Path> aListing;
+        aListing = Files.newDirectoryStream(myDir, TILE_PREFIX + "*");
+        try {
+            for (final Path aPath : aListing) {
+                Files.delete(aPath);
+            }//END for
+        } finally {
+            aListing.close();
+        }//END try/finally BLOCK
+    }//END deleteTiles() METHOD
+
+    /**
+     * Private helper to close every reader opened, ignoring any left null.
+     *
+     * @param theTiles The readers to close.
+     * @throws IOException If a reader cannot be closed.
+     */
+    private static void closeAll(final BinaryReader[] theTiles)
+            throws IOException {
+        for (final BinaryReader aTile : theTiles) {
+            if (aTile != null) {
+                aTile.close();
+            }//END if
+        }//END for
+    }//END closeAll() METHOD
+
+}//END TileFileStore.java CLASS
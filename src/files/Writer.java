@@ -4,18 +4,39 @@
 package files;
 
 import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import matrices.SparseMatrix;
 
 
 /**
  * Provides a file writing utility class which will write the passed array of 
- *  Strings to file with the passed filename.
+ *  Strings to file with the passed filename, or which will stream the rows 
+ *  of a matrix to the file as lines of space separated values, formatting 
+ *  each value straight into a reused byte buffer so that the memory used 
+ *  does not depend on the size of the matrix.
  * 
  * @author Jonathan McFadden (mcfaddja@uw.edu)
- * @version 0.3
+ * @version 0.9
  */
-public class Writer {
+public class Writer implements Closeable {
+    
+    /** Constant for the size of the buffer used to stream rows. */
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    /** Constant for the most bytes taken by one formatted value. */
+    private static final int MAX_VALUE_BYTES = 21;
+    
+    /** Constant for the bytes ending each line. */
+    private static final byte[] LINE_END = 
+            System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
     
     /** String holding the filename for the output file. */
     private final String myFileName;
@@ -26,6 +47,15 @@ public class Writer {
     /** Integer representing the number of lines in the String array. */
     private final int myLines;
     
+    /** The channel rows are streamed to, or null if not streaming. */
+    private final FileChannel myChannel;
+    
+    /** The buffer streamed rows are formatted into, or null. */
+    private final ByteBuffer myBuffer;
+    
+    /** Byte array reused to hold the digits of one value. */
+    private final byte[] myDigits;
+    
     
     /**
      * Creates a writer with a method to write the data specified here to a 
@@ -40,6 +70,33 @@ public class Writer {
         myOutput = theOutput.clone();
         
         myLines = myOutput.length;
+        
+        myChannel = null;
+        myBuffer = null;
+        myDigits = null;
+    }//END constructor
+    
+    /**
+     * Creates a writer which streams rows to a file with the given name, 
+     *  replacing any existing file, as they are passed to writeRow().  The 
+     *  writer must be closed once every row has been written.
+     * 
+     * @param theFileName Name of the file to write to.
+     * @throws IOException If the file cannot be created.
+     */
+    public Writer(final String theFileName) throws IOException {
+        myFileName = theFileName;
+        
+        myOutput = new String[0];
+        
+        myLines = 0;
+        
+        myChannel = FileChannel.open(Paths.get(theFileName), 
+                                     StandardOpenOption.CREATE, 
+                                     StandardOpenOption.WRITE, 
+                                     StandardOpenOption.TRUNCATE_EXISTING);
+        myBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        myDigits = new byte[MAX_VALUE_BYTES];
     }//END constructor
     
     
@@ -49,7 +106,9 @@ public class Writer {
      */
     public void writeIt() {
         try {
-            final FileWriter writer = new FileWriter(myFileName);
+            final OutputStreamWriter writer;
+            writer = new OutputStreamWriter(new FileOutputStream(myFileName), 
+                                            StandardCharsets.UTF_8);
             final BufferedWriter out = new BufferedWriter(writer);
             
             for (int i = 0; i < myLines; i++) {
@@ -65,5 +124,248 @@ public class Writer {
         }//END try/catch BLOCK
     }//END writeIt() METHOD
     
+    /**
+     * Method to stream one row of a matrix to the file as a line holding 
+     *  every value of the row, zeros included, each followed by a space.
+     * 
+     * @param theMatrix The matrix holding the row.
+     * @param theRow The index of the row in the matrix.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeRow(final SparseMatrix theMatrix, final int theRow) 
+            throws IOException {
+        final int nCols = theMatrix.getColCount();
+        final int anEnd = theMatrix.getRowEnd(theRow);
+        
+        int aPos = theMatrix.getRowStart(theRow);
+        for (int j = 0; j < nCols; j++) {
+            if (aPos < anEnd && theMatrix.getColumn(aPos) == j) {
+                putValue(theMatrix.getLongValue(aPos));
+                aPos++;
+            } else {
+                putValue(0);
+            }//END if
+        }//END for (INDEX j)
+        
+        putLineEnd();
+    }//END writeRow() METHOD
+    
+    /**
+     * Method to stream one row, given as parallel ranges of increasing 
+     *  column indices and their values, to the file as a line holding every 
+     *  value of the row, zeros included, each followed by a space.
+     * 
+     * @param theCols Integer array holding the row's column indices.
+     * @param theValues Integer array holding the row's values.
+     * @param theFrom The position of the row's first entry in the arrays.
+     * @param theTo The position just past the row's last entry.
+     * @param theColCount The number of columns in the row.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeRow(final int[] theCols, final int[] theValues, 
+                         final int theFrom, final int theTo, 
+                         final int theColCount) throws IOException {
+        int aPos = theFrom;
+        for (int j = 0; j < theColCount; j++) {
+            if (aPos < theTo && theCols[aPos] == j) {
+                putValue(theValues[aPos]);
+                aPos++;
+            } else {
+                putValue(0);
+            }//END if
+        }//END for (INDEX j)
+        
+        putLineEnd();
+    }//END writeRow() METHOD
+    
+    /**
+     * Method to stream one row, given as parallel ranges of increasing 
+     *  column indices and their values held in longs, to the file as a 
+     *  line holding every value of the row, zeros included.
+     * 
+     * @param theCols Integer array holding the row's column indices.
+     * @param theValues Long array holding the row's values.
+     * @param theFrom The position of the row's first entry in the arrays.
+     * @param theTo The position just past the row's last entry.
+     * @param theColCount The number of columns in the row.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeRow(final int[] theCols, final long[] theValues, 
+                         final int theFrom, final int theTo, 
+                         final int theColCount) throws IOException {
+        int aPos = theFrom;
+        for (int j = 0; j < theColCount; j++) {
+            if (aPos < theTo && theCols[aPos] == j) {
+                putValue(theValues[aPos]);
+                aPos++;
+            } else {
+                putValue(0);
+            }//END if
+        }//END for (INDEX j)
+        
+        putLineEnd();
+    }//END writeRow() METHOD
+    
+    /**
+     * Method to stream the non-zero entries of one row, given as parallel 
+     *  ranges of column indices and values, to the file as one line per 
+     *  entry holding its row, column and value, each followed by a space.
+     * 
+     * @param theRow The index of the row.
+     * @param theCols Integer array holding the row's column indices.
+     * @param theValues Integer array holding the row's values.
+     * @param theFrom The position of the row's first entry in the arrays.
+     * @param theTo The position just past the row's last entry.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeEntries(final int theRow, final int[] theCols, 
+                             final int[] theValues, final int theFrom, 
+                             final int theTo) throws IOException {
+        for (int k = theFrom; k < theTo; k++) {
+            putValue(theRow);
+            putValue(theCols[k]);
+            putValue(theValues[k]);
+            putLineEnd();
+        }//END for (INDEX k)
+    }//END writeEntries() METHOD
+    
+    /**
+     * Method to stream the non-zero entries of one row, given as parallel 
+     *  ranges of column indices and values held in longs, to the file as 
+     *  one line per entry holding its row, column and value.
+     * 
+     * @param theRow The index of the row.
+     * @param theCols Integer array holding the row's column indices.
+     * @param theValues Long array holding the row's values.
+     * @param theFrom The position of the row's first entry in the arrays.
+     * @param theTo The position just past the row's last entry.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeEntries(final int theRow, final int[] theCols, 
+                             final long[] theValues, final int theFrom, 
+                             final int theTo) throws IOException {
+        for (int k = theFrom; k < theTo; k++) {
+            putValue(theRow);
+            putValue(theCols[k]);
+            putValue(theValues[k]);
+            putLineEnd();
+        }//END for (INDEX k)
+    }//END writeEntries() METHOD
+    
+    /**
+     * Method to stream a line of text, followed by a line end, to the file.
+     * 
+     * @param theLine The line to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeLine(final String theLine) throws IOException {
+        final byte[] someBytes = theLine.getBytes(StandardCharsets.UTF_8);
+        
+        int aPos = 0;
+        while (aPos < someBytes.length) {
+            room(1);
+            final int aLength = Math.min(myBuffer.remaining(), 
+                                         someBytes.length - aPos);
+            myBuffer.put(someBytes, aPos, aLength);
+            aPos += aLength;
+        }//END while LOOP
+        
+        putLineEnd();
+    }//END writeLine() METHOD
+    
+    /**
+     * Method to flush any streamed rows still in the buffer and close the 
+     *  file.  Does nothing for a writer which is not streaming.
+     * 
+     * @throws IOException If the file cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (myChannel != null) {
+            try {
+                flush();
+            } finally {
+                myChannel.close();
+            }//END try/finally BLOCK
+        }//END if
+    }//END close() METHOD
+    
+    /**
+     * Private helper to format a value in decimal, followed by a space, 
+     *  into the buffer.  The digits are taken from the value negated, if it 
+     *  is positive, so that the least long is formatted too.
+     * 
+     * @param theValue The value to format.
+     * @throws IOException If the file cannot be written.
+     */
+    private void putValue(final long theValue) throws IOException {
+        room(MAX_VALUE_BYTES);
+        
+        if (theValue == 0) {
+            myBuffer.put((byte) '0');
+        } else {
+            long aRest = theValue;
+            if (aRest < 0) {
+                myBuffer.put((byte) '-');
+            } else {
+                aRest = -aRest;
+            }//END if
+            
+            int aCount = 0;
+            while (aRest != 0) {
+                myDigits[aCount] = (byte) ('0' - (int) (aRest % 10));
+                aCount++;
+                aRest /= 10;
+            }//END while LOOP
+            
+            while (aCount > 0) {
+                aCount--;
+                myBuffer.put(myDigits[aCount]);
+            }//END while LOOP
+        }//END if
+        
+        myBuffer.put((byte) ' ');
+    }//END putValue() METHOD
+    
+    /**
+     * Private helper to put a line end into the buffer.
+     * 
+     * @throws IOException If the file cannot be written.
+     */
+    private void putLineEnd() throws IOException {
+        room(LINE_END.length);
+        myBuffer.put(LINE_END);
+    }//END putLineEnd() METHOD
+    
+    /**
+     * Private helper to make sure the buffer has room for the passed number 
+     *  of bytes, flushing it if it does not.
+     * 
+     * @param theBytes The number of bytes needed.
+     * @throws IOException If the file cannot be written.
+     */
+    private void room(final int theBytes) throws IOException {
+        if (myBuffer == null) {
+            throw new IllegalStateException("Writer is not streaming");
+        }//END if
+        
+        if (myBuffer.remaining() < theBytes) {
+            flush();
+        }//END if
+    }//END room() METHOD
+    
+    /**
+     * Private helper to write out everything in the buffer.
+     * 
+     * @throws IOException If the file cannot be written.
+     */
+    private void flush() throws IOException {
+        myBuffer.flip();
+        while (myBuffer.hasRemaining()) {
+            myChannel.write(myBuffer);
+        }//END while LOOP
+        myBuffer.clear();
+    }//END flush() METHOD
+    
     
 }//END Writer.java CLASS
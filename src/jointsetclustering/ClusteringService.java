@@ -0,0 +1,653 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package jointsetclustering;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import matrices.SimilarityIndex;
+import matrices.SparseMatrix;
+import matrices.TopSimilar;
+
+/**
+ * Class which answers queries against a vocabulary kept in memory, so that
+ *  new words can be scored without starting the program again.  Each query
+ *  is one line holding a word, and each answer one line, in the order the
+ *  queries came in on the same connection, of three tab separated fields:
+ *  the word; its row of L as space separated column:count pairs; and the
+ *  words of the vocabulary sharing the most n-gram occurrences with it as
+ *  space separated index:score:word triples, highest score first.  A
+ *  query which could not be answered gets the word, an empty field and
+ *  the failure instead, so every query still gets its line.
+ *
+ * <p>Queries are read on a thread per connection and put on one queue; a
+ *  single thread takes whatever has queued up, up to a batch, and answers
+ *  the batch at once on the pool.  Under light load each batch holds one
+ *  query and is answered at once, and under heavy load the batches fill up
+ *  and the cost of each is shared by many queries.  The queue holds at
+ *  most a few batches; once it is full the threads reading queries wait
+ *  for room, so a client sending faster than it is answered is held back
+ *  rather than filling the memory.  If a batch fails, its queries are
+ *  answered again one at a time, so only the queries which fail on their
+ *  own get the failure.</p>
+ *
+ * <p>The answers of each connection are put on a bounded queue of its own
+ *  and written by a thread of its own, so the batcher never waits on a
+ *  client.  A client which lets that queue fill, by not reading its
+ *  answers, is dropped and its socket closed, rather than stalling the
+ *  other clients.  Answers to standard output instead wait for room,
+ *  since no other client shares the batcher.</p>
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.4
+ */
+public class ClusteringService {
+
+    /** Constant for the most queries answered in one batch. */
+    private static final int MAX_BATCH = 256;
+
+    /** Constant for the most queries waiting on the queue at once. */
+    private static final int MAX_QUEUED = 4 * MAX_BATCH;
+
+    /** Constant for the most answers waiting for one connection at once. */
+    private static final int MAX_UNSENT = 4 * MAX_BATCH;
+
+    /** Constant for the start of the last field of a failed answer. */
+    private static final String FAILED = "failed: ";
+
+    /** Constant for the separator between the fields of an answer. */
+    private static final char FIELD_SEPARATOR = '\t';
+
+    /** The words of the vocabulary, in the order of the rows of L. */
+    private final String[] myWords;
+
+    /** The index the queries are answered from. */
+    private final SimilarityIndex myIndex;
+
+    /** Integer representing the most similar words in an answer. */
+    private final int myTopK;
+
+    /** The queue of queries waiting for the next batch. */
+    private final BlockingQueue<Query> myQueue;
+
+    /** The number of queries answered so far. */
+    private final AtomicLong myAnswered;
+
+    /** The counter advanced as queries are answered, or null for none. */
+    private AtomicLong myProgress;
+
+    /** The number of batches answered so far. */
+    private final AtomicLong myBatches;
+
+
+    /**
+     * Allows queries to be answered against the passed vocabulary.
+     *
+     * @param theWords The words of the vocabulary, one per row of L.
+     * @param theIndex The index built from the n-grams and L.
+     * @param theTopK The most similar words in an answer.
+     */
+    public ClusteringService(final String[] theWords,
+                             final SimilarityIndex theIndex,
+                             final int theTopK) {
+        if (theWords.length != theIndex.getWordCount()) {
+            throw new IllegalArgumentException("Need one word per row of L");
+        }//END if
+
+        myWords = theWords.clone();
+        myIndex = theIndex;
+        myTopK = theTopK;
+        myQueue = new LinkedBlockingQueue<Query>(MAX_QUEUED);
+        myAnswered = new AtomicLong();
+        myBatches = new AtomicLong();
+        myProgress = null;
+    }//END constructor
+
+
+    /**
+     * Method to set a counter which is advanced, from the thread answering
+     *  the queries, each time a batch is answered.
+     *
+     * @param theProgress The counter to advance, or null for none.
+     */
+    public void setProgress(final AtomicLong theProgress) {
+        myProgress = theProgress;
+    }//END setProgress() METHOD
+
+    /**
+     * Method to return the number of queries answered.
+     *
+     * @return The number of queries.
+     */
+    public long getAnsweredCount() {
+        return myAnswered.get();
+    }//END getAnsweredCount() METHOD
+
+    /**
+     * Method to return the number of batches answered.
+     *
+     * @return The number of batches.
+     */
+    public long getBatchCount() {
+        return myBatches.get();
+    }//END getBatchCount() METHOD
+
+    /**
+     * Method to answer the queries read from a stream until it ends, such
+     *  as standard input, writing the answers to another.
+     *
+     * @param theIn The stream the queries are read from.
+     * @param theOut The stream the answers are written to.
+     * @throws IOException If the queries cannot be read or the answers
+     *  written.
+     */
+    public void serve(final InputStream theIn, final OutputStream theOut)
+            throws IOException {
+        final Connection aConnection = new Connection(theOut, false);
+        aConnection.start("answer writer");
+        final Thread aBatcher = startBatcher();
+
+        try {
+            readQueries(theIn, aConnection);
+        } finally {
+            putQuietly(new Query(null, null));
+            joinQuietly(aBatcher);
+            joinQuietly(aConnection.myWriter);
+        }//END try/finally BLOCK
+
+        if (aConnection.myFailure != null) {
+            throw aConnection.myFailure;
+        }//END if
+    }//END serve() METHOD
+
+    /**
+     * Method to answer the queries of every connection made to a port of
+     *  the loopback address, one thread reading each connection.  Runs
+     *  until the program is stopped.
+     *
+     * @param thePort The port to listen on.
+     * @throws IOException If the port cannot be listened on.
+     */
+    public void serve(final int thePort) throws IOException {
+        startBatcher();
+
+        final InetAddress aLoopback = InetAddress.getLoopbackAddress();
+        final ServerSocket aServer = new ServerSocket(thePort, 0, aLoopback);
+        try {
+            while (true) {
+                final Socket aSocket = aServer.accept();
+                final Thread aReader = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            final Connection aConnection;
+                            aConnection = new Connection(
+                                    aSocket.getOutputStream(), true);
+                            aConnection.start("answer writer "
+                                              + aSocket.getPort());
+                            readQueries(aSocket.getInputStream(), aConnection);
+                        } catch (final IOException e) {
+                            // The client went away; nothing is left to answer.
+                            closeQuietly(aSocket);
+                        }//END try/catch BLOCK
+                    }//END run() METHOD
+                }, "query reader " + aSocket.getPort());
+                aReader.setDaemon(true);
+                aReader.start();
+            }//END while LOOP
+        } finally {
+            aServer.close();
+        }//END try/finally BLOCK
+    }//END serve() METHOD
+
+    /**
+     * Private helper to queue each line read from a stream as a query for
+     *  a connection, then a query closing the connection once the stream
+     *  ends and its answers are written.  Waits for room whenever the queue
+     *  is full.
+     *
+     * @param theIn The stream the queries are read from.
+     * @param theConnection The connection the answers are written to.
+     */
+    private void readQueries(final InputStream theIn,
+                             final Connection theConnection)
+            throws IOException {
+        final BufferedReader aReader = new BufferedReader(
+                new InputStreamReader(theIn, StandardCharsets.UTF_8));
+        try {
+            String aLine = aReader.readLine();
+            while (aLine != null) {
+                try {
+                    myQueue.put(new Query(aLine, theConnection));
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Stopped while waiting"
+                                                     + " to queue a query");
+                }//END try/catch BLOCK
+                aLine = aReader.readLine();
+            }//END while LOOP
+        } finally {
+            putQuietly(new Query(null, theConnection));
+        }//END try/finally BLOCK
+    }//END readQueries() METHOD
+
+    /**
+     * Private helper to start the thread answering the queued queries a
+     *  batch at a time, until it takes a query with neither a word nor a
+     *  connection.
+     *
+     * @return aBatcher The thread.
+     */
+    private Thread startBatcher() {
+        final Thread aBatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final List<Query> aBatch = new ArrayList<Query>(MAX_BATCH);
+                boolean isStopped = false;
+                while (!isStopped) {
+                    try {
+                        aBatch.add(myQueue.take());
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }//END try/catch BLOCK
+                    myQueue.drainTo(aBatch, MAX_BATCH - 1);
+
+                    isStopped = answer(aBatch);
+                    aBatch.clear();
+                }//END while LOOP
+            }//END run() METHOD
+        }, "query batcher");
+        aBatcher.setDaemon(true);
+        aBatcher.start();
+
+        return aBatcher;
+    }//END startBatcher() METHOD
+
+    /**
+     * Private helper to answer a batch of queries, handing each answer to
+     *  its connection in order and ending the connections whose reading
+     *  has ended.
+     *
+     * @param theBatch The queries, in the order they came in.
+     * @return isStopped True if the batch held the query to stop.
+     */
+    private boolean answer(final List<Query> theBatch) {
+        final String[] someWords = new String[theBatch.size()];
+        int aCount = 0;
+        for (final Query aQuery : theBatch) {
+            if (aQuery.myWord != null) {
+                someWords[aCount++] = aQuery.myWord;
+            }//END if
+        }//END for
+
+        String[] someAnswers;
+        try {
+            someAnswers = answerWords(someWords, aCount);
+        } catch (final RuntimeException e) {
+            // Answer each query on its own, so only those failing alone
+            // get the failure.
+            someAnswers = new String[aCount];
+            final String[] aWord = new String[1];
+            for (int q = 0; q < aCount; q++) {
+                aWord[0] = someWords[q];
+                try {
+                    someAnswers[q] = answerWords(aWord, 1)[0];
+                } catch (final RuntimeException f) {
+                    someAnswers[q] = someWords[q] + FIELD_SEPARATOR
+                                     + FIELD_SEPARATOR + FAILED + f;
+                }//END try/catch BLOCK
+            }//END for (INDEX q)
+        }//END try/catch BLOCK
+
+        boolean isStopped = false;
+        int q = 0;
+        for (final Query aQuery : theBatch) {
+            final Connection aConnection = aQuery.myConnection;
+            if (aConnection == null) {
+                isStopped = true;
+            } else if (aQuery.myWord == null) {
+                aConnection.end();
+            } else {
+                aConnection.send(someAnswers[q]);
+                q++;
+            }//END if
+        }//END for
+
+        myAnswered.addAndGet(aCount);
+        myBatches.incrementAndGet();
+        if (myProgress != null) {
+            myProgress.addAndGet(aCount);
+        }//END if
+
+        return isStopped;
+    }//END answer() METHOD
+
+    /**
+     * Private helper to answer a number of words at once on the pool.
+     *
+     * @param theWords String array holding the words.
+     * @param theCount The number of words of the array to answer.
+     * @return someAnswers The answer to each word, without its line end.
+     */
+    private String[] answerWords(final String[] theWords, final int theCount) {
+        final SparseMatrix someRows = myIndex.getRows(theWords, theCount);
+        final TopSimilar someTop = myIndex.getTopSimilar(someRows, myTopK);
+
+        final String[] someAnswers = new String[theCount];
+        for (int q = 0; q < theCount; q++) {
+            someAnswers[q] = formatAnswer(theWords[q], someRows, someTop, q);
+        }//END for (INDEX q)
+
+        return someAnswers;
+    }//END answerWords() METHOD
+
+    /**
+     * Private helper to format the answer to one query.
+     *
+     * @param theWord The word of the query.
+     * @param theRows The rows of L of the batch.
+     * @param theTop The most similar words of each query of the batch, in
+     *  the order they are listed.
+     * @param theRow The row of the query in the batch.
+     * @return The answer, without its line end.
+     */
+    private String formatAnswer(final String theWord,
+                                final SparseMatrix theRows,
+                                final TopSimilar theTop, final int theRow) {
+        final StringBuilder anAnswer = new StringBuilder();
+        anAnswer.append(theWord).append(FIELD_SEPARATOR);
+
+        final int aFirst = theRows.getRowStart(theRow);
+        for (int k = aFirst; k < theRows.getRowEnd(theRow); k++) {
+            if (k > aFirst) {
+                anAnswer.append(' ');
+            }//END if
+            anAnswer.append(theRows.getColumn(k)).append(':');
+            anAnswer.append(theRows.getValue(k));
+        }//END for (INDEX k)
+        anAnswer.append(FIELD_SEPARATOR);
+
+        final int aStart = theTop.getRowStart(theRow);
+        for (int k = aStart; k < theTop.getRowEnd(theRow); k++) {
+            final int aWord = theTop.getWord(k);
+            if (k > aStart) {
+                anAnswer.append(' ');
+            }//END if
+            anAnswer.append(aWord).append(':');
+            anAnswer.append(theTop.getScore(k)).append(':');
+            anAnswer.append(myWords[aWord]);
+        }//END for (INDEX k)
+
+        return anAnswer.toString();
+    }//END formatAnswer() METHOD
+
+    /**
+     * Private helper to queue a query closing a connection or stopping the
+     *  batcher, waiting for room in the queue.  If interrupted while
+     *  waiting, the query is queued anyway once there is room, so the
+     *  batcher always sees it, and the interrupt is kept.
+     *
+     * @param theQuery The query.
+     */
+    private void putQuietly(final Query theQuery) {
+        boolean isInterrupted = false;
+        while (true) {
+            try {
+                myQueue.put(theQuery);
+                break;
+            } catch (final InterruptedException e) {
+                isInterrupted = true;
+            }//END try/catch BLOCK
+        }//END while LOOP
+
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }//END if
+    }//END putQuietly() METHOD
+
+    /**
+     * Private helper to wait for a thread to finish.
+     *
+     * @param theThread The thread.
+     */
+    private static void joinQuietly(final Thread theThread) {
+        try {
+            theThread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }//END try/catch BLOCK
+    }//END joinQuietly() METHOD
+
+    /**
+     * Private helper to close a socket or stream, ignoring any failure.
+     *
+     * @param theStream The socket or stream.
+     */
+    private static void closeQuietly(final Closeable theStream) {
+        try {
+            theStream.close();
+        } catch (final IOException e) {
+            // Already closed or broken; there is nothing more to do.
+            return;
+        }//END try/catch BLOCK
+    }//END closeQuietly() METHOD
+
+
+    /**
+     * Private class for one query waiting on the queue.  A query with no
+     *  word closes its connection, and one with no connection stops the
+     *  batcher.
+     */
+    private static final class Query {
+
+        /** The word of the query, or null to close the connection. */
+        private final String myWord;
+
+        /** The connection the answer goes to, or null to stop. */
+        private final Connection myConnection;
+
+        /**
+         * Creates a query.
+         *
+         * @param theWord The word, or null to close the connection.
+         * @param theConnection The connection, or null to stop.
+         */
+        private Query(final String theWord, final Connection theConnection) {
+            myWord = theWord;
+            myConnection = theConnection;
+        }//END constructor
+
+    }//END Query CLASS
+
+
+    /**
+     * Private class for the stream the answers of one connection are
+     *  written to, by a thread of its own from a bounded queue of answers
+     *  which only the batcher adds to.  A stream the service does not own,
+     *  such as standard output, is flushed but left open when the
+     *  connection ends, and the batcher waits for room in its queue.  One
+     *  the service owns, a socket's, is closed when the connection ends,
+     *  and the connection is dropped once its queue is full.  The first
+     *  failure to write, or the dropping, is kept and every later answer
+     *  dropped, since the client has gone away.
+     */
+    private static final class Connection {
+
+        /** Constant queued after the last answer, compared by identity. */
+        private static final String END = new String("");
+
+        /** The stream the answers are written to. */
+        private final OutputStream myStream;
+
+        /** The writer of the answers. */
+        private final Writer myOut;
+
+        /** True if the stream is closed when the connection ends. */
+        private final boolean myIsOwned;
+
+        /** The answers waiting to be written, then END. */
+        private final BlockingQueue<String> myUnsent;
+
+        /** The thread writing the answers, once started. */
+        private Thread myWriter;
+
+        /** The first failure to write, or null if none. */
+        private volatile IOException myFailure;
+
+        /**
+         * Creates a connection writing to the passed stream.
+         *
+         * @param theOut The stream.
+         * @param isOwned True to close the stream when the connection ends.
+         */
+        private Connection(final OutputStream theOut, final boolean isOwned) {
+            myStream = theOut;
+            myOut = new BufferedWriter(
+                    new OutputStreamWriter(theOut, StandardCharsets.UTF_8));
+            myIsOwned = isOwned;
+            myUnsent = new LinkedBlockingQueue<String>(MAX_UNSENT);
+            myWriter = null;
+            myFailure = null;
+        }//END constructor
+
+        /**
+         * Method to start the thread writing the answers.
+         *
+         * @param theName The name of the thread.
+         */
+        private void start(final String theName) {
+            myWriter = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    writeAnswers();
+                }//END run() METHOD
+            }, theName);
+            myWriter.setDaemon(true);
+            myWriter.start();
+        }//END start() METHOD
+
+        /**
+         * Method to hand one answer to the writer, dropping the connection
+         *  instead if it is owned and its queue is full.
+         *
+         * @param theAnswer The answer.
+         */
+        private void send(final String theAnswer) {
+            if (myFailure != null) {
+                return;
+            }//END if
+
+            if (myIsOwned) {
+                if (!myUnsent.offer(theAnswer)) {
+                    drop();
+                }//END if
+            } else {
+                putQuietly(theAnswer);
+            }//END if
+        }//END send() METHOD
+
+        /**
+         * Method to end the connection once the answers handed to the
+         *  writer so far are sent.
+         */
+        private void end() {
+            if (myFailure != null) {
+                return;
+            }//END if
+
+            if (myIsOwned) {
+                if (!myUnsent.offer(END)) {
+                    drop();
+                }//END if
+            } else {
+                putQuietly(END);
+            }//END if
+        }//END end() METHOD
+
+        /**
+         * Private helper for the writer thread, writing each answer as a
+         *  line and sending them whenever none is left waiting, until END.
+         */
+        private void writeAnswers() {
+            try {
+                String anAnswer = myUnsent.take();
+                while (anAnswer != END) {
+                    myOut.write(anAnswer);
+                    myOut.write('\n');
+                    if (myUnsent.isEmpty()) {
+                        myOut.flush();
+                    }//END if
+                    anAnswer = myUnsent.take();
+                }//END while LOOP
+                myOut.flush();
+            } catch (final IOException e) {
+                fail(e);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (myIsOwned) {
+                    closeQuietly(myOut);
+                }//END if
+            }//END try/finally BLOCK
+        }//END writeAnswers() METHOD
+
+        /**
+         * Private helper to drop a client too slow to read its answers,
+         *  closing its stream so a write under way stops as well.
+         */
+        private void drop() {
+            fail(new IOException("Dropped a client not reading its"
+                                 + " answers"));
+            myUnsent.offer(END);
+            closeQuietly(myStream);
+        }//END drop() METHOD
+
+        /**
+         * Private helper to keep the first failure and forget the answers
+         *  waiting, so nothing waits for room behind them.
+         *
+         * @param theFailure The failure.
+         */
+        private void fail(final IOException theFailure) {
+            if (myFailure == null) {
+                myFailure = theFailure;
+            }//END if
+            myUnsent.clear();
+        }//END fail() METHOD
+
+        /**
+         * Private helper to queue an answer or END for a stream which is
+         *  not owned, waiting for room.  If interrupted while waiting, the
+         *  answer is dropped and the interrupt kept.
+         *
+         * @param theAnswer The answer, or END.
+         */
+        private void putQuietly(final String theAnswer) {
+            try {
+                myUnsent.put(theAnswer);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }//END try/catch BLOCK
+        }//END putQuietly() METHOD
+
+    }//END Connection CLASS
+
+}//END ClusteringService.java CLASS
@@ -0,0 +1,183 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package jointsetclustering;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import matrices.RowSink;
+import matrices.SparseMatrix;
+
+/**
+ * Class holding a union-find forest over the words which any number of
+ *  threads may merge sets in at once without locking.  Every link is made
+ *  by a compare-and-set from the root with the larger index to the root
+ *  with the smaller one, so no cycle can form and the root of each set is
+ *  always its smallest member.  Finds halve the path they walk with the
+ *  same compare-and-set, so a link lost to a race is simply retried.  The
+ *  words are clustered by merging each word with every word in its row of
+ *  LLt, from rows held whole or sent to a sink as they are computed.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.2
+ */
+public class ConcurrentUnionFind {
+
+    /** The parent of each element, itself for a root. */
+    private final AtomicIntegerArray myParents;
+
+
+    /**
+     * Creates a forest of the passed number of elements, each in a set of
+     *  its own.
+     *
+     * @param theSize The number of elements.
+     */
+    public ConcurrentUnionFind(final int theSize) {
+        myParents = new AtomicIntegerArray(theSize);
+        for (int i = 0; i < theSize; i++) {
+            myParents.set(i, i);
+        }//END for (INDEX i)
+    }//END constructor
+
+
+    /**
+     * Method to return the number of elements.
+     *
+     * @return The number of elements.
+     */
+    public int size() {
+        return myParents.length();
+    }//END size() METHOD
+
+    /**
+     * Method to return the root of the set holding an element, halving the
+     *  path to it along the way.
+     *
+     * @param theElement The element.
+     * @return aNode The root, the smallest element of the set once no merge
+     *  is under way.
+     */
+    public int find(final int theElement) {
+        int aNode = theElement;
+        int aParent = myParents.get(aNode);
+
+        while (aParent != aNode) {
+            final int aGrand = myParents.get(aParent);
+            if (aGrand != aParent) {
+                myParents.compareAndSet(aNode, aParent, aGrand);
+            }//END if
+            aNode = aGrand;
+            aParent = myParents.get(aNode);
+        }//END while LOOP
+
+        return aNode;
+    }//END find() METHOD
+
+    /**
+     * Method to merge the sets holding two elements.
+     *
+     * @param theA The first element.
+     * @param theB The second element.
+     * @return True if the sets were different and have been merged.
+     */
+    public boolean union(final int theA, final int theB) {
+        while (true) {
+            int aRoot = find(theA);
+            int bRoot = find(theB);
+            if (aRoot == bRoot) {
+                return false;
+            }//END if
+
+            if (aRoot < bRoot) {
+                final int aSwap = aRoot;
+                aRoot = bRoot;
+                bRoot = aSwap;
+            }//END if
+            if (myParents.compareAndSet(aRoot, aRoot, bRoot)) {
+                return true;
+            }//END if
+        }//END while LOOP
+    }//END union() METHOD
+
+    /**
+     * Method to merge the word of each of a block of rows of LLt with every
+     *  word in its row.
+     *
+     * @param theRows The block of rows of LLt.
+     * @param theFirst The row of LLt the first row of the block is.
+     */
+    public void mergeRows(final SparseMatrix theRows, final int theFirst) {
+        for (int i = 0; i < theRows.getRowCount(); i++) {
+            final int aEnd = theRows.getRowEnd(i);
+            for (int k = theRows.getRowStart(i); k < aEnd; k++) {
+                union(theFirst + i, theRows.getColumn(k));
+            }//END for (INDEX k)
+        }//END for (INDEX i)
+    }//END mergeRows() METHOD
+
+    /**
+     * Method to make a row sink which merges the word of each row with every
+     *  word in the row, from any number of threads at once.
+     *
+     * @return A sink merging the words of each row it is sent.
+     */
+    public RowSink makeMerger() {
+        return new RowSink() {
+            @Override
+            public void addRow(final int theRow, final int[] theCols,
+                               final int[] theValues, final int theFrom,
+                               final int theTo) {
+                merge(theRow, theCols, theFrom, theTo);
+            }//END addRow() METHOD
+
+            @Override
+            public void addRow(final int theRow, final int[] theCols,
+                               final long[] theValues, final int theFrom,
+                               final int theTo) {
+                merge(theRow, theCols, theFrom, theTo);
+            }//END addRow() METHOD
+
+            /**
+             * Private helper to merge the word of a row with every word in
+             *  its row.
+             *
+             * @param theRow The index of the row.
+             * @param theCols Integer array holding the row's column indices.
+             * @param theFrom The position of the row's first entry.
+             * @param theTo The position just past the row's last entry.
+             */
+            private void merge(final int theRow, final int[] theCols,
+                               final int theFrom, final int theTo) {
+                for (int k = theFrom; k < theTo; k++) {
+                    union(theRow, theCols[k]);
+                }//END for (INDEX k)
+            }//END merge() METHOD
+        };
+    }//END makeMerger() METHOD
+
+    /**
+     * Method to number the sets 0, 1, 2 and so on in the order of their
+     *  smallest elements and return the number of each element's set.  Not
+     *  to be called while sets are still being merged.
+     *
+     * @return someLabels Integer array holding the set number of each
+     *  element.
+     */
+    public int[] labels() {
+        final int aSize = size();
+        final int[] someLabels = new int[aSize];
+
+        int aCount = 0;
+        for (int i = 0; i < aSize; i++) {
+            final int aRoot = find(i);
+            if (aRoot == i) {
+                someLabels[i] = aCount++;
+            } else {
+                someLabels[i] = someLabels[aRoot];
+            }//END if
+        }//END for (INDEX i)
+
+        return someLabels;
+    }//END labels() METHOD
+
+}//END ConcurrentUnionFind.java CLASS
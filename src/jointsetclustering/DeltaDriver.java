@@ -0,0 +1,267 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package jointsetclustering;
+
+import files.BinaryReader;
+import files.Writer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import matrices.LLtUpdater;
+import matrices.LmatMaker;
+import matrices.NgramDictionary;
+import matrices.SparseMatrix;
+import metrics.Instrumentation;
+import metrics.StageTimer;
+
+/**
+ * Class driving an incremental run, which updates the L and LLt matrices
+ *  previously written to their files, in the binary format, for the words
+ *  added and removed in the delta file, then replaces the L, LLt and words
+ *  files with the updated ones.  Only the rows of L and LLt for the words
+ *  added are computed.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+final class DeltaDriver {
+
+    /** Constant for the mark starting a line of a word added. */
+    private static final char ADDED_MARK = '+';
+
+    /** Constant for the mark starting a line of a word removed. */
+    private static final char REMOVED_MARK = '-';
+
+    /** Constant for the suffix of the files an update is written to first. */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** The settings controlling how the update is run. */
+    private final RunSettings mySettings;
+
+    /** The instrumentation the stages of the update are timed with. */
+    private final Instrumentation myMetrics;
+
+    /** The reader and writer of the files of the run. */
+    private final RunFiles myFiles;
+
+    /** The filename of the words file. */
+    private final String myWordsFile;
+
+    /** The filename of the L matrix file. */
+    private final String myLFile;
+
+    /** The filename of the LLt matrix file. */
+    private final String myLLtFile;
+
+    /** Sparse matrix holding the updated L, or null before the update. */
+    private SparseMatrix myL;
+
+    /** Sparse matrix holding the updated LLt, or null before the update. */
+    private SparseMatrix myLLt;
+
+    /** String array holding the updated words, or null before the update. */
+    private String[] myWords;
+
+
+    /**
+     * Allows the matrices of a previous run to be updated.
+     *
+     * @param theSettings The settings of the run.
+     * @param theMetrics The instrumentation to time the stages with.
+     * @param theFiles The reader and writer of the files of the run.
+     */
+    DeltaDriver(final RunSettings theSettings,
+                final Instrumentation theMetrics, final RunFiles theFiles) {
+        mySettings = theSettings;
+        myMetrics = theMetrics;
+        myFiles = theFiles;
+
+        final String[] someNames = theSettings.getFileNames();
+        myWordsFile = someNames[JointSetClustering.WORDS_FILE_IND];
+        myLFile = someNames[JointSetClustering.LMAT_FILE_IND];
+        myLLtFile = someNames[JointSetClustering.LLT_FILE_IND];
+
+        myL = null;
+        myLLt = null;
+        myWords = null;
+    }//END constructor
+
+
+    /**
+     * Method to update the L and LLt matrices read from their files for the
+     *  words added and removed in the delta file.  The words file must list
+     *  the words of the rows of the existing L, in order; each word removed
+     *  takes out the first row of that word still there, and the words
+     *  added are appended.
+     *
+     * @param theNgrams The n-grams, one per column of L.
+     * @param thePool The pool to compute on, or null to compute serially.
+     * @throws IOException If a file cannot be read, or the files do not
+     *  match.
+     */
+    void update(final NgramDictionary theNgrams, final ForkJoinPool thePool)
+            throws IOException {
+        final StageTimer aTimer = myMetrics.start("update", -1);
+
+        final SparseMatrix anOldL = BinaryReader.read(myLFile);
+        final SparseMatrix anOldLLt = BinaryReader.read(myLLtFile);
+        final String[] someWords = myFiles.readLines(myWordsFile);
+        if (anOldL.getColCount() != theNgrams.getCount()
+                || anOldL.getRowCount() != someWords.length) {
+            throw new IOException("The L matrix file does not match the"
+                                  + " words and n-grams files");
+        }//END if
+
+        final List<String> someAdded = new ArrayList<String>();
+        final Map<String, Integer> someRemoved = new HashMap<String, Integer>();
+        readDelta(someAdded, someRemoved);
+
+        final boolean[] isRemoved = new boolean[someWords.length];
+        final List<String> someKept = new ArrayList<String>();
+        for (int i = 0; i < someWords.length; i++) {
+            final Integer aLeft = someRemoved.get(someWords[i]);
+            if (aLeft != null && aLeft > 0) {
+                isRemoved[i] = true;
+                someRemoved.put(someWords[i], aLeft - 1);
+                aTimer.advance(1);
+            } else {
+                someKept.add(someWords[i]);
+            }//END if
+        }//END for (INDEX i)
+        for (final Map.Entry<String, Integer> anEntry
+                : someRemoved.entrySet()) {
+            if (anEntry.getValue() > 0) {
+                throw new IOException("Word to remove is not in the words"
+                                      + " file: " + anEntry.getKey());
+            }//END if
+        }//END for
+
+        final String[] someNew;
+        someNew = someAdded.toArray(new String[someAdded.size()]);
+        final SparseMatrix anAddedL;
+        anAddedL = new LmatMaker(someNew, theNgrams, thePool).getL();
+        aTimer.advance(someNew.length);
+
+        final LLtUpdater anUpdater;
+        anUpdater = new LLtUpdater(anOldL, anOldLLt, thePool);
+        anUpdater.update(isRemoved, anAddedL);
+        myL = anUpdater.getL();
+        myLLt = anUpdater.getLLt();
+
+        final int aRemovedCnt = someWords.length - someKept.size();
+        someKept.addAll(someAdded);
+        myWords = someKept.toArray(new String[someKept.size()]);
+
+        aTimer.finish(myLLt.getRowCount(), myLLt.getColCount(),
+                      myLLt.getNonZeroCount(),
+                      (long) aRemovedCnt + someNew.length, "words");
+    }//END update() METHOD
+
+    /**
+     * Method to return the updated L matrix.
+     *
+     * @return myL A sparse matrix containing the values of the updated L,
+     *  or null if update() has not been called.
+     */
+    SparseMatrix getL() {
+        return myL;
+    }//END getL() METHOD
+
+    /**
+     * Method to return the updated LLt matrix.
+     *
+     * @return myLLt A sparse matrix containing the values of the updated
+     *  LLt, or null if update() has not been called.
+     */
+    SparseMatrix getLLt() {
+        return myLLt;
+    }//END getLLt() METHOD
+
+    /**
+     * Method to replace the L, LLt and words files with the updated ones,
+     *  the words one per line in the order of the rows of L.  All three are
+     *  written to temporary files first, and only once every one is
+     *  complete are they moved over the old files, L and LLt first and the
+     *  words last, so a failed write leaves the old files as they were and
+     *  the words never run ahead of the matrices.
+     *
+     * @throws IOException If a file cannot be written or moved.
+     */
+    void write() throws IOException {
+        final String[] someNames = {myLFile, myLLtFile, myWordsFile};
+        final Path[] someTemps = new Path[someNames.length];
+        for (int f = 0; f < someNames.length; f++) {
+            someTemps[f] = Paths.get(someNames[f] + TEMP_SUFFIX);
+        }//END for (INDEX f)
+
+        boolean isWritten = false;
+        try {
+            myFiles.writeMatrix(someTemps[0].toString(), myL, "write L");
+            myFiles.writeMatrix(someTemps[1].toString(), myLLt, "write LLt");
+
+            final Writer writes = new Writer(someTemps[2].toString());
+            try {
+                for (final String aWord : myWords) {
+                    writes.writeLine(aWord);
+                }//END for
+            } finally {
+                writes.close();
+            }//END try/finally BLOCK
+            isWritten = true;
+        } finally {
+            if (!isWritten) {
+                for (final Path aTemp : someTemps) {
+                    Files.deleteIfExists(aTemp);
+                }//END for
+            }//END if
+        }//END try/finally BLOCK
+
+        for (int f = 0; f < someNames.length; f++) {
+            Files.move(someTemps[f], Paths.get(someNames[f]),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }//END for (INDEX f)
+    }//END write() METHOD
+
+    /**
+     * Private helper to read the delta file into the words added, in order,
+     *  and the number of times each word is removed.  Blank lines are
+     *  skipped.
+     *
+     * @param theAdded The list the words added are appended to.
+     * @param theRemoved The map counting the words removed.
+     */
+    private void readDelta(final List<String> theAdded,
+                           final Map<String, Integer> theRemoved)
+            throws IOException {
+        final String[] someLines = myFiles.readLines(mySettings.getDeltaFile());
+        for (final String aLine : someLines) {
+            if (!aLine.isEmpty()) {
+                final String aWord = aLine.substring(1);
+                if (aLine.charAt(0) == ADDED_MARK) {
+                    theAdded.add(aWord);
+                } else if (aLine.charAt(0) == REMOVED_MARK) {
+                    final Integer aCount = theRemoved.get(aWord);
+                    if (aCount == null) {
+                        theRemoved.put(aWord, 1);
+                    } else {
+                        theRemoved.put(aWord, aCount + 1);
+                    }//END if
+                } else {
+                    throw new IOException("Delta line must start with "
+                                          + ADDED_MARK + " or "
+                                          + REMOVED_MARK + ": " + aLine);
+                }//END if
+            }//END if
+        }//END for
+    }//END readDelta() METHOD
+
+}//END DeltaDriver.java CLASS
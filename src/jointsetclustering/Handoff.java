@@ -0,0 +1,165 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package jointsetclustering;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class for the bounded queue between two stages of a pipeline running on
+ *  their own threads.  The stage putting items in waits while the queue is
+ *  full, so a fast stage is held back to the pace of a slow one rather than
+ *  filling memory, and the stage taking them waits while it is empty.  The
+ *  putting stage closes the queue once every item is in.  Either stage may
+ *  fail the queue, after which the other stage's next put or take throws,
+ *  so neither is left waiting on a stage which has stopped.
+ *
+ * @param <T> The type of the items passed along.
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+public class Handoff<T> {
+
+    /** Constant for the milliseconds waited before failure is checked. */
+    private static final long POLL_MILLIS = 100;
+
+    /** The items waiting to be taken, each in a slot. */
+    private final ArrayBlockingQueue<Slot<T>> myQueue;
+
+    /** The failure of either stage, or null if none. */
+    private volatile Throwable myFailure;
+
+
+    /**
+     * Creates an empty queue holding at most the passed number of items.
+     *
+     * @param theCapacity The most items held at once.
+     */
+    public Handoff(final int theCapacity) {
+        myQueue = new ArrayBlockingQueue<Slot<T>>(theCapacity);
+        myFailure = null;
+    }//END constructor
+
+
+    /**
+     * Method to put an item in, waiting while the queue is full.
+     *
+     * @param theItem The item, not null.
+     * @throws IOException If the queue has failed or the wait is
+     *  interrupted.
+     */
+    public void put(final T theItem) throws IOException {
+        if (theItem == null) {
+            throw new IllegalArgumentException("Item must not be null");
+        }//END if
+
+        offer(new Slot<T>(theItem));
+    }//END put() METHOD
+
+    /**
+     * Method to mark that every item has been put in, waiting while the
+     *  queue is full.
+     *
+     * @throws IOException If the queue has failed or the wait is
+     *  interrupted.
+     */
+    public void close() throws IOException {
+        offer(new Slot<T>(null));
+    }//END close() METHOD
+
+    /**
+     * Method to take the next item out, waiting while the queue is empty.
+     *
+     * @return aSlot.myItem The item, or null once the queue is closed and
+     *  every item taken.
+     * @throws IOException If the queue has failed or the wait is
+     *  interrupted.
+     */
+    public T take() throws IOException {
+        try {
+            Slot<T> aSlot = null;
+            while (aSlot == null) {
+                checkFailure();
+                aSlot = myQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            }//END while LOOP
+
+            return aSlot.myItem;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Pipeline stage interrupted");
+        }//END try/catch BLOCK
+    }//END take() METHOD
+
+    /**
+     * Method to fail the queue, so the stage on its other side stops, and
+     *  drop the items waiting in it.  Only the first failure is kept.
+     *
+     * @param theFailure The failure of the stage.
+     */
+    public void fail(final Throwable theFailure) {
+        if (myFailure == null) {
+            myFailure = theFailure;
+        }//END if
+        myQueue.clear();
+    }//END fail() METHOD
+
+    /**
+     * Private helper to put a slot in, waiting while the queue is full.
+     *
+     * @param theSlot The slot.
+     * @throws IOException If the queue has failed or the wait is
+     *  interrupted.
+     */
+    private void offer(final Slot<T> theSlot) throws IOException {
+        try {
+            boolean isPut = false;
+            while (!isPut) {
+                checkFailure();
+                isPut = myQueue.offer(theSlot, POLL_MILLIS,
+                                      TimeUnit.MILLISECONDS);
+            }//END while LOOP
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Pipeline stage interrupted");
+        }//END try/catch BLOCK
+    }//END offer() METHOD
+
+    /**
+     * Private helper to throw if the queue has failed.
+     *
+     * @throws IOException If the queue has failed.
+     */
+    private void checkFailure() throws IOException {
+        final Throwable aFailure = myFailure;
+        if (aFailure != null) {
+            throw new IOException("Pipeline stopped: " + aFailure, aFailure);
+        }//END if
+    }//END checkFailure() METHOD
+
+
+    /**
+     * Private class for one place in the queue, holding an item or, with
+     *  none, the mark that the queue is closed.
+     *
+     * @param <T> The type of the item.
+     */
+    private static final class Slot<T> {
+
+        /** The item, or null for the close mark. */
+        private final T myItem;
+
+        /**
+         * Creates a slot.
+         *
+         * @param theItem The item, or null for the close mark.
+         */
+        private Slot(final T theItem) {
+            myItem = theItem;
+        }//END constructor
+
+    }//END Slot CLASS
+
+}//END Handoff.java CLASS
@@ -3,49 +3,135 @@
  */
 package jointsetclustering;
 
+import files.BinaryWriter;
+import files.MappedReader;
+import files.MatrixCache;
 import files.Reader;
+import files.TileFileStore;
 import files.Writer;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import matrices.KMeans;
+import matrices.LLtMaker;
+import matrices.LanczosSolver;
 import matrices.LmatMaker;
-import matrices.MatTranspose;
-import matrices.MatrixMult;
-import java.lang.StringBuilder;
+import matrices.MinHashLLt;
+import matrices.NgramDictionary;
+import matrices.PostingsLLt;
+import matrices.PrunedLLt;
+import matrices.RowSink;
+import matrices.SparseMatrix;
+import matrices.TiledLLt;
+import matrices.Vocabulary;
+import matrices.VocabularyBuilder;
+import metrics.ConsoleSink;
+import metrics.Instrumentation;
+import metrics.JsonLinesSink;
+import metrics.MetricsSink;
+import metrics.StageTimer;
 
 /**
  * Utility class used to run the various parts required for the Joint Set 
- *  Clustering.
+ *  Clustering.  Each part is timed as a stage, and its measurements are 
+ *  reported to the metrics file and console asked for in the settings.  
+ *  Serving, pipelined, off-heap and incremental runs are handed to the 
+ *  ServeDriver, PipelineDriver, OffHeapDriver and DeltaDriver, which 
+ *  read and write their files through RunFiles.
  * 
  * @author Jonathan McFadden (mcfaddja@uw.edu)
- * @version 0.4
+ * @version 1.24
  */
 public class JointSetClustering {
     
     /** Constant for the index of the words file's filename. */
-    private static final int WORDS_FILE_IND = 0;
+    static final int WORDS_FILE_IND = 0;
     
     /** Constant for the index of the n-grams file's filename. */
     private static final int NGRAMS_FILE_IND = 1;
     
     /** Constant for the index of the L matrix file's filename. */
-    private static final int LMAT_FILE_IND = 2;
+    static final int LMAT_FILE_IND = 2;
     
     /** Constant for the index of the LLt matrix file's filename. */
-    private static final int LLT_FILE_IND = 3;
+    static final int LLT_FILE_IND = 3;
+    
+    /** Constant for the number of milliseconds in a second. */
+    private static final long MILLIS_PER_SECOND = 1000;
+    
+    /** Constant for the name of the items a matrix is measured in. */
+    static final String CELLS = "cells";
+    
+    /** Constant for the most n-grams named when reporting those left out. */
+    private static final int MAX_NAMED = 20;
+    
+    /** Constant for the largest Lanczos basis built for spectral clusters. */
+    private static final int SPECTRAL_MAX_BASIS = 300;
+    
+    /** Constant for the relative residual of a converged eigenpair. */
+    private static final double SPECTRAL_TOLERANCE = 1e-8;
+    
+    /** Constant for the most k-means iterations run for spectral clusters. */
+    private static final int KMEANS_ITERATIONS = 300;
+    
+    /** Constant for the seed of the random choices of spectral clustering. */
+    private static final long SPECTRAL_SEED = 1;
+    
+    /** Constant for the seed of the MinHash functions and recall sample. */
+    private static final long LSH_SEED = 1;
+    
+    /** Constant for the name L is cached under. */
+    private static final String L_CACHE_NAME = "L";
+    
+    /** Constant for the name LLt is cached under. */
+    private static final String LLT_CACHE_NAME = "LLt";
+    
+    /** 
+     * Constant describing how L is computed, part of its cache key along 
+     *  with the charset and the reader the input files are decoded with; to 
+     *  be changed whenever a change to LmatMaker or to the readers changes 
+     *  the L given for the same files.
+     */
+    private static final String L_CACHE_SETTINGS = "n-gram counts 2";
     
     /** A String array to hold the various filenames. */
     private final String[] myFileNames;
     
-    /** String array to hold the words read from the words file. */
-    private String[] myWords;
+    /** The settings controlling how the computation is run. */
+    private final RunSettings mySettings;
+    
+    /** Dictionary of the distinct n-grams read from the n-grams file. */
+    private NgramDictionary myNgrams;
+    
+    /** Sparse matrix to hold the values of the L matrix. */
+    private SparseMatrix myL;
+    
+    /** Sparse matrix to hold the values of the LLt matrix. */
+    private SparseMatrix myLLt;
+    
+    /** The instrumentation the stages of a run are timed with. */
+    private Instrumentation myMetrics;
+    
+    /** The spilled tiles of an out of core LLt, or null if held whole. */
+    private TileFileStore myTiles;
+    
+    /** The clusters the words are merged into, or null if not clustering. */
+    private ConcurrentUnionFind myClusters;
+    
+    /** Integer array holding the spectral cluster of each word, or null. */
+    private int[] myLabels;
     
-    /** String array to hold the n-grams read from the n-grams file. */
-    private String[] myNgrams;
+    /** The reader and writer of the files of a run. */
+    private RunFiles myFiles;
     
-    /** Two dimensional integer array to hold the values of the L matrix. */
-    private int[][] myL;
+    /** The driver of an incremental run, or null if not updating. */
+    private DeltaDriver myDelta;
     
-    /** Two dimensional integer array to hold the values of the LLt matrix. */
-    private int[][] myLLt;
+    /** The cache computed matrices are kept in, or null for none. */
+    private MatrixCache myCache;
     
     
     /**
@@ -59,12 +145,32 @@ public class JointSetClustering {
      * @throws java.io.IOException
      */
     public JointSetClustering(final String[] theFileNames) throws IOException {
-        myFileNames = theFileNames.clone();
+        this(new RunSettings(theFileNames));
+    }//END constructor
+    
+    /**
+     * Runs all of the required routines in the proper order, as above, using 
+     *  the filenames and options held by the passed settings.
+     * 
+     * @param theSettings The filenames and options to run with.
+     * 
+     * @throws java.io.IOException
+     */
+    public JointSetClustering(final RunSettings theSettings) 
+            throws IOException {
+        mySettings = theSettings;
+        myFileNames = theSettings.getFileNames();
         
-        myWords = new String[1];
-        myNgrams = new String[1];
-        myL = new int[1][1];
-        myLLt = new int[1][1];
+        myNgrams = new NgramDictionary();
+        myL = null;
+        myLLt = null;
+        myTiles = null;
+        myClusters = null;
+        myLabels = null;
+        myMetrics = new Instrumentation();
+        myFiles = null;
+        myDelta = null;
+        myCache = null;
     }//END constructor
     
     
@@ -75,165 +181,775 @@ public class JointSetClustering {
      * @throws java.io.IOException
      */
     public void runThis() throws IOException {
-        myWords = getWords().clone();
-        myNgrams = getNgrams().clone();
-        
-        myL = getL().clone();
-        myLLt = getLLt().clone();
-        
-        writeLmat();
-        writeLLt();
+        myMetrics = makeInstrumentation();
+        myFiles = new RunFiles(mySettings, myMetrics);
+        try {
+            if (mySettings.getCacheDir() != null) {
+                myCache = new MatrixCache(mySettings.getCacheDir(), 
+                                          mySettings.getCacheBytes());
+            }//END if
+            final ForkJoinPool aPool = makePool();
+            try {
+                if (mySettings.isServing()) {
+                    myNgrams = getNgrams();
+                    final ServeDriver aServer;
+                    aServer = new ServeDriver(mySettings, myMetrics, myFiles);
+                    aServer.serve(myNgrams, aPool);
+                    myL = aServer.getL();
+                } else if (mySettings.isPipelined()) {
+                    myNgrams = getNgrams();
+                    final PipelineDriver aPipeline;
+                    aPipeline = new PipelineDriver(mySettings, myMetrics, 
+                                                   myFiles, myNgrams);
+                    aPipeline.run(aPool);
+                    myL = aPipeline.getL();
+                    myClusters = aPipeline.getClusters();
+                } else if (mySettings.getDeltaFile() != null) {
+                    myNgrams = getNgrams();
+                    myDelta = new DeltaDriver(mySettings, myMetrics, myFiles);
+                    myDelta.update(myNgrams, aPool);
+                    myL = myDelta.getL();
+                    myLLt = myDelta.getLLt();
+                } else if (mySettings.isVocabGenerated()) {
+                    myL = getGeneratedL();
+                    writeDictionary(myFileNames[NGRAMS_FILE_IND]);
+                    computeLLt(aPool);
+                } else {
+                    myNgrams = getNgrams();
+                    myL = getL(aPool);
+                    computeLLt(aPool);
+                }//END if
+                
+                if (mySettings.getSpectralClusters() > 0) {
+                    spectralCluster(aPool);
+                } else if (mySettings.getClustersFile() != null 
+                           && myClusters == null) {
+                    clusterWords(aPool);
+                }//END if
+            } finally {
+                if (aPool != null) {
+                    aPool.shutdown();
+                }//END if
+            }//END try/finally BLOCK
+            
+            if (!mySettings.isServing()) {
+                if (myDelta != null) {
+                    myDelta.write();
+                } else if (!mySettings.isPipelined()) {
+                    writeLmat();
+                    writeLLt();
+                }//END if
+                writeColumns();
+                writeClusters();
+            }//END if
+        } finally {
+            myMetrics.close();
+        }//END try/finally BLOCK
     }//END runThis() METHOD
     
-    
-    /** 
-     * Private helper to read the words file into a String array.
+    /**
+     * Private helper to create the instrumentation for a run, reporting to 
+     *  the metrics file and to the console, as asked for in the settings.
      * 
-     * @return someStrings Array of strings containing the words read in from 
-     *  the specified words file.
+     * @return The instrumentation to time the stages with.
      */
-    private String[] getWords() throws IOException {
-        final String aFileName = myFileNames[WORDS_FILE_IND];
+    private Instrumentation makeInstrumentation() throws IOException {
+        final List<MetricsSink> someSinks = new ArrayList<MetricsSink>();
+        
+        if (mySettings.getMetricsFile() != null) {
+            someSinks.add(new JsonLinesSink(mySettings.getMetricsFile()));
+        }//END if
+        if (mySettings.getProgressSeconds() > 0) {
+            someSinks.add(new ConsoleSink(System.err));
+        }//END if
         
-        final Reader read = new Reader(aFileName);
-        read.readIt();
+        return new Instrumentation(someSinks, mySettings.getProgressSeconds()
+                                              * MILLIS_PER_SECOND);
+    }//END makeInstrumentation() METHOD
+    
+    /**
+     * Private helper to create the pool for the parallel computation, if 
+     *  more than one thread was asked for.
+     * 
+     * @return aPool The pool to compute on, or null to compute serially.
+     */
+    private ForkJoinPool makePool() {
+        ForkJoinPool aPool = null;
         
-        final String[] someStrings = read.getIt().clone();
+        if (mySettings.getThreads() > 1) {
+            aPool = new ForkJoinPool(mySettings.getThreads());
+        }//END if
         
-        return someStrings;
-    }//END getWords() METOHD
+        return aPool;
+    }//END makePool() METHOD
+    
     
     /** 
-     * Private helper to read the n-grams file into a String array.
+     * Private helper to read the n-grams file into a dictionary, dropping 
+     *  repeated n-grams.  When the file is memory mapped, each n-gram is 
+     *  decoded into one reused char array and interned from there.
      * 
-     * @return someStrings Array of strings containing the n-grams read in from 
-     *  the specified words file.
+     * @return aDictionary Dictionary of the distinct n-grams read in from 
+     *  the specified n-grams file.
      */
-    private String[] getNgrams() throws IOException {
+    private NgramDictionary getNgrams() throws IOException {
         final String aFileName = myFileNames[NGRAMS_FILE_IND];
+        final StageTimer aTimer = myMetrics.start("read n-grams", -1);
         
-        final Reader read = new Reader(aFileName);
-        read.readIt();
+        final NgramDictionary aDictionary = new NgramDictionary();
+        if (mySettings.isMapped()) {
+            final MappedReader read = new MappedReader(aFileName);
+            try {
+                final char[] someChars = new char[read.getMaxLineLength()];
+                for (int j = 0; j < read.getLineCount(); j++) {
+                    aDictionary.add(someChars, 0, 
+                                    read.decodeLine(j, someChars));
+                }//END for (INDEX j)
+            } finally {
+                read.close();
+            }//END try/finally BLOCK
+        } else {
+            final Reader read = new Reader(aFileName);
+            read.readIt();
+            
+            for (final String aNgram : read.getIt()) {
+                aDictionary.add(aNgram);
+            }//END for
+        }//END if
         
-        final String[] someStrings = read.getIt().clone();
+        aTimer.advance(aDictionary.getCount() + aDictionary.getRepeatCount());
+        aTimer.finish(aDictionary.getCount(), 0, 0, 
+                      aDictionary.getCount() + aDictionary.getRepeatCount(), 
+                      "n-grams");
         
-        return someStrings;
+        return aDictionary;
     }//END getNgrams() METOHD
 
     /**
-     * Private helper to compute values for the L matrix based on the words 
-     *  and n-grams previously read in.
+     * Private helper to compute values for the L matrix based on the 
+     *  n-grams previously read in and the words, which are streamed from the 
+     *  words file in bounded chunks and never held all at once.  With a 
+     *  cache, L is loaded from it instead when the words and n-grams files 
+     *  are unchanged since it was stored, and stored in it otherwise.
      * 
-     * @return anL Two dimensional integer array containing the values for the 
-     *  L matrix.
+     * @param thePool The pool to compute on, or null to compute serially.
+     * @return anL Sparse matrix containing the values for the L matrix.
      */
-    private int[][] getL() {
-        final LmatMaker maker = new LmatMaker(myWords, myNgrams);
+    private SparseMatrix getL(final ForkJoinPool thePool) throws IOException {
+        final String aFileName = myFileNames[WORDS_FILE_IND];
+        long aKey = 0;
+        if (myCache != null) {
+            final String[] someInputs = {aFileName, 
+                                         myFileNames[NGRAMS_FILE_IND]};
+            aKey = MatrixCache.makeKey(someInputs, getLCacheSettings());
+            final SparseMatrix aCached = loadCached(L_CACHE_NAME, aKey);
+            if (aCached != null) {
+                return aCached.pack();
+            }//END if
+        }//END if
+        
+        final LmatMaker maker = new LmatMaker(myNgrams, thePool);
+        final StageTimer aTimer = myMetrics.start("L", -1);
+        
+        myFiles.addWords(aFileName, maker, aTimer);
         
-        final int[][] anL;
-        anL = maker.getL().clone();
+        final SparseMatrix anL;
+        anL = maker.buildL();
+        
+        aTimer.finish(anL.getRowCount(), anL.getColCount(), 
+                      anL.getNonZeroCount(), anL.getRowCount(), "words");
+        
+        if (myCache != null) {
+            storeCached(L_CACHE_NAME, aKey, anL);
+        }//END if
         
         return anL;
     }//END getL() METHOD
     
     /**
-     * Private helper to compute values for the LLt matrix based on the 
-     *  previously computed values of the L matrix.
+     * Private helper to describe every setting the L computed from the 
+     *  words and n-grams files depends on, for its cache key: how L is 
+     *  computed, the charset the files are decoded with, and whether they 
+     *  are decoded from memory mapped bytes or read as text, since the two 
+     *  readers need not treat malformed input alike.
      * 
-     * @return anL Two dimensional integer array containing the values for the 
-     *  LLt matrix.
+     * @return The description of the settings.
      */
-    private int[][] getLLt() {
-        final MatTranspose matT = new MatTranspose(myL);
+    private String getLCacheSettings() {
+        final StringBuilder aSettings = new StringBuilder(L_CACHE_SETTINGS);
+        aSettings.append("; ").append(StandardCharsets.UTF_8.name());
+        if (mySettings.isMapped()) {
+            aSettings.append("; mapped");
+        } else {
+            aSettings.append("; read");
+        }//END if
         
-        final int[][] aLt;
-        aLt = matT.getLt().clone();
+        return aSettings.toString();
+    }//END getLCacheSettings() METHOD
+    
+    /**
+     * Private helper to load a matrix from the cache, timed as its own 
+     *  stage.  A corrupt entry found, and deleted, is reported as a note.
+     * 
+     * @param theName The name the matrix is cached under.
+     * @param theKey The key of the computation which gives it.
+     * @return aMatrix The cached matrix, or null if it is not cached.
+     */
+    private SparseMatrix loadCached(final String theName, final long theKey) 
+            throws IOException {
+        final StageTimer aTimer = myMetrics.start("load " + theName, -1);
+        final int aCorrupt = myCache.getCorruptCount();
         
-        final MatrixMult aMult = new MatrixMult(myL, aLt);
+        final SparseMatrix aMatrix = myCache.get(theName, theKey);
         
-        final int[][] aCmat;
-        aCmat = aMult.getC();
+        if (myCache.getCorruptCount() > aCorrupt) {
+            aTimer.note("corrupt cache entry deleted");
+        }//END if
+        if (aMatrix == null) {
+            aTimer.note("not cached");
+            aTimer.finish(0, 0, 0, 0, "rows");
+        } else {
+            aTimer.advance(aMatrix.getRowCount());
+            aTimer.finish(aMatrix.getRowCount(), aMatrix.getColCount(), 
+                          aMatrix.getNonZeroCount(), aMatrix.getRowCount(), 
+                          "rows");
+        }//END if
         
-        return aCmat;
-    }//END getLLt() METHOD
+        return aMatrix;
+    }//END loadCached() METHOD
     
-    /** 
-     * Private helper to convert the 2D integer array of L matrix values into 
-     *  a 1D String array.
+    /**
+     * Private helper to store a matrix in the cache, timed as its own stage.
+     * 
+     * @param theName The name to cache the matrix under.
+     * @param theKey The key of the computation which gave it.
+     * @param theMatrix The matrix.
+     */
+    private void storeCached(final String theName, final long theKey, 
+                             final SparseMatrix theMatrix) throws IOException {
+        final StageTimer aTimer = myMetrics.start("cache " + theName, -1);
+        
+        myCache.put(theName, theKey, theMatrix);
+        
+        aTimer.advance(theMatrix.getRowCount());
+        aTimer.finish(theMatrix.getRowCount(), theMatrix.getColCount(), 
+                      theMatrix.getNonZeroCount(), theMatrix.getRowCount(), 
+                      "rows");
+    }//END storeCached() METHOD
+    
+    /**
+     * Private helper to generate the n-grams from the words file and compute 
+     *  the L matrix over them, streaming the words twice.  The first pass 
+     *  counts the words each substring with a length in the range asked 
+     *  for occurs in, and those occurring in too few words, or outside the 
+     *  most frequent, are dropped; the second builds the rows of L over the 
+     *  n-grams kept, so no row over every n-gram is ever held.
      * 
-     * @return vals A String array constructed from the integer array holding 
-     *  the values of the L matrix.
+     * @return anL Sparse matrix containing the values for the L matrix.
      */
-    private String[] convertLmat() {
-        final int nRows = myL.length;
-        final int nCols = myL[0].length;
+    private SparseMatrix getGeneratedL() throws IOException {
+        final String aFileName = myFileNames[WORDS_FILE_IND];
+        final VocabularyBuilder aBuilder;
+        aBuilder = new VocabularyBuilder(mySettings.getVocabMinLength(), 
+                                         mySettings.getVocabMaxLength());
+        
+        final StageTimer aCountTimer = myMetrics.start("vocabulary", -1);
+        myFiles.addWords(aFileName, aBuilder, aCountTimer);
+        final int aKept = aBuilder.prune(mySettings.getVocabMinWords(), 
+                                         mySettings.getVocabTopK());
+        aCountTimer.note(aKept + " of " + aBuilder.getSeenCount() 
+                         + " n-grams kept");
+        aCountTimer.finish(0, aKept, 0, 
+                           aCountTimer.getCounter().get(), "words");
         
-        String[] vals = new String[nRows];
+        final StageTimer aTimer = myMetrics.start("L", -1);
+        myFiles.addWords(aFileName, aBuilder, aTimer);
+        
+        final Vocabulary aVocabulary = aBuilder.build();
+        myNgrams = aVocabulary.getNgrams();
+        
+        final SparseMatrix anL = aVocabulary.getL();
+        aTimer.finish(anL.getRowCount(), anL.getColCount(), 
+                      anL.getNonZeroCount(), anL.getRowCount(), "words");
+        
+        return anL;
+    }//END getGeneratedL() METHOD
+    
+    /**
+     * Private helper to compute the LLt matrix, held whole or, when a spill 
+     *  directory was given, out of core as tiles in that directory.  A 
+     *  pruned LLt, and one held off the heap, is written to the LLt file 
+     *  as it is computed.  Clusters asked for of a tiled LLt are merged as 
+     *  the tiles are assembled.  Tiles hold integers, so an LLt whose 
+     *  entries could pass the integer range is refused for a spill 
+     *  directory rather than held whole after all.
+     * 
+     * @param thePool The pool to compute on, or null to compute serially.
+     * @throws IllegalStateException If a spill directory was given and 
+     *  entries of LLt could pass the integer range.
+     */
+    private void computeLLt(final ForkJoinPool thePool) throws IOException {
+        if (mySettings.isPruned()) {
+            writePrunedLLt(thePool);
+        } else if (mySettings.isOffHeap()) {
+            final OffHeapDriver anOffHeap;
+            anOffHeap = new OffHeapDriver(mySettings, myMetrics);
+            myClusters = anOffHeap.writeLLt(myL, thePool);
+        } else if (mySettings.getSpillDir() != null) {
+            if (new LLtMaker(myL).isWide()) {
+                throw new IllegalStateException("Entries of LLt could pass"
+                                                + " the integer range, which"
+                                                + " --spill-dir cannot hold;"
+                                                + " use --off-heap instead");
+            }//END if
+            myTiles = getTiledLLt(thePool);
+            if (mySettings.isMergingLLt()) {
+                myClusters = new ConcurrentUnionFind(myL.getRowCount());
+            }//END if
+        } else if (mySettings.isPostings()) {
+            myLLt = getPostingsLLt(thePool);
+        } else if (mySettings.isApproximate()) {
+            myLLt = getApproximateLLt(thePool);
+        } else {
+            myLLt = getLLt(thePool);
+        }//END if
+    }//END computeLLt() METHOD
+    
+    /**
+     * Private helper to compute only the entries of LLt kept by the minimum 
+     *  and top-K settings, streaming each row to the LLt file as soon as it 
+     *  is pruned.  The text format holds one line per entry giving its row, 
+     *  column and value; the binary format holds the pruned matrix.
+     * 
+     * @param thePool The pool to compute on, or null to compute serially.
+     */
+    private void writePrunedLLt(final ForkJoinPool thePool) 
+            throws IOException {
+        final int nRows = myL.getRowCount();
+        final PrunedLLt aPruner = new PrunedLLt(myL, 
+                                                mySettings.getMinShared(), 
+                                                mySettings.getTopSimilar(), 
+                                                thePool);
+        final StageTimer aTimer = myMetrics.start("LLt", nRows);
+        aPruner.setProgress(aTimer.getCounter());
+        if (mySettings.isMergingLLt()) {
+            myClusters = new ConcurrentUnionFind(nRows);
+            aPruner.setListener(myClusters.makeMerger());
+        }//END if
+        
+        final String aFileName = myFileNames[LLT_FILE_IND];
+        if (mySettings.isBinary()) {
+            final BinaryWriter aWriter = new BinaryWriter(aFileName, nRows, 
+                                                          false, 0);
+            try {
+                aPruner.compute(new RowSink() {
+                    @Override
+                    public void addRow(final int theRow, final int[] theCols, 
+                                       final int[] theValues, 
+                                       final int theFrom, final int theTo) 
+                            throws IOException {
+                        aWriter.writeRow(theCols, theValues, theFrom, theTo);
+                    }//END addRow() METHOD
+                    
+                    @Override
+                    public void addRow(final int theRow, final int[] theCols, 
+                                       final long[] theValues, 
+                                       final int theFrom, final int theTo) 
+                            throws IOException {
+                        aWriter.writeRow(theCols, theValues, theFrom, theTo);
+                    }//END addRow() METHOD
+                });
+            } finally {
+                aWriter.close();
+            }//END try/finally BLOCK
+        } else {
+            final Writer writes = new Writer(aFileName);
+            try {
+                aPruner.compute(new RowSink() {
+                    @Override
+                    public void addRow(final int theRow, final int[] theCols, 
+                                       final int[] theValues, 
+                                       final int theFrom, final int theTo) 
+                            throws IOException {
+                        writes.writeEntries(theRow, theCols, theValues, 
+                                            theFrom, theTo);
+                    }//END addRow() METHOD
+                    
+                    @Override
+                    public void addRow(final int theRow, final int[] theCols, 
+                                       final long[] theValues, 
+                                       final int theFrom, final int theTo) 
+                            throws IOException {
+                        writes.writeEntries(theRow, theCols, theValues, 
+                                            theFrom, theTo);
+                    }//END addRow() METHOD
+                });
+            } finally {
+                writes.close();
+            }//END try/finally BLOCK
+        }//END if
+        
+        aTimer.finish(nRows, nRows, aPruner.getNonZeroCount(), 
+                      aPruner.getNonZeroCount(), "entries");
+    }//END writePrunedLLt() METHOD
+    
+    /**
+     * Private helper to cluster the words, merging each pair of words 
+     *  sharing at least the smallest number of n-grams.  An exact LLt held 
+     *  whole is merged from its rows; otherwise, as for an LLt left 
+     *  approximate by MinHash or a cap on the posting lists, the words are 
+     *  clustered straight from the exact rows of LLt as they are computed, 
+     *  without writing or holding them.
+     * 
+     * @param thePool The pool to compute on, or null to compute serially.
+     */
+    private void clusterWords(final ForkJoinPool thePool) throws IOException {
+        final int nRows = myL.getRowCount();
+        if (myLLt != null && !mySettings.isApproximate() 
+                && mySettings.getMaxPostings() == 0) {
+            final StageTimer aTimer = myMetrics.start("cluster", nRows);
+            myClusters = new ConcurrentUnionFind(nRows);
+            myClusters.mergeRows(myLLt, 0);
+            aTimer.advance(nRows);
+            aTimer.finish(nRows, nRows, myLLt.getNonZeroCount(), 
+                          myLLt.getNonZeroCount(), "pairs");
+            return;
+        }//END if
+        
+        final PrunedLLt aPruner = new PrunedLLt(myL, 
+                                                mySettings.getMinShared(), 
+                                                mySettings.getTopSimilar(), 
+                                                thePool);
+        final StageTimer aTimer = myMetrics.start("cluster", nRows);
+        aPruner.setProgress(aTimer.getCounter());
+        
+        myClusters = new ConcurrentUnionFind(nRows);
+        aPruner.setListener(myClusters.makeMerger());
+        aPruner.compute(null);
+        
+        aTimer.finish(nRows, nRows, aPruner.getNonZeroCount(), 
+                      aPruner.getNonZeroCount(), "pairs");
+    }//END clusterWords() METHOD
+    
+    /**
+     * Private helper to split the words into clusters by the leading 
+     *  eigenvectors of LLt, found by the Lanczos method from products with L 
+     *  and its transpose, so LLt itself is never formed.  Each word's values 
+     *  in the eigenvectors, scaled to unit length, place it in a space in 
+     *  which k-means groups it with the words it shares the most with.  The 
+     *  eigenvalues, and whether they converged, are reported as a note.
+     * 
+     * @param thePool The pool to compute on, or null to compute serially.
+     */
+    private void spectralCluster(final ForkJoinPool thePool) 
+            throws IOException {
+        final int nRows = myL.getRowCount();
+        final int aK = Math.min(mySettings.getSpectralClusters(), nRows);
+        final StageTimer aTimer = myMetrics.start("spectral", nRows);
+        
+        final LanczosSolver aSolver = new LanczosSolver(myL, thePool);
+        aSolver.solve(aK, Math.max(SPECTRAL_MAX_BASIS, 2 * aK), 
+                      SPECTRAL_TOLERANCE, SPECTRAL_SEED);
+        final double[][] someVectors = aSolver.getEigenvectors();
+        
+        final double[] somePoints = new double[nRows * aK];
         for (int i = 0; i < nRows; i++) {
-            StringBuilder aBuilder = new StringBuilder();
-            
-            for (int j = 0; j < nCols; j++) {
-                aBuilder.append(myL[i][j]);
-                aBuilder.append(' ');
-            }//END for (INDEX j)
-            
-            vals[i] = aBuilder.toString();
+            double aNorm = 0;
+            for (int p = 0; p < aK; p++) {
+                aNorm += someVectors[p][i] * someVectors[p][i];
+            }//END for (INDEX p)
+            aNorm = Math.sqrt(aNorm);
+            if (aNorm > 0) {
+                for (int p = 0; p < aK; p++) {
+                    somePoints[i * aK + p] = someVectors[p][i] / aNorm;
+                }//END for (INDEX p)
+            }//END if
         }//END for (INDEX i)
         
-        return vals;
-    }//END convertLmat() METHOD
+        final KMeans aMeans = new KMeans(somePoints, aK, thePool);
+        aMeans.cluster(aK, KMEANS_ITERATIONS, SPECTRAL_SEED);
+        myLabels = aMeans.getLabels();
+        aTimer.advance(nRows);
+        
+        final StringBuilder aNote = new StringBuilder();
+        aNote.append("eigenvalues");
+        for (final double aValue : aSolver.getEigenvalues()) {
+            aNote.append(' ').append(String.format(Locale.ROOT, "%.6g", 
+                                                   aValue));
+        }//END for
+        aNote.append(aSolver.isConverged() ? " converged" : " not converged");
+        aNote.append(" with a basis of ").append(aSolver.getBasisSize());
+        aNote.append("; k-means took ").append(aMeans.getIterations());
+        aNote.append(" iterations");
+        aTimer.note(aNote.toString());
+        
+        aTimer.finish(nRows, aK, (long) nRows * aK, 
+                      aSolver.getProductCount(), "products");
+    }//END spectralCluster() METHOD
+    
+    /**
+     * Private helper to compute the LLt matrix from the posting list of each 
+     *  n-gram, so that the work follows the pairs of words which share an 
+     *  n-gram.  The n-grams left out for being held by more words than the 
+     *  cap are reported as a note on the stage.
+     * 
+     * @param thePool The pool to compute on, or null to compute serially.
+     * @return aCmat Sparse matrix containing the values for the LLt matrix.
+     */
+    private SparseMatrix getPostingsLLt(final ForkJoinPool thePool) 
+            throws IOException {
+        final PostingsLLt aMaker;
+        aMaker = new PostingsLLt(myL, mySettings.getMaxPostings(), thePool);
+        final int nRows = myL.getRowCount();
+        final StageTimer aTimer = myMetrics.start("LLt", nRows);
+        aMaker.setProgress(aTimer.getCounter());
+        
+        final SparseMatrix aCmat;
+        aCmat = aMaker.getLLt();
+        
+        final int[] someSkipped = aMaker.getSkippedColumns();
+        if (someSkipped.length > 0) {
+            final StringBuilder aNote = new StringBuilder();
+            aNote.append("left out ").append(someSkipped.length);
+            aNote.append(" n-grams held by more than ");
+            aNote.append(mySettings.getMaxPostings()).append(" words (");
+            aNote.append(aMaker.getSkippedPairCount());
+            aNote.append(" word pairs not walked):");
+            for (int k = 0; k < someSkipped.length && k < MAX_NAMED; k++) {
+                aNote.append(' ').append(myNgrams.get(someSkipped[k]));
+            }//END for (INDEX k)
+            if (someSkipped.length > MAX_NAMED) {
+                aNote.append(" ...");
+            }//END if
+            aTimer.note(aNote.toString());
+        }//END if
+        
+        aTimer.finish(nRows, nRows, aCmat.getNonZeroCount(), 
+                      (long) nRows * nRows, CELLS);
+        
+        return aCmat;
+    }//END getPostingsLLt() METHOD
+    
+    /**
+     * Private helper to compute an approximate LLt holding the diagonal and 
+     *  only the pairs of words whose MinHash signatures agree in some band, 
+     *  each entry exact.  The candidate pairs and, on a sample of the words, 
+     *  the share of the true pairs found are reported as a note.
+     * 
+     * @param thePool The pool to compute on, or null to compute serially.
+     * @return aCmat Sparse matrix containing the approximate LLt.
+     */
+    private SparseMatrix getApproximateLLt(final ForkJoinPool thePool) 
+            throws IOException {
+        final MinHashLLt aMaker = new MinHashLLt(myL, 
+                                                 mySettings.getLshBands(), 
+                                                 mySettings.getLshRows(), 
+                                                 LSH_SEED, thePool);
+        final int nRows = myL.getRowCount();
+        final StageTimer aTimer = myMetrics.start("LLt", nRows);
+        aMaker.setProgress(aTimer.getCounter());
+        
+        final SparseMatrix aCmat;
+        aCmat = aMaker.getLLt();
+        
+        final StringBuilder aNote = new StringBuilder();
+        aNote.append(aMaker.getCandidatePairCount());
+        aNote.append(" candidate pairs from ").append(mySettings.getLshBands());
+        aNote.append(" bands of ").append(mySettings.getLshRows());
+        aNote.append(String.format(Locale.ROOT, " rows (threshold %.3f)", 
+                                   aMaker.getThreshold()));
+        if (mySettings.getLshSample() > 0) {
+            aMaker.measureRecall(aCmat, mySettings.getLshSample(), LSH_SEED);
+            aNote.append(String.format(Locale.ROOT, "; recall %.4f of %d" 
+                                       + " sampled pairs, %.4f of those at" 
+                                       + " or over the threshold", 
+                                       aMaker.getRecall(), 
+                                       aMaker.getSampledPairCount(), 
+                                       aMaker.getThresholdRecall()));
+        }//END if
+        aTimer.note(aNote.toString());
+        
+        aTimer.finish(nRows, nRows, aCmat.getNonZeroCount(), 
+                      aMaker.getCandidatePairCount(), "pairs");
+        
+        return aCmat;
+    }//END getApproximateLLt() METHOD
+    
+    /**
+     * Private helper to compute the LLt matrix a tile at a time, writing 
+     *  each tile to the spill directory as it is finished, so that only a 
+     *  tile per thread is held at once.  Tiles left by an earlier run for 
+     *  the same L are not computed again.
+     * 
+     * @param thePool The pool to compute on, or null to compute serially.
+     * @return aStore The store holding the tiles.
+     */
+    private TileFileStore getTiledLLt(final ForkJoinPool thePool) 
+            throws IOException {
+        final int nRows = myL.getRowCount();
+        final int aTileRows = mySettings.getTileRows();
+        final TiledLLt aTiler = new TiledLLt(myL, aTileRows, thePool);
+        final StageTimer aTimer = myMetrics.start("LLt", 
+                                                  aTiler.getTileCount());
+        aTiler.setProgress(aTimer.getCounter());
+        
+        final TileFileStore aStore;
+        aStore = new TileFileStore(mySettings.getSpillDir(), nRows, 
+                                   aTileRows, myL.contentHash());
+        aTiler.computeTiles(aStore);
+        
+        aTimer.finish(nRows, nRows, aTiler.getNonZeroCount(), 
+                      aTiler.getTileCount(), "tiles");
+        
+        return aStore;
+    }//END getTiledLLt() METHOD
+    
+    /**
+     * Private helper to compute values for the LLt matrix based on the 
+     *  previously computed values of the L matrix.  LLt is symmetric, so 
+     *  only its upper triangle is computed, from dot products of the rows 
+     *  of L, without forming the transpose of L.  With a cache, LLt is 
+     *  loaded from it, keyed by the hash of L, when it was stored for the 
+     *  same L, and stored in it otherwise.  Its values are held packed as 
+     *  narrow as they fit either way.
+     * 
+     * @param thePool The pool to compute on, or null to compute serially.
+     * @return aCmat Sparse matrix containing the values for the LLt matrix.
+     */
+    private SparseMatrix getLLt(final ForkJoinPool thePool) 
+            throws IOException {
+        long aKey = 0;
+        if (myCache != null) {
+            aKey = myL.contentHash();
+            final SparseMatrix aCached = loadCached(LLT_CACHE_NAME, aKey);
+            if (aCached != null) {
+                return aCached.pack();
+            }//END if
+        }//END if
+        
+        final LLtMaker aMaker = new LLtMaker(myL, thePool);
+        final int nRows = myL.getRowCount();
+        final StageTimer aTimer = myMetrics.start("LLt", nRows);
+        aMaker.setProgress(aTimer.getCounter());
+        
+        final SparseMatrix aCmat;
+        aCmat = aMaker.getLLt();
+        
+        aTimer.finish(nRows, nRows, aCmat.getNonZeroCount(), 
+                      (long) nRows * nRows, CELLS);
+        
+        if (myCache != null) {
+            storeCached(LLT_CACHE_NAME, aKey, aCmat);
+        }//END if
+        
+        return aCmat;
+    }//END getLLt() METHOD
     
     /** 
-     * Private helper write the String array with the values of the L matrix  
-     *  to the file specified in the constructor.
+     * Private helper write the values of the L matrix to the file specified 
+     *  in the constructor, as text or in the binary format.
      */
     private void writeLmat() throws IOException {
-        final String[] vals;
-        vals = this.convertLmat().clone();
-        
-        final String aFileName = myFileNames[LMAT_FILE_IND];
-        final Writer writes = new Writer(aFileName, vals);
-        writes.writeIt();
+        myFiles.writeMatrix(myFileNames[LMAT_FILE_IND], myL, "write L");
     }//END writeLmat() METHOD
     
     /** 
-     * Private helper to convert the 2D integer array of LLt matrix values into 
-     *  a 1D String array.
-     * 
-     * @return vals A String array constructed from the integer array holding 
-     *  the values of the LLt matrix.
+     * Private helper write the values of the LLt matrix to the file specified 
+     *  in the constructor, as text or in the binary format.  An out of core 
+     *  LLt is assembled from its tiles, which are then deleted, merging 
+     *  the clusters asked for as it goes, and a pruned LLt has already 
+     *  been written as it was computed.
+     */
+    private void writeLLt() throws IOException { 
+        if (myTiles != null) {
+            final int nRows = myL.getRowCount();
+            final StageTimer aTimer = myMetrics.start("write LLt", nRows);
+            final long aNonZeros;
+            RowSink aMerger = null;
+            if (myClusters != null) {
+                aMerger = myClusters.makeMerger();
+            }//END if
+            aNonZeros = myTiles.writeMatrix(myFileNames[LLT_FILE_IND], 
+                                            mySettings.isBinary(), 
+                                            aTimer.getCounter(), aMerger);
+            aTimer.finish(nRows, nRows, aNonZeros, (long) nRows * nRows, 
+                          CELLS);
+            myTiles.delete();
+        } else if (myLLt != null) {
+            myFiles.writeMatrix(myFileNames[LLT_FILE_IND], myLLt, "write LLt");
+        }//END if
+    }//END writeLLt() METHOD
+    
+    /** 
+     * Private helper to write the distinct n-grams, one per line in column 
+     *  order, to the columns file if one was asked for, so that each column 
+     *  of L can be named.
      */
-    private String[] convertLLt() {
-        final int nRows = myLLt.length;
-        final int nCols = myLLt[0].length;
+    private void writeColumns() throws IOException {
+        final String aFileName = mySettings.getColumnsFile();
         
-        String[] vals = new String[nRows];
-        for (int i = 0; i < nRows; i++) {
-            StringBuilder aBuilder = new StringBuilder();
+        if (aFileName != null) {
+            writeDictionary(aFileName);
+        }//END if
+    }//END writeColumns() METHOD
+    
+    /** 
+     * Private helper to write the cluster of each word, numbered from 0 in 
+     *  the order of each cluster's first word, one per line in the order of 
+     *  the words, if clusters were asked for.  The number of clusters and 
+     *  the size of the largest are reported as a note on the stage.
+     */
+    private void writeClusters() throws IOException {
+        if (myClusters != null || myLabels != null) {
+            final int[] someLabels;
+            if (myLabels != null) {
+                someLabels = myLabels;
+            } else {
+                someLabels = myClusters.labels();
+            }//END if
+            final int nRows = someLabels.length;
+            final StageTimer aTimer = myMetrics.start("write clusters", nRows);
+            final int[] someSizes = new int[nRows + 1];
             
-            for (int j = 0; j < nCols; j++) {
-                aBuilder.append(myLLt[i][j]);
-                aBuilder.append(' ');
-            }//END for (INDEX j)
+            int aCount = 0;
+            int aLargest = 0;
+            final Writer writes = new Writer(mySettings.getClustersFile());
+            try {
+                for (int i = 0; i < nRows; i++) {
+                    final int aLabel = someLabels[i];
+                    writes.writeLine(Integer.toString(aLabel));
+                    
+                    someSizes[aLabel]++;
+                    aCount = Math.max(aCount, aLabel + 1);
+                    aLargest = Math.max(aLargest, someSizes[aLabel]);
+                    aTimer.advance(1);
+                }//END for (INDEX i)
+            } finally {
+                writes.close();
+            }//END try/finally BLOCK
             
-            vals[i] = aBuilder.toString();
-        }//END for (INDEX i)
-        
-        return vals;
-    }//END convertLLt() METHOD
+            aTimer.note(aCount + " clusters, the largest of " + aLargest 
+                        + " words");
+            aTimer.finish(nRows, 1, nRows, nRows, "words");
+        }//END if
+    }//END writeClusters() METHOD
     
     /** 
-     * Private helper write the String array with the values of the LLt matrix 
-     *  to the file specified in the constructor.
+     * Private helper to write the distinct n-grams to a file, one per line 
+     *  in column order.
+     * 
+     * @param theFileName Name of the file to write to.
      */
-    private void writeLLt() throws IOException { 
-        final String[] vals;
-        vals = this.convertLLt().clone();
-        
-        final String aFileName = myFileNames[LLT_FILE_IND];
-        final Writer writes = new Writer(aFileName, vals);
-        writes.writeIt();
-    }//END writeLLt() METHOD
+    private void writeDictionary(final String theFileName) throws IOException {
+        final Writer writes = new Writer(theFileName);
+        try {
+            for (int j = 0; j < myNgrams.getCount(); j++) {
+                writes.writeLine(myNgrams.get(j));
+            }//END for (INDEX j)
+        } finally {
+            writes.close();
+        }//END try/finally BLOCK
+    }//END writeDictionary() METHOD
 
     
 }//END JointSetClustering.java CLASS
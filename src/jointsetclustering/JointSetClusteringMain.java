@@ -11,7 +11,7 @@ import java.io.IOException;
  *  these values to and run the Joint Set Clustering utility class. 
  * 
  * @author Jonathan McFadden (mcfaddja@uw.edu)
- * @version 0.4
+ * @version 0.21
  */
 public class JointSetClusteringMain {
 
@@ -30,6 +30,7 @@ public class JointSetClusteringMain {
      *  with the words and n-grams to read followed by the files where the 
      *  resulting L and LLt matrices are to be written.  The order of the 
      *  filenames is words file, n-grams file, L matrix file, LLt matrix file.
+     *  The options RunSettings lists may be given anywhere among them. 
      * 
      * @throws java.io.IOException
      */
@@ -37,10 +38,19 @@ public class JointSetClusteringMain {
         String[] someArgs;
         someArgs = theArgs.clone();
         
-        final JointSetClustering aCluster;
-        aCluster = new JointSetClustering(someArgs);
-        
-        aCluster.runThis();
+        try {
+            final RunSettings aSettings;
+            aSettings = new RunSettings(someArgs);
+            
+            final JointSetClustering aCluster;
+            aCluster = new JointSetClustering(aSettings);
+            
+            aCluster.runThis();
+        } catch (final IllegalArgumentException | IllegalStateException 
+                       | ArithmeticException e) {
+            System.err.println("error: " + e.getMessage());
+            System.exit(1);
+        }//END try/catch BLOCK
     }//END main METHOD
     
 }//END JointSetClusteringMain.java CLASS
@@ -0,0 +1,173 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package jointsetclustering;
+
+import files.MappedWriter;
+import files.Writer;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import matrices.LLtMaker;
+import matrices.OffHeapMatrix;
+import matrices.RowSink;
+import matrices.SparseMatrix;
+import metrics.Instrumentation;
+import metrics.StageTimer;
+
+/**
+ * Class driving the LLt stage of an off-heap run, which computes LLt into a
+ *  dense matrix held off the heap, of the width every entry is sure to fit,
+ *  and writes it to the LLt file.  In binary the matrix is mapped from the
+ *  body of the LLt file, so computing it writes the file; as text it is
+ *  held in direct buffers and written out row by row.  Clusters asked for
+ *  are merged from the rows of the matrix before it is let go.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+final class OffHeapDriver {
+
+    /** The settings controlling how LLt is computed and written. */
+    private final RunSettings mySettings;
+
+    /** The instrumentation the stages of the run are timed with. */
+    private final Instrumentation myMetrics;
+
+
+    /**
+     * Allows LLt to be computed off the heap.
+     *
+     * @param theSettings The settings of the run.
+     * @param theMetrics The instrumentation to time the stages with.
+     */
+    OffHeapDriver(final RunSettings theSettings,
+                  final Instrumentation theMetrics) {
+        mySettings = theSettings;
+        myMetrics = theMetrics;
+    }//END constructor
+
+
+    /**
+     * Method to compute LLt of the L passed off the heap and write it to the
+     *  LLt file, merging the clusters of the words if they are asked for.
+     *
+     * @param theL The L matrix.
+     * @param thePool The pool to compute on, or null to compute serially.
+     * @return aClusters The clusters the words were merged into, or null if
+     *  they were not asked for.
+     */
+    ConcurrentUnionFind writeLLt(final SparseMatrix theL,
+                                 final ForkJoinPool thePool)
+            throws IOException {
+        final LLtMaker aMaker = new LLtMaker(theL, thePool);
+        final int nRows = theL.getRowCount();
+        final int aWidth = aMaker.getValueWidth();
+        final String aFileName;
+        aFileName = mySettings.getFileNames()[JointSetClustering.LLT_FILE_IND];
+
+        ConcurrentUnionFind aClusters = null;
+        if (mySettings.isBinary()) {
+            final MappedWriter aWriter;
+            aWriter = new MappedWriter(aFileName, nRows, nRows, aWidth);
+            long aNonZeros = 0;
+            StageTimer aTimer = null;
+            try {
+                aNonZeros = computeLLt(aMaker, aWriter.getMatrix());
+                aWriter.setNonZeroCount(aNonZeros);
+                if (mySettings.isMergingLLt()) {
+                    aClusters = cluster(aWriter.getMatrix());
+                }//END if
+
+                aTimer = myMetrics.start("write LLt", nRows);
+            } finally {
+                aWriter.close();
+            }//END try/finally BLOCK
+            aTimer.advance(nRows);
+            aTimer.finish(nRows, nRows, aNonZeros, (long) nRows * nRows,
+                          JointSetClustering.CELLS);
+        } else {
+            final OffHeapMatrix aLLt;
+            aLLt = OffHeapMatrix.allocate(nRows, nRows, aWidth);
+            final long aNonZeros = computeLLt(aMaker, aLLt);
+
+            final StageTimer aTimer = myMetrics.start("write LLt", nRows);
+            final int[] someCols = new int[nRows];
+            final long[] someVals = new long[nRows];
+            RowSink aMerger = null;
+            if (mySettings.isMergingLLt()) {
+                aClusters = new ConcurrentUnionFind(nRows);
+                aMerger = aClusters.makeMerger();
+            }//END if
+            final Writer writes = new Writer(aFileName);
+            try {
+                for (int i = 0; i < nRows; i++) {
+                    final int aCount = aLLt.getRow(i, someCols, someVals);
+                    writes.writeRow(someCols, someVals, 0, aCount, nRows);
+                    if (aMerger != null) {
+                        aMerger.addRow(i, someCols, someVals, 0, aCount);
+                    }//END if
+                    aTimer.advance(1);
+                }//END for (INDEX i)
+            } finally {
+                writes.close();
+            }//END try/finally BLOCK
+            aTimer.finish(nRows, nRows, aNonZeros, (long) nRows * nRows,
+                          JointSetClustering.CELLS);
+        }//END if
+
+        return aClusters;
+    }//END writeLLt() METHOD
+
+    /**
+     * Private helper for the LLt stage, computing LLt into the matrix
+     *  passed.
+     *
+     * @param theMaker The maker holding L.
+     * @param theLLt The off-heap matrix receiving LLt.
+     * @return aNonZeros The number of non-zero entries of LLt.
+     */
+    private long computeLLt(final LLtMaker theMaker,
+                            final OffHeapMatrix theLLt) throws IOException {
+        final int nRows = theLLt.getRowCount();
+        final StageTimer aTimer = myMetrics.start("LLt", nRows);
+        theMaker.setProgress(aTimer.getCounter());
+
+        final long aNonZeros = theMaker.computeInto(theLLt);
+
+        aTimer.note(theLLt.getWidth() + " byte entries held off the heap");
+        aTimer.finish(nRows, nRows, aNonZeros, (long) nRows * nRows,
+                      JointSetClustering.CELLS);
+
+        return aNonZeros;
+    }//END computeLLt() METHOD
+
+    /**
+     * Private helper to cluster the words from the rows of an LLt held off
+     *  the heap, merging each pair of words sharing an n-gram.
+     *
+     * @param theLLt The off-heap matrix holding LLt.
+     * @return aClusters The clusters the words were merged into.
+     */
+    private ConcurrentUnionFind cluster(final OffHeapMatrix theLLt)
+            throws IOException {
+        final int nRows = theLLt.getRowCount();
+        final StageTimer aTimer = myMetrics.start("cluster", nRows);
+        final ConcurrentUnionFind aClusters = new ConcurrentUnionFind(nRows);
+        final RowSink aMerger = aClusters.makeMerger();
+
+        final int[] someCols = new int[nRows];
+        final long[] someVals = new long[nRows];
+        long aPairs = 0;
+        for (int i = 0; i < nRows; i++) {
+            final int aCount = theLLt.getRow(i, someCols, someVals);
+            aMerger.addRow(i, someCols, someVals, 0, aCount);
+            aPairs += aCount;
+            aTimer.advance(1);
+        }//END for (INDEX i)
+
+        aTimer.finish(nRows, nRows, aPairs, aPairs, "pairs");
+
+        return aClusters;
+    }//END cluster() METHOD
+
+}//END OffHeapDriver.java CLASS
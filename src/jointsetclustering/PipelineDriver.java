@@ -0,0 +1,378 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package jointsetclustering;
+
+import files.BinaryWriter;
+import files.ChunkReader;
+import files.MappedReader;
+import files.Writer;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import matrices.LLtMaker;
+import matrices.LmatMaker;
+import matrices.NgramDictionary;
+import matrices.RowSink;
+import matrices.SparseMatrix;
+import matrices.SparseMatrixBuilder;
+import metrics.Instrumentation;
+import metrics.StageTimer;
+
+/**
+ * Class driving a pipelined run, which overlaps the stages from the words
+ *  file to the L and LLt files, each on its own StageThread, passing their
+ *  work along through bounded Handoff queues: the words are read a chunk
+ *  at a time while the chunks before are turned into rows of L, and once L
+ *  is built it is written while LLt is computed, a block of rows at a time,
+ *  and each block of LLt is written while the next is computed.  A full
+ *  queue holds back the stage filling it, so no stage runs far ahead of
+ *  the next.  The stages overlap, so the CPU time and allocations each
+ *  reports include those of the stages running alongside it.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+final class PipelineDriver {
+
+    /** Constant for the most items waiting between two pipeline stages. */
+    private static final int PIPELINE_DEPTH = 4;
+
+    /** Constant for the number of rows of LLt passed on at a time. */
+    private static final int PIPELINE_ROWS = 256;
+
+    /** The settings controlling how the pipeline is run. */
+    private final RunSettings mySettings;
+
+    /** The instrumentation the stages of the pipeline are timed with. */
+    private final Instrumentation myMetrics;
+
+    /** The reader and writer of the files of the run. */
+    private final RunFiles myFiles;
+
+    /** Dictionary of the n-grams, one per column of L. */
+    private final NgramDictionary myNgrams;
+
+    /** Sparse matrix holding L, or null before the pipeline is run. */
+    private SparseMatrix myL;
+
+    /** The clusters the words are merged into, or null if not merging. */
+    private ConcurrentUnionFind myClusters;
+
+
+    /**
+     * Allows the stages of a run to be overlapped.
+     *
+     * @param theSettings The settings of the run.
+     * @param theMetrics The instrumentation to time the stages with.
+     * @param theFiles The reader and writer of the files of the run.
+     * @param theNgrams The n-grams, one per column of L.
+     */
+    PipelineDriver(final RunSettings theSettings,
+                   final Instrumentation theMetrics, final RunFiles theFiles,
+                   final NgramDictionary theNgrams) {
+        mySettings = theSettings;
+        myMetrics = theMetrics;
+        myFiles = theFiles;
+        myNgrams = theNgrams;
+        myL = null;
+        myClusters = null;
+    }//END constructor
+
+
+    /**
+     * Method to run the stages of the pipeline, writing the L and LLt files
+     *  and merging the clusters asked for from the blocks of LLt.  Any
+     *  failure, an Error included, fails the queues and abandons the other
+     *  stages before it is thrown, so none of them is left waiting.
+     *
+     * @param thePool The pool to compute on, or null to compute serially.
+     */
+    void run(final ForkJoinPool thePool) throws IOException {
+        final Handoff<String[]> someChunks;
+        someChunks = new Handoff<String[]>(PIPELINE_DEPTH);
+        final StageThread aReader = new StageThread("read words", someChunks) {
+            @Override
+            protected void runStage() throws IOException {
+                readChunks(someChunks);
+            }//END runStage() METHOD
+        };
+        aReader.start();
+        try {
+            myL = computeL(thePool, someChunks);
+        } catch (final Throwable e) {
+            someChunks.fail(e);
+            aReader.abandon();
+            throw e;
+        }//END try/catch BLOCK
+        aReader.finish();
+        if (mySettings.isMergingLLt()) {
+            myClusters = new ConcurrentUnionFind(myL.getRowCount());
+        }//END if
+
+        final String[] someNames = mySettings.getFileNames();
+        final String anLFile = someNames[JointSetClustering.LMAT_FILE_IND];
+        final StageThread anLWriter = new StageThread("write L") {
+            @Override
+            protected void runStage() throws IOException {
+                myFiles.writeMatrix(anLFile, myL, "write L");
+            }//END runStage() METHOD
+        };
+        final Handoff<SparseMatrix> someBlocks;
+        someBlocks = new Handoff<SparseMatrix>(PIPELINE_DEPTH);
+        final StageThread anLLtWriter;
+        anLLtWriter = new StageThread("write LLt", someBlocks) {
+            @Override
+            protected void runStage() throws IOException {
+                writeLLtBlocks(someBlocks);
+            }//END runStage() METHOD
+        };
+        try {
+            anLWriter.start();
+            anLLtWriter.start();
+            computeLLt(thePool, someBlocks);
+            anLLtWriter.finish();
+        } catch (final Throwable e) {
+            someBlocks.fail(e);
+            anLLtWriter.abandon();
+            anLWriter.abandon();
+            throw e;
+        }//END try/catch BLOCK
+        anLWriter.finish();
+    }//END run() METHOD
+
+    /**
+     * Method to return the L matrix computed by the pipeline.
+     *
+     * @return myL A sparse matrix containing the values of L, or null if
+     *  run() has not been called.
+     */
+    SparseMatrix getL() {
+        return myL;
+    }//END getL() METHOD
+
+    /**
+     * Method to return the clusters merged from the blocks of LLt.
+     *
+     * @return myClusters The clusters the words were merged into, or null
+     *  if they were not asked for.
+     */
+    ConcurrentUnionFind getClusters() {
+        return myClusters;
+    }//END getClusters() METHOD
+
+    /**
+     * Private helper for the first stage of the pipeline, reading the words
+     *  file a chunk at a time and passing each chunk on, then closing the
+     *  queue.
+     *
+     * @param theChunks The queue the chunks of words are put in.
+     */
+    private void readChunks(final Handoff<String[]> theChunks)
+            throws IOException {
+        final String[] someNames = mySettings.getFileNames();
+        final String aFileName = someNames[JointSetClustering.WORDS_FILE_IND];
+        final int aChunkWords = mySettings.getChunkWords();
+
+        if (mySettings.isMapped()) {
+            final MappedReader read = new MappedReader(aFileName);
+            try {
+                final int aLines = read.getLineCount();
+                for (int aFrom = 0; aFrom < aLines; aFrom += aChunkWords) {
+                    final int aTo = Math.min(aFrom + aChunkWords, aLines);
+                    final String[] aChunk = new String[aTo - aFrom];
+                    for (int j = aFrom; j < aTo; j++) {
+                        aChunk[j - aFrom] = read.getLine(j);
+                    }//END for (INDEX j)
+                    theChunks.put(aChunk);
+                }//END for (INDEX aFrom)
+            } finally {
+                read.close();
+            }//END try/finally BLOCK
+        } else {
+            final ChunkReader read = new ChunkReader(aFileName, aChunkWords);
+            try {
+                int aCount = read.readChunk();
+                while (aCount > 0) {
+                    theChunks.put(Arrays.copyOf(read.getChunk(), aCount));
+                    aCount = read.readChunk();
+                }//END while LOOP
+            } finally {
+                read.close();
+            }//END try/finally BLOCK
+        }//END if
+
+        theChunks.close();
+    }//END readChunks() METHOD
+
+    /**
+     * Private helper for the L stage of the pipeline, turning each chunk of
+     *  words into rows of L as it arrives.
+     *
+     * @param thePool The pool to compute on, or null to compute serially.
+     * @param theChunks The queue the chunks of words are taken from.
+     * @return anL Sparse matrix containing the values for the L matrix.
+     */
+    private SparseMatrix computeL(final ForkJoinPool thePool,
+                                  final Handoff<String[]> theChunks)
+            throws IOException {
+        final LmatMaker maker = new LmatMaker(myNgrams, thePool);
+        final StageTimer aTimer = myMetrics.start("L", -1);
+
+        String[] aChunk = theChunks.take();
+        while (aChunk != null) {
+            maker.addWords(aChunk, aChunk.length);
+            aTimer.advance(aChunk.length);
+            aChunk = theChunks.take();
+        }//END while LOOP
+
+        final SparseMatrix anL;
+        anL = maker.buildL();
+
+        aTimer.finish(anL.getRowCount(), anL.getColCount(),
+                      anL.getNonZeroCount(), anL.getRowCount(), "words");
+
+        return anL;
+    }//END computeL() METHOD
+
+    /**
+     * Private helper for the LLt stage of the pipeline, computing the full
+     *  rows of LLt in order and passing them on a block of rows at a time,
+     *  then closing the queue.  The rows are streamed as integers, so an
+     *  LLt whose entries could pass the integer range is refused rather
+     *  than held whole after all.
+     *
+     * @param thePool The pool to compute on, or null to compute serially.
+     * @param theBlocks The queue the blocks of rows are put in.
+     * @throws IllegalStateException If entries of LLt could pass the
+     *  integer range.
+     */
+    private void computeLLt(final ForkJoinPool thePool,
+                            final Handoff<SparseMatrix> theBlocks)
+            throws IOException {
+        final int nRows = myL.getRowCount();
+        final LLtMaker aMaker = new LLtMaker(myL, thePool);
+        if (aMaker.isWide()) {
+            throw new IllegalStateException("Entries of LLt could pass the"
+                                            + " integer range, which"
+                                            + " --pipeline cannot stream;"
+                                            + " run without --pipeline");
+        }//END if
+        final StageTimer aTimer = myMetrics.start("LLt", nRows);
+        aMaker.setProgress(aTimer.getCounter());
+
+        final SparseMatrixBuilder[] aBlock = {new SparseMatrixBuilder(nRows)};
+        final long[] aNonZeros = new long[1];
+        aMaker.computeRows(new RowSink() {
+            @Override
+            public void addRow(final int theRow, final int[] theCols,
+                               final int[] theValues, final int theFrom,
+                               final int theTo) throws IOException {
+                aBlock[0].addRow(theCols, theValues, theFrom, theTo);
+                passRow(theTo - theFrom);
+            }//END addRow() METHOD
+
+            @Override
+            public void addRow(final int theRow, final int[] theCols,
+                               final long[] theValues, final int theFrom,
+                               final int theTo) throws IOException {
+                aBlock[0].addRow(theCols, theValues, theFrom, theTo);
+                passRow(theTo - theFrom);
+            }//END addRow() METHOD
+
+            /**
+             * Private helper to count a row just added to the block,
+             *  and pass the block on once it is full.
+             *
+             * @param theCount The number of entries of the row.
+             */
+            private void passRow(final int theCount) throws IOException {
+                aNonZeros[0] += theCount;
+                if (aBlock[0].getRowCount() == PIPELINE_ROWS) {
+                    theBlocks.put(aBlock[0].build());
+                    aBlock[0] = new SparseMatrixBuilder(nRows);
+                }//END if
+            }//END passRow() METHOD
+        });
+        if (aBlock[0].getRowCount() > 0) {
+            theBlocks.put(aBlock[0].build());
+        }//END if
+        theBlocks.close();
+
+        aTimer.finish(nRows, nRows, aNonZeros[0], (long) nRows * nRows,
+                      JointSetClustering.CELLS);
+    }//END computeLLt() METHOD
+
+    /**
+     * Private helper for the last stage of the pipeline, writing each block
+     *  of rows of LLt to the LLt file as it arrives.  In the binary format
+     *  the sparse layout is always used, since the smaller layout can only
+     *  be chosen once every value is known.  Clusters asked for are merged
+     *  from each block as it is written.
+     *
+     * @param theBlocks The queue the blocks of rows are taken from.
+     */
+    private void writeLLtBlocks(final Handoff<SparseMatrix> theBlocks)
+            throws IOException {
+        final int nRows = myL.getRowCount();
+        final String[] someNames = mySettings.getFileNames();
+        final String aFileName = someNames[JointSetClustering.LLT_FILE_IND];
+        final StageTimer aTimer = myMetrics.start("write LLt", nRows);
+
+        long aNonZeros = 0;
+        int aFirst = 0;
+        if (mySettings.isBinary()) {
+            final BinaryWriter aWriter = new BinaryWriter(aFileName, nRows,
+                                                          false, 0);
+            try {
+                SparseMatrix aBlock = theBlocks.take();
+                while (aBlock != null) {
+                    for (int i = 0; i < aBlock.getRowCount(); i++) {
+                        aWriter.writeRow(aBlock, i);
+                    }//END for (INDEX i)
+                    mergeBlock(aBlock, aFirst);
+                    aFirst += aBlock.getRowCount();
+                    aTimer.advance(aBlock.getRowCount());
+                    aNonZeros += aBlock.getNonZeroCount();
+                    aBlock = theBlocks.take();
+                }//END while LOOP
+            } finally {
+                aWriter.close();
+            }//END try/finally BLOCK
+        } else {
+            final Writer writes = new Writer(aFileName);
+            try {
+                SparseMatrix aBlock = theBlocks.take();
+                while (aBlock != null) {
+                    for (int i = 0; i < aBlock.getRowCount(); i++) {
+                        writes.writeRow(aBlock, i);
+                    }//END for (INDEX i)
+                    mergeBlock(aBlock, aFirst);
+                    aFirst += aBlock.getRowCount();
+                    aTimer.advance(aBlock.getRowCount());
+                    aNonZeros += aBlock.getNonZeroCount();
+                    aBlock = theBlocks.take();
+                }//END while LOOP
+            } finally {
+                writes.close();
+            }//END try/finally BLOCK
+        }//END if
+
+        aTimer.finish(nRows, nRows, aNonZeros, (long) nRows * nRows,
+                      JointSetClustering.CELLS);
+    }//END writeLLtBlocks() METHOD
+
+    /**
+     * Private helper to merge the clusters of a block of rows of LLt, if
+     *  clusters are asked for.
+     *
+     * @param theBlock The block of rows of LLt.
+     * @param theFirst The row of LLt the first row of the block is.
+     */
+    private void mergeBlock(final SparseMatrix theBlock, final int theFirst) {
+        if (myClusters != null) {
+            myClusters.mergeRows(theBlock, theFirst);
+        }//END if
+    }//END mergeBlock() METHOD
+
+}//END PipelineDriver.java CLASS
@@ -0,0 +1,208 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package jointsetclustering;
+
+import files.BinaryWriter;
+import files.ChunkReader;
+import files.MappedReader;
+import files.Reader;
+import files.Writer;
+import java.io.IOException;
+import matrices.SparseMatrix;
+import matrices.WordSink;
+import metrics.Instrumentation;
+import metrics.StageTimer;
+
+/**
+ * Class reading the input files and writing the matrix files of a run as
+ *  its settings ask: memory mapped or read as text, and written in the
+ *  binary format or as text.  Each matrix written is timed as a stage.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+final class RunFiles {
+
+    /** The settings controlling how the files are read and written. */
+    private final RunSettings mySettings;
+
+    /** The instrumentation the writes are timed with. */
+    private final Instrumentation myMetrics;
+
+
+    /**
+     * Allows the files of a run to be read and written.
+     *
+     * @param theSettings The settings of the run.
+     * @param theMetrics The instrumentation to time the writes with.
+     */
+    RunFiles(final RunSettings theSettings,
+             final Instrumentation theMetrics) {
+        mySettings = theSettings;
+        myMetrics = theMetrics;
+    }//END constructor
+
+
+    /**
+     * Method to read every line of a file, memory mapping it when the
+     *  settings ask for it.
+     *
+     * @param theFileName The filename of the file to read.
+     * @return someLines String array holding the lines of the file.
+     */
+    String[] readLines(final String theFileName) throws IOException {
+        final String[] someLines;
+
+        if (mySettings.isMapped()) {
+            final MappedReader read = new MappedReader(theFileName);
+            try {
+                someLines = read.getLines();
+            } finally {
+                read.close();
+            }//END try/finally BLOCK
+        } else {
+            final Reader read = new Reader(theFileName);
+            read.readIt();
+
+            someLines = read.getIt();
+        }//END if
+
+        return someLines;
+    }//END readLines() METHOD
+
+    /**
+     * Method to stream the words from the words file into an L matrix
+     *  maker, memory mapped or read as text as the settings ask.
+     *
+     * @param theFileName The filename of the words file.
+     * @param theMaker The maker the words are added to.
+     * @param theTimer The timer counting the words added.
+     */
+    void addWords(final String theFileName, final WordSink theMaker,
+                  final StageTimer theTimer) throws IOException {
+        if (mySettings.isMapped()) {
+            addMappedWords(theFileName, theMaker, theTimer);
+        } else {
+            addReadWords(theFileName, theMaker, theTimer);
+        }//END if
+    }//END addWords() METHOD
+
+    /**
+     * Private helper to stream the words from the words file into an L
+     *  matrix maker, reading them as text in chunks of bounded size.
+     *
+     * @param theFileName The filename of the words file.
+     * @param theMaker The maker the words are added to.
+     * @param theTimer The timer counting the words added.
+     */
+    private void addReadWords(final String theFileName,
+                              final WordSink theMaker,
+                              final StageTimer theTimer) throws IOException {
+        final ChunkReader read;
+        read = new ChunkReader(theFileName, mySettings.getChunkWords());
+        try {
+            int aCount = read.readChunk();
+            while (aCount > 0) {
+                theMaker.addWords(read.getChunk(), aCount);
+                theTimer.advance(aCount);
+                aCount = read.readChunk();
+            }//END while LOOP
+        } finally {
+            read.close();
+        }//END try/finally BLOCK
+    }//END addReadWords() METHOD
+
+    /**
+     * Private helper to stream the words from a memory mapped words file
+     *  into an L matrix maker.  Each chunk of lines is decoded straight from
+     *  the mapped bytes into one reused char array, so no String is created
+     *  for any word.
+     *
+     * @param theFileName The filename of the words file.
+     * @param theMaker The maker the words are added to.
+     * @param theTimer The timer counting the words added.
+     */
+    private void addMappedWords(final String theFileName,
+                                final WordSink theMaker,
+                                final StageTimer theTimer) throws IOException {
+        final int aChunkWords = mySettings.getChunkWords();
+
+        final MappedReader read = new MappedReader(theFileName);
+        try {
+            final int aLines = read.getLineCount();
+            theTimer.setTotal(aLines);
+            final int[] someStarts = new int[aChunkWords + 1];
+            char[] someChars = new char[0];
+
+            for (int aFrom = 0; aFrom < aLines; aFrom += aChunkWords) {
+                final int aTo = Math.min(aFrom + aChunkWords, aLines);
+
+                final long aBytes = read.getByteCount(aFrom, aTo);
+                if (aBytes > someChars.length) {
+                    if (aBytes > Integer.MAX_VALUE - 8) {
+                        throw new IOException("Chunk of words too large;"
+                                              + " use a smaller chunk size");
+                    }//END if
+                    someChars = new char[(int) aBytes];
+                }//END if
+
+                read.decodeLines(aFrom, aTo, someChars, someStarts);
+                theMaker.addWords(someChars, someStarts, aTo - aFrom);
+                theTimer.advance(aTo - aFrom);
+            }//END for (INDEX aFrom)
+        } finally {
+            read.close();
+        }//END try/finally BLOCK
+    }//END addMappedWords() METHOD
+
+    /**
+     * Method to write a matrix, as text or in the binary format, timing it
+     *  as a stage.
+     *
+     * @param theFileName Name of the file to write to.
+     * @param theMatrix The matrix to write.
+     * @param theStage The name of the stage.
+     */
+    void writeMatrix(final String theFileName, final SparseMatrix theMatrix,
+                     final String theStage) throws IOException {
+        final int nRows = theMatrix.getRowCount();
+        final StageTimer aTimer = myMetrics.start(theStage, nRows);
+
+        if (mySettings.isBinary()) {
+            BinaryWriter.write(theFileName, theMatrix);
+            aTimer.advance(nRows);
+        } else {
+            writeText(theFileName, theMatrix, aTimer);
+        }//END if
+
+        aTimer.finish(nRows, theMatrix.getColCount(),
+                      theMatrix.getNonZeroCount(),
+                      (long) nRows * theMatrix.getColCount(),
+                      JointSetClustering.CELLS);
+    }//END writeMatrix() METHOD
+
+    /**
+     * Private helper to stream the rows of a matrix to a text file, one line
+     *  of space separated values, zeros included, per row.
+     *
+     * @param theFileName Name of the file to write to.
+     * @param theMatrix The matrix to write.
+     * @param theTimer The timer counting the rows written.
+     */
+    private void writeText(final String theFileName,
+                           final SparseMatrix theMatrix,
+                           final StageTimer theTimer) throws IOException {
+        final Writer writes = new Writer(theFileName);
+        try {
+            final int nRows = theMatrix.getRowCount();
+            for (int i = 0; i < nRows; i++) {
+                writes.writeRow(theMatrix, i);
+                theTimer.advance(1);
+            }//END for (INDEX i)
+        } finally {
+            writes.close();
+        }//END try/finally BLOCK
+    }//END writeText() METHOD
+
+}//END RunFiles.java CLASS
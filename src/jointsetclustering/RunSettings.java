@@ -0,0 +1,1026 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package jointsetclustering;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utility class which separates the command line into the filenames used
+ *  by the Joint Set Clustering and the optional settings, given in the form
+ *  --name=value, which control how it is run.  The options may be given
+ *  anywhere among the filenames; defaults are in brackets.
+ *
+ * <pre>
+ * --threads=N          compute on N threads, or on every core when N is 0
+ * --chunk-words=N      read the words file N words at a time [8192]
+ * --mmap               memory map the UTF-8 input files
+ * --format=binary      write the matrices in the binary format read back
+ *                      by files.BinaryReader rather than as text
+ * --metrics=FILE       add the time, CPU time, allocations and size of
+ *                      each stage to FILE as JSON lines
+ * --progress=S         print the same to standard error, with the progress
+ *                      of a running stage every S seconds
+ * --columns=FILE       write the distinct n-grams to FILE, one per line in
+ *                      the order of the columns of L
+ * --vocab=MIN-MAX      generate the n-grams as every substring of a word
+ *                      of MIN to MAX characters, and write them to the
+ *                      n-grams file rather than reading it
+ * --vocab-min-words=N  keep only the generated n-grams in at least N words
+ * --vocab-top=K        keep only the K generated n-grams in the most words
+ * --delta=FILE         with --format=binary, update the L, LLt and words
+ *                      files for the words added (+word lines) and removed
+ *                      (-word lines) in FILE
+ * --spill-dir=DIR      compute LLt out of core as tiles in DIR, resuming
+ *                      from the tiles already there
+ * --tile-rows=N        rows and columns of each tile [4096]
+ * --min-shared=N       write only the entries of LLt of at least N, the
+ *                      pairs of different words sharing N n-grams
+ * --top-k=K            write only the K largest entries of each row; as
+ *                      text, one line of row, column and value per entry
+ * --postings           compute LLt from the posting list of each n-gram
+ * --max-postings=N     leave out of LLt the n-grams held by more than N
+ *                      words, noting them in the metrics
+ * --clusters=FILE      merge the words sharing --min-shared n-grams, or
+ *                      each word's --top-k, and write each word's cluster
+ *                      to FILE, one per line
+ * --spectral=K         split the words into K clusters by k-means on the K
+ *                      leading eigenvectors of LLt, without forming LLt
+ * --lsh-bands=B        approximate LLt by MinHash signatures of B bands,
+ *                      computing only the pairs agreeing in some band
+ * --lsh-rows=R         hashes in each band [4]
+ * --lsh-sample=N       words the recall is reported on [500]
+ * --serve[=PORT]       answer each word read from standard input, or from
+ *                      each connection to PORT on the loopback address,
+ *                      with a line of the word, its row of L as col:count
+ *                      and its --top-k [10] most similar as index:score:word
+ * --cache-dir=DIR      keep L and LLt in DIR, keyed by what each depends on
+ * --cache-mb=N         megabytes the cache may hold [1024]
+ * --pipeline           overlap reading the words, computing L and LLt and
+ *                      writing them, never holding LLt whole
+ * --off-heap           compute LLt into a dense matrix outside the Java
+ *                      heap, mapped from the LLt file in binary
+ * </pre>
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.19
+ */
+public class RunSettings {
+
+    /** Constant for the prefix marking an option on the command line. */
+    private static final String OPTION_PREFIX = "--";
+
+    /** Constant for the option giving the number of threads to use. */
+    private static final String THREADS_OPTION = "threads";
+
+    /** Constant for the option giving the number of words read at a time. */
+    private static final String CHUNK_OPTION = "chunk-words";
+
+    /** Constant for the default number of words read at a time. */
+    private static final int DEFAULT_CHUNK_WORDS = 8192;
+
+    /** Constant for the option to memory map the input files. */
+    private static final String MMAP_OPTION = "mmap";
+
+    /** Constant for the option giving the format of the output files. */
+    private static final String FORMAT_OPTION = "format";
+
+    /** Constant for the value selecting the text output format. */
+    private static final String TEXT_FORMAT = "text";
+
+    /** Constant for the value selecting the binary output format. */
+    private static final String BINARY_FORMAT = "binary";
+
+    /** Constant for the option giving the file stage metrics are added to. */
+    private static final String METRICS_OPTION = "metrics";
+
+    /** Constant for the option giving the seconds between progress lines. */
+    private static final String PROGRESS_OPTION = "progress";
+
+    /** Constant for the option giving the file the columns are named in. */
+    private static final String COLUMNS_OPTION = "columns";
+
+    /** Constant for the option giving the lengths of generated N-grams. */
+    private static final String VOCAB_OPTION = "vocab";
+
+    /** Constant for the option giving the fewest words a kept N-gram is in. */
+    private static final String MIN_WORDS_OPTION = "vocab-min-words";
+
+    /** Constant for the option giving the most generated N-grams kept. */
+    private static final String TOP_OPTION = "vocab-top";
+
+    /** Constant for the option giving the file of words added and removed. */
+    private static final String DELTA_OPTION = "delta";
+
+    /** Constant for the option giving the directory LLt tiles spill to. */
+    private static final String SPILL_OPTION = "spill-dir";
+
+    /** Constant for the option giving the number of rows in a tile. */
+    private static final String TILE_ROWS_OPTION = "tile-rows";
+
+    /** Constant for the default number of rows in a tile. */
+    private static final int DEFAULT_TILE_ROWS = 4096;
+
+    /** Constant for the option giving the smallest LLt entry written. */
+    private static final String MIN_SHARED_OPTION = "min-shared";
+
+    /** Constant for the option giving the most LLt entries written a row. */
+    private static final String TOP_K_OPTION = "top-k";
+
+    /** Constant for the option to compute LLt from posting lists. */
+    private static final String POSTINGS_OPTION = "postings";
+
+    /** Constant for the option giving the longest posting list used. */
+    private static final String MAX_POSTINGS_OPTION = "max-postings";
+
+    /** Constant for the option giving the file clusters are written to. */
+    private static final String CLUSTERS_OPTION = "clusters";
+
+    /** Constant for the option giving the number of spectral clusters. */
+    private static final String SPECTRAL_OPTION = "spectral";
+
+    /** Constant for the option giving the number of LSH bands. */
+    private static final String LSH_BANDS_OPTION = "lsh-bands";
+
+    /** Constant for the option giving the number of hashes in an LSH band. */
+    private static final String LSH_ROWS_OPTION = "lsh-rows";
+
+    /** Constant for the default number of hashes in an LSH band. */
+    private static final int DEFAULT_LSH_ROWS = 4;
+
+    /** Constant for the option giving the words sampled for LSH recall. */
+    private static final String LSH_SAMPLE_OPTION = "lsh-sample";
+
+    /** Constant for the default number of words sampled for LSH recall. */
+    private static final int DEFAULT_LSH_SAMPLE = 500;
+
+    /** Constant for the option to answer queries rather than run once. */
+    private static final String SERVE_OPTION = "serve";
+
+    /** Constant for the value of the serve option for standard streams. */
+    private static final String STDIO_VALUE = "stdio";
+
+    /** Constant for the default number of similar words in an answer. */
+    private static final int DEFAULT_SERVE_TOP = 10;
+
+    /** Constant for the option giving the directory of the matrix cache. */
+    private static final String CACHE_OPTION = "cache-dir";
+
+    /** Constant for the option giving the size of the cache in megabytes. */
+    private static final String CACHE_SIZE_OPTION = "cache-mb";
+
+    /** Constant for the default size of the cache in megabytes. */
+    private static final int DEFAULT_CACHE_MB = 1024;
+
+    /** Constant for the number of bytes in a megabyte. */
+    private static final long BYTES_PER_MB = 1L << 20;
+
+    /** Constant for the option to overlap the stages of a run. */
+    private static final String PIPELINE_OPTION = "pipeline";
+
+    /** Constant for the option to hold LLt off the Java heap. */
+    private static final String OFF_HEAP_OPTION = "off-heap";
+
+    /** String array holding the filenames, in command line order. */
+    private final String[] myFileNames;
+
+    /** Integer representing the number of threads to use. */
+    private int myThreads;
+
+    /** Integer representing the number of words read at a time. */
+    private int myChunkWords;
+
+    /** Boolean indicating if the input files are memory mapped. */
+    private boolean myMapped;
+
+    /** Boolean indicating if the matrices are written in binary. */
+    private boolean myBinary;
+
+    /** String holding the JSON lines metrics file, or null for none. */
+    private String myMetricsFile;
+
+    /** Integer representing the seconds between progress lines, 0 for none. */
+    private int myProgressSeconds;
+
+    /** String holding the file the columns are named in, or null for none. */
+    private String myColumnsFile;
+
+    /** Integer representing the shortest generated N-gram, 0 for none. */
+    private int myVocabMin;
+
+    /** Integer representing the longest generated N-gram. */
+    private int myVocabMax;
+
+    /** Integer representing the fewest words a generated N-gram is in. */
+    private int myMinWords;
+
+    /** Integer representing the most generated N-grams kept, 0 for all. */
+    private int myTopK;
+
+    /** String holding the file of words added and removed, or null. */
+    private String myDeltaFile;
+
+    /** String holding the directory LLt tiles spill to, or null for none. */
+    private String mySpillDir;
+
+    /** Integer representing the number of rows in each tile of LLt. */
+    private int myTileRows;
+
+    /** Integer representing the smallest LLt entry written, 0 for all. */
+    private int myMinShared;
+
+    /** Integer representing the most LLt entries written a row, 0 for all. */
+    private int myTopSimilar;
+
+    /** Boolean indicating if LLt is computed from posting lists. */
+    private boolean myPostings;
+
+    /** Integer representing the longest posting list used, 0 for no cap. */
+    private int myMaxPostings;
+
+    /** String holding the file clusters are written to, or null for none. */
+    private String myClustersFile;
+
+    /** Integer representing the number of spectral clusters, 0 for none. */
+    private int mySpectral;
+
+    /** Integer representing the number of LSH bands, 0 for an exact LLt. */
+    private int myLshBands;
+
+    /** Integer representing the number of hashes in each LSH band. */
+    private int myLshRows;
+
+    /** Integer representing the words sampled for LSH recall, 0 for none. */
+    private int myLshSample;
+
+    /** Integer representing the port served on, 0 for stdio, -1 for none. */
+    private int myServePort;
+
+    /** String holding the directory of the matrix cache, or null for none. */
+    private String myCacheDir;
+
+    /** Integer representing the size of the matrix cache in megabytes. */
+    private int myCacheMb;
+
+    /** Boolean indicating if the stages of a run are overlapped. */
+    private boolean myPipelined;
+
+    /** Boolean indicating if LLt is held off the Java heap. */
+    private boolean myOffHeap;
+
+
+    /**
+     * Creates the settings from the passed command line arguments.  Any
+     *  argument starting with -- is an option; every other argument is a
+     *  filename.
+     *
+     * @param theArgs The command line arguments.
+     * @throws IllegalArgumentException If an option is unknown or its value
+     *  is malformed.
+     */
+    public RunSettings(final String[] theArgs) {
+        myThreads = 1;
+        myChunkWords = DEFAULT_CHUNK_WORDS;
+        myMapped = false;
+        myBinary = false;
+        myMetricsFile = null;
+        myProgressSeconds = 0;
+        myColumnsFile = null;
+        myVocabMin = 0;
+        myVocabMax = 0;
+        myMinWords = 1;
+        myTopK = 0;
+        myDeltaFile = null;
+        mySpillDir = null;
+        myTileRows = DEFAULT_TILE_ROWS;
+        myMinShared = 0;
+        myTopSimilar = 0;
+        myPostings = false;
+        myMaxPostings = 0;
+        myClustersFile = null;
+        mySpectral = 0;
+        myLshBands = 0;
+        myLshRows = DEFAULT_LSH_ROWS;
+        myLshSample = DEFAULT_LSH_SAMPLE;
+        myServePort = -1;
+        myCacheDir = null;
+        myCacheMb = DEFAULT_CACHE_MB;
+        myPipelined = false;
+        myOffHeap = false;
+
+        final List<String> someNames = new ArrayList<String>();
+        for (final String anArg : theArgs) {
+            if (anArg.startsWith(OPTION_PREFIX)) {
+                parseOption(anArg.substring(OPTION_PREFIX.length()));
+            } else {
+                someNames.add(anArg);
+            }//END if
+        }//END for
+
+        myFileNames = someNames.toArray(new String[someNames.size()]);
+
+        if (myDeltaFile != null && (!myBinary || isVocabGenerated())) {
+            throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                               + DELTA_OPTION + " needs "
+                                               + OPTION_PREFIX + FORMAT_OPTION
+                                               + "=" + BINARY_FORMAT
+                                               + " and a fixed n-grams file");
+        }//END if
+        if (myDeltaFile != null && mySpillDir != null) {
+            throw new IllegalArgumentException("Options " + OPTION_PREFIX
+                                               + DELTA_OPTION + " and "
+                                               + OPTION_PREFIX + SPILL_OPTION
+                                               + " cannot be used together");
+        }//END if
+        if (isPruned() && (myDeltaFile != null || mySpillDir != null)) {
+            throw new IllegalArgumentException("Options " + OPTION_PREFIX
+                                               + MIN_SHARED_OPTION + " and "
+                                               + OPTION_PREFIX + TOP_K_OPTION
+                                               + " cannot be used with "
+                                               + OPTION_PREFIX + DELTA_OPTION
+                                               + " or " + OPTION_PREFIX
+                                               + SPILL_OPTION);
+        }//END if
+        if (isPostings() && (isPruned() || myDeltaFile != null
+                             || mySpillDir != null)) {
+            throw new IllegalArgumentException("Options " + OPTION_PREFIX
+                                               + POSTINGS_OPTION + " and "
+                                               + OPTION_PREFIX
+                                               + MAX_POSTINGS_OPTION
+                                               + " cannot be used with a"
+                                               + " pruned, incremental or"
+                                               + " spilled LLt");
+        }//END if
+        if (isApproximate() && (isPruned() || isPostings()
+                                || myDeltaFile != null
+                                || mySpillDir != null)) {
+            throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                               + LSH_BANDS_OPTION
+                                               + " cannot be used with a"
+                                               + " pruned, posting list,"
+                                               + " incremental or spilled"
+                                               + " LLt");
+        }//END if
+        if (isServing() && (myDeltaFile != null || isVocabGenerated())) {
+            throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                               + SERVE_OPTION + " needs a"
+                                               + " fixed n-grams file and"
+                                               + " cannot be used with "
+                                               + OPTION_PREFIX
+                                               + DELTA_OPTION);
+        }//END if
+        if (myPipelined && (isPruned() || isPostings() || isApproximate()
+                            || myDeltaFile != null || mySpillDir != null
+                            || isVocabGenerated() || isServing()
+                            || myCacheDir != null)) {
+            throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                               + PIPELINE_OPTION + " needs"
+                                               + " a full, exact LLt from a"
+                                               + " fixed n-grams file, and"
+                                               + " cannot"
+                                               + " be used with "
+                                               + OPTION_PREFIX
+                                               + CACHE_OPTION + " or "
+                                               + OPTION_PREFIX
+                                               + SERVE_OPTION);
+        }//END if
+        if (myOffHeap && (isPruned() || isPostings() || isApproximate()
+                          || myDeltaFile != null || mySpillDir != null
+                          || isVocabGenerated() || isServing()
+                          || myCacheDir != null || myPipelined)) {
+            throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                               + OFF_HEAP_OPTION + " needs"
+                                               + " a full, exact LLt from a"
+                                               + " fixed n-grams file, and"
+                                               + " cannot be used with "
+                                               + OPTION_PREFIX
+                                               + CACHE_OPTION + " or "
+                                               + OPTION_PREFIX
+                                               + PIPELINE_OPTION);
+        }//END if
+        if (mySpectral > 0 && myClustersFile == null) {
+            throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                               + SPECTRAL_OPTION + " needs "
+                                               + OPTION_PREFIX
+                                               + CLUSTERS_OPTION);
+        }//END if
+    }//END constructor
+
+
+    /**
+     * Method to return the filenames given on the command line.
+     *
+     * @return A copy of the array of filenames.
+     */
+    public String[] getFileNames() {
+        return myFileNames.clone();
+    }//END getFileNames() METHOD
+
+    /**
+     * Method to return the number of threads to compute with.  A value of 1
+     *  means the serial path is used.
+     *
+     * @return myThreads The number of threads.
+     */
+    public int getThreads() {
+        return myThreads;
+    }//END getThreads() METHOD
+
+    /**
+     * Method to return the largest number of words read from the words file
+     *  and turned into rows of L at a time.
+     *
+     * @return myChunkWords The number of words in a chunk.
+     */
+    public int getChunkWords() {
+        return myChunkWords;
+    }//END getChunkWords() METHOD
+
+    /**
+     * Method to return whether the input files are memory mapped and their
+     *  lines decoded in place, rather than read line by line into Strings.
+     *
+     * @return myMapped True if the input files are memory mapped.
+     */
+    public boolean isMapped() {
+        return myMapped;
+    }//END isMapped() METHOD
+
+    /**
+     * Method to return whether the L and LLt matrices are written in the
+     *  compact binary format rather than as text.
+     *
+     * @return myBinary True if the matrices are written in binary.
+     */
+    public boolean isBinary() {
+        return myBinary;
+    }//END isBinary() METHOD
+
+    /**
+     * Method to return the file the measurements of each stage are added to
+     *  as JSON lines.
+     *
+     * @return myMetricsFile The metrics file, or null if none was given.
+     */
+    public String getMetricsFile() {
+        return myMetricsFile;
+    }//END getMetricsFile() METHOD
+
+    /**
+     * Method to return the period at which the progress of a running stage,
+     *  and the measurements of each finished stage, are printed.
+     *
+     * @return myProgressSeconds The period in seconds, or 0 for none.
+     */
+    public int getProgressSeconds() {
+        return myProgressSeconds;
+    }//END getProgressSeconds() METHOD
+
+    /**
+     * Method to return the file the distinct N-grams are written to, one per
+     *  line in the order of the columns of L.
+     *
+     * @return myColumnsFile The columns file, or null if none was given.
+     */
+    public String getColumnsFile() {
+        return myColumnsFile;
+    }//END getColumnsFile() METHOD
+
+    /**
+     * Method to return whether the N-grams are generated from the words, in
+     *  which case the N-grams file is written rather than read.
+     *
+     * @return True if the N-grams are generated.
+     */
+    public boolean isVocabGenerated() {
+        return myVocabMin > 0;
+    }//END isVocabGenerated() METHOD
+
+    /**
+     * Method to return the shortest length of a generated N-gram.
+     *
+     * @return myVocabMin The shortest length, or 0 if none are generated.
+     */
+    public int getVocabMinLength() {
+        return myVocabMin;
+    }//END getVocabMinLength() METHOD
+
+    /**
+     * Method to return the longest length of a generated N-gram.
+     *
+     * @return myVocabMax The longest length.
+     */
+    public int getVocabMaxLength() {
+        return myVocabMax;
+    }//END getVocabMaxLength() METHOD
+
+    /**
+     * Method to return the fewest words a generated N-gram must occur in to
+     *  be kept.
+     *
+     * @return myMinWords The fewest words.
+     */
+    public int getVocabMinWords() {
+        return myMinWords;
+    }//END getVocabMinWords() METHOD
+
+    /**
+     * Method to return the most generated N-grams kept, those occurring in
+     *  the most words.
+     *
+     * @return myTopK The most N-grams kept, or 0 for no limit.
+     */
+    public int getVocabTopK() {
+        return myTopK;
+    }//END getVocabTopK() METHOD
+
+    /**
+     * Method to return the file listing the words added, each as a line
+     *  starting with +, and removed, each as a line starting with -, since
+     *  the L and LLt files were written.  When given, the existing binary
+     *  L and LLt files and the words file are updated in place rather than
+     *  computed from scratch.
+     *
+     * @return myDeltaFile The delta file, or null if none was given.
+     */
+    public String getDeltaFile() {
+        return myDeltaFile;
+    }//END getDeltaFile() METHOD
+
+    /**
+     * Method to return the directory the tiles of LLt are written to as they
+     *  are computed.  When given, LLt is computed out of core, a tile at a
+     *  time, and assembled into the LLt file from the tiles; a run which
+     *  stopped part way picks up from the tiles already there.
+     *
+     * @return mySpillDir The spill directory, or null to hold LLt whole.
+     */
+    public String getSpillDir() {
+        return mySpillDir;
+    }//END getSpillDir() METHOD
+
+    /**
+     * Method to return the number of rows, and columns, in each tile of an
+     *  out of core LLt.
+     *
+     * @return myTileRows The number of rows in a tile.
+     */
+    public int getTileRows() {
+        return myTileRows;
+    }//END getTileRows() METHOD
+
+    /**
+     * Method to return whether only the entries of LLt which matter for 
+     *  clustering are written: those of at least the smallest value and, 
+     *  if asked for, only the largest in each row.
+     *
+     * @return True if LLt is pruned.
+     */
+    public boolean isPruned() {
+        return myMinShared > 0 || myTopSimilar > 0;
+    }//END isPruned() METHOD
+
+    /**
+     * Method to return the smallest entry of a pruned LLt which is written,
+     *  the fewest N-grams two words must share.
+     *
+     * @return The smallest entry, 1 unless another was given.
+     */
+    public int getMinShared() {
+        return Math.max(myMinShared, 1);
+    }//END getMinShared() METHOD
+
+    /**
+     * Method to return the most entries written in each row of a pruned
+     *  LLt, those of the words sharing the most N-grams with the row's word.
+     *
+     * @return myTopSimilar The most entries in a row, or 0 for no limit.
+     */
+    public int getTopSimilar() {
+        return myTopSimilar;
+    }//END getTopSimilar() METHOD
+
+    /**
+     * Method to return whether LLt is computed by walking the posting list
+     *  of each N-gram, the words holding it, rather than by taking the dot
+     *  products of blocks of rows of L.
+     *
+     * @return True if LLt is computed from posting lists.
+     */
+    public boolean isPostings() {
+        return myPostings || myMaxPostings > 0;
+    }//END isPostings() METHOD
+
+    /**
+     * Method to return the most words an N-gram may be held by and still be
+     *  counted in LLt.  N-grams held by more words are left out and reported.
+     *
+     * @return myMaxPostings The longest posting list used, or 0 for no cap.
+     */
+    public int getMaxPostings() {
+        return myMaxPostings;
+    }//END getMaxPostings() METHOD
+
+    /**
+     * Method to return the file the cluster of each word is written to, one
+     *  per line in the order of the words.  Two words are in the same
+     *  cluster when a chain of words, each pair sharing at least the
+     *  smallest number of N-grams given for a pruned LLt, links them,
+     *  unless spectral clusters are asked for.
+     *
+     * @return myClustersFile The clusters file, or null if none was given.
+     */
+    public String getClustersFile() {
+        return myClustersFile;
+    }//END getClustersFile() METHOD
+
+    /**
+     * Method to return the number of clusters the words are split into by
+     *  spectral clustering, from the leading eigenvectors of LLt, rather
+     *  than by linking the pairs of words which share enough N-grams.
+     *
+     * @return mySpectral The number of clusters, or 0 if not spectral.
+     */
+    public int getSpectralClusters() {
+        return mySpectral;
+    }//END getSpectralClusters() METHOD
+
+    /**
+     * Method to return whether the words are to be clustered by merging the
+     *  pairs sharing n-grams, rather than spectrally.
+     *
+     * @return True if clusters are merged from the entries of LLt.
+     */
+    public boolean isMergingLLt() {
+        return myClustersFile != null && mySpectral == 0;
+    }//END isMergingLLt() METHOD
+
+    /**
+     * Method to return whether LLt is approximated by locality sensitive
+     *  hashing of MinHash signatures, holding only the pairs of words whose
+     *  signatures agree in some band.
+     *
+     * @return True if LLt is approximate.
+     */
+    public boolean isApproximate() {
+        return myLshBands > 0;
+    }//END isApproximate() METHOD
+
+    /**
+     * Method to return the number of bands the MinHash signatures are cut
+     *  into; more bands find more of the similar pairs.
+     *
+     * @return myLshBands The number of bands, or 0 for an exact LLt.
+     */
+    public int getLshBands() {
+        return myLshBands;
+    }//END getLshBands() METHOD
+
+    /**
+     * Method to return the number of hashes in each band of the MinHash
+     *  signatures; more rows keep more of the dissimilar pairs out.
+     *
+     * @return myLshRows The number of hashes in a band.
+     */
+    public int getLshRows() {
+        return myLshRows;
+    }//END getLshRows() METHOD
+
+    /**
+     * Method to return the number of words whose exact rows of LLt are
+     *  compared with the approximate ones to report the recall.
+     *
+     * @return myLshSample The number of words sampled, or 0 for no report.
+     */
+    public int getLshSample() {
+        return myLshSample;
+    }//END getLshSample() METHOD
+
+    /**
+     * Method to return whether the words and n-grams are kept in memory to
+     *  answer queries of new words, rather than the matrices written once.
+     *
+     * @return True if serving queries.
+     */
+    public boolean isServing() {
+        return myServePort >= 0;
+    }//END isServing() METHOD
+
+    /**
+     * Method to return the port of the loopback address queries are
+     *  answered on.
+     *
+     * @return myServePort The port, or 0 to answer on standard input and
+     *  output.
+     */
+    public int getServePort() {
+        return myServePort;
+    }//END getServePort() METHOD
+
+    /**
+     * Method to return the most similar words given in the answer to a
+     *  query, the top-K given or 10.
+     *
+     * @return The most similar words in an answer.
+     */
+    public int getServeTop() {
+        int aTop = DEFAULT_SERVE_TOP;
+        if (myTopSimilar > 0) {
+            aTop = myTopSimilar;
+        }//END if
+
+        return aTop;
+    }//END getServeTop() METHOD
+
+    /**
+     * Method to return the directory computed matrices are cached in, so
+     *  that a run over the same inputs loads them rather than computing
+     *  them again.
+     *
+     * @return myCacheDir The cache directory, or null for no cache.
+     */
+    public String getCacheDir() {
+        return myCacheDir;
+    }//END getCacheDir() METHOD
+
+    /**
+     * Method to return the most bytes the cached matrices may take.
+     *
+     * @return The size of the cache in bytes.
+     */
+    public long getCacheBytes() {
+        return myCacheMb * BYTES_PER_MB;
+    }//END getCacheBytes() METHOD
+
+    /**
+     * Method to return whether the stages of the run are overlapped, each
+     *  on its own thread: reading the words, computing L, writing L,
+     *  computing LLt and writing LLt.
+     *
+     * @return myPipelined True if the stages are overlapped.
+     */
+    public boolean isPipelined() {
+        return myPipelined;
+    }//END isPipelined() METHOD
+
+    /**
+     * Method to return whether LLt is computed into a dense matrix held off
+     *  the Java heap: in binary, mapped from the LLt file itself.  Only LLt
+     *  is moved off the heap; L is still held on it.
+     *
+     * @return myOffHeap True if LLt is held off the heap.
+     */
+    public boolean isOffHeap() {
+        return myOffHeap;
+    }//END isOffHeap() METHOD
+
+    /**
+     * Private helper to apply a single option of the form name=value.
+     *
+     * @param theOption The option with its prefix removed.
+     */
+    private void parseOption(final String theOption) {
+        final int anEq = theOption.indexOf('=');
+        String aName = theOption;
+        String aValue = "";
+        if (anEq >= 0) {
+            aName = theOption.substring(0, anEq);
+            aValue = theOption.substring(anEq + 1);
+        }//END if
+
+        if (THREADS_OPTION.equals(aName)) {
+            myThreads = parseInt(aName, aValue);
+            if (myThreads <= 0) {
+                myThreads = Runtime.getRuntime().availableProcessors();
+            }//END if
+        } else if (CHUNK_OPTION.equals(aName)) {
+            myChunkWords = parseInt(aName, aValue);
+            if (myChunkWords <= 0) {
+                throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                                   + aName
+                                                   + " must be positive");
+            }//END if
+        } else if (MMAP_OPTION.equals(aName)) {
+            myMapped = parseBoolean(aName, aValue);
+        } else if (FORMAT_OPTION.equals(aName)) {
+            if (BINARY_FORMAT.equals(aValue)) {
+                myBinary = true;
+            } else if (TEXT_FORMAT.equals(aValue)) {
+                myBinary = false;
+            } else {
+                throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                                   + aName + " needs "
+                                                   + TEXT_FORMAT + " or "
+                                                   + BINARY_FORMAT);
+            }//END if
+        } else if (METRICS_OPTION.equals(aName)) {
+            myMetricsFile = parseFileName(aName, aValue);
+        } else if (CLUSTERS_OPTION.equals(aName)) {
+            myClustersFile = parseFileName(aName, aValue);
+        } else if (SERVE_OPTION.equals(aName)) {
+            if (aValue.isEmpty() || STDIO_VALUE.equals(aValue)) {
+                myServePort = 0;
+            } else {
+                myServePort = parseInt(aName, aValue);
+                if (myServePort <= 0) {
+                    throw new IllegalArgumentException("Option "
+                                                       + OPTION_PREFIX
+                                                       + aName + " needs "
+                                                       + STDIO_VALUE
+                                                       + " or a port");
+                }//END if
+            }//END if
+        } else if (LSH_BANDS_OPTION.equals(aName)) {
+            myLshBands = parseInt(aName, aValue);
+            if (myLshBands <= 0) {
+                throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                                   + aName
+                                                   + " must be positive");
+            }//END if
+        } else if (LSH_ROWS_OPTION.equals(aName)) {
+            myLshRows = parseInt(aName, aValue);
+            if (myLshRows <= 0) {
+                throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                                   + aName
+                                                   + " must be positive");
+            }//END if
+        } else if (LSH_SAMPLE_OPTION.equals(aName)) {
+            myLshSample = parseInt(aName, aValue);
+            if (myLshSample < 0) {
+                throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                                   + aName
+                                                   + " must not be negative");
+            }//END if
+        } else if (SPECTRAL_OPTION.equals(aName)) {
+            mySpectral = parseInt(aName, aValue);
+            if (mySpectral <= 0) {
+                throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                                   + aName
+                                                   + " must be positive");
+            }//END if
+        } else if (COLUMNS_OPTION.equals(aName)) {
+            myColumnsFile = parseFileName(aName, aValue);
+        } else if (DELTA_OPTION.equals(aName)) {
+            myDeltaFile = parseFileName(aName, aValue);
+        } else if (PIPELINE_OPTION.equals(aName)) {
+            myPipelined = parseBoolean(aName, aValue);
+        } else if (OFF_HEAP_OPTION.equals(aName)) {
+            myOffHeap = parseBoolean(aName, aValue);
+        } else if (CACHE_OPTION.equals(aName)) {
+            myCacheDir = parseFileName(aName, aValue);
+        } else if (CACHE_SIZE_OPTION.equals(aName)) {
+            myCacheMb = parseInt(aName, aValue);
+            if (myCacheMb <= 0) {
+                throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                                   + aName
+                                                   + " must be positive");
+            }//END if
+        } else if (SPILL_OPTION.equals(aName)) {
+            mySpillDir = parseFileName(aName, aValue);
+        } else if (TILE_ROWS_OPTION.equals(aName)) {
+            myTileRows = parseInt(aName, aValue);
+            if (myTileRows <= 0) {
+                throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                                   + aName
+                                                   + " must be positive");
+            }//END if
+        } else if (MIN_SHARED_OPTION.equals(aName)) {
+            myMinShared = parseInt(aName, aValue);
+            if (myMinShared <= 0) {
+                throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                                   + aName
+                                                   + " must be positive");
+            }//END if
+        } else if (TOP_K_OPTION.equals(aName)) {
+            myTopSimilar = parseInt(aName, aValue);
+            if (myTopSimilar <= 0) {
+                throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                                   + aName
+                                                   + " must be positive");
+            }//END if
+        } else if (POSTINGS_OPTION.equals(aName)) {
+            myPostings = parseBoolean(aName, aValue);
+        } else if (MAX_POSTINGS_OPTION.equals(aName)) {
+            myMaxPostings = parseInt(aName, aValue);
+            if (myMaxPostings <= 0) {
+                throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                                   + aName
+                                                   + " must be positive");
+            }//END if
+        } else if (VOCAB_OPTION.equals(aName)) {
+            parseLengths(aName, aValue);
+        } else if (MIN_WORDS_OPTION.equals(aName)) {
+            myMinWords = parseInt(aName, aValue);
+            if (myMinWords <= 0) {
+                throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                                   + aName
+                                                   + " must be positive");
+            }//END if
+        } else if (TOP_OPTION.equals(aName)) {
+            myTopK = parseInt(aName, aValue);
+            if (myTopK < 0) {
+                throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                                   + aName
+                                                   + " must not be negative");
+            }//END if
+        } else if (PROGRESS_OPTION.equals(aName)) {
+            myProgressSeconds = parseInt(aName, aValue);
+            if (myProgressSeconds < 0) {
+                throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                                   + aName
+                                                   + " must not be negative");
+            }//END if
+        } else {
+            throw new IllegalArgumentException("Unknown option: "
+                                               + OPTION_PREFIX + aName);
+        }//END if
+    }//END parseOption() METHOD
+
+    /**
+     * Private helper to parse the integer value of an option.
+     *
+     * @param theName The name of the option, for the error message.
+     * @param theValue The value to parse.
+     * @return The parsed value.
+     */
+    private static int parseInt(final String theName, final String theValue) {
+        try {
+            return Integer.parseInt(theValue);
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                               + theName
+                                               + " needs an integer value");
+        }//END try/catch BLOCK
+    }//END parseInt() METHOD
+
+    /**
+     * Private helper to parse a range of N-gram lengths, given as MIN-MAX or
+     *  as a single length.
+     *
+     * @param theName The name of the option, for the error message.
+     * @param theValue The value to parse.
+     */
+    private void parseLengths(final String theName, final String theValue) {
+        final int aDash = theValue.indexOf('-');
+
+        if (aDash < 0) {
+            myVocabMin = parseInt(theName, theValue);
+            myVocabMax = myVocabMin;
+        } else {
+            myVocabMin = parseInt(theName, theValue.substring(0, aDash));
+            myVocabMax = parseInt(theName, theValue.substring(aDash + 1));
+        }//END if
+
+        if (myVocabMin < 1 || myVocabMax < myVocabMin) {
+            throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                               + theName
+                                               + " needs lengths MIN-MAX"
+                                               + " with 1 <= MIN <= MAX");
+        }//END if
+    }//END parseLengths() METHOD
+
+    /**
+     * Private helper to check the filename value of an option.
+     *
+     * @param theName The name of the option, for the error message.
+     * @param theValue The value to check.
+     * @return The filename.
+     */
+    private static String parseFileName(final String theName,
+                                        final String theValue) {
+        if (theValue.isEmpty()) {
+            throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                               + theName
+                                               + " needs a filename");
+        }//END if
+
+        return theValue;
+    }//END parseFileName() METHOD
+
+    /**
+     * Private helper to parse the value of an on/off option, which is on
+     *  when given with no value.
+     *
+     * @param theName The name of the option, for the error message.
+     * @param theValue The value to parse.
+     * @return The parsed value.
+     */
+    private static boolean parseBoolean(final String theName,
+                                        final String theValue) {
+        final boolean aResult;
+
+        if (theValue.isEmpty() || "true".equalsIgnoreCase(theValue)) {
+            aResult = true;
+        } else if ("false".equalsIgnoreCase(theValue)) {
+            aResult = false;
+        } else {
+            throw new IllegalArgumentException("Option " + OPTION_PREFIX
+                                               + theName
+                                               + " needs true or false");
+        }//END if
+
+        return aResult;
+    }//END parseBoolean() METHOD
+
+}//END RunSettings.java CLASS
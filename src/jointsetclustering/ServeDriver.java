@@ -0,0 +1,109 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package jointsetclustering;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import matrices.LmatMaker;
+import matrices.NgramDictionary;
+import matrices.SimilarityIndex;
+import matrices.SparseMatrix;
+import metrics.Instrumentation;
+import metrics.StageTimer;
+
+/**
+ * Class driving a serving run, which keeps the n-grams, the words and L in
+ *  memory and answers queries of new words against them through a
+ *  ClusteringService, on standard input and output until it ends, or on a
+ *  port of the loopback address until the program is stopped.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+final class ServeDriver {
+
+    /** The settings controlling how the queries are answered. */
+    private final RunSettings mySettings;
+
+    /** The instrumentation the stages of the run are timed with. */
+    private final Instrumentation myMetrics;
+
+    /** The reader and writer of the files of the run. */
+    private final RunFiles myFiles;
+
+    /** The filename of the words file. */
+    private final String myWordsFile;
+
+    /** Sparse matrix holding L of the words, or null before serving. */
+    private SparseMatrix myL;
+
+
+    /**
+     * Allows queries to be answered against the words of a run.
+     *
+     * @param theSettings The settings of the run.
+     * @param theMetrics The instrumentation to time the stages with.
+     * @param theFiles The reader and writer of the files of the run.
+     */
+    ServeDriver(final RunSettings theSettings,
+                final Instrumentation theMetrics, final RunFiles theFiles) {
+        mySettings = theSettings;
+        myMetrics = theMetrics;
+        myFiles = theFiles;
+        final String[] someNames = theSettings.getFileNames();
+        myWordsFile = someNames[JointSetClustering.WORDS_FILE_IND];
+        myL = null;
+    }//END constructor
+
+
+    /**
+     * Method to compute L of the words file and answer queries against it.
+     *  The queries answered and the batches they were answered in are
+     *  reported as a note.
+     *
+     * @param theNgrams The n-grams, one per column of L.
+     * @param thePool The pool to answer on, or null to answer serially.
+     */
+    void serve(final NgramDictionary theNgrams, final ForkJoinPool thePool)
+            throws IOException {
+        final String[] someWords = myFiles.readLines(myWordsFile);
+
+        final StageTimer aLTimer = myMetrics.start("L", someWords.length);
+        myL = new LmatMaker(someWords, theNgrams, thePool).getL();
+        final SimilarityIndex anIndex;
+        anIndex = new SimilarityIndex(theNgrams, myL, thePool);
+        aLTimer.advance(someWords.length);
+        aLTimer.finish(myL.getRowCount(), myL.getColCount(),
+                       myL.getNonZeroCount(), myL.getRowCount(), "words");
+
+        final ClusteringService aService;
+        aService = new ClusteringService(someWords, anIndex,
+                                         mySettings.getServeTop());
+        final StageTimer aTimer = myMetrics.start("serve", -1);
+        aService.setProgress(aTimer.getCounter());
+        try {
+            if (mySettings.getServePort() == 0) {
+                aService.serve(System.in, System.out);
+            } else {
+                aTimer.note("listening on port " + mySettings.getServePort());
+                aService.serve(mySettings.getServePort());
+            }//END if
+        } finally {
+            aTimer.note(aService.getAnsweredCount() + " queries answered in "
+                        + aService.getBatchCount() + " batches");
+            aTimer.finish(0, 0, 0, aService.getAnsweredCount(), "queries");
+        }//END try/finally BLOCK
+    }//END serve() METHOD
+
+    /**
+     * Method to return L of the words served.
+     *
+     * @return myL A sparse matrix containing the values of L, or null if
+     *  serve() has not been called.
+     */
+    SparseMatrix getL() {
+        return myL;
+    }//END getL() METHOD
+
+}//END ServeDriver.java CLASS
@@ -0,0 +1,113 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package jointsetclustering;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Class for one stage of a pipeline run on a thread of its own.  A failure
+ *  of the stage is kept and fails the queues it was passed, so the stages
+ *  on their other sides stop rather than wait on it, and is thrown again
+ *  from the thread which waits for the stage to finish.  A stage left
+ *  behind by a failure elsewhere is abandoned, so no thread of the
+ *  pipeline outlives it and keeps the program from ending.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.2
+ */
+public abstract class StageThread extends Thread {
+
+    /** The queues the stage puts into or takes from. */
+    private final Handoff<?>[] myQueues;
+
+    /** The failure of the stage, or null if none. */
+    private volatile Throwable myFailure;
+
+
+    /**
+     * Creates a stage, not yet started.
+     *
+     * @param theName The name of the stage, used as the thread's name.
+     * @param theQueues The queues the stage puts into or takes from.
+     */
+    public StageThread(final String theName, final Handoff<?>... theQueues) {
+        super(theName);
+        myQueues = theQueues.clone();
+        myFailure = null;
+    }//END constructor
+
+
+    /**
+     * Method to do the work of the stage.
+     *
+     * @throws IOException If the stage fails.
+     */
+    protected abstract void runStage() throws IOException;
+
+    /**
+     * Method to run the stage, keeping any failure.
+     */
+    @Override
+    public final void run() {
+        try {
+            runStage();
+        } catch (final IOException | RuntimeException | Error e) {
+            myFailure = e;
+            for (final Handoff<?> aQueue : myQueues) {
+                aQueue.fail(e);
+            }//END for
+        }//END try/catch BLOCK
+    }//END run() METHOD
+
+    /**
+     * Method to wait for the stage to finish, and throw its failure if it
+     *  failed.
+     *
+     * @throws IOException If the stage failed, or the wait is interrupted.
+     */
+    public void finish() throws IOException {
+        try {
+            join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for "
+                                             + getName());
+        }//END try/catch BLOCK
+
+        final Throwable aFailure = myFailure;
+        if (aFailure instanceof IOException) {
+            throw (IOException) aFailure;
+        } else if (aFailure instanceof RuntimeException) {
+            throw (RuntimeException) aFailure;
+        } else if (aFailure instanceof Error) {
+            throw (Error) aFailure;
+        }//END if
+    }//END finish() METHOD
+
+    /**
+     * Method to stop the stage after the pipeline has failed elsewhere,
+     *  interrupting it and waiting for it to end.  Its own failure, which
+     *  follows from the first, is not thrown.  The queues it waits on
+     *  should have been failed first, so it stops even if it does not see
+     *  the interrupt.
+     */
+    public void abandon() {
+        interrupt();
+
+        boolean isInterrupted = false;
+        while (isAlive()) {
+            try {
+                join();
+            } catch (final InterruptedException e) {
+                isInterrupted = true;
+            }//END try/catch BLOCK
+        }//END while LOOP
+
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }//END if
+    }//END abandon() METHOD
+
+}//END StageThread.java CLASS
@@ -0,0 +1,124 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Package private fork/join task which runs a body once for every chunk
+ *  index in a range, splitting the range in half until single chunks are
+ *  left.  Each chunk writes only its own results, so the outcome does not
+ *  depend on the order in which the chunks run.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.2
+ */
+final class ChunkTask extends RecursiveAction {
+
+    /** Serial version UID, since fork/join tasks are serializable. */
+    private static final long serialVersionUID = 1L;
+
+    /** The body run for each chunk. */
+    private final transient Body myBody;
+
+    /** Integer representing the first chunk index of the range. */
+    private final int myFrom;
+
+    /** Integer representing the chunk index just past the range. */
+    private final int myTo;
+
+
+    /**
+     * Interface for the work done on a single chunk.
+     */
+    interface Body {
+
+        /**
+         * Method to process one chunk.
+         *
+         * @param theChunk The index of the chunk to process.
+         */
+        void run(int theChunk);
+
+    }//END Body INTERFACE
+
+
+    /**
+     * Creates a task running the passed body over a range of chunks.
+     *
+     * @param theBody The body to run for each chunk.
+     * @param theFrom The first chunk index.
+     * @param theTo The chunk index just past the range.
+     */
+    private ChunkTask(final Body theBody, final int theFrom, final int theTo) {
+        myBody = theBody;
+        myFrom = theFrom;
+        myTo = theTo;
+    }//END constructor
+
+
+    /**
+     * Method to run the body for every chunk, splitting the range first if
+     *  it holds more than one chunk.
+     */
+    @Override
+    protected void compute() {
+        if (myTo - myFrom <= 1) {
+            for (int c = myFrom; c < myTo; c++) {
+                myBody.run(c);
+            }//END for (INDEX c)
+        } else {
+            final int aMid = (myFrom + myTo) >>> 1;
+            invokeAll(new ChunkTask(myBody, myFrom, aMid),
+                      new ChunkTask(myBody, aMid, myTo));
+        }//END if
+    }//END compute() METHOD
+
+    /**
+     * Method to run the passed body for chunks 0 through theChunks - 1,
+     *  on the passed pool or, when the pool is null, on the calling thread
+     *  in increasing order.
+     *
+     * @param thePool The pool to run on, or null to run serially.
+     * @param theChunks The number of chunks.
+     * @param theBody The body to run for each chunk.
+     */
+    static void runAll(final ForkJoinPool thePool, final int theChunks,
+                       final Body theBody) {
+        if (thePool == null || theChunks <= 1) {
+            for (int c = 0; c < theChunks; c++) {
+                theBody.run(c);
+            }//END for (INDEX c)
+        } else {
+            thePool.invoke(new ChunkTask(theBody, 0, theChunks));
+        }//END if
+    }//END runAll() METHOD
+
+    /**
+     * Method to start running the passed body for chunks 0 through
+     *  theChunks - 1 on the passed pool and return at once, so the calling
+     *  thread can do other work meanwhile.  With no pool the chunks are run
+     *  on the calling thread before returning.
+     *
+     * @param thePool The pool to run on, or null to run serially.
+     * @param theChunks The number of chunks.
+     * @param theBody The body to run for each chunk.
+     * @return The running task, to join, or null if already done.
+     */
+    static ForkJoinTask<Void> fork(final ForkJoinPool thePool,
+                                   final int theChunks, final Body theBody) {
+        ForkJoinTask<Void> aTask = null;
+
+        if (thePool == null || theChunks <= 1) {
+            runAll(thePool, theChunks, theBody);
+        } else {
+            aTask = thePool.submit(new ChunkTask(theBody, 0, theChunks));
+        }//END if
+
+        return aTask;
+    }//END fork() METHOD
+
+}//END ChunkTask.java CLASS
@@ -0,0 +1,161 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+/**
+ * Package private kernel for the dot products of the rows of two dense
+ *  matrices, each held as one flat row-major array, the value at (i, k) in
+ *  position i * width + k, so every row is one contiguous run.  Each row of
+ *  the first matrix is combined with four rows of the second at once,
+ *  keeping four sums in registers, so each value of the first row is loaded
+ *  once for four products.  The loops are kept to the plain shape of a
+ *  reduction over one index, with no unrolling by hand, which the JIT
+ *  compiler turns into SIMD instructions of the machine's vector width;
+ *  blocks holding more sums than this are left scalar by it, and run
+ *  several times slower.  Rows left over from the blocks of four are done
+ *  one at a time.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+final class DenseKernel {
+
+    /** Constant for the number of rows of the second matrix in a block. */
+    private static final int BLOCK = 4;
+
+
+    /**
+     * Private constructor, since the class holds only static methods.
+     */
+    private DenseKernel() {
+    }//END constructor
+
+
+    /**
+     * Package private helper to copy the rows of a 2D array into one flat
+     *  row-major array.
+     *
+     * @param theRows The rows, each of the passed width.
+     * @param theWidth The number of values in each row.
+     * @return aFlat The flat array.
+     */
+    static int[] flatten(final int[][] theRows, final int theWidth) {
+        if ((long) theRows.length * theWidth > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Matrix too large to hold"
+                                               + " flat");
+        }//END if
+
+        final int[] aFlat = new int[theRows.length * theWidth];
+        for (int i = 0; i < theRows.length; i++) {
+            System.arraycopy(theRows[i], 0, aFlat, i * theWidth, theWidth);
+        }//END for (INDEX i)
+
+        return aFlat;
+    }//END flatten() METHOD
+
+    /**
+     * Package private helper to add to each out[i][j] the dot product of
+     *  rows i of A and j of B over the columns from kFrom to kTo, for the
+     *  rows i and j in the given ranges.
+     *
+     * @param theA The flat values of A.
+     * @param theB The flat values of B.
+     * @param theWidth The number of values in each row of A and of B.
+     * @param iFrom The first row of A.
+     * @param iTo The row of A just past the range.
+     * @param jFrom The first row of B.
+     * @param jTo The row of B just past the range.
+     * @param kFrom The first column.
+     * @param kTo The column just past the range.
+     * @param theOut The rows of the output, indexed by the row of A and the
+     *  row of B.
+     * @param isUpper True to add only the entries with j &gt;= i.
+     */
+    static void addDots(final int[] theA, final int[] theB, final int theWidth,
+                        final int iFrom, final int iTo, final int jFrom,
+                        final int jTo, final int kFrom, final int kTo,
+                        final int[][] theOut, final boolean isUpper) {
+        for (int i = iFrom; i < iTo; i++) {
+            final int aBase = i * theWidth;
+            final int[] aRow = theOut[i];
+
+            int j = jFrom;
+            if (isUpper) {
+                j = Math.max(jFrom, i);
+            }//END if
+            for (; j + BLOCK <= jTo; j += BLOCK) {
+                addFour(theA, aBase, theB, j * theWidth, theWidth, kFrom, kTo,
+                        aRow, j);
+            }//END for (INDEX j)
+            for (; j < jTo; j++) {
+                aRow[j] += dot(theA, aBase, theB, j * theWidth, kFrom, kTo);
+            }//END for (INDEX j)
+        }//END for (INDEX i)
+    }//END addDots() METHOD
+
+    /**
+     * Private helper to add the dot products of one row of A with four
+     *  consecutive rows of B to four consecutive entries of the output.
+     *
+     * @param theA The flat values of A.
+     * @param aBase The position of the row of A.
+     * @param theB The flat values of B.
+     * @param bBase The position of the first of the rows of B.
+     * @param theWidth The number of values in each row.
+     * @param kFrom The first column.
+     * @param kTo The column just past the range.
+     * @param theRow The row of the output.
+     * @param j The entry of the output of the first row of B.
+     */
+    private static void addFour(final int[] theA, final int aBase,
+                                final int[] theB, final int bBase,
+                                final int theWidth, final int kFrom,
+                                final int kTo, final int[] theRow,
+                                final int j) {
+        final int b1 = bBase + theWidth;
+        final int b2 = b1 + theWidth;
+        final int b3 = b2 + theWidth;
+
+        int s0 = 0;
+        int s1 = 0;
+        int s2 = 0;
+        int s3 = 0;
+        for (int k = kFrom; k < kTo; k++) {
+            final int x = theA[aBase + k];
+            s0 += x * theB[bBase + k];
+            s1 += x * theB[b1 + k];
+            s2 += x * theB[b2 + k];
+            s3 += x * theB[b3 + k];
+        }//END for (INDEX k)
+
+        theRow[j] += s0;
+        theRow[j + 1] += s1;
+        theRow[j + 2] += s2;
+        theRow[j + 3] += s3;
+    }//END addFour() METHOD
+
+    /**
+     * Private helper to return the dot product of a row of A and a row of B
+     *  over a range of columns.
+     *
+     * @param theA The flat values of A.
+     * @param aBase The position of the row of A.
+     * @param theB The flat values of B.
+     * @param bBase The position of the row of B.
+     * @param kFrom The first column.
+     * @param kTo The column just past the range.
+     * @return sum The dot product.
+     */
+    private static int dot(final int[] theA, final int aBase,
+                           final int[] theB, final int bBase,
+                           final int kFrom, final int kTo) {
+        int sum = 0;
+        for (int k = kFrom; k < kTo; k++) {
+            sum += theA[aBase + k] * theB[bBase + k];
+        }//END for (INDEX k)
+
+        return sum;
+    }//END dot() METHOD
+
+}//END DenseKernel.java CLASS
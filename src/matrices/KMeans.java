@@ -0,0 +1,319 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Class with methods to split a set of points into a given number of
+ *  clusters by k-means.  The first centers are chosen by k-means++, each
+ *  new center picked with chance proportional to its squared distance from
+ *  the nearest center chosen so far, after which Lloyd's method assigns
+ *  every point to its nearest center and moves each center to the mean of
+ *  its points until no point changes cluster.  The assignment step, which
+ *  is the main cost, is split into chunks of points run on the pool.
+ *
+ * <p>The points are held in one flat array, the coordinates of point i in
+ *  positions i * dim through i * dim + dim - 1, so that an embedding of
+ *  many words costs one array rather than one per word.</p>
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+public class KMeans {
+
+    /** Constant for the number of points in each chunk of work. */
+    private static final int CHUNK_POINTS = 4096;
+
+    /** Double array holding the coordinates of every point. */
+    private final double[] myPoints;
+
+    /** Integer representing the number of coordinates of each point. */
+    private final int myDim;
+
+    /** Integer representing the number of points. */
+    private final int myCount;
+
+    /** The pool the assignments are computed on, or null for serially. */
+    private final ForkJoinPool myPool;
+
+    /** Integer array holding the cluster of each point. */
+    private int[] myLabels;
+
+    /** Integer representing the number of Lloyd iterations run. */
+    private int myIterations;
+
+    /** Double representing the sum of squared distances to the centers. */
+    private double myInertia;
+
+
+    /**
+     * Allows the passed points to be clustered.
+     *
+     * @param thePoints Double array holding the coordinates of every point,
+     *  one point after another.
+     * @param theDim The number of coordinates of each point.
+     * @param thePool The pool to compute on, or null to compute serially.
+     */
+    public KMeans(final double[] thePoints, final int theDim,
+                  final ForkJoinPool thePool) {
+        if (theDim < 1 || thePoints.length % theDim != 0) {
+            throw new IllegalArgumentException("Points must have a whole"
+                                               + " number of coordinates");
+        }//END if
+
+        myPoints = thePoints;
+        myDim = theDim;
+        myCount = thePoints.length / theDim;
+        myPool = thePool;
+        myLabels = new int[0];
+        myIterations = 0;
+        myInertia = 0;
+    }//END constructor
+
+
+    /**
+     * Method to split the points into clusters.
+     *
+     * @param theClusters The number of clusters wanted; fewer are made if
+     *  there are fewer distinct points.
+     * @param theMaxIterations The most Lloyd iterations to run.
+     * @param theSeed The seed of the random choice of the first centers.
+     */
+    public void cluster(final int theClusters, final int theMaxIterations,
+                        final long theSeed) {
+        if (theClusters < 1) {
+            throw new IllegalArgumentException("Need at least one cluster");
+        }//END if
+
+        myLabels = new int[myCount];
+        myIterations = 0;
+        myInertia = 0;
+        if (myCount == 0) {
+            return;
+        }//END if
+
+        final double[] someCenters = seedCenters(theClusters,
+                                                 new Random(theSeed));
+        final int aK = someCenters.length / myDim;
+        final double[] someDistances = new double[myCount];
+        Arrays.fill(myLabels, -1);
+
+        boolean isChanged = true;
+        while (isChanged && myIterations < theMaxIterations) {
+            isChanged = assign(someCenters, aK, someDistances);
+            myIterations++;
+            moveCenters(someCenters, aK);
+        }//END while LOOP
+
+        if (isChanged) {
+            assign(someCenters, aK, someDistances);
+        }//END if
+        for (int i = 0; i < myCount; i++) {
+            myInertia += someDistances[i];
+        }//END for (INDEX i)
+        renumber(aK);
+    }//END cluster() METHOD
+
+    /**
+     * Method to return the cluster of each point, numbered 0, 1, 2 and so
+     *  on in the order of the first point of each cluster.
+     *
+     * @return myLabels The clusters, not a copy.
+     */
+    public int[] getLabels() {
+        return myLabels;
+    }//END getLabels() METHOD
+
+    /**
+     * Method to return the number of Lloyd iterations the last run took.
+     *
+     * @return myIterations The number of iterations.
+     */
+    public int getIterations() {
+        return myIterations;
+    }//END getIterations() METHOD
+
+    /**
+     * Method to return the sum of the squared distances from each point to
+     *  the center of its cluster.
+     *
+     * @return myInertia The sum of squared distances.
+     */
+    public double getInertia() {
+        return myInertia;
+    }//END getInertia() METHOD
+
+    /**
+     * Private helper to choose the first centers by k-means++.
+     *
+     * @param theClusters The number of centers wanted.
+     * @param theRandom The source of random choices.
+     * @return someCenters Double array holding the coordinates of the
+     *  centers, fewer than wanted if every point is already a center.
+     */
+    private double[] seedCenters(final int theClusters,
+                                 final Random theRandom) {
+        final double[] someCenters = new double[theClusters * myDim];
+        final double[] someDistances = new double[myCount];
+
+        final int aFirst = theRandom.nextInt(myCount);
+        System.arraycopy(myPoints, aFirst * myDim, someCenters, 0, myDim);
+        double aTotal = 0;
+        for (int i = 0; i < myCount; i++) {
+            someDistances[i] = distance(i, someCenters, 0);
+            aTotal += someDistances[i];
+        }//END for (INDEX i)
+
+        int aK = 1;
+        while (aK < theClusters && aTotal > 0) {
+            double aTarget = theRandom.nextDouble() * aTotal;
+            int aPick = -1;
+            for (int i = 0; i < myCount; i++) {
+                if (someDistances[i] > 0) {
+                    aPick = i;
+                    aTarget -= someDistances[i];
+                    if (aTarget < 0) {
+                        break;
+                    }//END if
+                }//END if
+            }//END for (INDEX i)
+
+            System.arraycopy(myPoints, aPick * myDim, someCenters,
+                             aK * myDim, myDim);
+            aTotal = 0;
+            for (int i = 0; i < myCount; i++) {
+                someDistances[i] = Math.min(someDistances[i],
+                                            distance(i, someCenters, aK));
+                aTotal += someDistances[i];
+            }//END for (INDEX i)
+            aK++;
+        }//END while LOOP
+
+        return Arrays.copyOf(someCenters, aK * myDim);
+    }//END seedCenters() METHOD
+
+    /**
+     * Private helper to assign every point to its nearest center, one chunk
+     *  of points per task.
+     *
+     * @param theCenters The coordinates of the centers.
+     * @param theK The number of centers.
+     * @param theDistances Double array receiving each point's squared
+     *  distance to its center.
+     * @return True if any point changed cluster.
+     */
+    private boolean assign(final double[] theCenters, final int theK,
+                           final double[] theDistances) {
+        final int aChunks = (myCount + CHUNK_POINTS - 1) / CHUNK_POINTS;
+        final boolean[] isChanged = new boolean[aChunks];
+
+        ChunkTask.runAll(myPool, aChunks, new ChunkTask.Body() {
+            @Override
+            public void run(final int theChunk) {
+                final int aFrom = theChunk * CHUNK_POINTS;
+                final int aTo = Math.min(aFrom + CHUNK_POINTS, myCount);
+
+                for (int i = aFrom; i < aTo; i++) {
+                    int aBest = 0;
+                    double aBestDistance = distance(i, theCenters, 0);
+                    for (int c = 1; c < theK; c++) {
+                        final double aDistance = distance(i, theCenters, c);
+                        if (aDistance < aBestDistance) {
+                            aBest = c;
+                            aBestDistance = aDistance;
+                        }//END if
+                    }//END for (INDEX c)
+
+                    if (myLabels[i] != aBest) {
+                        myLabels[i] = aBest;
+                        isChanged[theChunk] = true;
+                    }//END if
+                    theDistances[i] = aBestDistance;
+                }//END for (INDEX i)
+            }//END run() METHOD
+        });
+
+        boolean isAnyChanged = false;
+        for (int c = 0; c < aChunks; c++) {
+            isAnyChanged |= isChanged[c];
+        }//END for (INDEX c)
+
+        return isAnyChanged;
+    }//END assign() METHOD
+
+    /**
+     * Private helper to move each center to the mean of its points; a
+     *  center left with no points stays where it is.
+     *
+     * @param theCenters The coordinates of the centers, changed in place.
+     * @param theK The number of centers.
+     */
+    private void moveCenters(final double[] theCenters, final int theK) {
+        final double[] someSums = new double[theK * myDim];
+        final int[] someSizes = new int[theK];
+
+        for (int i = 0; i < myCount; i++) {
+            final int aBase = myLabels[i] * myDim;
+            for (int d = 0; d < myDim; d++) {
+                someSums[aBase + d] += myPoints[i * myDim + d];
+            }//END for (INDEX d)
+            someSizes[myLabels[i]]++;
+        }//END for (INDEX i)
+
+        for (int c = 0; c < theK; c++) {
+            if (someSizes[c] > 0) {
+                for (int d = 0; d < myDim; d++) {
+                    theCenters[c * myDim + d] = someSums[c * myDim + d]
+                                                / someSizes[c];
+                }//END for (INDEX d)
+            }//END if
+        }//END for (INDEX c)
+    }//END moveCenters() METHOD
+
+    /**
+     * Private helper to number the clusters in the order of their first
+     *  point, dropping any cluster left empty.
+     *
+     * @param theK The number of centers.
+     */
+    private void renumber(final int theK) {
+        final int[] someNumbers = new int[theK];
+        Arrays.fill(someNumbers, -1);
+
+        int aNext = 0;
+        for (int i = 0; i < myCount; i++) {
+            if (someNumbers[myLabels[i]] < 0) {
+                someNumbers[myLabels[i]] = aNext++;
+            }//END if
+            myLabels[i] = someNumbers[myLabels[i]];
+        }//END for (INDEX i)
+    }//END renumber() METHOD
+
+    /**
+     * Private helper to return the squared distance from a point to a
+     *  center.
+     *
+     * @param thePoint The index of the point.
+     * @param theCenters The coordinates of the centers.
+     * @param theCenter The index of the center.
+     * @return sum The squared distance.
+     */
+    private double distance(final int thePoint, final double[] theCenters,
+                            final int theCenter) {
+        final int aP = thePoint * myDim;
+        final int aC = theCenter * myDim;
+
+        double sum = 0;
+        for (int d = 0; d < myDim; d++) {
+            final double aDiff = myPoints[aP + d] - theCenters[aC + d];
+            sum += aDiff * aDiff;
+        }//END for (INDEX d)
+
+        return sum;
+    }//END distance() METHOD
+
+}//END KMeans.java CLASS
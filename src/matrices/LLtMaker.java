@@ -0,0 +1,828 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class with methods to compute the symmetric matrix L times L transpose
+ *  directly from the rows of L.  Each entry (i, j) is the dot product of rows
+ *  i and j of L, so no transpose is formed, and only the upper triangle is
+ *  computed before it is mirrored into the lower one.  The rows are processed
+ *  in blocks so that the rows being combined stay in cache, and when a pool
+ *  is given the row blocks are computed in parallel and joined in order.
+ *  The rows done so far may be followed through a counter, for reporting
+ *  the progress of a long computation.  The full rows may instead be
+ *  streamed, in order, to a sink as they are finished, so that LLt is never
+ *  held whole.  The entries are summed in longs, and the LLt held whole
+ *  has its values packed as narrow as they fit, so entries past the
+ *  integer range come out right, held in longs.  Whether any entry could
+ *  pass that range is found first from the largest sum of squares of a
+ *  row of L; if one could, the streamed rows and tiles, which hold
+ *  integers, are refused.  LLt may also be computed into a dense matrix
+ *  held off the heap, such as one mapped from the file it is to be
+ *  written to, with entries of 8 bytes if they could pass the range.  A
+ *  dense L is checked to be sure no entry can pass the integer range.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.14
+ */
+public class LLtMaker {
+
+    /** Constant for the number of rows in each block of the computation. */
+    private static final int BLOCK_SIZE = 256;
+
+    /** Constant for the number of columns in each block of a dense product. */
+    private static final int DENSE_COL_BLOCK = 1024;
+
+    /** Constant for the row blocks per thread in each wave of streaming. */
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    /** Sparse matrix holding L, when it was passed sparse. */
+    private final SparseMatrix mySparseL;
+
+    /** Integer array holding the values of a sparse L, fetched once. */
+    private final int[] mySparseVals;
+
+    /** A 2D integer array holding L, when it was passed dense. */
+    private final int[][] myDenseL;
+
+    /** The pool used to compute LLt, or null to compute serially. */
+    private final ForkJoinPool myPool;
+
+    /** Integer representing the number of rows in L. */
+    private final int myRowCnt;
+
+    /** Integer representing the number of columns in L. */
+    private final int myColCnt;
+
+    /** Boolean indicating if entries of LLt could pass the integer range. */
+    private final boolean myIsWide;
+
+    /** Sparse matrix holding the computed LLt, for a sparse L. */
+    private SparseMatrix mySparseLLt;
+
+    /** A 2D integer array holding the computed LLt, for a dense L. */
+    private int[][] myDenseLLt;
+
+    /** The counter advanced as rows are done, or null for none. */
+    private AtomicLong myRowsDone;
+
+
+    /**
+     * Allows LLt to be computed for the passed sparse L matrix.
+     *
+     * @param theL A sparse matrix holding the values of L.
+     */
+    public LLtMaker(final SparseMatrix theL) {
+        this(theL, null);
+    }//END constructor
+
+    /**
+     * Allows LLt to be computed for the passed sparse L matrix, one row
+     *  block per task on the passed pool.
+     *
+     * @param theL A sparse matrix holding the values of L.
+     * @param thePool The pool to compute on, or null to compute serially.
+     */
+    public LLtMaker(final SparseMatrix theL, final ForkJoinPool thePool) {
+        mySparseL = theL;
+        mySparseVals = theL.values();
+        myDenseL = null;
+        myPool = thePool;
+
+        myRowCnt = theL.getRowCount();
+        myColCnt = theL.getColCount();
+        myIsWide = maxSquares(theL) > Integer.MAX_VALUE;
+
+        mySparseLLt = null;
+        myDenseLLt = null;
+        myRowsDone = null;
+    }//END constructor
+
+    /**
+     * Allows LLt to be computed for the passed dense L matrix.
+     *
+     * @param theL A 2D integer array holding the values of L.
+     */
+    public LLtMaker(final int[][] theL) {
+        this(theL, null);
+    }//END constructor
+
+    /**
+     * Allows LLt to be computed for the passed dense L matrix, one row
+     *  block per task on the passed pool.
+     *
+     * @param theL A 2D integer array holding the values of L.
+     * @param thePool The pool to compute on, or null to compute serially.
+     */
+    public LLtMaker(final int[][] theL, final ForkJoinPool thePool) {
+        checkRange(theL);
+        mySparseL = null;
+        mySparseVals = null;
+        myDenseL = theL.clone();
+        myPool = thePool;
+
+        myRowCnt = theL.length;
+        if (myRowCnt > 0) {
+            myColCnt = theL[0].length;
+        } else {
+            myColCnt = 0;
+        }//END if
+        myIsWide = false;
+
+        mySparseLLt = null;
+        myDenseLLt = null;
+        myRowsDone = null;
+    }//END constructor
+
+
+    /**
+     * Method to set a counter which is advanced, from whichever thread does
+     *  the work, each time a block of rows of LLt is done.
+     *
+     * @param theRowsDone The counter to advance, or null for none.
+     */
+    public void setProgress(final AtomicLong theRowsDone) {
+        myRowsDone = theRowsDone;
+    }//END setProgress() METHOD
+
+    /**
+     * Method to compute LLt from the matrix passed to the constructor.
+     */
+    public void computeLLt() {
+        if (mySparseL != null) {
+            final int aBlocks = (myRowCnt + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            final SparseMatrix[] aParts = new SparseMatrix[aBlocks];
+
+            ChunkTask.runAll(myPool, aBlocks, new ChunkTask.Body() {
+                @Override
+                public void run(final int theBlock) {
+                    final int aFrom = theBlock * BLOCK_SIZE;
+                    final SparseMatrixBuilder aPart;
+                    aPart = new SparseMatrixBuilder(myRowCnt);
+
+                    final int aTo = Math.min(aFrom + BLOCK_SIZE, myRowCnt);
+
+                    addUpperRows(aFrom, aTo, aFrom, myRowCnt, aPart);
+                    aParts[theBlock] = aPart.build();
+                    countRows(aTo - aFrom);
+                }//END run() METHOD
+            });
+
+            final SparseMatrixBuilder anUpper;
+            anUpper = new SparseMatrixBuilder(myRowCnt);
+            for (int b = 0; b < aBlocks; b++) {
+                anUpper.addRows(aParts[b]);
+            }//END for (INDEX b)
+
+            mySparseLLt = symmetrize(anUpper.build());
+        } else {
+            computeDenseLLt();
+        }//END if
+    }//END computeLLt() METHOD
+
+    /**
+     * Method to compute LLt for the sparse matrix passed to the constructor
+     *  and return it as a sparse matrix.
+     *
+     * @return mySparseLLt A sparse matrix containing the values of LLt.
+     */
+    public SparseMatrix getLLt() {
+        this.computeLLt();
+
+        return mySparseLLt;
+    }//END getLLt() METHOD
+
+    /**
+     * Method to compute the rows of LLt for the sparse matrix passed to the
+     *  constructor and send each full row, in order, to the passed sink as
+     *  soon as it is known, without holding LLt.  The upper triangle is
+     *  computed a wave of row blocks at a time on the pool, and while one
+     *  wave is computed the rows of the wave before are mirrored into full
+     *  rows and sent to the sink from the calling thread.  Only the mirrored
+     *  entries of the rows not yet sent are kept between waves, and past a
+     *  bound those are spilled to a temporary file rather than held.
+     *
+     * @param theSink The sink the rows are sent to, from the calling thread.
+     * @throws IOException If the sink cannot take a row.
+     */
+    public void computeRows(final RowSink theSink) throws IOException {
+        if (mySparseL == null) {
+            throw new IllegalStateException("Rows are streamed only for a"
+                                            + " sparse L");
+        }//END if
+        checkNarrow();
+
+        final int aBlocks = (myRowCnt + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int aWave = 1;
+        if (myPool != null) {
+            aWave = BLOCKS_PER_THREAD * myPool.getParallelism();
+        }//END if
+
+        final RowMirror aMirror = new RowMirror(myRowCnt);
+        try {
+            mirrorWaves(aBlocks, aWave, aMirror, theSink);
+        } finally {
+            aMirror.close();
+        }//END try/finally BLOCK
+    }//END computeRows() METHOD
+
+    /**
+     * Private helper to compute the upper triangle a wave of row blocks at
+     *  a time, mirroring the rows of each wave into full rows and sending
+     *  them to the sink while the next wave is computed.
+     *
+     * @param theBlocks The number of row blocks.
+     * @param theWave The number of row blocks in a wave.
+     * @param theMirror The mirror turning the upper rows into full rows.
+     * @param theSink The sink the rows are sent to.
+     * @throws IOException If the sink cannot take a row.
+     */
+    private void mirrorWaves(final int theBlocks, final int theWave,
+                             final RowMirror theMirror, final RowSink theSink)
+            throws IOException {
+        final int aWaves = (theBlocks + theWave - 1) / theWave;
+        SparseMatrix[] aDone = null;
+        for (int w = 0; w <= aWaves; w++) {
+            SparseMatrix[] aParts = null;
+            ForkJoinTask<Void> aTask = null;
+            if (w < aWaves) {
+                aParts = new SparseMatrix[Math.min(theWave,
+                                                   theBlocks - w * theWave)];
+                aTask = ChunkTask.fork(myPool, aParts.length,
+                                       upperWave(w * theWave, aParts));
+            }//END if
+
+            try {
+                for (int p = 0; aDone != null && p < aDone.length; p++) {
+                    theMirror.addUpperRows(aDone[p], theSink);
+                }//END for (INDEX p)
+            } finally {
+                if (aTask != null) {
+                    aTask.join();
+                }//END if
+            }//END try/finally BLOCK
+            aDone = aParts;
+        }//END for (INDEX w)
+    }//END mirrorWaves() METHOD
+
+    /**
+     * Private helper to return the work of one wave of row blocks, each
+     *  block computing its upper triangle rows into its part.
+     *
+     * @param theFirst The first row block of the wave.
+     * @param theParts Array receiving the upper rows of each block.
+     * @return The body computing one block of the wave.
+     */
+    private ChunkTask.Body upperWave(final int theFirst,
+                                     final SparseMatrix[] theParts) {
+        return new ChunkTask.Body() {
+            @Override
+            public void run(final int theBlock) {
+                final int aFrom = (theFirst + theBlock) * BLOCK_SIZE;
+                final int aTo = Math.min(aFrom + BLOCK_SIZE, myRowCnt);
+                final SparseMatrixBuilder aPart;
+                aPart = new SparseMatrixBuilder(myRowCnt);
+
+                addUpperRows(aFrom, aTo, aFrom, myRowCnt, aPart);
+                theParts[theBlock] = aPart.build();
+                countRows(aTo - aFrom);
+            }//END run() METHOD
+        };
+    }//END upperWave() METHOD
+
+    /**
+     * Method to return whether entries of LLt for the sparse matrix passed
+     *  to the constructor could pass the integer range, in which case LLt
+     *  is only computed whole or off the heap, with its values held in
+     *  longs.
+     *
+     * @return myIsWide True if entries could pass the integer range.
+     */
+    public boolean isWide() {
+        return myIsWide;
+    }//END isWide() METHOD
+
+    /**
+     * Method to return the fewest bytes, 1, 2, 4 or 8, which are sure to
+     *  hold every entry of LLt for the sparse matrix passed to the
+     *  constructor, found from the largest sum of squares of a row of L.
+     *
+     * @return The bytes per entry.
+     */
+    public int getValueWidth() {
+        if (mySparseL == null) {
+            throw new IllegalStateException("Widths need a sparse L");
+        }//END if
+
+        final long aMax = maxSquares(mySparseL);
+
+        return SparseMatrix.widthFor(-aMax, aMax);
+    }//END getValueWidth() METHOD
+
+    /**
+     * Method to compute LLt for the sparse matrix passed to the constructor
+     *  into a dense matrix of zeros held off the heap, of a width from
+     *  getValueWidth() or wider, which is 8 bytes when entries could pass
+     *  the integer range.  Each row block's upper triangle entries are set,
+     *  with their mirrors, as soon as the block is computed, so only one
+     *  block per thread is held on the heap.
+     *
+     * @param theTarget The matrix receiving LLt, with as many rows and
+     *  columns as L has rows.
+     * @return The number of non-zero entries of LLt.
+     */
+    public long computeInto(final OffHeapMatrix theTarget) {
+        if (mySparseL == null) {
+            throw new IllegalStateException("Off-heap LLt needs a sparse L");
+        }//END if
+        if (theTarget.getRowCount() != myRowCnt
+                || theTarget.getColCount() != myRowCnt) {
+            throw new IllegalArgumentException("Target must be " + myRowCnt
+                                               + " by " + myRowCnt);
+        }//END if
+
+        final int aBlocks = (myRowCnt + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final long[] someNonZeros = new long[aBlocks];
+
+        ChunkTask.runAll(myPool, aBlocks, new ChunkTask.Body() {
+            @Override
+            public void run(final int theBlock) {
+                final int aFrom = theBlock * BLOCK_SIZE;
+                final int aTo = Math.min(aFrom + BLOCK_SIZE, myRowCnt);
+                final SparseMatrixBuilder aPart;
+                aPart = new SparseMatrixBuilder(myRowCnt);
+
+                addUpperRows(aFrom, aTo, aFrom, myRowCnt, aPart);
+                final SparseMatrix anUpper = aPart.build();
+                long aCount = 0;
+                for (int r = 0; r < aTo - aFrom; r++) {
+                    final int i = aFrom + r;
+                    for (int k = anUpper.getRowStart(r);
+                            k < anUpper.getRowEnd(r); k++) {
+                        final int j = anUpper.getColumn(k);
+                        theTarget.set(i, j, anUpper.getLongValue(k));
+                        aCount++;
+                        if (j != i) {
+                            theTarget.set(j, i, anUpper.getLongValue(k));
+                            aCount++;
+                        }//END if
+                    }//END for (INDEX k)
+                }//END for (INDEX r)
+
+                someNonZeros[theBlock] = aCount;
+                countRows(aTo - aFrom);
+            }//END run() METHOD
+        });
+
+        long aNonZeros = 0;
+        for (final long aCount : someNonZeros) {
+            aNonZeros += aCount;
+        }//END for
+
+        return aNonZeros;
+    }//END computeInto() METHOD
+
+    /**
+     * Method to compute LLt for the dense matrix passed to the constructor
+     *  and return it as a 2D integer array.
+     *
+     * @return myDenseLLt A 2D integer array containing the values of LLt.
+     */
+    public int[][] getDenseLLt() {
+        this.computeLLt();
+
+        return myDenseLLt;
+    }//END getDenseLLt() METHOD
+
+    /**
+     * Method to compute one tile of LLt for the sparse matrix passed to the
+     *  constructor: every entry (i, j) with i in the row range and j in the
+     *  column range.  The ranges must either be the same or not overlap.
+     *  Only the tile is held, so LLt can be computed tile by tile when it
+     *  is too large to hold at once.
+     *
+     * @param theRowFrom The first row of the tile.
+     * @param theRowTo The row just past the end of the tile.
+     * @param theColFrom The first column of the tile.
+     * @param theColTo The column just past the end of the tile.
+     * @return A sparse matrix holding the rows of the tile, with their
+     *  columns numbered as in LLt.
+     */
+    public SparseMatrix computeTile(final int theRowFrom, final int theRowTo,
+                                    final int theColFrom, final int theColTo) {
+        if (mySparseL == null) {
+            throw new IllegalStateException("Tiles need a sparse L");
+        }//END if
+        checkNarrow();
+
+        final SparseMatrix aTile;
+        if (theColFrom >= theRowTo) {
+            final SparseMatrixBuilder aBuilder;
+            aBuilder = new SparseMatrixBuilder(myRowCnt);
+            addUpperRows(theRowFrom, theRowTo, theColFrom, theColTo, aBuilder);
+            aTile = aBuilder.build();
+        } else if (theColTo <= theRowFrom) {
+            aTile = transposeTile(computeTile(theColFrom, theColTo,
+                                              theRowFrom, theRowTo),
+                                  theRowFrom, theRowTo, theColFrom);
+        } else if (theColFrom == theRowFrom && theColTo == theRowTo) {
+            final SparseMatrixBuilder aBuilder;
+            aBuilder = new SparseMatrixBuilder(myRowCnt);
+            addUpperRows(theRowFrom, theRowTo, theColFrom, theColTo, aBuilder);
+            aTile = shiftColumns(symmetrize(shiftColumns(aBuilder.build(),
+                    -theColFrom, theColTo - theColFrom)), theColFrom,
+                    myRowCnt);
+        } else {
+            throw new IllegalArgumentException("Tile ranges must be the same"
+                                               + " or not overlap");
+        }//END if
+
+        return aTile;
+    }//END computeTile() METHOD
+
+    /**
+     * Package private helper to compute the upper triangle entries (i, j),
+     *  j &gt;= i, for one block of rows i and a range of columns j, and
+     *  append them to a builder, one row at a time with increasing columns.
+     *  Each entry is summed in a long, so it is right even when it is past
+     *  the integer range.
+     *
+     * @param theFrom The first row of the block.
+     * @param theTo The row just past the end of the block.
+     * @param theColFrom The first column, no less than theFrom.
+     * @param theColTo The column just past the end of the range.
+     * @param theUpper The builder the upper triangle rows are appended to.
+     */
+    void addUpperRows(final int theFrom, final int theTo,
+                      final int theColFrom, final int theColTo,
+                      final SparseMatrixBuilder theUpper) {
+        final int[] aPtr = mySparseL.rowPtr();
+        final int[] aCols = mySparseL.colIdx();
+        final int[] aVals = mySparseVals;
+        final int aBlockRows = theTo - theFrom;
+
+        // Entries of the block, in tile order, with their local row.
+        int[] aRowOf = new int[BLOCK_SIZE];
+        int[] aColOf = new int[BLOCK_SIZE];
+        long[] aValOf = new long[BLOCK_SIZE];
+        int aCount = 0;
+
+        final int[] aScatter = new int[myColCnt];
+        for (int bj = theColFrom; bj < theColTo; bj += BLOCK_SIZE) {
+            final int aTileEnd = Math.min(bj + BLOCK_SIZE, theColTo);
+
+            for (int i = theFrom; i < theTo; i++) {
+                final int aStart = aPtr[i];
+                final int anEnd = aPtr[i + 1];
+                if (aStart == anEnd) {
+                    continue;
+                }//END if
+
+                for (int p = aStart; p < anEnd; p++) {
+                    aScatter[aCols[p]] = aVals[p];
+                }//END for (INDEX p)
+
+                for (int j = Math.max(i, bj); j < aTileEnd; j++) {
+                    long sum = 0;
+                    for (int q = aPtr[j]; q < aPtr[j + 1]; q++) {
+                        sum += (long) aScatter[aCols[q]] * aVals[q];
+                    }//END for (INDEX q)
+
+                    if (sum != 0) {
+                        if (aCount == aRowOf.length) {
+                            final int aSize = aCount + (aCount >> 1);
+                            aRowOf = Arrays.copyOf(aRowOf, aSize);
+                            aColOf = Arrays.copyOf(aColOf, aSize);
+                            aValOf = Arrays.copyOf(aValOf, aSize);
+                        }//END if
+                        aRowOf[aCount] = i - theFrom;
+                        aColOf[aCount] = j;
+                        aValOf[aCount] = sum;
+                        aCount++;
+                    }//END if
+                }//END for (INDEX j)
+
+                for (int p = aStart; p < anEnd; p++) {
+                    aScatter[aCols[p]] = 0;
+                }//END for (INDEX p)
+            }//END for (INDEX i)
+        }//END for (INDEX bj)
+
+        // Stable counting sort by row; tiles were visited in column order.
+        final int[] aRowPtr = new int[aBlockRows + 1];
+        for (int k = 0; k < aCount; k++) {
+            aRowPtr[aRowOf[k] + 1]++;
+        }//END for (INDEX k)
+        for (int r = 0; r < aBlockRows; r++) {
+            aRowPtr[r + 1] += aRowPtr[r];
+        }//END for (INDEX r)
+
+        final int[] aCursor = Arrays.copyOf(aRowPtr, aBlockRows);
+        final int[] aSortedCols = new int[aCount];
+        final long[] aSortedVals = new long[aCount];
+        for (int k = 0; k < aCount; k++) {
+            final int aPos = aCursor[aRowOf[k]]++;
+            aSortedCols[aPos] = aColOf[k];
+            aSortedVals[aPos] = aValOf[k];
+        }//END for (INDEX k)
+
+        for (int r = 0; r < aBlockRows; r++) {
+            theUpper.addRow(aSortedCols, aSortedVals, aRowPtr[r],
+                            aRowPtr[r + 1]);
+        }//END for (INDEX r)
+    }//END addUpperRows() METHOD
+
+    /**
+     * Package private helper to expand a square upper triangular matrix into
+     *  the full symmetric matrix by mirroring each off-diagonal entry, with
+     *  its values packed as narrow as they fit.
+     *
+     * @param theUpper A sparse matrix holding only entries with j &gt;= i.
+     * @return A sparse matrix holding the full symmetric matrix.
+     */
+    static SparseMatrix symmetrize(final SparseMatrix theUpper) {
+        final int aRows = theUpper.getRowCount();
+        final int[] uPtr = theUpper.rowPtr();
+        final int[] uCols = theUpper.colIdx();
+
+        // Each row holds its mirrored (lower) entries, then its upper ones.
+        final int[] aLowerCnt = new int[aRows];
+        for (int k = 0; k < uPtr[aRows]; k++) {
+            aLowerCnt[uCols[k]]++;
+        }//END for (INDEX k)
+        for (int i = 0; i < aRows; i++) {
+            if (uPtr[i] < uPtr[i + 1] && uCols[uPtr[i]] == i) {
+                aLowerCnt[i]--;
+            }//END if
+        }//END for (INDEX i)
+
+        final int[] aPtr = new int[aRows + 1];
+        for (int i = 0; i < aRows; i++) {
+            aPtr[i + 1] = aPtr[i] + aLowerCnt[i] + uPtr[i + 1] - uPtr[i];
+        }//END for (INDEX i)
+
+        // The values are written straight into the narrowest array they fit.
+        long aMin = 0;
+        long aMax = 0;
+        for (int k = 0; k < uPtr[aRows]; k++) {
+            aMin = Math.min(aMin, theUpper.getLongValue(k));
+            aMax = Math.max(aMax, theUpper.getLongValue(k));
+        }//END for (INDEX k)
+        final int aWidth = SparseMatrix.widthFor(aMin, aMax);
+        byte[] someBytes = null;
+        short[] someShorts = null;
+        int[] someInts = null;
+        long[] someLongs = null;
+        if (aWidth == Byte.BYTES) {
+            someBytes = new byte[aPtr[aRows]];
+        } else if (aWidth == Short.BYTES) {
+            someShorts = new short[aPtr[aRows]];
+        } else if (aWidth == Integer.BYTES) {
+            someInts = new int[aPtr[aRows]];
+        } else {
+            someLongs = new long[aPtr[aRows]];
+        }//END if
+
+        final int[] aCols = new int[aPtr[aRows]];
+        final int[] aLowerCursor = Arrays.copyOf(aPtr, aRows);
+        for (int i = 0; i < aRows; i++) {
+            int aPos = aPtr[i] + aLowerCnt[i];
+            for (int k = uPtr[i]; k < uPtr[i + 1]; k++) {
+                final int j = uCols[k];
+                final long aValue = theUpper.getLongValue(k);
+                aCols[aPos] = j;
+                putValue(someBytes, someShorts, someInts, someLongs, aPos,
+                         aValue);
+                aPos++;
+
+                if (j != i) {
+                    final int aMirror = aLowerCursor[j]++;
+                    aCols[aMirror] = i;
+                    putValue(someBytes, someShorts, someInts, someLongs,
+                             aMirror, aValue);
+                }//END if
+            }//END for (INDEX k)
+        }//END for (INDEX i)
+
+        final SparseMatrix aFull;
+        if (someBytes != null) {
+            aFull = new SparseMatrix(aRows, aRows, aPtr, aCols, someBytes);
+        } else if (someShorts != null) {
+            aFull = new SparseMatrix(aRows, aRows, aPtr, aCols, someShorts);
+        } else if (someInts != null) {
+            aFull = new SparseMatrix(aRows, aRows, aPtr, aCols, someInts);
+        } else {
+            aFull = new SparseMatrix(aRows, aRows, aPtr, aCols, someLongs);
+        }//END if
+
+        return aFull;
+    }//END symmetrize() METHOD
+
+    /**
+     * Package private helper to return the largest sum of squares of a row
+     *  of L, which by the Cauchy-Schwarz inequality bounds every entry of
+     *  LLt and every partial sum of one.
+     *
+     * @param theL A sparse matrix holding the values of L.
+     * @return aMax The largest sum of squares.
+     * @throws ArithmeticException If a sum of squares is past the long
+     *  range.
+     */
+    static long maxSquares(final SparseMatrix theL) {
+        long aMax = 0;
+        for (int i = 0; i < theL.getRowCount(); i++) {
+            long aSquares = 0;
+            for (int k = theL.getRowStart(i); k < theL.getRowEnd(i); k++) {
+                final long aValue = theL.getValue(k);
+                aSquares = Math.addExact(aSquares, aValue * aValue);
+            }//END for (INDEX k)
+            aMax = Math.max(aMax, aSquares);
+        }//END for (INDEX i)
+
+        return aMax;
+    }//END maxSquares() METHOD
+
+    /**
+     * Private helper to throw if entries of LLt could pass the integer
+     *  range, for the ways of computing LLt which hold integers.
+     *
+     * @throws IllegalStateException If entries could pass the range.
+     */
+    private void checkNarrow() {
+        if (myIsWide) {
+            throw new IllegalStateException("Entries of LLt could pass the"
+                                            + " integer range, so LLt can"
+                                            + " only be computed whole or"
+                                            + " off the heap");
+        }//END if
+    }//END checkNarrow() METHOD
+
+    /**
+     * Private helper to check that no entry of LLt can exceed the integer
+     *  range, for a dense L.
+     *
+     * @param theL A 2D integer array holding the values of L.
+     * @throws IllegalStateException If the entries of LLt could overflow.
+     */
+    private static void checkRange(final int[][] theL) {
+        for (int i = 0; i < theL.length; i++) {
+            long aSquares = 0;
+            for (final int aValue : theL[i]) {
+                aSquares += (long) aValue * aValue;
+                checkSquares(i, aSquares);
+            }//END for
+        }//END for (INDEX i)
+    }//END checkRange() METHOD
+
+    /**
+     * Private helper to throw if the sum of squares of a row of L is past
+     *  the integer range.
+     *
+     * @param theRow The row of L.
+     * @param theSquares The sum of squares of the row so far.
+     * @throws IllegalStateException If the sum is past the integer range.
+     */
+    private static void checkSquares(final int theRow, final long theSquares) {
+        if (theSquares > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Entries of LLt could overflow:"
+                                            + " row " + theRow + " of L has"
+                                            + " sum of squares past "
+                                            + Integer.MAX_VALUE);
+        }//END if
+    }//END checkSquares() METHOD
+
+    /**
+     * Private helper to write a value into whichever of the arrays is held.
+     *
+     * @param theBytes Byte array of values, or null.
+     * @param theShorts Short array of values, or null.
+     * @param theInts Integer array of values, or null.
+     * @param theLongs Long array of values, or null.
+     * @param thePos The position written.
+     * @param theValue The value, fitting the array held.
+     */
+    private static void putValue(final byte[] theBytes,
+                                 final short[] theShorts,
+                                 final int[] theInts, final long[] theLongs,
+                                 final int thePos, final long theValue) {
+        if (theBytes != null) {
+            theBytes[thePos] = (byte) theValue;
+        } else if (theShorts != null) {
+            theShorts[thePos] = (short) theValue;
+        } else if (theInts != null) {
+            theInts[thePos] = (int) theValue;
+        } else {
+            theLongs[thePos] = theValue;
+        }//END if
+    }//END putValue() METHOD
+
+    /**
+     * Package private method to transpose a tile of LLt, giving the tile
+     *  with its row and column ranges swapped.
+     *
+     * @param theTile The tile to transpose, with its columns numbered as
+     *  in LLt.
+     * @param theColFrom The first column of the tile.
+     * @param theColTo The column just past the end of the tile.
+     * @param theRowFrom The first row of the tile.
+     * @return The transposed tile, with its columns numbered as in LLt.
+     */
+    static SparseMatrix transposeTile(final SparseMatrix theTile,
+                                      final int theColFrom,
+                                      final int theColTo,
+                                      final int theRowFrom) {
+        final SparseMatrix aLocal = shiftColumns(theTile, -theColFrom,
+                                                 theColTo - theColFrom);
+
+        return shiftColumns(new MatTranspose(aLocal).getSparseLt(),
+                            theRowFrom, theTile.getColCount());
+    }//END transposeTile() METHOD
+
+    /**
+     * Private helper to copy a matrix with every column index moved by the
+     *  same amount.
+     *
+     * @param theMatrix The matrix to copy.
+     * @param theShift The amount added to each column index.
+     * @param theCols The number of columns of the copy.
+     * @return The copy with its columns moved.
+     */
+    private static SparseMatrix shiftColumns(final SparseMatrix theMatrix,
+                                             final int theShift,
+                                             final int theCols) {
+        final int[] someCols = theMatrix.colIdx().clone();
+        for (int k = 0; k < someCols.length; k++) {
+            someCols[k] += theShift;
+        }//END for (INDEX k)
+
+        return theMatrix.withColumns(theCols, someCols);
+    }//END shiftColumns() METHOD
+
+    /**
+     * Private helper to compute LLt for a dense L, tiling over row blocks
+     *  and column blocks and filling the lower triangle from the upper one.
+     */
+    private void computeDenseLLt() {
+        myDenseLLt = new int[myRowCnt][myRowCnt];
+        final int[] aFlatL = DenseKernel.flatten(myDenseL, myColCnt);
+
+        final int aBlocks = (myRowCnt + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        ChunkTask.runAll(myPool, aBlocks, new ChunkTask.Body() {
+            @Override
+            public void run(final int theBlock) {
+                final int aFrom = theBlock * BLOCK_SIZE;
+
+                addDenseUpperRows(aFlatL, aFrom);
+                countRows(Math.min(BLOCK_SIZE, myRowCnt - aFrom));
+            }//END run() METHOD
+        });
+
+        for (int i = 0; i < myRowCnt; i++) {
+            for (int j = i + 1; j < myRowCnt; j++) {
+                myDenseLLt[j][i] = myDenseLLt[i][j];
+            }//END for (INDEX j)
+        }//END for (INDEX i)
+    }//END computeDenseLLt() METHOD
+
+    /**
+     * Private helper to compute the upper triangle entries of one block of
+     *  rows of a dense LLt, tiling over column blocks of L, with the
+     *  register blocked kernel.
+     *
+     * @param theFlatL The values of L, flat in row-major order.
+     * @param ii The first row of the block.
+     */
+    private void addDenseUpperRows(final int[] theFlatL, final int ii) {
+        final int iEnd = Math.min(ii + BLOCK_SIZE, myRowCnt);
+
+        for (int jj = ii; jj < myRowCnt; jj += BLOCK_SIZE) {
+            final int jEnd = Math.min(jj + BLOCK_SIZE, myRowCnt);
+
+            for (int kk = 0; kk < myColCnt; kk += DENSE_COL_BLOCK) {
+                final int kEnd = Math.min(kk + DENSE_COL_BLOCK, myColCnt);
+
+                DenseKernel.addDots(theFlatL, theFlatL, myColCnt, ii, iEnd,
+                                    jj, jEnd, kk, kEnd, myDenseLLt, true);
+            }//END for (INDEX kk)
+        }//END for (INDEX jj)
+    }//END addDenseUpperRows() METHOD
+
+    /**
+     * Private helper to advance the progress counter, if there is one.
+     *
+     * @param theRows The number of rows just done.
+     */
+    private void countRows(final int theRows) {
+        if (myRowsDone != null) {
+            myRowsDone.addAndGet(theRows);
+        }//END if
+    }//END countRows() METHOD
+
+}//END LLtMaker.java CLASS
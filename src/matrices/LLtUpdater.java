@@ -0,0 +1,303 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Class with methods to update a previously computed L and LLt when words
+ *  are removed and appended, without recomputing LLt from scratch.  The rows
+ *  of the words kept stay in their order, followed by the rows of the words
+ *  appended.  Entries of LLt between two kept words are copied from the old
+ *  LLt; only the rows of the appended words are computed, each as the dot
+ *  products of its row of L with every row of the updated L, found through
+ *  the transpose of L so that only rows sharing an N-gram are visited.  The
+ *  columns of the appended words are then filled in by symmetry.  The new
+ *  entries are summed in longs, and an old LLt held in longs is read as
+ *  such, so entries past the integer range come out right.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.5
+ */
+public class LLtUpdater {
+
+    /** Constant for the number of appended rows in each chunk of work. */
+    private static final int CHUNK_ROWS = 256;
+
+    /** Sparse matrix holding the L matrix being updated. */
+    private final SparseMatrix myOldL;
+
+    /** Sparse matrix holding the LLt matrix being updated. */
+    private final SparseMatrix myOldLLt;
+
+    /** The pool used to compute the new rows, or null to compute serially. */
+    private final ForkJoinPool myPool;
+
+    /** Sparse matrix holding the updated L matrix. */
+    private SparseMatrix myL;
+
+    /** Sparse matrix holding the updated LLt matrix. */
+    private SparseMatrix myLLt;
+
+
+    /**
+     * Specifies the L and LLt matrices to update.
+     *
+     * @param theL A sparse matrix holding the values of L.
+     * @param theLLt A sparse matrix holding the values of LLt for that L.
+     * @param thePool The pool to compute on, or null to compute serially.
+     */
+    public LLtUpdater(final SparseMatrix theL, final SparseMatrix theLLt,
+                      final ForkJoinPool thePool) {
+        if (theLLt.getRowCount() != theL.getRowCount()
+                || theLLt.getColCount() != theL.getRowCount()) {
+            throw new IllegalArgumentException("LLt is not square with one"
+                                               + " row for each row of L");
+        }//END if
+
+        myOldL = theL;
+        myOldLLt = theLLt;
+        myPool = thePool;
+
+        myL = null;
+        myLLt = null;
+    }//END constructor
+
+
+    /**
+     * Method to remove the rows marked and append the passed rows, updating
+     *  L and LLt.
+     *
+     * @param theRemoved Boolean array marking each row of the old L which is
+     *  removed.
+     * @param theAdded A sparse matrix holding the rows of L to append, with
+     *  the same columns as the old L.
+     */
+    public void update(final boolean[] theRemoved,
+                       final SparseMatrix theAdded) {
+        final int anOldRows = myOldL.getRowCount();
+        final int aCols = myOldL.getColCount();
+        if (theRemoved.length != anOldRows || theAdded.getColCount() != aCols) {
+            throw new IllegalArgumentException("Rows removed or appended do"
+                                               + " not match L");
+        }//END if
+
+        // Number the kept rows in order, then the appended ones after them.
+        final int[] aRemap = new int[anOldRows];
+        int aKept = 0;
+        for (int i = 0; i < anOldRows; i++) {
+            aRemap[i] = -1;
+            if (!theRemoved[i]) {
+                aRemap[i] = aKept++;
+            }//END if
+        }//END for (INDEX i)
+
+        final SparseMatrixBuilder aBuilder = new SparseMatrixBuilder(aCols);
+        final int[] someCols = myOldL.colIdx();
+        final int[] someVals = myOldL.values();
+        for (int i = 0; i < anOldRows; i++) {
+            if (!theRemoved[i]) {
+                aBuilder.addRow(someCols, someVals, myOldL.getRowStart(i),
+                                myOldL.getRowEnd(i));
+            }//END if
+        }//END for (INDEX i)
+        aBuilder.addRows(theAdded);
+        myL = aBuilder.build().pack();
+
+        final SparseMatrix aNewRows = newRows(aKept, theAdded);
+        final SparseMatrix aNewCols = new MatTranspose(aNewRows).getSparseLt();
+
+        myLLt = assemble(aRemap, aKept, aNewRows, aNewCols).pack();
+    }//END update() METHOD
+
+    /**
+     * Method to return the updated L matrix.
+     *
+     * @return myL A sparse matrix containing the values of the updated L,
+     *  or null if update() has not been called.
+     */
+    public SparseMatrix getL() {
+        return myL;
+    }//END getL() METHOD
+
+    /**
+     * Method to return the updated LLt matrix.
+     *
+     * @return myLLt A sparse matrix containing the values of the updated LLt,
+     *  or null if update() has not been called.
+     */
+    public SparseMatrix getLLt() {
+        return myLLt;
+    }//END getLLt() METHOD
+
+    /**
+     * Private helper to compute the rows of the updated LLt for the appended
+     *  words, in chunks on the pool.
+     *
+     * @param theKept The number of rows kept from the old L.
+     * @param theAdded The rows of L appended.
+     * @return The rows of LLt for the appended words, over every column.
+     */
+    private SparseMatrix newRows(final int theKept,
+                                 final SparseMatrix theAdded) {
+        final int anAdded = theAdded.getRowCount();
+        final int aRows = myL.getRowCount();
+        final SparseMatrix aLt = new MatTranspose(myL).getSparseLt();
+        final int[] someAddedVals = theAdded.values();
+        final int[] someLtVals = aLt.values();
+
+        final int aChunks = (anAdded + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        final SparseMatrix[] aParts = new SparseMatrix[aChunks];
+        ChunkTask.runAll(myPool, aChunks, new ChunkTask.Body() {
+            @Override
+            public void run(final int theChunk) {
+                final int aFrom = theChunk * CHUNK_ROWS;
+                final int aTo = Math.min(aFrom + CHUNK_ROWS, anAdded);
+                final SparseMatrixBuilder aPart = new SparseMatrixBuilder(aRows);
+
+                addNewRows(aLt, someLtVals, theAdded, someAddedVals, aFrom,
+                           aTo, aPart);
+                aParts[theChunk] = aPart.build();
+            }//END run() METHOD
+        });
+
+        final SparseMatrixBuilder aBuilder = new SparseMatrixBuilder(aRows);
+        for (int c = 0; c < aChunks; c++) {
+            aBuilder.addRows(aParts[c]);
+        }//END for (INDEX c)
+
+        return aBuilder.build();
+    }//END newRows() METHOD
+
+    /**
+     * Private helper to compute the rows of LLt for a range of appended
+     *  words.  Each entry of a row of L is scattered along the matching row
+     *  of the transpose, so only the rows sharing an N-gram are touched.
+     *
+     * @param theLt The transpose of the updated L.
+     * @param theLtVals The values of theLt, fetched once for every chunk.
+     * @param theAdded The rows of L appended.
+     * @param theAddedVals The values of theAdded, fetched once.
+     * @param theFrom The first appended row.
+     * @param theTo The appended row just past the range.
+     * @param theBuilder The builder the rows of LLt are appended to.
+     */
+    private void addNewRows(final SparseMatrix theLt, final int[] theLtVals,
+                            final SparseMatrix theAdded,
+                            final int[] theAddedVals, final int theFrom,
+                            final int theTo,
+                            final SparseMatrixBuilder theBuilder) {
+        final int aRows = myL.getRowCount();
+        final int[] aPtr = theAdded.rowPtr();
+        final int[] aCols = theAdded.colIdx();
+        final int[] aVals = theAddedVals;
+        final int[] tPtr = theLt.rowPtr();
+        final int[] tCols = theLt.colIdx();
+        final int[] tVals = theLtVals;
+
+        final long[] anAcc = new long[aRows];
+        final boolean[] isSeen = new boolean[aRows];
+        int[] aTouched = new int[CHUNK_ROWS];
+        long[] aRowVals = new long[CHUNK_ROWS];
+
+        for (int a = theFrom; a < theTo; a++) {
+            int aCount = 0;
+            for (int k = aPtr[a]; k < aPtr[a + 1]; k++) {
+                final int aValue = aVals[k];
+                final int aCol = aCols[k];
+                for (int t = tPtr[aCol]; t < tPtr[aCol + 1]; t++) {
+                    final int j = tCols[t];
+                    if (!isSeen[j]) {
+                        isSeen[j] = true;
+                        if (aCount == aTouched.length) {
+                            aTouched = Arrays.copyOf(aTouched, 2 * aCount);
+                        }//END if
+                        aTouched[aCount++] = j;
+                    }//END if
+                    anAcc[j] += (long) aValue * tVals[t];
+                }//END for (INDEX t)
+            }//END for (INDEX k)
+
+            Arrays.sort(aTouched, 0, aCount);
+            if (aRowVals.length < aCount) {
+                aRowVals = new long[aTouched.length];
+            }//END if
+
+            int aNonZeros = 0;
+            for (int k = 0; k < aCount; k++) {
+                final int j = aTouched[k];
+                if (anAcc[j] != 0) {
+                    aTouched[aNonZeros] = j;
+                    aRowVals[aNonZeros] = anAcc[j];
+                    aNonZeros++;
+                }//END if
+                anAcc[j] = 0;
+                isSeen[j] = false;
+            }//END for (INDEX k)
+
+            theBuilder.addRow(aTouched, aRowVals, 0, aNonZeros);
+        }//END for (INDEX a)
+    }//END addNewRows() METHOD
+
+    /**
+     * Private helper to assemble the updated LLt.  Each kept row is its old
+     *  row with the removed columns dropped and the rest renumbered, then
+     *  its entries with the appended words; each appended row was computed
+     *  whole.
+     *
+     * @param theRemap Integer array giving the new index of each old row,
+     *  or -1 for a removed row.
+     * @param theKept The number of rows kept.
+     * @param theNewRows The rows of LLt for the appended words.
+     * @param theNewCols The transpose of theNewRows.
+     * @return The updated LLt.
+     */
+    private SparseMatrix assemble(final int[] theRemap, final int theKept,
+                                  final SparseMatrix theNewRows,
+                                  final SparseMatrix theNewCols) {
+        final int aRows = myL.getRowCount();
+        final SparseMatrixBuilder aBuilder = new SparseMatrixBuilder(aRows);
+        int[] someCols = new int[CHUNK_ROWS];
+        long[] someVals = new long[CHUNK_ROWS];
+
+        for (int i = 0; i < theRemap.length; i++) {
+            final int aNew = theRemap[i];
+            if (aNew >= 0) {
+                final int aStart = myOldLLt.getRowStart(i);
+                final int anEnd = myOldLLt.getRowEnd(i);
+                final int aNewStart = theNewCols.getRowStart(aNew);
+                final int aNewEnd = theNewCols.getRowEnd(aNew);
+
+                final int aMost = anEnd - aStart + aNewEnd - aNewStart;
+                if (aMost > someCols.length) {
+                    someCols = new int[aMost];
+                    someVals = new long[aMost];
+                }//END if
+
+                int aCount = 0;
+                for (int k = aStart; k < anEnd; k++) {
+                    final int aCol = theRemap[myOldLLt.getColumn(k)];
+                    if (aCol >= 0) {
+                        someCols[aCount] = aCol;
+                        someVals[aCount] = myOldLLt.getLongValue(k);
+                        aCount++;
+                    }//END if
+                }//END for (INDEX k)
+                for (int k = aNewStart; k < aNewEnd; k++) {
+                    someCols[aCount] = theKept + theNewCols.getColumn(k);
+                    someVals[aCount] = theNewCols.getLongValue(k);
+                    aCount++;
+                }//END for (INDEX k)
+
+                aBuilder.addRow(someCols, someVals, 0, aCount);
+            }//END if
+        }//END for (INDEX i)
+
+        aBuilder.addRows(theNewRows);
+
+        return aBuilder.build();
+    }//END assemble() METHOD
+
+}//END LLtUpdater.java CLASS
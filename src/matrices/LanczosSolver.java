@@ -0,0 +1,518 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class with methods to find the largest eigenvalues of LLt, and their
+ *  eigenvectors, by the Lanczos method without ever forming LLt.  LLt is
+ *  only ever applied to a vector, as L times (L transpose times the
+ *  vector), through the rows of L and of its transpose, so the work and
+ *  memory of each product follow the non-zero entries of L.  Both halves
+ *  of each product are split into chunks of rows run on the pool.  The
+ *  values of L and of its transpose are fetched once, so no product
+ *  widens a packed L again.
+ *
+ * <p>Each new Lanczos vector is orthogonalized against every earlier one,
+ *  twice, so the basis stays orthogonal in floating point and no spurious
+ *  copies of converged eigenvalues appear.  The eigenpairs of the small
+ *  tridiagonal matrix the method builds are found by the implicit QL
+ *  method.  When the wanted eigenpairs have not converged, the method is
+ *  run again from the same start with a basis twice as large, up to the
+ *  largest basis allowed.</p>
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.2
+ */
+public class LanczosSolver {
+
+    /** Constant for the number of rows in each chunk of a product. */
+    private static final int CHUNK_ROWS = 4096;
+
+    /** Constant for the smallest basis the method starts with. */
+    private static final int MIN_BASIS = 20;
+
+    /** Constant for the relative size below which a vector is zero. */
+    private static final double BREAKDOWN = 1e-12;
+
+    /** Sparse matrix holding the values of L. */
+    private final SparseMatrix myL;
+
+    /** Sparse matrix holding the transpose of L. */
+    private final SparseMatrix myLt;
+
+    /** Integer array holding the values of L, widened if packed. */
+    private final int[] myLVals;
+
+    /** Integer array holding the values of the transpose of L. */
+    private final int[] myLtVals;
+
+    /** The pool the products are computed on, or null to compute serially. */
+    private final ForkJoinPool myPool;
+
+    /** Double array holding the eigenvalues found, largest first. */
+    private double[] myValues;
+
+    /** Double arrays holding the eigenvector of each eigenvalue found. */
+    private double[][] myVectors;
+
+    /** Boolean indicating if every eigenpair found has converged. */
+    private boolean myConverged;
+
+    /** Integer representing the size of the last basis built. */
+    private int myBasisSize;
+
+    /** The number of products with LLt computed so far. */
+    private final AtomicLong myProducts;
+
+
+    /**
+     * Allows the eigenpairs of LLt to be found for the passed sparse L.
+     *
+     * @param theL A sparse matrix holding the values of L.
+     * @param thePool The pool to compute on, or null to compute serially.
+     */
+    public LanczosSolver(final SparseMatrix theL, final ForkJoinPool thePool) {
+        myL = theL;
+        myLt = new MatTranspose(theL).getSparseLt();
+        myLVals = theL.values();
+        myLtVals = myLt.values();
+        myPool = thePool;
+
+        myValues = new double[0];
+        myVectors = new double[0][];
+        myConverged = false;
+        myBasisSize = 0;
+        myProducts = new AtomicLong();
+    }//END constructor
+
+
+    /**
+     * Method to find the largest eigenvalues of LLt and their eigenvectors.
+     *
+     * @param theCount The number of eigenpairs wanted.
+     * @param theMaxBasis The largest basis to build, which bounds the
+     *  memory used to that many vectors of one value per row of L.
+     * @param theTolerance The largest residual, relative to the largest
+     *  eigenvalue, of an eigenpair counted as converged.
+     * @param theSeed The seed of the random start vector.
+     */
+    public void solve(final int theCount, final int theMaxBasis,
+                      final double theTolerance, final long theSeed) {
+        final int aRows = myL.getRowCount();
+        if (theCount < 1 || theCount > aRows || theMaxBasis < theCount) {
+            throw new IllegalArgumentException("Need 1 <= count <= rows and"
+                                               + " a basis of at least count");
+        }//END if
+
+        int aBasis = Math.min(Math.min(aRows, theMaxBasis),
+                              Math.max(2 * theCount, MIN_BASIS));
+        while (true) {
+            run(theCount, aBasis, theTolerance, theSeed);
+            if (myConverged || aBasis >= Math.min(aRows, theMaxBasis)) {
+                break;
+            }//END if
+            aBasis = Math.min(Math.min(aRows, theMaxBasis), 2 * aBasis);
+        }//END while LOOP
+    }//END solve() METHOD
+
+    /**
+     * Method to return the eigenvalues found, largest first.
+     *
+     * @return A copy of the eigenvalues.
+     */
+    public double[] getEigenvalues() {
+        return myValues.clone();
+    }//END getEigenvalues() METHOD
+
+    /**
+     * Method to return the eigenvectors found, each of unit length with one
+     *  value per row of L, in the order of the eigenvalues.
+     *
+     * @return myVectors The eigenvectors, not copies.
+     */
+    public double[][] getEigenvectors() {
+        return myVectors;
+    }//END getEigenvectors() METHOD
+
+    /**
+     * Method to return whether every eigenpair found met the tolerance.
+     *
+     * @return myConverged True if the eigenpairs converged.
+     */
+    public boolean isConverged() {
+        return myConverged;
+    }//END isConverged() METHOD
+
+    /**
+     * Method to return the size of the last basis built.
+     *
+     * @return myBasisSize The number of Lanczos vectors.
+     */
+    public int getBasisSize() {
+        return myBasisSize;
+    }//END getBasisSize() METHOD
+
+    /**
+     * Method to return the number of products with LLt computed, the main
+     *  cost of the method.
+     *
+     * @return The number of products.
+     */
+    public long getProductCount() {
+        return myProducts.get();
+    }//END getProductCount() METHOD
+
+    /**
+     * Method to apply LLt to a vector, as L times (L transpose times it).
+     *
+     * @param theX Double array holding the vector, one value per row of L.
+     * @param theY Double array receiving LLt times the vector.
+     */
+    public void apply(final double[] theX, final double[] theY) {
+        final double[] aZ = new double[myL.getColCount()];
+
+        multiply(myLt, myLtVals, theX, aZ);
+        multiply(myL, myLVals, aZ, theY);
+        myProducts.incrementAndGet();
+    }//END apply() METHOD
+
+    /**
+     * Private helper to build a basis of the passed size and take the
+     *  eigenpairs of its tridiagonal matrix.
+     *
+     * @param theCount The number of eigenpairs wanted.
+     * @param theBasis The size of the basis to build.
+     * @param theTolerance The largest relative residual of a converged pair.
+     * @param theSeed The seed of the random start vector.
+     */
+    private void run(final int theCount, final int theBasis,
+                     final double theTolerance, final long theSeed) {
+        final int aRows = myL.getRowCount();
+        final Random aRandom = new Random(theSeed);
+        final double[][] aBasis = new double[theBasis][];
+        final double[] anAlpha = new double[theBasis];
+        final double[] aBeta = new double[theBasis];
+
+        aBasis[0] = randomUnit(aRandom, aBasis, 0);
+        double aScale = 0;
+        double aLastBeta = 0;
+        for (int j = 0; j < theBasis; j++) {
+            final double[] aW = new double[aRows];
+            apply(aBasis[j], aW);
+
+            anAlpha[j] = dot(aBasis[j], aW);
+            axpy(-anAlpha[j], aBasis[j], aW);
+            if (j > 0) {
+                axpy(-aBeta[j - 1], aBasis[j - 1], aW);
+            }//END if
+            orthogonalize(aW, aBasis, j + 1);
+            orthogonalize(aW, aBasis, j + 1);
+
+            final double aNorm = Math.sqrt(dot(aW, aW));
+            aScale = Math.max(aScale, Math.abs(anAlpha[j]) + aNorm);
+            aLastBeta = aNorm;
+            if (j + 1 < theBasis) {
+                if (aNorm > BREAKDOWN * aScale) {
+                    scale(1 / aNorm, aW);
+                    aBeta[j] = aNorm;
+                    aBasis[j + 1] = aW;
+                } else {
+                    // An invariant subspace was found; start a fresh one.
+                    aBeta[j] = 0;
+                    aBasis[j + 1] = randomUnit(aRandom, aBasis, j + 1);
+                }//END if
+            }//END if
+        }//END for (INDEX j)
+
+        // Eigenpairs of the tridiagonal matrix, in increasing order.
+        final double[] aDiag = anAlpha.clone();
+        final double[] anOff = new double[theBasis];
+        for (int i = 1; i < theBasis; i++) {
+            anOff[i] = aBeta[i - 1];
+        }//END for (INDEX i)
+        final double[][] aZ = new double[theBasis][theBasis];
+        for (int i = 0; i < theBasis; i++) {
+            aZ[i][i] = 1;
+        }//END for (INDEX i)
+        tql2(aDiag, anOff, aZ);
+
+        myBasisSize = theBasis;
+        myValues = new double[theCount];
+        myVectors = new double[theCount][];
+        myConverged = true;
+        final double aLargest = Math.max(Math.abs(aDiag[theBasis - 1]),
+                                         Math.abs(aDiag[0]));
+        for (int p = 0; p < theCount; p++) {
+            final int aCol = theBasis - 1 - p;
+            myValues[p] = aDiag[aCol];
+
+            final double aResidual = Math.abs(aLastBeta
+                                              * aZ[theBasis - 1][aCol]);
+            if (theBasis < aRows
+                    && aResidual > theTolerance * Math.max(aLargest, 1)) {
+                myConverged = false;
+            }//END if
+
+            myVectors[p] = ritzVector(aBasis, aZ, aCol);
+        }//END for (INDEX p)
+    }//END run() METHOD
+
+    /**
+     * Private helper to form a Ritz vector, the basis vectors weighted by
+     *  one eigenvector of the tridiagonal matrix, normalized to unit length.
+     *
+     * @param theBasis The Lanczos vectors.
+     * @param theZ The eigenvectors of the tridiagonal matrix, by column.
+     * @param theCol The column of the eigenvector to use.
+     * @return aVector The Ritz vector.
+     */
+    private double[] ritzVector(final double[][] theBasis,
+                                final double[][] theZ, final int theCol) {
+        final double[] aVector = new double[myL.getRowCount()];
+        for (int j = 0; j < theBasis.length; j++) {
+            axpy(theZ[j][theCol], theBasis[j], aVector);
+        }//END for (INDEX j)
+
+        final double aNorm = Math.sqrt(dot(aVector, aVector));
+        if (aNorm > 0) {
+            scale(1 / aNorm, aVector);
+        }//END if
+
+        return aVector;
+    }//END ritzVector() METHOD
+
+    /**
+     * Private helper to make a random unit vector orthogonal to the first
+     *  vectors of the basis.
+     *
+     * @param theRandom The source of random values.
+     * @param theBasis The basis vectors.
+     * @param theCount The number of basis vectors made so far.
+     * @return aVector The new vector.
+     */
+    private double[] randomUnit(final Random theRandom,
+                                final double[][] theBasis,
+                                final int theCount) {
+        final double[] aVector = new double[myL.getRowCount()];
+        for (int i = 0; i < aVector.length; i++) {
+            aVector[i] = theRandom.nextDouble() - 0.5;
+        }//END for (INDEX i)
+
+        orthogonalize(aVector, theBasis, theCount);
+        orthogonalize(aVector, theBasis, theCount);
+        final double aNorm = Math.sqrt(dot(aVector, aVector));
+        if (aNorm > 0) {
+            scale(1 / aNorm, aVector);
+        }//END if
+
+        return aVector;
+    }//END randomUnit() METHOD
+
+    /**
+     * Private helper to multiply a sparse matrix by a vector, one chunk of
+     *  rows per task.
+     *
+     * @param theMatrix The matrix.
+     * @param theVals Integer array holding the values of the matrix.
+     * @param theX Double array holding the vector.
+     * @param theY Double array receiving the product.
+     */
+    private void multiply(final SparseMatrix theMatrix, final int[] theVals,
+                          final double[] theX, final double[] theY) {
+        final int aRows = theMatrix.getRowCount();
+        final int[] aPtr = theMatrix.rowPtr();
+        final int[] aCols = theMatrix.colIdx();
+        final int[] aVals = theVals;
+
+        final int aChunks = (aRows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        ChunkTask.runAll(myPool, aChunks, new ChunkTask.Body() {
+            @Override
+            public void run(final int theChunk) {
+                final int aFrom = theChunk * CHUNK_ROWS;
+                final int aTo = Math.min(aFrom + CHUNK_ROWS, aRows);
+
+                for (int i = aFrom; i < aTo; i++) {
+                    double sum = 0;
+                    for (int k = aPtr[i]; k < aPtr[i + 1]; k++) {
+                        sum += aVals[k] * theX[aCols[k]];
+                    }//END for (INDEX k)
+                    theY[i] = sum;
+                }//END for (INDEX i)
+            }//END run() METHOD
+        });
+    }//END multiply() METHOD
+
+    /**
+     * Private helper to remove from a vector its parts along the first
+     *  vectors of the basis, by classical Gram-Schmidt.
+     *
+     * @param theVector The vector, changed in place.
+     * @param theBasis The basis vectors.
+     * @param theCount The number of basis vectors to remove.
+     */
+    private static void orthogonalize(final double[] theVector,
+                                      final double[][] theBasis,
+                                      final int theCount) {
+        final double[] someDots = new double[theCount];
+        for (int j = 0; j < theCount; j++) {
+            someDots[j] = dot(theBasis[j], theVector);
+        }//END for (INDEX j)
+        for (int j = 0; j < theCount; j++) {
+            axpy(-someDots[j], theBasis[j], theVector);
+        }//END for (INDEX j)
+    }//END orthogonalize() METHOD
+
+    /**
+     * Private helper to return the dot product of two vectors.
+     *
+     * @param theA The first vector.
+     * @param theB The second vector.
+     * @return sum The dot product.
+     */
+    private static double dot(final double[] theA, final double[] theB) {
+        double sum = 0;
+        for (int i = 0; i < theA.length; i++) {
+            sum += theA[i] * theB[i];
+        }//END for (INDEX i)
+
+        return sum;
+    }//END dot() METHOD
+
+    /**
+     * Private helper to add a multiple of one vector to another.
+     *
+     * @param theFactor The multiple.
+     * @param theX The vector added.
+     * @param theY The vector added to, changed in place.
+     */
+    private static void axpy(final double theFactor, final double[] theX,
+                             final double[] theY) {
+        for (int i = 0; i < theX.length; i++) {
+            theY[i] += theFactor * theX[i];
+        }//END for (INDEX i)
+    }//END axpy() METHOD
+
+    /**
+     * Private helper to multiply a vector by a factor in place.
+     *
+     * @param theFactor The factor.
+     * @param theX The vector, changed in place.
+     */
+    private static void scale(final double theFactor, final double[] theX) {
+        for (int i = 0; i < theX.length; i++) {
+            theX[i] *= theFactor;
+        }//END for (INDEX i)
+    }//END scale() METHOD
+
+    /**
+     * Private helper to find every eigenvalue and eigenvector of a symmetric
+     *  tridiagonal matrix by the implicit QL method, after the EISPACK
+     *  routine tql2.  The eigenvalues are left in increasing order.
+     *
+     * @param theDiag Double array holding the diagonal, replaced by the
+     *  eigenvalues.
+     * @param theOff Double array holding the entries below the diagonal in
+     *  positions 1 on, destroyed.
+     * @param theZ The identity on entry, replaced by the eigenvectors, one
+     *  per column.
+     */
+    private static void tql2(final double[] theDiag, final double[] theOff,
+                             final double[][] theZ) {
+        final int n = theDiag.length;
+        final double[] d = theDiag;
+        final double[] e = theOff;
+        for (int i = 1; i < n; i++) {
+            e[i - 1] = e[i];
+        }//END for (INDEX i)
+        e[n - 1] = 0;
+
+        double f = 0;
+        double tst1 = 0;
+        final double eps = Math.ulp(1.0);
+        for (int l = 0; l < n; l++) {
+            tst1 = Math.max(tst1, Math.abs(d[l]) + Math.abs(e[l]));
+            int m = l;
+            while (m < n - 1 && Math.abs(e[m]) > eps * tst1) {
+                m++;
+            }//END while LOOP
+
+            if (m > l) {
+                do {
+                    double g = d[l];
+                    double p = (d[l + 1] - g) / (2 * e[l]);
+                    double r = Math.hypot(p, 1);
+                    if (p < 0) {
+                        r = -r;
+                    }//END if
+                    d[l] = e[l] / (p + r);
+                    d[l + 1] = e[l] * (p + r);
+                    final double dl1 = d[l + 1];
+                    double h = g - d[l];
+                    for (int i = l + 2; i < n; i++) {
+                        d[i] -= h;
+                    }//END for (INDEX i)
+                    f += h;
+
+                    p = d[m];
+                    double c = 1;
+                    double c2 = c;
+                    double c3 = c;
+                    final double el1 = e[l + 1];
+                    double s = 0;
+                    double s2 = 0;
+                    for (int i = m - 1; i >= l; i--) {
+                        c3 = c2;
+                        c2 = c;
+                        s2 = s;
+                        g = c * e[i];
+                        h = c * p;
+                        r = Math.hypot(p, e[i]);
+                        e[i + 1] = s * r;
+                        s = e[i] / r;
+                        c = p / r;
+                        p = c * d[i] - s * g;
+                        d[i + 1] = h + s * (c * g + s * d[i]);
+
+                        for (int k = 0; k < n; k++) {
+                            h = theZ[k][i + 1];
+                            theZ[k][i + 1] = s * theZ[k][i] + c * h;
+                            theZ[k][i] = c * theZ[k][i] - s * h;
+                        }//END for (INDEX k)
+                    }//END for (INDEX i)
+                    p = -s * s2 * c3 * el1 * e[l] / dl1;
+                    e[l] = s * p;
+                    d[l] = c * p;
+                } while (Math.abs(e[l]) > eps * tst1);
+            }//END if
+            d[l] += f;
+            e[l] = 0;
+        }//END for (INDEX l)
+
+        // Selection sort into increasing order, moving the vectors along.
+        for (int i = 0; i < n - 1; i++) {
+            int k = i;
+            double p = d[i];
+            for (int j = i + 1; j < n; j++) {
+                if (d[j] < p) {
+                    k = j;
+                    p = d[j];
+                }//END if
+            }//END for (INDEX j)
+            if (k != i) {
+                d[k] = d[i];
+                d[i] = p;
+                for (int j = 0; j < n; j++) {
+                    p = theZ[j][i];
+                    theZ[j][i] = theZ[j][k];
+                    theZ[j][k] = p;
+                }//END for (INDEX j)
+            }//END if
+        }//END for (INDEX i)
+    }//END tql2() METHOD
+
+}//END LanczosSolver.java CLASS
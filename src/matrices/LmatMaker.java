@@ -3,101 +3,316 @@
  */
 package matrices;
 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
 /**
- * Class with methods to create a matrix, L, that represents the connections 
- *  between the words and N-grams in the passed String arrays.
- * 
+ * Class with methods to create a matrix, L, that represents the connections
+ *  between the words and N-grams in the passed String arrays.  The words may
+ *  either all be passed up front or be streamed in, chunk by chunk, so that
+ *  only the rows of L, and not the words themselves, are kept.  A streamed
+ *  chunk may be given as Strings or as words packed into one char array.
+ *  The N-grams are held in an NgramDictionary, so each distinct N-gram is
+ *  one column of L, numbered by its id.  The counts of L are packed into
+ *  the fewest bytes which hold them, most often one.
+ *
  * @author Jonathan McFadden (mcfaddja@uw.edu)
- * @version 0.1
+ * @version 0.7
  */
-public class LmatMaker {
-    
+public class LmatMaker implements WordSink {
+
+    /** Constant for the number of words in each chunk of a parallel run. */
+    private static final int CHUNK_WORDS = 2048;
+
     /** String array to store the words. */
     private final String[] myWords;
-    
-    /** String array to store the N-grams. */
-    private final String[] myNgrams;
-    
+
+    /** The dictionary holding the N-grams, by column. */
+    private final NgramDictionary myNgrams;
+
     /** Integer representing the number of words. */
     private final int myWordCnt;
-    
+
     /** Integer representing the number of N-grams. */
     private final int myNgramCnt;
-    
-    /** Two dimensional integer array to store the values for the L matrix. */
-    private final int[][] myL;
-    
-    
+
+    /** The pool used to compute the L matrix, or null to compute serially. */
+    private final ForkJoinPool myPool;
+
+    /** The automaton compiled from the N-grams, once it is needed. */
+    private NgramAutomaton myAutomaton;
+
+    /** Builder holding the rows of the words streamed in so far. */
+    private SparseMatrixBuilder myStreamed;
+
+    /** Sparse matrix to store the values for the L matrix. */
+    private SparseMatrix myL;
+
+
     /**
-     * Specifies the String arrays to use for the words and N-grams, clones 
-     *  those arrays (defensive copy), stores their size, and initializes the 
-     *  array for the L matrix based on those sizes.
-     * 
+     * Specifies the String arrays to use for the words and N-grams and stores
+     *  their size.  Nothing is allocated for the L matrix until it is
+     *  computed, since it is stored sparsely.  Repeated N-grams are dropped,
+     *  so L has a column for each distinct N-gram, in order of first
+     *  occurrence.
+     *
      * @param theWords String array containing the words to use.
      * @param theNgrams String array containing the N-grams to use.
      */
     public LmatMaker(final String[] theWords, final String[] theNgrams) {
+        this(theWords, theNgrams, null);
+    } //END constructor
+
+    /**
+     * Specifies the String arrays to use for the words and N-grams, and the
+     *  pool used to compute the rows of the L matrix in parallel, in chunks
+     *  of consecutive words.  The result is identical to a serial run.
+     *
+     * @param theWords String array containing the words to use.
+     * @param theNgrams String array containing the N-grams to use.
+     * @param thePool The pool to compute on, or null to compute serially.
+     */
+    public LmatMaker(final String[] theWords, final String[] theNgrams,
+                     final ForkJoinPool thePool) {
+        this(theWords, new NgramDictionary(theNgrams), thePool);
+    } //END constructor
+
+    /**
+     * Specifies the words to use and the dictionary of N-grams whose ids
+     *  are the columns of L, and the pool to compute on.
+     *
+     * @param theWords String array containing the words to use.
+     * @param theNgrams The dictionary holding the N-grams to use.
+     * @param thePool The pool to compute on, or null to compute serially.
+     */
+    public LmatMaker(final String[] theWords, final NgramDictionary theNgrams,
+                     final ForkJoinPool thePool) {
         myWords = theWords;
         myNgrams = theNgrams;
-        
+        myPool = thePool;
+
         myWordCnt = myWords.length;
-        myNgramCnt = myNgrams.length;
-        
-        myL = new int[myWordCnt][myNgramCnt];
-        for (int i = 0; i < myWordCnt; i++) {
-            for (int j = 0; j < myNgramCnt; j++) {
-                myL[i][j] = 0;
-            }//END for (INDEX j)
-        }//END for (INDEX i)
+        myNgramCnt = myNgrams.getCount();
+
+        myAutomaton = null;
+        myStreamed = null;
+        myL = null;
     } //END constructor
-    
-    
+
     /**
-     * Method to compute the L matrix.
+     * Specifies only the N-grams to use, for building the L matrix from words
+     *  streamed in through addWords().
+     *
+     * @param theNgrams String array containing the N-grams to use.
+     * @param thePool The pool to compute on, or null to compute serially.
+     */
+    public LmatMaker(final String[] theNgrams, final ForkJoinPool thePool) {
+        this(new String[0], theNgrams, thePool);
+    } //END constructor
+
+    /**
+     * Specifies only the dictionary of N-grams to use, for building the L
+     *  matrix from words streamed in through addWords().
+     *
+     * @param theNgrams The dictionary holding the N-grams to use.
+     * @param thePool The pool to compute on, or null to compute serially.
+     */
+    public LmatMaker(final NgramDictionary theNgrams,
+                     final ForkJoinPool thePool) {
+        this(new String[0], theNgrams, thePool);
+    } //END constructor
+
+
+    /**
+     * Method to compute the L matrix.  The N-grams are compiled into a single
+     *  automaton once, then each word is scanned once to count every
+     *  occurrence, overlapping occurrences included, of every N-gram in it.
+     *  Only the non-zero counts of each row are kept.  With a pool, each
+     *  chunk of words is counted by its own task and the chunks are then
+     *  joined in word order.
      */
     public void computeL() {
-        for (int i = 0; i < myWordCnt; i++) {
-            String aWord;
-            aWord = myWords[i];
-            final int aWordSize = aWord.length();
-            
-            for (int j = 0; j < myNgramCnt; j++) {
-                final String aNgram = myNgrams[j];
-                final int aNgramSize = aNgram.length();
-                
-                if (aWord.contains(aNgram)) {
-                    int aPos = 0;
-                    
-                    while (aPos <= aWordSize) {
-//                        aPos = aWord.indexOf(aNgram, aPos) + aWordSize;
-                        aPos = aWord.indexOf(aNgram, aPos);
-                        myL[i][j]++;
-                    }//END while LOOP
-                }//END if
-                
-            }//END for (INDEX j)
-            
-        }//END for (INDEX i)
-        
+        final SparseMatrixBuilder aBuilder = new SparseMatrixBuilder(myNgramCnt);
+
+        appendRows(myWords, null, null, myWordCnt, aBuilder);
+
+        myL = aBuilder.build().pack();
     } //END computeL() METHOD
-    
-    /** Method to return the computed values for the L matrix in the form of 
-     *   a two dimensional integer array. Calls the computeL() method from 
-     *   within this class.
-     * 
-     * @return anL A two dimensional integer array containing the computed 
-     *  values for the L matrix.
+
+    /**
+     * Method to return the dictionary of N-grams, whose ids are the columns
+     *  of L.
+     *
+     * @return myNgrams The dictionary of N-grams.
+     */
+    public NgramDictionary getNgrams() {
+        return myNgrams;
+    } //END getNgrams() METHOD
+
+    /** Method to return the computed values for the L matrix in the form of
+     *   a sparse matrix. Calls the computeL() method from within this class.
+     *
+     * @return myL A sparse matrix containing the computed values for the L
+     *  matrix.
      */
-    public int[][] getL() {
+    public SparseMatrix getL() {
         this.computeL();
-        
-        final int[][] anL = new int[myWordCnt][myNgramCnt];
-        
-        for (int i = 0; i < myWordCnt; i++) {
-            System.arraycopy(myL[i], 0, anL[i], 0, myNgramCnt);
-        }//END for (INDEX i)
-        
-        return anL;
+
+        return myL;
     } //END getL() METHOD
-    
+
+    /**
+     * Method to compute the rows of the L matrix for the next chunk of
+     *  streamed words and append them to the rows computed so far.  The
+     *  words are not kept, so the chunk array may be reused by the caller.
+     *
+     * @param theWords String array holding the chunk of words.
+     * @param theCount The number of words of the array in the chunk.
+     */
+    @Override
+    public void addWords(final String[] theWords, final int theCount) {
+        if (myStreamed == null) {
+            myStreamed = new SparseMatrixBuilder(myNgramCnt);
+        }//END if
+
+        appendRows(theWords, null, null, theCount, myStreamed);
+    } //END addWords() METHOD
+
+    /**
+     * Method to compute the rows of the L matrix for the next chunk of
+     *  streamed words, packed back to back into one char array, and append
+     *  them to the rows computed so far.  Word i of the chunk occupies
+     *  theChars[theStarts[i]] up to, but not including,
+     *  theChars[theStarts[i + 1]].  Neither array is kept.
+     *
+     * @param theChars The char array holding the packed words.
+     * @param theStarts Integer array holding where each word starts, with
+     *  one more entry than there are words.
+     * @param theCount The number of words in the chunk.
+     */
+    @Override
+    public void addWords(final char[] theChars, final int[] theStarts,
+                         final int theCount) {
+        if (myStreamed == null) {
+            myStreamed = new SparseMatrixBuilder(myNgramCnt);
+        }//END if
+
+        appendRows(null, theChars, theStarts, theCount, myStreamed);
+    } //END addWords() METHOD
+
+    /**
+     * Method to return the L matrix for all of the words streamed in through
+     *  addWords(), in the order they were added.
+     *
+     * @return myL A sparse matrix containing the values for the L matrix.
+     */
+    public SparseMatrix buildL() {
+        if (myStreamed == null) {
+            myStreamed = new SparseMatrixBuilder(myNgramCnt);
+        }//END if
+
+        myL = myStreamed.build().pack();
+
+        return myL;
+    } //END buildL() METHOD
+
+    /**
+     * Private helper to compile the N-grams into an automaton the first time
+     *  it is needed.
+     *
+     * @return myAutomaton The compiled automaton.
+     */
+    private NgramAutomaton automaton() {
+        if (myAutomaton == null) {
+            myAutomaton = new NgramAutomaton(myNgrams);
+        }//END if
+
+        return myAutomaton;
+    } //END automaton() METHOD
+
+    /**
+     * Private helper to compute the rows for the first theCount words of a
+     *  chunk and append them to a builder, serially or chunk by chunk on the
+     *  pool.  The words come from theWords or, when it is null, from the
+     *  packed char array.
+     *
+     * @param theWords String array holding the words, or null.
+     * @param theChars The char array holding the packed words, or null.
+     * @param theStarts Integer array holding where each packed word starts.
+     * @param theCount The number of words to use.
+     * @param theBuilder The builder the rows are appended to.
+     */
+    private void appendRows(final String[] theWords, final char[] theChars,
+                            final int[] theStarts, final int theCount,
+                            final SparseMatrixBuilder theBuilder) {
+        final NgramAutomaton anAutomaton = automaton();
+
+        if (myPool == null) {
+            addRows(anAutomaton, theWords, theChars, theStarts, 0, theCount,
+                    theBuilder);
+        } else {
+            final int aChunks = (theCount + CHUNK_WORDS - 1) / CHUNK_WORDS;
+            final SparseMatrix[] aParts = new SparseMatrix[aChunks];
+
+            ChunkTask.runAll(myPool, aChunks, new ChunkTask.Body() {
+                @Override
+                public void run(final int theChunk) {
+                    final int aFrom = theChunk * CHUNK_WORDS;
+                    final int aTo = Math.min(aFrom + CHUNK_WORDS, theCount);
+                    final SparseMatrixBuilder aPart;
+                    aPart = new SparseMatrixBuilder(myNgramCnt);
+
+                    addRows(anAutomaton, theWords, theChars, theStarts, aFrom,
+                            aTo, aPart);
+                    aParts[theChunk] = aPart.build();
+                }//END run() METHOD
+            });
+
+            for (int c = 0; c < aChunks; c++) {
+                theBuilder.addRows(aParts[c]);
+            }//END for (INDEX c)
+        }//END if
+    } //END appendRows() METHOD
+
+    /**
+     * Private helper to count the N-grams of a range of words and append the
+     *  resulting rows, with their columns in increasing order, to a builder.
+     *
+     * @param theAutomaton The automaton compiled from the N-grams.
+     * @param theWords String array holding the words, or null.
+     * @param theChars The char array holding the packed words, or null.
+     * @param theStarts Integer array holding where each packed word starts.
+     * @param theFrom The index of the first word.
+     * @param theTo The index just past the last word.
+     * @param theBuilder The builder the rows are appended to.
+     */
+    private void addRows(final NgramAutomaton theAutomaton,
+                         final String[] theWords, final char[] theChars,
+                         final int[] theStarts, final int theFrom,
+                         final int theTo, final SparseMatrixBuilder theBuilder) {
+        final int[] aCounts = new int[myNgramCnt];
+        final int[] aCols = new int[myNgramCnt];
+        final int[] aVals = new int[myNgramCnt];
+
+        for (int i = theFrom; i < theTo; i++) {
+            final int aTouched;
+            if (theWords != null) {
+                aTouched = theAutomaton.countInto(theWords[i], aCounts, aCols,
+                                                  0);
+            } else {
+                aTouched = theAutomaton.countInto(theChars, theStarts[i],
+                                                  theStarts[i + 1], aCounts,
+                                                  aCols, 0);
+            }//END if
+            Arrays.sort(aCols, 0, aTouched);
+
+            for (int k = 0; k < aTouched; k++) {
+                aVals[k] = aCounts[aCols[k]];
+                aCounts[aCols[k]] = 0;
+            }//END for (INDEX k)
+
+            theBuilder.addRow(aCols, aVals, aTouched);
+        }//END for (INDEX i)
+    } //END addRows() METHOD
+
 } //END LmatMaker CLASS
@@ -3,11 +3,14 @@
  */
 package matrices;
 
+import java.util.Arrays;
+
 /**
- * Class to compute the transpose of a matrix.
+ * Class to compute the transpose of a matrix.  A sparse matrix with values 
+ *  held in longs gives a transpose with values held in longs.
  * 
  * @author Jonathan McFadden (mcfaddja@uw.edu)
- * @version 0.2
+ * @version 0.4
  */
 public class MatTranspose {
    
@@ -23,6 +26,12 @@ public class MatTranspose {
     /** A 2D integer array holding the transposed values of the input matrix. */
     private final int[][] myLout;
     
+    /** A sparse matrix holding the input matrix, when it was passed sparse. */
+    private final SparseMatrix mySparseLin;
+    
+    /** A sparse matrix holding the transpose of a sparse input matrix. */
+    private SparseMatrix mySparseLout;
+    
     
     /**
      * Allows the passed matrix to be transposed.
@@ -35,7 +44,26 @@ public class MatTranspose {
         myI = theLin.length;
         myJ = theLin[0].length;
         
-        myLout = new int[myI][myJ];
+        myLout = new int[myJ][myI];
+        mySparseLin = null;
+        mySparseLout = null;
+    }//END constructor
+    
+    /**
+     * Allows the passed sparse matrix to be transposed without ever forming 
+     *  a dense copy of it.
+     * 
+     * @param theLin A sparse matrix holding the values of the input matrix.
+     */
+    public MatTranspose(final SparseMatrix theLin) {
+        myLin = null;
+        
+        myI = theLin.getRowCount();
+        myJ = theLin.getColCount();
+        
+        myLout = null;
+        mySparseLin = theLin;
+        mySparseLout = null;
     }//END constructor
     
     
@@ -43,11 +71,15 @@ public class MatTranspose {
      * Method to compute the Transpose of the matrix passed to the constructor.
      */
     public void computeLt() {
-        for (int i = 0; i < myI; i++) {
+        if (mySparseLin != null) {
+            computeSparseLt();
+        } else {
             for (int j = 0; j < myJ; j++) {
-                myLout[i][j] = myLin[j][i];
+                for (int i = 0; i < myI; i++) {
+                    myLout[j][i] = myLin[i][j];
+                }//END for (INDEX i)
             }//END for (INDEX j)
-        }//END for (INDEX i)    
+        }//END if
     }//END computeLt() METHOD
     
     /**
@@ -63,4 +95,65 @@ public class MatTranspose {
         return aLout;
     }//END getLt() METHOD
     
+    /**
+     * Method to compute the transpose of the sparse matrix passed in the 
+     *  constructor and then return the result as another sparse matrix.
+     * 
+     * @return mySparseLout A sparse matrix containing the values of the Lt 
+     *  matrix.
+     */
+    public SparseMatrix getSparseLt() {
+        this.computeLt();
+        
+        return mySparseLout;
+    }//END getSparseLt() METHOD
+    
+    /**
+     * Private helper to transpose the sparse input with a counting sort on 
+     *  the column indices, which leaves the rows of the result sorted.
+     */
+    private void computeSparseLt() {
+        final int[] aRowPtr = mySparseLin.rowPtr();
+        final int[] aColIdx = mySparseLin.colIdx();
+        final int aNonZeros = aRowPtr[myI];
+        
+        final int[] aOutPtr = new int[myJ + 1];
+        for (int k = 0; k < aNonZeros; k++) {
+            aOutPtr[aColIdx[k] + 1]++;
+        }//END for (INDEX k)
+        for (int j = 0; j < myJ; j++) {
+            aOutPtr[j + 1] += aOutPtr[j];
+        }//END for (INDEX j)
+        
+        final int[] aCursor = Arrays.copyOf(aOutPtr, myJ);
+        final int[] aOutCols = new int[aNonZeros];
+        if (mySparseLin.getValueWidth() == Long.BYTES) {
+            final long[] aValues = mySparseLin.longValues();
+            final long[] aOutVals = new long[aNonZeros];
+            for (int i = 0; i < myI; i++) {
+                for (int k = aRowPtr[i]; k < aRowPtr[i + 1]; k++) {
+                    final int aPos = aCursor[aColIdx[k]]++;
+                    aOutCols[aPos] = i;
+                    aOutVals[aPos] = aValues[k];
+                }//END for (INDEX k)
+            }//END for (INDEX i)
+            
+            mySparseLout = new SparseMatrix(myJ, myI, aOutPtr, aOutCols, 
+                                            aOutVals);
+        } else {
+            final int[] aValues = mySparseLin.values();
+            final int[] aOutVals = new int[aNonZeros];
+            for (int i = 0; i < myI; i++) {
+                for (int k = aRowPtr[i]; k < aRowPtr[i + 1]; k++) {
+                    final int aPos = aCursor[aColIdx[k]]++;
+                    aOutCols[aPos] = i;
+                    aOutVals[aPos] = aValues[k];
+                }//END for (INDEX k)
+            }//END for (INDEX i)
+            
+            mySparseLout = new SparseMatrix(myJ, myI, aOutPtr, aOutCols, 
+                                            aOutVals);
+        }//END if
+    }//END computeSparseLt() METHOD
+    
 }//END MatTranspose.java CLASS
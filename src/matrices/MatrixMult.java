@@ -3,16 +3,24 @@
  */
 package matrices;
 
+import java.util.Arrays;
+
 /**
  * Class to provide methods to test if two matrices can be multiplied based on 
  *  their order and dimensions, multiply any matrices that pass that test, and 
  *  then return the result of that multiplication as a 2D integer array.
  * 
  * @author Jonathan McFadden (mcfaddja@uw.edu)
- * @version 0.2
+ * @version 0.4
  */
 public class MatrixMult {
    
+    /** Constant for the number of rows in each block of a dense product. */
+    private static final int DENSE_ROW_BLOCK = 256;
+    
+    /** Constant for the number of columns in each block of a dense product. */
+    private static final int DENSE_COL_BLOCK = 1024;
+    
     /** A 2D integer array holding the values of the first matrix. */
     private final int[][] myA;
     
@@ -40,6 +48,15 @@ public class MatrixMult {
     /** A 2D integer array holding the values of the product matrix. */
     private final int[][] myC;
     
+    /** A sparse matrix holding the first matrix, when passed sparse. */
+    private final SparseMatrix mySparseA;
+    
+    /** A sparse matrix holding the second matrix, when passed sparse. */
+    private final SparseMatrix mySparseB;
+    
+    /** A sparse matrix holding the product of two sparse matrices. */
+    private SparseMatrix mySparseC;
+    
     
     /**
      * Creates a matrix multiplier to test and, if possible, multiply the 
@@ -63,6 +80,37 @@ public class MatrixMult {
         myCj = myBj;
         
         myC = new int[myCi][myCj];
+        mySparseA = null;
+        mySparseB = null;
+        mySparseC = null;
+    }//END constructor
+    
+    /**
+     * Creates a matrix multiplier to test and, if possible, multiply the 
+     *  passed sparse matrices in the specified order without ever forming a 
+     *  dense copy of either matrix or of their product.
+     * 
+     * @param theA A sparse matrix holding the values of the first matrix in 
+     *  the product.
+     * @param theB A sparse matrix holding the values of the second matrix in 
+     *  the product.
+     */
+    public MatrixMult(final SparseMatrix theA, final SparseMatrix theB) {
+        myA = null;
+        myB = null;
+        
+        myAi = theA.getRowCount();
+        myAj = theA.getColCount();
+        myBi = theB.getRowCount();
+        myBj = theB.getColCount();
+        
+        myCi = myAi;
+        myCj = myBj;
+        
+        myC = null;
+        mySparseA = theA;
+        mySparseB = theB;
+        mySparseC = null;
     }//END constructor
     
     
@@ -77,21 +125,14 @@ public class MatrixMult {
     public boolean computeC() {
         boolean dimMatch = false;
         
-        if (myAj == myBi) {
+        if (myAj == myBi && mySparseA != null) {
             dimMatch = true;
             
-            for (int i = 0; i < myCi; i++) {
-                
-                for (int j = 0; j < myCj; j++) {
-                    int sum = 0;
-                    
-                    for (int k = 0; k < myAj; k++) {
-                        sum = sum + myA[i][k] * myB[k][j];
-                    }//END for (INDEX k)
-                    
-                }//END for (INDEX j)
-            }//END for (INDEX i)
-        
+            computeSparseC();
+        } else if (myAj == myBi) {
+            dimMatch = true;
+            
+            computeDenseC();
         }//END if
      
         return dimMatch;
@@ -119,5 +160,114 @@ public class MatrixMult {
         return aCout;
     }//END getC() METHOD
     
+    /**
+     * Method the return either the product of the sparse matrices passed to 
+     *  the constructor or, if the matrix product cannot be computed, null.
+     * 
+     * @return mySparseC A sparse matrix containing the values of the matrix 
+     *  product, or null if the matrix product cannot be computed.
+     */
+    public SparseMatrix getSparseC() {
+        boolean dimMatch = this.computeC();
+        
+        if (!dimMatch) {
+            mySparseC = null;
+        }//END if
+        
+        return mySparseC;
+    }//END getSparseC() METHOD
+    
+    /**
+     * Private helper to multiply the dense matrices.  A is copied into one 
+     *  flat row-major array and B into one flat array of its columns, so 
+     *  each entry of the product is the dot product of two contiguous runs, 
+     *  which the register blocked kernel takes four by four, tiled so the 
+     *  runs being combined stay in cache.
+     */
+    private void computeDenseC() {
+        final int[] aFlatA = DenseKernel.flatten(myA, myAj);
+        final int[] aFlatBt = new int[myBj * myBi];
+        for (int k = 0; k < myBi; k++) {
+            for (int j = 0; j < myBj; j++) {
+                aFlatBt[j * myBi + k] = myB[k][j];
+            }//END for (INDEX j)
+        }//END for (INDEX k)
+        
+        for (int i = 0; i < myCi; i++) {
+            Arrays.fill(myC[i], 0);
+        }//END for (INDEX i)
+        
+        for (int ii = 0; ii < myCi; ii += DENSE_ROW_BLOCK) {
+            final int iEnd = Math.min(ii + DENSE_ROW_BLOCK, myCi);
+            
+            for (int jj = 0; jj < myCj; jj += DENSE_ROW_BLOCK) {
+                final int jEnd = Math.min(jj + DENSE_ROW_BLOCK, myCj);
+                
+                for (int kk = 0; kk < myAj; kk += DENSE_COL_BLOCK) {
+                    final int kEnd = Math.min(kk + DENSE_COL_BLOCK, myAj);
+                    
+                    DenseKernel.addDots(aFlatA, aFlatBt, myAj, ii, iEnd, jj, 
+                                        jEnd, kk, kEnd, myC, false);
+                }//END for (INDEX kk)
+            }//END for (INDEX jj)
+        }//END for (INDEX ii)
+    }//END computeDenseC() METHOD
+    
+    /**
+     * Private helper to multiply the sparse matrices row by row, scattering 
+     *  each row of the product into a dense accumulator and gathering only 
+     *  the columns that were touched.
+     */
+    private void computeSparseC() {
+        final int[] aPtr = mySparseA.rowPtr();
+        final int[] aCols = mySparseA.colIdx();
+        final int[] aVals = mySparseA.values();
+        final int[] bPtr = mySparseB.rowPtr();
+        final int[] bCols = mySparseB.colIdx();
+        final int[] bVals = mySparseB.values();
+        
+        final int[] anAcc = new int[myCj];
+        final boolean[] aSeen = new boolean[myCj];
+        final int[] aTouched = new int[myCj];
+        final int[] aRowVals = new int[myCj];
+        final SparseMatrixBuilder aBuilder = new SparseMatrixBuilder(myCj);
+        
+        for (int i = 0; i < myCi; i++) {
+            int aCount = 0;
+            
+            for (int p = aPtr[i]; p < aPtr[i + 1]; p++) {
+                final int k = aCols[p];
+                final int a = aVals[p];
+                
+                for (int q = bPtr[k]; q < bPtr[k + 1]; q++) {
+                    final int j = bCols[q];
+                    if (!aSeen[j]) {
+                        aSeen[j] = true;
+                        aTouched[aCount++] = j;
+                    }//END if
+                    anAcc[j] += a * bVals[q];
+                }//END for (INDEX q)
+            }//END for (INDEX p)
+            
+            Arrays.sort(aTouched, 0, aCount);
+            
+            int aKept = 0;
+            for (int t = 0; t < aCount; t++) {
+                final int j = aTouched[t];
+                if (anAcc[j] != 0) {
+                    aTouched[aKept] = j;
+                    aRowVals[aKept] = anAcc[j];
+                    aKept++;
+                }//END if
+                anAcc[j] = 0;
+                aSeen[j] = false;
+            }//END for (INDEX t)
+            
+            aBuilder.addRow(aTouched, aRowVals, aKept);
+        }//END for (INDEX i)
+        
+        mySparseC = aBuilder.build();
+    }//END computeSparseC() METHOD
+    
 }//END MatrixMult.java CLASS
             
\ No newline at end of file
@@ -0,0 +1,553 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class with methods to compute an approximate LLt holding only the pairs
+ *  of words likely to share many N-grams, found by locality sensitive
+ *  hashing rather than by trying every pair.  Each word's set of N-grams is
+ *  summed up by a MinHash signature, the smallest value each of bands times
+ *  rows hash functions takes over the set, so that two words agree in any
+ *  one value with chance equal to the Jaccard similarity of their sets.
+ *  The signature is cut into bands of rows values each, and two words
+ *  become a candidate pair when all the values of any one band agree.  The
+ *  entries of LLt are then found exactly, as dot products of rows of L,
+ *  for the candidate pairs only, so the work follows the number of words
+ *  and candidates rather than the number of words squared.  The dot
+ *  products are summed in longs, so entries past the integer range come
+ *  out right, held in longs.
+ *
+ * <p>More rows per band make a pair of low similarity less likely to be a
+ *  candidate, and more bands make a pair of high similarity less likely to
+ *  be missed; pairs of about the similarity (1 / bands)^(1 / rows) are found
+ *  half of the time.  The share of the true pairs found can be measured on
+ *  a sample of the words against the exact rows of LLt.</p>
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.4
+ */
+public class MinHashLLt {
+
+    /** Constant for the number of rows in each chunk of work. */
+    private static final int CHUNK_ROWS = 1024;
+
+    /** Constant for the odd multiplier used to mix a hash, from MurmurHash3. */
+    private static final long MIX_ONE = 0xff51afd7ed558ccdL;
+
+    /** Constant for the second multiplier used to mix a hash. */
+    private static final long MIX_TWO = 0xc4ceb9fe1a85ec53L;
+
+    /** Sparse matrix holding the values of L. */
+    private final SparseMatrix myL;
+
+    /** Integer array holding the values of L, fetched once. */
+    private final int[] myLVals;
+
+    /** Integer representing the number of bands of the signatures. */
+    private final int myBands;
+
+    /** Integer representing the number of hash values in each band. */
+    private final int myRows;
+
+    /** Long array holding the multiplier of each hash function. */
+    private final long[] myMultipliers;
+
+    /** Long array holding the offset of each hash function. */
+    private final long[] myOffsets;
+
+    /** The pool the work is done on, or null to work serially. */
+    private final ForkJoinPool myPool;
+
+    /** The counter advanced as rows are done, or null for none. */
+    private AtomicLong myRowsDone;
+
+    /** Long representing the number of distinct candidate pairs. */
+    private long myCandidates;
+
+    /** Long representing the pairs of the sampled words in exact LLt. */
+    private long mySampledPairs;
+
+    /** Long representing the sampled pairs found in the approximate LLt. */
+    private long myFoundPairs;
+
+    /** Long representing the sampled pairs at or over the threshold. */
+    private long mySampledAbove;
+
+    /** Long representing the pairs over the threshold which were found. */
+    private long myFoundAbove;
+
+
+    /**
+     * Allows an approximate LLt to be computed for the passed sparse L.
+     *
+     * @param theL A sparse matrix holding the values of L.
+     * @param theBands The number of bands, at least 1.
+     * @param theRows The number of hash values in each band, at least 1.
+     * @param theSeed The seed the hash functions are drawn from.
+     * @param thePool The pool to compute on, or null to compute serially.
+     */
+    public MinHashLLt(final SparseMatrix theL, final int theBands,
+                      final int theRows, final long theSeed,
+                      final ForkJoinPool thePool) {
+        if (theBands < 1 || theRows < 1) {
+            throw new IllegalArgumentException("Bands and rows must be"
+                                               + " positive");
+        }//END if
+
+        myL = theL;
+        myLVals = theL.values();
+        myBands = theBands;
+        myRows = theRows;
+        myPool = thePool;
+        myRowsDone = null;
+
+        final Random aRandom = new Random(theSeed);
+        myMultipliers = new long[theBands * theRows];
+        myOffsets = new long[theBands * theRows];
+        for (int h = 0; h < myMultipliers.length; h++) {
+            myMultipliers[h] = aRandom.nextLong() | 1;
+            myOffsets[h] = aRandom.nextLong();
+        }//END for (INDEX h)
+    }//END constructor
+
+
+    /**
+     * Method to set a counter which is advanced, from whichever thread does
+     *  the work, each time a chunk of rows of LLt is done.
+     *
+     * @param theRowsDone The counter to advance, or null for none.
+     */
+    public void setProgress(final AtomicLong theRowsDone) {
+        myRowsDone = theRowsDone;
+    }//END setProgress() METHOD
+
+    /**
+     * Method to return the similarity at which a pair of words is found
+     *  half of the time, (1 / bands)^(1 / rows).
+     *
+     * @return The similarity threshold of the bands and rows.
+     */
+    public double getThreshold() {
+        return Math.pow(1.0 / myBands, 1.0 / myRows);
+    }//END getThreshold() METHOD
+
+    /**
+     * Method to compute the approximate LLt, holding the diagonal and the
+     *  entries of the candidate pairs, each exact.
+     *
+     * @return A sparse matrix containing the approximate LLt.
+     */
+    public SparseMatrix getLLt() {
+        final int aRows = myL.getRowCount();
+        final int[] someSignatures = signatures();
+        final long[] somePairs = candidatePairs(someSignatures);
+        myCandidates = somePairs.length;
+
+        final int[] aPairPtr = new int[aRows + 1];
+        for (final long aPair : somePairs) {
+            aPairPtr[(int) (aPair >>> 32) + 1]++;
+        }//END for
+        for (int i = 0; i < aRows; i++) {
+            aPairPtr[i + 1] += aPairPtr[i];
+        }//END for (INDEX i)
+
+        final int aChunks = (aRows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        final SparseMatrix[] aParts = new SparseMatrix[aChunks];
+        ChunkTask.runAll(myPool, aChunks, new ChunkTask.Body() {
+            @Override
+            public void run(final int theChunk) {
+                final int aFrom = theChunk * CHUNK_ROWS;
+                final int aTo = Math.min(aFrom + CHUNK_ROWS, aRows);
+
+                aParts[theChunk] = upperRows(somePairs, aPairPtr, aFrom, aTo);
+                if (myRowsDone != null) {
+                    myRowsDone.addAndGet(aTo - aFrom);
+                }//END if
+            }//END run() METHOD
+        });
+
+        final SparseMatrixBuilder anUpper = new SparseMatrixBuilder(aRows);
+        for (int c = 0; c < aChunks; c++) {
+            anUpper.addRows(aParts[c]);
+        }//END for (INDEX c)
+
+        return LLtMaker.symmetrize(anUpper.build());
+    }//END getLLt() METHOD
+
+    /**
+     * Method to return the number of distinct candidate pairs of the last
+     *  computation, each counted once.
+     *
+     * @return myCandidates The number of candidate pairs.
+     */
+    public long getCandidatePairCount() {
+        return myCandidates;
+    }//END getCandidatePairCount() METHOD
+
+    /**
+     * Method to measure the share of the true pairs of a random sample of
+     *  the words which are in an approximate LLt.  The true pairs of each
+     *  sampled word, the other words sharing any N-gram with it, are found
+     *  exactly along the transpose of L.
+     *
+     * @param theApprox The approximate LLt computed from the same L.
+     * @param theSample The number of words to sample.
+     * @param theSeed The seed of the random choice of words.
+     */
+    public void measureRecall(final SparseMatrix theApprox,
+                              final int theSample, final long theSeed) {
+        final int aRows = myL.getRowCount();
+        final int aSample = Math.min(theSample, aRows);
+        final SparseMatrix aLt = new MatTranspose(myL).getSparseLt();
+        final int[] aPtr = myL.rowPtr();
+        final int[] aCols = myL.colIdx();
+        final int[] tPtr = aLt.rowPtr();
+        final int[] tCols = aLt.colIdx();
+        final int[] xPtr = theApprox.rowPtr();
+        final int[] xCols = theApprox.colIdx();
+        final double aThreshold = getThreshold();
+
+        final int[] someWords = new int[aRows];
+        for (int i = 0; i < aRows; i++) {
+            someWords[i] = i;
+        }//END for (INDEX i)
+        final Random aRandom = new Random(theSeed);
+        for (int s = 0; s < aSample; s++) {
+            final int aSwap = s + aRandom.nextInt(aRows - s);
+            final int aWord = someWords[aSwap];
+            someWords[aSwap] = someWords[s];
+            someWords[s] = aWord;
+        }//END for (INDEX s)
+
+        final int[] aShared = new int[aRows];
+        int[] aTouched = new int[CHUNK_ROWS];
+        mySampledPairs = 0;
+        myFoundPairs = 0;
+        mySampledAbove = 0;
+        myFoundAbove = 0;
+        for (int s = 0; s < aSample; s++) {
+            final int i = someWords[s];
+
+            int aCount = 0;
+            for (int k = aPtr[i]; k < aPtr[i + 1]; k++) {
+                final int aCol = aCols[k];
+                for (int t = tPtr[aCol]; t < tPtr[aCol + 1]; t++) {
+                    final int j = tCols[t];
+                    if (j != i) {
+                        if (aShared[j] == 0) {
+                            if (aCount == aTouched.length) {
+                                aTouched = Arrays.copyOf(aTouched, 2 * aCount);
+                            }//END if
+                            aTouched[aCount++] = j;
+                        }//END if
+                        aShared[j]++;
+                    }//END if
+                }//END for (INDEX t)
+            }//END for (INDEX k)
+
+            final int aSize = aPtr[i + 1] - aPtr[i];
+            for (int k = 0; k < aCount; k++) {
+                final int j = aTouched[k];
+                final int aBoth = aShared[j];
+                final double aJaccard = (double) aBoth
+                        / (aSize + aPtr[j + 1] - aPtr[j] - aBoth);
+                final boolean isFound = Arrays.binarySearch(xCols, xPtr[i],
+                                                            xPtr[i + 1],
+                                                            j) >= 0;
+
+                mySampledPairs++;
+                if (isFound) {
+                    myFoundPairs++;
+                }//END if
+                if (aJaccard >= aThreshold) {
+                    mySampledAbove++;
+                    if (isFound) {
+                        myFoundAbove++;
+                    }//END if
+                }//END if
+                aShared[j] = 0;
+            }//END for (INDEX k)
+        }//END for (INDEX s)
+    }//END measureRecall() METHOD
+
+    /**
+     * Method to return the number of true pairs of the sampled words, those
+     *  sharing at least one N-gram, counted in the last measurement.
+     *
+     * @return mySampledPairs The number of true pairs sampled.
+     */
+    public long getSampledPairCount() {
+        return mySampledPairs;
+    }//END getSampledPairCount() METHOD
+
+    /**
+     * Method to return the share of the sampled true pairs which were found.
+     *
+     * @return The recall over every sampled pair, 1 if there were none.
+     */
+    public double getRecall() {
+        double aRecall = 1;
+        if (mySampledPairs > 0) {
+            aRecall = (double) myFoundPairs / mySampledPairs;
+        }//END if
+
+        return aRecall;
+    }//END getRecall() METHOD
+
+    /**
+     * Method to return the share of the sampled true pairs with a Jaccard
+     *  similarity of at least the threshold which were found.
+     *
+     * @return The recall over the pairs at or over the threshold, 1 if
+     *  there were none.
+     */
+    public double getThresholdRecall() {
+        double aRecall = 1;
+        if (mySampledAbove > 0) {
+            aRecall = (double) myFoundAbove / mySampledAbove;
+        }//END if
+
+        return aRecall;
+    }//END getThresholdRecall() METHOD
+
+    /**
+     * Private helper to compute the MinHash signature of every word, one
+     *  chunk of words per task.  The signature of word i is held in
+     *  positions i * bands * rows on; a word with no N-grams has none, and
+     *  is never a candidate.
+     *
+     * @return someSignatures Integer array holding every signature.
+     */
+    private int[] signatures() {
+        final int aRows = myL.getRowCount();
+        final int aLength = myMultipliers.length;
+        final int[] aPtr = myL.rowPtr();
+        final int[] aCols = myL.colIdx();
+        if ((long) aRows * aLength > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Signatures too large; use fewer"
+                                            + " bands or rows");
+        }//END if
+        final int[] someSignatures = new int[aRows * aLength];
+
+        final int aChunks = (aRows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        ChunkTask.runAll(myPool, aChunks, new ChunkTask.Body() {
+            @Override
+            public void run(final int theChunk) {
+                final int aFrom = theChunk * CHUNK_ROWS;
+                final int aTo = Math.min(aFrom + CHUNK_ROWS, aRows);
+
+                for (int i = aFrom; i < aTo; i++) {
+                    final int aBase = i * aLength;
+                    Arrays.fill(someSignatures, aBase, aBase + aLength,
+                                Integer.MAX_VALUE);
+                    for (int k = aPtr[i]; k < aPtr[i + 1]; k++) {
+                        final long aCol = aCols[k];
+                        for (int h = 0; h < aLength; h++) {
+                            final int aHash = (int) (mix(myMultipliers[h]
+                                                         * aCol
+                                                         + myOffsets[h])
+                                                     >>> 33);
+                            if (aHash < someSignatures[aBase + h]) {
+                                someSignatures[aBase + h] = aHash;
+                            }//END if
+                        }//END for (INDEX h)
+                    }//END for (INDEX k)
+                }//END for (INDEX i)
+            }//END run() METHOD
+        });
+
+        return someSignatures;
+    }//END signatures() METHOD
+
+    /**
+     * Private helper to find the distinct candidate pairs, one band per
+     *  task.  The words of each band are sorted by a hash of their band, so
+     *  the words agreeing in the band lie next to each other; a hash
+     *  collision only adds a pair whose entry is then found exactly.
+     *
+     * @param theSignatures The signature of every word.
+     * @return somePairs Long array holding each pair (i, j) with i &lt; j as
+     *  i in the high half and j in the low half, sorted and distinct.
+     */
+    private long[] candidatePairs(final int[] theSignatures) {
+        final int aRows = myL.getRowCount();
+        final int aLength = myMultipliers.length;
+        final int[] aPtr = myL.rowPtr();
+        final long[][] aParts = new long[myBands][];
+
+        ChunkTask.runAll(myPool, myBands, new ChunkTask.Body() {
+            @Override
+            public void run(final int theBand) {
+                final long[] someKeys = new long[aRows];
+                int aCount = 0;
+                for (int i = 0; i < aRows; i++) {
+                    if (aPtr[i + 1] > aPtr[i]) {
+                        long aHash = theBand;
+                        final int aBase = i * aLength + theBand * myRows;
+                        for (int r = 0; r < myRows; r++) {
+                            aHash = mix(aHash * MIX_TWO
+                                        + theSignatures[aBase + r]);
+                        }//END for (INDEX r)
+                        someKeys[aCount++] = (aHash & 0xffffffff00000000L)
+                                             | i;
+                    }//END if
+                }//END for (INDEX i)
+                Arrays.sort(someKeys, 0, aCount);
+
+                long[] somePairs = new long[CHUNK_ROWS];
+                int aPairs = 0;
+                int aStart = 0;
+                while (aStart < aCount) {
+                    int anEnd = aStart + 1;
+                    while (anEnd < aCount && (someKeys[anEnd] >>> 32)
+                                             == (someKeys[aStart] >>> 32)) {
+                        anEnd++;
+                    }//END while LOOP
+
+                    for (int a = aStart; a < anEnd; a++) {
+                        for (int b = a + 1; b < anEnd; b++) {
+                            if (aPairs == somePairs.length) {
+                                somePairs = Arrays.copyOf(somePairs,
+                                                          2 * aPairs);
+                            }//END if
+                            somePairs[aPairs++] = (someKeys[a] << 32)
+                                                  | (someKeys[b]
+                                                     & 0xffffffffL);
+                        }//END for (INDEX b)
+                    }//END for (INDEX a)
+                    aStart = anEnd;
+                }//END while LOOP
+
+                aParts[theBand] = Arrays.copyOf(somePairs, aPairs);
+            }//END run() METHOD
+        });
+
+        long aTotal = 0;
+        for (final long[] aPart : aParts) {
+            aTotal += aPart.length;
+        }//END for
+        if (aTotal > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many candidate pairs; use"
+                                            + " more rows per band");
+        }//END if
+
+        long[] somePairs = new long[(int) aTotal];
+        int aPos = 0;
+        for (int b = 0; b < myBands; b++) {
+            System.arraycopy(aParts[b], 0, somePairs, aPos, aParts[b].length);
+            aPos += aParts[b].length;
+            aParts[b] = null;
+        }//END for (INDEX b)
+        Arrays.sort(somePairs);
+
+        int aDistinct = 0;
+        for (int k = 0; k < somePairs.length; k++) {
+            if (aDistinct == 0 || somePairs[k] != somePairs[aDistinct - 1]) {
+                somePairs[aDistinct++] = somePairs[k];
+            }//END if
+        }//END for (INDEX k)
+
+        return Arrays.copyOf(somePairs, aDistinct);
+    }//END candidatePairs() METHOD
+
+    /**
+     * Private helper to build the upper triangle rows of the approximate
+     *  LLt for a range of rows: the diagonal and the candidate pairs of each
+     *  row, each the dot product of two rows of L.
+     *
+     * @param thePairs The sorted candidate pairs.
+     * @param thePairPtr The position of each row's first pair.
+     * @param theFrom The first row.
+     * @param theTo The row just past the range.
+     * @return The upper triangle rows, with their columns numbered as in LLt.
+     */
+    private SparseMatrix upperRows(final long[] thePairs,
+                                   final int[] thePairPtr, final int theFrom,
+                                   final int theTo) {
+        final SparseMatrixBuilder aBuilder;
+        aBuilder = new SparseMatrixBuilder(myL.getRowCount());
+        int[] someCols = new int[CHUNK_ROWS];
+        long[] someVals = new long[CHUNK_ROWS];
+
+        for (int i = theFrom; i < theTo; i++) {
+            final int aLength = thePairPtr[i + 1] - thePairPtr[i] + 1;
+            if (someCols.length < aLength) {
+                someCols = new int[Math.max(aLength, 2 * someCols.length)];
+                someVals = new long[someCols.length];
+            }//END if
+
+            int aCount = 0;
+            final long aSelf = dot(i, i);
+            if (aSelf != 0) {
+                someCols[aCount] = i;
+                someVals[aCount++] = aSelf;
+            }//END if
+            for (int p = thePairPtr[i]; p < thePairPtr[i + 1]; p++) {
+                final int j = (int) thePairs[p];
+                final long aValue = dot(i, j);
+                if (aValue != 0) {
+                    someCols[aCount] = j;
+                    someVals[aCount++] = aValue;
+                }//END if
+            }//END for (INDEX p)
+
+            aBuilder.addRow(someCols, someVals, 0, aCount);
+        }//END for (INDEX i)
+
+        return aBuilder.build();
+    }//END upperRows() METHOD
+
+    /**
+     * Private helper to return the dot product of two rows of L, merging
+     *  their sorted column indices, summed in a long.
+     *
+     * @param theA The first row.
+     * @param theB The second row.
+     * @return sum The dot product.
+     */
+    private long dot(final int theA, final int theB) {
+        final int[] aPtr = myL.rowPtr();
+        final int[] aCols = myL.colIdx();
+        final int[] aVals = myLVals;
+
+        int a = aPtr[theA];
+        int b = aPtr[theB];
+        long sum = 0;
+        while (a < aPtr[theA + 1] && b < aPtr[theB + 1]) {
+            if (aCols[a] < aCols[b]) {
+                a++;
+            } else if (aCols[a] > aCols[b]) {
+                b++;
+            } else {
+                sum += (long) aVals[a++] * aVals[b++];
+            }//END if
+        }//END while LOOP
+
+        return sum;
+    }//END dot() METHOD
+
+    /**
+     * Private helper to mix the bits of a value, the final step of
+     *  MurmurHash3, so that nearby values hash far apart.
+     *
+     * @param theValue The value to mix.
+     * @return aHash The mixed value.
+     */
+    private static long mix(final long theValue) {
+        long aHash = theValue;
+        aHash ^= aHash >>> 33;
+        aHash *= MIX_ONE;
+        aHash ^= aHash >>> 33;
+        aHash *= MIX_TWO;
+        aHash ^= aHash >>> 33;
+
+        return aHash;
+    }//END mix() METHOD
+
+}//END MinHashLLt.java CLASS
@@ -0,0 +1,393 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.util.Arrays;
+
+/**
+ * Class which compiles a list of N-grams into a single Aho-Corasick automaton
+ *  so that every (possibly overlapping) occurrence of every N-gram in a word
+ *  can be counted with one linear scan over the characters of that word.
+ *
+ * <p>The trie edges are stored in one open-addressing hash table keyed by the
+ *  pair (state, character), failure and output links are kept in primitive
+ *  arrays, and the N-gram indices that end at each state are kept in a
+ *  compressed list.  Empty N-grams never match anything.  The N-grams are
+ *  taken from an NgramDictionary, so the column each is reported under is
+ *  its id there.</p>
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.2
+ */
+public class NgramAutomaton {
+
+    /** Constant for the root state of the automaton. */
+    private static final int ROOT = 0;
+
+    /** Constant used to mark an empty slot in the edge table. */
+    private static final long EMPTY_KEY = -1L;
+
+    /** Constant for the minimum size of the edge table. */
+    private static final int MIN_TABLE_SIZE = 16;
+
+    /** Integer representing the number of N-grams (columns) compiled. */
+    private final int myNgramCnt;
+
+    /** Integer representing the number of states in the automaton. */
+    private final int myStateCnt;
+
+    /** Long array of edge keys, each packing a state and a character. */
+    private final long[] myEdgeKeys;
+
+    /** Integer array of edge targets, parallel to the edge keys. */
+    private final int[] myEdgeTargets;
+
+    /** Integer used to mask hash codes into the edge table. */
+    private final int myEdgeMask;
+
+    /** Integer array holding the failure link of each state. */
+    private final int[] myFail;
+
+    /**
+     * Integer array holding, for each state, the nearest state along its
+     *  failure chain (itself included) which has outputs, or -1 if none.
+     */
+    private final int[] myOutLink;
+
+    /** Integer array giving where each state's outputs start in myOutputs. */
+    private final int[] myOutStart;
+
+    /** Integer array holding the N-gram indices which end at each state. */
+    private final int[] myOutputs;
+
+
+    /**
+     * Compiles the passed N-grams into an automaton.  Repeated N-grams are
+     *  dropped, so each N-gram is reported under the position of its first
+     *  occurrence among the distinct N-grams.
+     *
+     * @param theNgrams String array containing the N-grams to compile.
+     */
+    public NgramAutomaton(final String[] theNgrams) {
+        this(new NgramDictionary(theNgrams));
+    }//END constructor
+
+    /**
+     * Compiles the N-grams of the passed dictionary into an automaton, each
+     *  reported under its id.
+     *
+     * @param theNgrams The dictionary holding the N-grams to compile.
+     */
+    public NgramAutomaton(final NgramDictionary theNgrams) {
+        myNgramCnt = theNgrams.getCount();
+
+        int aMaxStates = 1;
+        for (int j = 0; j < myNgramCnt; j++) {
+            aMaxStates += theNgrams.getLength(j);
+        }//END for (INDEX j)
+
+        int aTableSize = MIN_TABLE_SIZE;
+        while (aTableSize < 2 * aMaxStates) {
+            aTableSize <<= 1;
+        }//END while LOOP
+        myEdgeKeys = new long[aTableSize];
+        Arrays.fill(myEdgeKeys, EMPTY_KEY);
+        myEdgeTargets = new int[aTableSize];
+        myEdgeMask = aTableSize - 1;
+
+        // Build the trie, remembering the terminal state of each N-gram.
+        final int[] aTerminal = new int[myNgramCnt];
+        final int[] aOutCnt = new int[aMaxStates];
+        final int[] aParent = new int[aMaxStates];
+        final char[] aLabel = new char[aMaxStates];
+        int aStates = 1;
+        for (int j = 0; j < myNgramCnt; j++) {
+            final int aNgramSize = theNgrams.getLength(j);
+
+            if (aNgramSize == 0) {
+                aTerminal[j] = -1;
+            } else {
+                int aState = ROOT;
+                for (int k = 0; k < aNgramSize; k++) {
+                    final char c = theNgrams.charAt(j, k);
+                    int aNext = edge(aState, c);
+                    if (aNext < 0) {
+                        aNext = aStates;
+                        aStates++;
+                        aParent[aNext] = aState;
+                        aLabel[aNext] = c;
+                        putEdge(aState, c, aNext);
+                    }//END if
+                    aState = aNext;
+                }//END for (INDEX k)
+                aTerminal[j] = aState;
+                aOutCnt[aState]++;
+            }//END if
+        }//END for (INDEX j)
+        myStateCnt = aStates;
+
+        // Lay the outputs out per state, keeping N-gram order within a state.
+        myOutStart = new int[myStateCnt + 1];
+        for (int s = 0; s < myStateCnt; s++) {
+            myOutStart[s + 1] = myOutStart[s] + aOutCnt[s];
+        }//END for (INDEX s)
+        myOutputs = new int[myOutStart[myStateCnt]];
+        final int[] aCursor = Arrays.copyOf(myOutStart, myStateCnt);
+        for (int j = 0; j < myNgramCnt; j++) {
+            if (aTerminal[j] >= 0) {
+                myOutputs[aCursor[aTerminal[j]]++] = j;
+            }//END if
+        }//END for (INDEX j)
+
+        // Breadth first pass to set the failure and output links.  States are
+        //  numbered in insertion order, so a state's parent always precedes
+        //  it, but breadth first order is needed for the failure targets.
+        myFail = new int[myStateCnt];
+        myOutLink = new int[myStateCnt];
+        myOutLink[ROOT] = -1;
+        final int[] aQueue = bfsOrder(aParent);
+        for (int q = 1; q < myStateCnt; q++) {
+            final int aState = aQueue[q];
+            final int aPar = aParent[aState];
+            final char c = aLabel[aState];
+
+            int aFail = ROOT;
+            if (aPar != ROOT) {
+                aFail = next(myFail[aPar], c);
+            }//END if
+            myFail[aState] = aFail;
+
+            if (myOutStart[aState + 1] > myOutStart[aState]) {
+                myOutLink[aState] = aState;
+            } else {
+                myOutLink[aState] = myOutLink[aFail];
+            }//END if
+        }//END for (INDEX q)
+    }//END constructor
+
+
+    /**
+     * Method to count every occurrence of every N-gram in the passed word,
+     *  adding the number of occurrences of N-gram j to theCounts[j].
+     *
+     * @param theWord The word to scan.
+     * @param theCounts Integer array, at least as long as the number of
+     *  N-grams, which the occurrence counts are added to.
+     */
+    public void countInto(final CharSequence theWord, final int[] theCounts) {
+        final int aWordSize = theWord.length();
+
+        int aState = ROOT;
+        for (int k = 0; k < aWordSize; k++) {
+            aState = next(aState, theWord.charAt(k));
+
+            for (int o = myOutLink[aState]; o >= 0; o = myOutLink[myFail[o]]) {
+                for (int p = myOutStart[o]; p < myOutStart[o + 1]; p++) {
+                    theCounts[myOutputs[p]]++;
+                }//END for (INDEX p)
+            }//END for (INDEX o)
+        }//END for (INDEX k)
+    }//END countInto() METHOD
+
+    /**
+     * Method to count every occurrence of every N-gram in the passed word,
+     *  as countInto(CharSequence, int[]) does, while also recording the
+     *  N-grams whose count goes from zero to non-zero so that the caller can
+     *  find and reset them without scanning every column.
+     *
+     * @param theWord The word to scan.
+     * @param theCounts Integer array, at least as long as the number of
+     *  N-grams, which the occurrence counts are added to.
+     * @param theTouched Integer array, at least as long as the number of
+     *  N-grams, which the newly non-zero N-gram indices are written to.
+     * @param theTouchedCnt The number of entries already in theTouched.
+     * @return aTouchedCnt The number of entries in theTouched afterwards.
+     */
+    public int countInto(final CharSequence theWord, final int[] theCounts,
+                         final int[] theTouched, final int theTouchedCnt) {
+        final int aWordSize = theWord.length();
+
+        int aTouchedCnt = theTouchedCnt;
+        int aState = ROOT;
+        for (int k = 0; k < aWordSize; k++) {
+            aState = next(aState, theWord.charAt(k));
+
+            for (int o = myOutLink[aState]; o >= 0; o = myOutLink[myFail[o]]) {
+                for (int p = myOutStart[o]; p < myOutStart[o + 1]; p++) {
+                    final int j = myOutputs[p];
+                    if (theCounts[j]++ == 0) {
+                        theTouched[aTouchedCnt++] = j;
+                    }//END if
+                }//END for (INDEX p)
+            }//END for (INDEX o)
+        }//END for (INDEX k)
+
+        return aTouchedCnt;
+    }//END countInto() METHOD
+
+    /**
+     * Method to count every occurrence of every N-gram in a word held in a
+     *  range of a char array, such as a line decoded into a shared arena,
+     *  exactly as countInto(CharSequence, int[], int[], int) does.
+     *
+     * @param theChars The char array holding the word.
+     * @param theFrom The position of the word's first char.
+     * @param theTo The position just past the word's last char.
+     * @param theCounts Integer array, at least as long as the number of
+     *  N-grams, which the occurrence counts are added to.
+     * @param theTouched Integer array, at least as long as the number of
+     *  N-grams, which the newly non-zero N-gram indices are written to.
+     * @param theTouchedCnt The number of entries already in theTouched.
+     * @return aTouchedCnt The number of entries in theTouched afterwards.
+     */
+    public int countInto(final char[] theChars, final int theFrom,
+                         final int theTo, final int[] theCounts,
+                         final int[] theTouched, final int theTouchedCnt) {
+        int aTouchedCnt = theTouchedCnt;
+        int aState = ROOT;
+        for (int k = theFrom; k < theTo; k++) {
+            aState = next(aState, theChars[k]);
+
+            for (int o = myOutLink[aState]; o >= 0; o = myOutLink[myFail[o]]) {
+                for (int p = myOutStart[o]; p < myOutStart[o + 1]; p++) {
+                    final int j = myOutputs[p];
+                    if (theCounts[j]++ == 0) {
+                        theTouched[aTouchedCnt++] = j;
+                    }//END if
+                }//END for (INDEX p)
+            }//END for (INDEX o)
+        }//END for (INDEX k)
+
+        return aTouchedCnt;
+    }//END countInto() METHOD
+
+    /**
+     * Method to return the number of N-grams compiled into this automaton.
+     *
+     * @return myNgramCnt The number of N-grams, and therefore of columns.
+     */
+    public int getNgramCount() {
+        return myNgramCnt;
+    }//END getNgramCount() METHOD
+
+    /**
+     * Private helper to follow the goto function from a state on a character,
+     *  falling back along the failure links until an edge is found.
+     *
+     * @param theState The state to move from.
+     * @param theChar The character read.
+     * @return aState The state reached.
+     */
+    private int next(final int theState, final char theChar) {
+        int aState = theState;
+        int aNext = edge(aState, theChar);
+
+        while (aNext < 0 && aState != ROOT) {
+            aState = myFail[aState];
+            aNext = edge(aState, theChar);
+        }//END while LOOP
+
+        if (aNext < 0) {
+            aNext = ROOT;
+        }//END if
+
+        return aNext;
+    }//END next() METHOD
+
+    /**
+     * Private helper to look up the trie edge leaving a state on a character.
+     *
+     * @param theState The state the edge leaves.
+     * @param theChar The character labelling the edge.
+     * @return The target state, or -1 if there is no such edge.
+     */
+    private int edge(final int theState, final char theChar) {
+        final long aKey = edgeKey(theState, theChar);
+
+        int aSlot = slot(aKey);
+        while (myEdgeKeys[aSlot] != EMPTY_KEY) {
+            if (myEdgeKeys[aSlot] == aKey) {
+                return myEdgeTargets[aSlot];
+            }//END if
+            aSlot = (aSlot + 1) & myEdgeMask;
+        }//END while LOOP
+
+        return -1;
+    }//END edge() METHOD
+
+    /**
+     * Private helper to add a trie edge to the edge table.
+     *
+     * @param theState The state the edge leaves.
+     * @param theChar The character labelling the edge.
+     * @param theTarget The state the edge enters.
+     */
+    private void putEdge(final int theState, final char theChar,
+                         final int theTarget) {
+        final long aKey = edgeKey(theState, theChar);
+
+        int aSlot = slot(aKey);
+        while (myEdgeKeys[aSlot] != EMPTY_KEY) {
+            aSlot = (aSlot + 1) & myEdgeMask;
+        }//END while LOOP
+
+        myEdgeKeys[aSlot] = aKey;
+        myEdgeTargets[aSlot] = theTarget;
+    }//END putEdge() METHOD
+
+    /**
+     * Private helper to pack a state and a character into an edge key.
+     *
+     * @param theState The state.
+     * @param theChar The character.
+     * @return The packed key.
+     */
+    private static long edgeKey(final int theState, final char theChar) {
+        return ((long) theState << Character.SIZE) | theChar;
+    }//END edgeKey() METHOD
+
+    /**
+     * Private helper to hash an edge key to its home slot in the edge table.
+     *
+     * @param theKey The packed edge key.
+     * @return The home slot for the key.
+     */
+    private int slot(final long theKey) {
+        long aHash = theKey * 0x9E3779B97F4A7C15L;
+        aHash ^= aHash >>> 32;
+
+        return (int) aHash & myEdgeMask;
+    }//END slot() METHOD
+
+    /**
+     * Private helper to list the states of the trie in breadth first order.
+     *
+     * @param theParent Integer array holding the parent of each state.
+     * @return aQueue The states in breadth first order, starting at the root.
+     */
+    private int[] bfsOrder(final int[] theParent) {
+        final int[] aDepth = new int[myStateCnt];
+        int aMaxDepth = 0;
+        for (int s = 1; s < myStateCnt; s++) {
+            aDepth[s] = aDepth[theParent[s]] + 1;
+            aMaxDepth = Math.max(aMaxDepth, aDepth[s]);
+        }//END for (INDEX s)
+
+        final int[] aStart = new int[aMaxDepth + 2];
+        for (int s = 0; s < myStateCnt; s++) {
+            aStart[aDepth[s] + 1]++;
+        }//END for (INDEX s)
+        for (int d = 0; d <= aMaxDepth; d++) {
+            aStart[d + 1] += aStart[d];
+        }//END for (INDEX d)
+
+        final int[] aQueue = new int[myStateCnt];
+        for (int s = 0; s < myStateCnt; s++) {
+            aQueue[aStart[aDepth[s]]++] = s;
+        }//END for (INDEX s)
+
+        return aQueue;
+    }//END bfsOrder() METHOD
+
+}//END NgramAutomaton.java CLASS
@@ -0,0 +1,393 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.util.Arrays;
+
+/**
+ * Class which interns N-grams into dense integer ids, 0, 1, 2 and so on in
+ *  the order they are first added, so that each distinct N-gram is one
+ *  column of L however many times it is listed.
+ *
+ * <p>The characters of every N-gram are packed back to back into a single
+ *  char array, and an open-addressing hash table of ids, with the hash of
+ *  each id kept beside it, finds the id of an N-gram in constant time
+ *  without creating a String for it.  Once built, a dictionary may be read
+ *  from any number of threads at once.</p>
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+public class NgramDictionary {
+
+    /** Constant for the initial number of N-grams there is room for. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Constant for the largest number of chars the arena may hold. */
+    private static final int MAX_CHARS = Integer.MAX_VALUE - 8;
+
+    /** Constant marking an empty slot in the hash table. */
+    private static final int EMPTY = -1;
+
+    /** The characters of every N-gram, packed back to back by id. */
+    private char[] myChars;
+
+    /** Integer array holding where each id starts in the arena, plus one. */
+    private int[] myStarts;
+
+    /** Integer array holding the hash of each id. */
+    private int[] myHashes;
+
+    /** Integer array of ids, by hash slot, or EMPTY. */
+    private int[] myTable;
+
+    /** Integer representing the number of distinct N-grams. */
+    private int myCount;
+
+    /** Long representing the number of N-grams added which were repeats. */
+    private long myRepeats;
+
+
+    /**
+     * Creates an empty dictionary.
+     */
+    public NgramDictionary() {
+        myChars = new char[INITIAL_CAPACITY];
+        myStarts = new int[INITIAL_CAPACITY + 1];
+        myHashes = new int[INITIAL_CAPACITY];
+        myTable = new int[2 * INITIAL_CAPACITY];
+        Arrays.fill(myTable, EMPTY);
+        myCount = 0;
+        myRepeats = 0;
+    }//END constructor
+
+    /**
+     * Creates a dictionary holding the passed N-grams, in order, with any
+     *  repeats dropped.
+     *
+     * @param theNgrams String array containing the N-grams to add.
+     */
+    public NgramDictionary(final String[] theNgrams) {
+        this();
+
+        for (final String aNgram : theNgrams) {
+            add(aNgram);
+        }//END for
+    }//END constructor
+
+
+    /**
+     * Method to add an N-gram, if it is not already held, and return its id.
+     *
+     * @param theNgram The N-gram to add.
+     * @return anId The id of the N-gram.
+     */
+    public int add(final CharSequence theNgram) {
+        final int aLength = theNgram.length();
+        final int aHash = hash(theNgram);
+
+        int anId = find(theNgram, aHash);
+        if (anId < 0) {
+            final int aStart = reserve(aLength);
+            for (int k = 0; k < aLength; k++) {
+                myChars[aStart + k] = theNgram.charAt(k);
+            }//END for (INDEX k)
+            anId = insert(aHash);
+        } else {
+            myRepeats++;
+        }//END if
+
+        return anId;
+    }//END add() METHOD
+
+    /**
+     * Method to add an N-gram given as a range of a char array, if it is not
+     *  already held, and return its id.  The array is not kept.
+     *
+     * @param theChars The char array holding the N-gram.
+     * @param theFrom The position of the first char of the N-gram.
+     * @param theTo The position just past the last char of the N-gram.
+     * @return anId The id of the N-gram.
+     */
+    public int add(final char[] theChars, final int theFrom, final int theTo) {
+        final int aHash = hash(theChars, theFrom, theTo);
+
+        int anId = find(theChars, theFrom, theTo, aHash);
+        if (anId < 0) {
+            final int aStart = reserve(theTo - theFrom);
+            System.arraycopy(theChars, theFrom, myChars, aStart,
+                             theTo - theFrom);
+            anId = insert(aHash);
+        } else {
+            myRepeats++;
+        }//END if
+
+        return anId;
+    }//END add() METHOD
+
+    /**
+     * Method to return the id of an N-gram.
+     *
+     * @param theNgram The N-gram to look up.
+     * @return The id of the N-gram, or -1 if it is not held.
+     */
+    public int indexOf(final CharSequence theNgram) {
+        return find(theNgram, hash(theNgram));
+    }//END indexOf() METHOD
+
+    /**
+     * Method to return the id of an N-gram given as a range of a char array.
+     *
+     * @param theChars The char array holding the N-gram.
+     * @param theFrom The position of the first char of the N-gram.
+     * @param theTo The position just past the last char of the N-gram.
+     * @return The id of the N-gram, or -1 if it is not held.
+     */
+    public int indexOf(final char[] theChars, final int theFrom,
+                       final int theTo) {
+        return find(theChars, theFrom, theTo, hash(theChars, theFrom, theTo));
+    }//END indexOf() METHOD
+
+    /**
+     * Method to return the number of distinct N-grams, and so of ids.
+     *
+     * @return myCount The number of distinct N-grams.
+     */
+    public int getCount() {
+        return myCount;
+    }//END getCount() METHOD
+
+    /**
+     * Method to return how many of the N-grams added were already held.
+     *
+     * @return myRepeats The number of repeats dropped.
+     */
+    public long getRepeatCount() {
+        return myRepeats;
+    }//END getRepeatCount() METHOD
+
+    /**
+     * Method to return the length of the N-gram with the passed id.
+     *
+     * @param theId The id of the N-gram.
+     * @return The number of chars in the N-gram.
+     */
+    public int getLength(final int theId) {
+        return myStarts[theId + 1] - myStarts[theId];
+    }//END getLength() METHOD
+
+    /**
+     * Method to return one char of the N-gram with the passed id.
+     *
+     * @param theId The id of the N-gram.
+     * @param theIndex The position of the char in the N-gram.
+     * @return The char.
+     */
+    public char charAt(final int theId, final int theIndex) {
+        return myChars[myStarts[theId] + theIndex];
+    }//END charAt() METHOD
+
+    /**
+     * Method to return the N-gram with the passed id as a new String.
+     *
+     * @param theId The id of the N-gram.
+     * @return The N-gram.
+     */
+    public String get(final int theId) {
+        return new String(myChars, myStarts[theId], getLength(theId));
+    }//END get() METHOD
+
+    /**
+     * Method to return every N-gram, in id order, as a new String array.
+     *
+     * @return someNgrams String array holding the N-grams.
+     */
+    public String[] toArray() {
+        final String[] someNgrams = new String[myCount];
+        for (int j = 0; j < myCount; j++) {
+            someNgrams[j] = get(j);
+        }//END for (INDEX j)
+
+        return someNgrams;
+    }//END toArray() METHOD
+
+    /**
+     * Private helper to find the id of a CharSequence with a known hash.
+     *
+     * @param theNgram The N-gram to look up.
+     * @param theHash The hash of the N-gram.
+     * @return The id, or -1 if it is not held.
+     */
+    private int find(final CharSequence theNgram, final int theHash) {
+        final int aLength = theNgram.length();
+        final int aMask = myTable.length - 1;
+
+        int aSlot = theHash & aMask;
+        while (myTable[aSlot] != EMPTY) {
+            final int anId = myTable[aSlot];
+            if (myHashes[anId] == theHash && getLength(anId) == aLength) {
+                final int aStart = myStarts[anId];
+                int k = 0;
+                while (k < aLength && myChars[aStart + k] == theNgram.charAt(k)) {
+                    k++;
+                }//END while LOOP
+                if (k == aLength) {
+                    return anId;
+                }//END if
+            }//END if
+            aSlot = (aSlot + 1) & aMask;
+        }//END while LOOP
+
+        return -1;
+    }//END find() METHOD
+
+    /**
+     * Private helper to find the id of a char array range with a known hash.
+     *
+     * @param theChars The char array holding the N-gram.
+     * @param theFrom The position of the first char of the N-gram.
+     * @param theTo The position just past the last char of the N-gram.
+     * @param theHash The hash of the N-gram.
+     * @return The id, or -1 if it is not held.
+     */
+    private int find(final char[] theChars, final int theFrom, final int theTo,
+                     final int theHash) {
+        final int aLength = theTo - theFrom;
+        final int aMask = myTable.length - 1;
+
+        int aSlot = theHash & aMask;
+        while (myTable[aSlot] != EMPTY) {
+            final int anId = myTable[aSlot];
+            if (myHashes[anId] == theHash && getLength(anId) == aLength) {
+                final int aStart = myStarts[anId];
+                int k = 0;
+                while (k < aLength && myChars[aStart + k] == theChars[theFrom + k]) {
+                    k++;
+                }//END while LOOP
+                if (k == aLength) {
+                    return anId;
+                }//END if
+            }//END if
+            aSlot = (aSlot + 1) & aMask;
+        }//END while LOOP
+
+        return -1;
+    }//END find() METHOD
+
+    /**
+     * Private helper to make room for the chars of a new N-gram and for its
+     *  id, growing the arrays if needed.
+     *
+     * @param theLength The number of chars in the new N-gram.
+     * @return The position in the arena to copy the chars to.
+     */
+    private int reserve(final int theLength) {
+        final int aStart = myStarts[myCount];
+
+        if (theLength > MAX_CHARS - aStart) {
+            throw new IllegalStateException("Too many N-gram chars to hold");
+        }//END if
+        if (aStart + theLength > myChars.length) {
+            final long aSize = Math.max(aStart + theLength,
+                                        myChars.length * 2L);
+            myChars = Arrays.copyOf(myChars, (int) Math.min(aSize, MAX_CHARS));
+        }//END if
+
+        if (myCount == myHashes.length) {
+            myHashes = Arrays.copyOf(myHashes, 2 * myCount);
+            myStarts = Arrays.copyOf(myStarts, 2 * myCount + 1);
+        }//END if
+        myStarts[myCount + 1] = aStart + theLength;
+
+        return aStart;
+    }//END reserve() METHOD
+
+    /**
+     * Private helper to give the N-gram just copied into the arena the next
+     *  id and enter it into the hash table, growing the table to stay at
+     *  most half full.
+     *
+     * @param theHash The hash of the N-gram.
+     * @return anId The new id.
+     */
+    private int insert(final int theHash) {
+        final int anId = myCount;
+        myHashes[anId] = theHash;
+        myCount++;
+
+        if (2 * myCount > myTable.length) {
+            myTable = new int[2 * myTable.length];
+            Arrays.fill(myTable, EMPTY);
+            for (int j = 0; j < myCount; j++) {
+                place(j);
+            }//END for (INDEX j)
+        } else {
+            place(anId);
+        }//END if
+
+        return anId;
+    }//END insert() METHOD
+
+    /**
+     * Private helper to put an id into the first free slot from its home.
+     *
+     * @param theId The id to place.
+     */
+    private void place(final int theId) {
+        final int aMask = myTable.length - 1;
+
+        int aSlot = myHashes[theId] & aMask;
+        while (myTable[aSlot] != EMPTY) {
+            aSlot = (aSlot + 1) & aMask;
+        }//END while LOOP
+        myTable[aSlot] = theId;
+    }//END place() METHOD
+
+    /**
+     * Private helper to hash a CharSequence, mixing the bits so that
+     *  similar N-grams spread over the table.
+     *
+     * @param theNgram The N-gram.
+     * @return The hash.
+     */
+    private static int hash(final CharSequence theNgram) {
+        int aHash = 0;
+        for (int k = 0; k < theNgram.length(); k++) {
+            aHash = 31 * aHash + theNgram.charAt(k);
+        }//END for (INDEX k)
+
+        return mix(aHash);
+    }//END hash() METHOD
+
+    /**
+     * Private helper to hash a char array range the same way.
+     *
+     * @param theChars The char array holding the N-gram.
+     * @param theFrom The position of the first char of the N-gram.
+     * @param theTo The position just past the last char of the N-gram.
+     * @return The hash.
+     */
+    private static int hash(final char[] theChars, final int theFrom,
+                            final int theTo) {
+        int aHash = 0;
+        for (int k = theFrom; k < theTo; k++) {
+            aHash = 31 * aHash + theChars[k];
+        }//END for (INDEX k)
+
+        return mix(aHash);
+    }//END hash() METHOD
+
+    /**
+     * Private helper to spread the bits of a hash.
+     *
+     * @param theHash The hash to mix.
+     * @return The mixed hash.
+     */
+    private static int mix(final int theHash) {
+        final int aHash = theHash * 0x9E3779B9;
+
+        return aHash ^ (aHash >>> 16);
+    }//END mix() METHOD
+
+}//END NgramDictionary.java CLASS
@@ -0,0 +1,336 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Class holding a dense integer matrix outside the Java heap, so that a
+ *  matrix too large to hold comfortably on the heap neither needs a huge
+ *  heap nor is scanned by the garbage collector.  The entries are held row
+ *  by row, each as a signed little endian integer of 1, 2, 4 or 8 bytes, in
+ *  direct buffers or in buffers mapped from a file, which are split into
+ *  segments of whole rows so no one buffer passes the limit on its size.
+ *  A matrix mapped from a file is written to the file as its entries are
+ *  set, so a result computed into it needs no further writing.  Entries
+ *  start as zero.  Different threads may set different entries at once.
+ *  Only the exact LLt of an --off-heap run is held this way; L and every
+ *  sparse result stay on the heap as SparseMatrix.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.3
+ */
+public final class OffHeapMatrix {
+
+    /** Constant for the most bytes held in each segment. */
+    private static final int SEGMENT_BYTES = 1 << 30;
+
+    /** Constant for the byte order of every entry. */
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /** Integer representing the number of rows in the matrix. */
+    private final int myRows;
+
+    /** Integer representing the number of columns in the matrix. */
+    private final int myCols;
+
+    /** Integer representing the number of bytes each entry is held in. */
+    private final int myWidth;
+
+    /** Integer representing the number of rows held in each segment. */
+    private final int mySegmentRows;
+
+    /** The segments, each of mySegmentRows rows but the last. */
+    private final ByteBuffer[] mySegments;
+
+
+    /**
+     * Private constructor for a matrix held in the passed segments.
+     *
+     * @param theRows The number of rows in the matrix.
+     * @param theCols The number of columns in the matrix.
+     * @param theWidth The bytes per entry.
+     * @param theSegmentRows The number of rows in each segment.
+     * @param theSegments The segments.
+     */
+    private OffHeapMatrix(final int theRows, final int theCols,
+                         final int theWidth, final int theSegmentRows,
+                         final ByteBuffer[] theSegments) {
+        myRows = theRows;
+        myCols = theCols;
+        myWidth = theWidth;
+        mySegmentRows = theSegmentRows;
+        mySegments = theSegments;
+    }//END constructor
+
+
+    /**
+     * Method to create a matrix of zeros held in direct buffers.
+     *
+     * @param theRows The number of rows in the matrix.
+     * @param theCols The number of columns in the matrix.
+     * @param theWidth The bytes per entry, 1, 2, 4 or 8.
+     * @return The matrix.
+     */
+    public static OffHeapMatrix allocate(final int theRows, final int theCols,
+                                         final int theWidth) {
+        final int aSegmentRows = segmentRows(theRows, theCols, theWidth);
+        final ByteBuffer[] someSegments = new ByteBuffer[segmentCount(
+                theRows, aSegmentRows)];
+        for (int s = 0; s < someSegments.length; s++) {
+            someSegments[s] = ByteBuffer.allocateDirect(segmentBytes(
+                    theRows, theCols, theWidth, aSegmentRows, s));
+            someSegments[s].order(ORDER);
+        }//END for (INDEX s)
+
+        return new OffHeapMatrix(theRows, theCols, theWidth, aSegmentRows,
+                                 someSegments);
+    }//END allocate() METHOD
+
+    /**
+     * Method to create a matrix held in a file, mapping the bytes of the
+     *  file from the passed position on, and growing the file to hold them.
+     *  The bytes added to the file read as zeros; any already there are
+     *  taken as the entries.  The file may be closed once mapped.
+     *
+     * @param theChannel The channel of the file, open to read and write.
+     * @param thePosition The position in the file of the first entry.
+     * @param theRows The number of rows in the matrix.
+     * @param theCols The number of columns in the matrix.
+     * @param theWidth The bytes per entry, 1, 2, 4 or 8.
+     * @return The matrix.
+     * @throws IOException If the file cannot be mapped.
+     */
+    public static OffHeapMatrix map(final FileChannel theChannel,
+                                    final long thePosition, final int theRows,
+                                    final int theCols, final int theWidth)
+            throws IOException {
+        final int aSegmentRows = segmentRows(theRows, theCols, theWidth);
+        final long aSegmentBytes = (long) aSegmentRows * theCols * theWidth;
+        final ByteBuffer[] someSegments = new ByteBuffer[segmentCount(
+                theRows, aSegmentRows)];
+        for (int s = 0; s < someSegments.length; s++) {
+            someSegments[s] = theChannel.map(FileChannel.MapMode.READ_WRITE,
+                                             thePosition + s * aSegmentBytes,
+                                             segmentBytes(theRows, theCols,
+                                                          theWidth,
+                                                          aSegmentRows, s));
+            someSegments[s].order(ORDER);
+        }//END for (INDEX s)
+
+        return new OffHeapMatrix(theRows, theCols, theWidth, aSegmentRows,
+                                 someSegments);
+    }//END map() METHOD
+
+    /**
+     * Method to return the number of rows in the matrix.
+     *
+     * @return myRows The number of rows.
+     */
+    public int getRowCount() {
+        return myRows;
+    }//END getRowCount() METHOD
+
+    /**
+     * Method to return the number of columns in the matrix.
+     *
+     * @return myCols The number of columns.
+     */
+    public int getColCount() {
+        return myCols;
+    }//END getColCount() METHOD
+
+    /**
+     * Method to return the number of bytes each entry is held in.
+     *
+     * @return myWidth The bytes per entry.
+     */
+    public int getWidth() {
+        return myWidth;
+    }//END getWidth() METHOD
+
+    /**
+     * Method to return the entry at a row and column.
+     *
+     * @param theRow The row index.
+     * @param theCol The column index.
+     * @return aValue The entry.
+     */
+    public long get(final int theRow, final int theCol) {
+        final ByteBuffer aSegment = mySegments[theRow / mySegmentRows];
+        final int aPos = position(theRow, theCol);
+
+        final long aValue;
+        if (myWidth == Byte.BYTES) {
+            aValue = aSegment.get(aPos);
+        } else if (myWidth == Short.BYTES) {
+            aValue = aSegment.getShort(aPos);
+        } else if (myWidth == Integer.BYTES) {
+            aValue = aSegment.getInt(aPos);
+        } else {
+            aValue = aSegment.getLong(aPos);
+        }//END if
+
+        return aValue;
+    }//END get() METHOD
+
+    /**
+     * Method to set the entry at a row and column.
+     *
+     * @param theRow The row index.
+     * @param theCol The column index.
+     * @param theValue The entry, which must fit the width.
+     */
+    public void set(final int theRow, final int theCol, final long theValue) {
+        final ByteBuffer aSegment = mySegments[theRow / mySegmentRows];
+        final int aPos = position(theRow, theCol);
+
+        if (myWidth == Byte.BYTES) {
+            if (theValue != (byte) theValue) {
+                throw new IllegalArgumentException("Value too wide: "
+                                                   + theValue);
+            }//END if
+            aSegment.put(aPos, (byte) theValue);
+        } else if (myWidth == Short.BYTES) {
+            if (theValue != (short) theValue) {
+                throw new IllegalArgumentException("Value too wide: "
+                                                   + theValue);
+            }//END if
+            aSegment.putShort(aPos, (short) theValue);
+        } else if (myWidth == Integer.BYTES) {
+            if (theValue != (int) theValue) {
+                throw new IllegalArgumentException("Value too wide: "
+                                                   + theValue);
+            }//END if
+            aSegment.putInt(aPos, (int) theValue);
+        } else {
+            aSegment.putLong(aPos, theValue);
+        }//END if
+    }//END set() METHOD
+
+    /**
+     * Method to gather the non-zero entries of a row, in column order, for
+     *  writing them out.
+     *
+     * @param theRow The row index.
+     * @param theCols Integer array receiving the columns, of at least the
+     *  number of columns in length.
+     * @param theValues Long array receiving the values, as long as
+     *  theCols.
+     * @return aCount The number of non-zero entries gathered.
+     */
+    public int getRow(final int theRow, final int[] theCols,
+                      final long[] theValues) {
+        int aCount = 0;
+        for (int j = 0; j < myCols; j++) {
+            final long aValue = get(theRow, j);
+            if (aValue != 0) {
+                theCols[aCount] = j;
+                theValues[aCount] = aValue;
+                aCount++;
+            }//END if
+        }//END for (INDEX j)
+
+        return aCount;
+    }//END getRow() METHOD
+
+    /**
+     * Method to write the entries set so far out to the file, for a matrix
+     *  mapped from one; does nothing for one held in direct buffers.
+     */
+    public void force() {
+        for (final ByteBuffer aSegment : mySegments) {
+            if (aSegment instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) aSegment).force();
+            }//END if
+        }//END for
+    }//END force() METHOD
+
+    /**
+     * Private helper to return the position of an entry in its segment.
+     *
+     * @param theRow The row index.
+     * @param theCol The column index.
+     * @return The position in bytes.
+     */
+    private int position(final int theRow, final int theCol) {
+        if (theCol < 0 || theCol >= myCols) {
+            throw new IndexOutOfBoundsException("Column " + theCol);
+        }//END if
+
+        return ((theRow % mySegmentRows) * myCols + theCol) * myWidth;
+    }//END position() METHOD
+
+    /**
+     * Private helper to return the number of whole rows fitting in one
+     *  segment, checking the shape and width.
+     *
+     * @param theRows The number of rows in the matrix.
+     * @param theCols The number of columns in the matrix.
+     * @param theWidth The bytes per entry.
+     * @return aSegmentRows The rows per segment, at least 1.
+     */
+    private static int segmentRows(final int theRows, final int theCols,
+                                   final int theWidth) {
+        if (theWidth != Byte.BYTES && theWidth != Short.BYTES
+                && theWidth != Integer.BYTES && theWidth != Long.BYTES) {
+            throw new IllegalArgumentException("Element width must be 1, 2,"
+                                               + " 4 or 8 bytes");
+        }//END if
+        if (theRows < 0 || theCols < 0) {
+            throw new IllegalArgumentException("Size must not be negative");
+        }//END if
+
+        final long aRowBytes = (long) theCols * theWidth;
+        if (aRowBytes > SEGMENT_BYTES) {
+            throw new IllegalArgumentException("Rows too long to hold: "
+                                               + theCols + " columns");
+        }//END if
+
+        int aSegmentRows = Math.max(theRows, 1);
+        if (aRowBytes > 0) {
+            aSegmentRows = (int) Math.min(aSegmentRows,
+                                          SEGMENT_BYTES / aRowBytes);
+        }//END if
+
+        return aSegmentRows;
+    }//END segmentRows() METHOD
+
+    /**
+     * Private helper to return the number of segments holding the rows.
+     *
+     * @param theRows The number of rows in the matrix.
+     * @param theSegmentRows The rows per segment.
+     * @return The number of segments.
+     */
+    private static int segmentCount(final int theRows,
+                                    final int theSegmentRows) {
+        return (theRows + theSegmentRows - 1) / theSegmentRows;
+    }//END segmentCount() METHOD
+
+    /**
+     * Private helper to return the size in bytes of one segment.
+     *
+     * @param theRows The number of rows in the matrix.
+     * @param theCols The number of columns in the matrix.
+     * @param theWidth The bytes per entry.
+     * @param theSegmentRows The rows per segment.
+     * @param theSegment The index of the segment.
+     * @return The size of the segment in bytes.
+     */
+    private static int segmentBytes(final int theRows, final int theCols,
+                                    final int theWidth,
+                                    final int theSegmentRows,
+                                    final int theSegment) {
+        final int aRows = Math.min(theSegmentRows,
+                                   theRows - theSegment * theSegmentRows);
+
+        return aRows * theCols * theWidth;
+    }//END segmentBytes() METHOD
+
+}//END OffHeapMatrix.java CLASS
@@ -0,0 +1,267 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class with methods to compute LLt from posting lists, which for each
+ *  N-gram list the words holding it and how often, in word order.  The
+ *  posting lists are the rows of the transpose of L.  Row i of LLt is
+ *  gathered into a primitive accumulator by walking, for each N-gram of
+ *  word i, its posting list from word i on, so the work done is the number
+ *  of pairs of words which actually share an N-gram rather than the number
+ *  of words squared.  Only the upper triangle is gathered before it is
+ *  mirrored into the lower one.  The entries are summed in longs, so
+ *  entries past the integer range come out right, held in longs.
+ *
+ * <p>An N-gram held by a large share of the words, such as a single common
+ *  letter, makes almost every pair of words share something, and costs the
+ *  square of its posting list.  A cap may be given on the length of the
+ *  posting lists used; the N-grams over the cap are left out of LLt, as if
+ *  their columns of L were zero, and can be listed afterwards so that the
+ *  cutoff can be reported.</p>
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.4
+ */
+public class PostingsLLt {
+
+    /** Constant for the number of rows in each chunk of work. */
+    private static final int CHUNK_ROWS = 256;
+
+    /** Sparse matrix holding the values of L. */
+    private final SparseMatrix myL;
+
+    /** Integer array holding the values of L, fetched once. */
+    private final int[] myLVals;
+
+    /** Integer representing the longest posting list used, 0 for no cap. */
+    private final int myMaxPostings;
+
+    /** The pool the rows are computed on, or null to compute serially. */
+    private final ForkJoinPool myPool;
+
+    /** The counter advanced as rows are done, or null for none. */
+    private AtomicLong myRowsDone;
+
+    /** Integer array holding the N-grams left out, or null before computing. */
+    private int[] mySkipped;
+
+    /** Long representing the pairs of postings not walked for the cap. */
+    private long mySkippedPairs;
+
+
+    /**
+     * Allows LLt to be computed from the posting lists of the passed sparse
+     *  L matrix.
+     *
+     * @param theL A sparse matrix holding the values of L.
+     * @param theMaxPostings The most words an N-gram may be held by and
+     *  still be used, or 0 to use every N-gram.
+     * @param thePool The pool to compute on, or null to compute serially.
+     */
+    public PostingsLLt(final SparseMatrix theL, final int theMaxPostings,
+                       final ForkJoinPool thePool) {
+        if (theMaxPostings < 0) {
+            throw new IllegalArgumentException("Posting cap must not be"
+                                               + " negative");
+        }//END if
+
+        myL = theL;
+        myLVals = theL.values();
+        myMaxPostings = theMaxPostings;
+        myPool = thePool;
+        myRowsDone = null;
+        mySkipped = null;
+        mySkippedPairs = 0;
+    }//END constructor
+
+
+    /**
+     * Method to set a counter which is advanced, from whichever thread does
+     *  the work, each time a chunk of rows of LLt is done.
+     *
+     * @param theRowsDone The counter to advance, or null for none.
+     */
+    public void setProgress(final AtomicLong theRowsDone) {
+        myRowsDone = theRowsDone;
+    }//END setProgress() METHOD
+
+    /**
+     * Method to compute LLt from the posting lists of L.
+     *
+     * @return A sparse matrix containing the values of LLt, without the
+     *  N-grams over the cap.
+     */
+    public SparseMatrix getLLt() {
+        final int aRows = myL.getRowCount();
+        final SparseMatrix aLt = new MatTranspose(myL).getSparseLt();
+        final boolean[] isSkipped = skipLongPostings(aLt);
+
+        final int aChunks = (aRows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        final SparseMatrix[] aParts = new SparseMatrix[aChunks];
+        ChunkTask.runAll(myPool, aChunks, new ChunkTask.Body() {
+            @Override
+            public void run(final int theChunk) {
+                final int aFrom = theChunk * CHUNK_ROWS;
+                final int aTo = Math.min(aFrom + CHUNK_ROWS, aRows);
+
+                aParts[theChunk] = upperRows(aLt, isSkipped, aFrom, aTo);
+                if (myRowsDone != null) {
+                    myRowsDone.addAndGet(aTo - aFrom);
+                }//END if
+            }//END run() METHOD
+        });
+
+        final SparseMatrixBuilder anUpper = new SparseMatrixBuilder(aRows);
+        for (int c = 0; c < aChunks; c++) {
+            anUpper.addRows(aParts[c]);
+        }//END for (INDEX c)
+
+        return LLtMaker.symmetrize(anUpper.build());
+    }//END getLLt() METHOD
+
+    /**
+     * Method to return the N-grams left out of the last computation for
+     *  being held by more words than the cap.
+     *
+     * @return A copy of the ids of the N-grams left out, in increasing
+     *  order, or an empty array before computing.
+     */
+    public int[] getSkippedColumns() {
+        int[] someSkipped = new int[0];
+        if (mySkipped != null) {
+            someSkipped = mySkipped.clone();
+        }//END if
+
+        return someSkipped;
+    }//END getSkippedColumns() METHOD
+
+    /**
+     * Method to return how many pairs of words in the posting lists left
+     *  out were not walked, a measure of the work the cap saved.
+     *
+     * @return mySkippedPairs The number of pairs, each counted once.
+     */
+    public long getSkippedPairCount() {
+        return mySkippedPairs;
+    }//END getSkippedPairCount() METHOD
+
+    /**
+     * Private helper to mark the N-grams whose posting lists are over the
+     *  cap, and note them for the report.
+     *
+     * @param theLt The transpose of L, one posting list per row.
+     * @return isSkipped Boolean array marking each N-gram left out.
+     */
+    private boolean[] skipLongPostings(final SparseMatrix theLt) {
+        final int aCols = theLt.getRowCount();
+        final boolean[] isSkipped = new boolean[aCols];
+
+        int[] someSkipped = new int[0];
+        int aCount = 0;
+        mySkippedPairs = 0;
+        if (myMaxPostings > 0) {
+            for (int c = 0; c < aCols; c++) {
+                final long aLength = theLt.getRowEnd(c) - theLt.getRowStart(c);
+                if (aLength > myMaxPostings) {
+                    isSkipped[c] = true;
+                    if (aCount == someSkipped.length) {
+                        someSkipped = Arrays.copyOf(someSkipped,
+                                                    2 * aCount + 1);
+                    }//END if
+                    someSkipped[aCount++] = c;
+                    mySkippedPairs += aLength * (aLength + 1) / 2;
+                }//END if
+            }//END for (INDEX c)
+        }//END if
+
+        mySkipped = Arrays.copyOf(someSkipped, aCount);
+
+        return isSkipped;
+    }//END skipLongPostings() METHOD
+
+    /**
+     * Private helper to gather the upper triangle rows of LLt for a range of
+     *  rows.  For each N-gram of word i, the posting list is searched for
+     *  word i and walked from there, so only the entries (i, j) with
+     *  j &gt;= i are gathered.
+     *
+     * @param theLt The transpose of L, one posting list per row.
+     * @param theSkipped Boolean array marking each N-gram left out.
+     * @param theFrom The first row.
+     * @param theTo The row just past the range.
+     * @return The upper triangle rows, with their columns numbered as in LLt.
+     */
+    private SparseMatrix upperRows(final SparseMatrix theLt,
+                                   final boolean[] theSkipped,
+                                   final int theFrom, final int theTo) {
+        final int aRows = myL.getRowCount();
+        final int[] aPtr = myL.rowPtr();
+        final int[] aCols = myL.colIdx();
+        final int[] aVals = myLVals;
+        final int[] tPtr = theLt.rowPtr();
+        final int[] tCols = theLt.colIdx();
+        final int[] tVals = theLt.values();
+
+        final SparseMatrixBuilder aBuilder = new SparseMatrixBuilder(aRows);
+        final long[] anAcc = new long[aRows];
+        final boolean[] isSeen = new boolean[aRows];
+        int[] aTouched = new int[CHUNK_ROWS];
+        long[] aRowVals = new long[CHUNK_ROWS];
+
+        for (int i = theFrom; i < theTo; i++) {
+            int aCount = 0;
+            for (int k = aPtr[i]; k < aPtr[i + 1]; k++) {
+                final int aCol = aCols[k];
+                if (theSkipped[aCol]) {
+                    continue;
+                }//END if
+
+                final int aValue = aVals[k];
+                int t = Arrays.binarySearch(tCols, tPtr[aCol], tPtr[aCol + 1],
+                                            i);
+                if (t < 0) {
+                    t = -t - 1;
+                }//END if
+                for (; t < tPtr[aCol + 1]; t++) {
+                    final int j = tCols[t];
+                    if (!isSeen[j]) {
+                        isSeen[j] = true;
+                        if (aCount == aTouched.length) {
+                            aTouched = Arrays.copyOf(aTouched, 2 * aCount);
+                        }//END if
+                        aTouched[aCount++] = j;
+                    }//END if
+                    anAcc[j] += (long) aValue * tVals[t];
+                }//END for (INDEX t)
+            }//END for (INDEX k)
+
+            Arrays.sort(aTouched, 0, aCount);
+            if (aRowVals.length < aCount) {
+                aRowVals = new long[aTouched.length];
+            }//END if
+
+            int aNonZeros = 0;
+            for (int k = 0; k < aCount; k++) {
+                final int j = aTouched[k];
+                if (anAcc[j] != 0) {
+                    aTouched[aNonZeros] = j;
+                    aRowVals[aNonZeros] = anAcc[j];
+                    aNonZeros++;
+                }//END if
+                anAcc[j] = 0;
+                isSeen[j] = false;
+            }//END for (INDEX k)
+
+            aBuilder.addRow(aTouched, aRowVals, 0, aNonZeros);
+        }//END for (INDEX i)
+
+        return aBuilder.build();
+    }//END upperRows() METHOD
+
+}//END PostingsLLt.java CLASS
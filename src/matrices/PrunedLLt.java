@@ -0,0 +1,434 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class with methods to compute only the entries of LLt which matter for
+ *  clustering: for each word, the other words sharing at least a minimum
+ *  number of N-grams with it, optionally cut down to the K sharing the most.
+ *  Each row of LLt is found by scattering the word's row of L along the
+ *  transpose of L, so only the words sharing an N-gram are ever touched,
+ *  and its entries are pruned as they are gathered, so no full row of LLt
+ *  is built.  The diagonal, a word with itself, is left out.  Rows are
+ *  computed in chunks, on a pool if one is given, a wave of chunks at a
+ *  time, and sent to a row sink in order as each wave finishes, so only
+ *  the surviving entries of one wave are held at once.  A listener may
+ *  also be given which sees each row on the thread which computed it, as
+ *  soon as it is pruned, for work such as clustering which does not need
+ *  the rows in order.  Each thread keeps one set of scratch arrays, the
+ *  size of a row of LLt, for every chunk it computes, and clears only the
+ *  entries a row touched.  The entries are summed in longs, so entries
+ *  past the integer range come out right, and the rows of a chunk holding
+ *  any are sent with their values in longs.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.6
+ */
+public class PrunedLLt {
+
+    /** Constant for the number of rows in each chunk of work. */
+    private static final int CHUNK_ROWS = 256;
+
+    /** Constant for the number of chunks per pool thread in each wave. */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /** Sparse matrix holding the values of L. */
+    private final SparseMatrix myL;
+
+    /** Integer array holding the values of L, fetched once. */
+    private final int[] myLVals;
+
+    /** Integer representing the smallest entry kept. */
+    private final int myMinValue;
+
+    /** Integer representing the most entries kept in a row, 0 for all. */
+    private final int myTopK;
+
+    /** The pool the rows are computed on, or null to compute serially. */
+    private final ForkJoinPool myPool;
+
+    /** The counter advanced as rows are done, or null for none. */
+    private AtomicLong myRowsDone;
+
+    /** The sink each row is sent to as it is pruned, or null for none. */
+    private RowSink myListener;
+
+    /** Long representing the number of entries sent to the sink. */
+    private long myNonZeros;
+
+    /** The scratch arrays of each thread computing rows. */
+    private final ThreadLocal<Scratch> myScratch;
+
+
+    /**
+     * Allows the pruned LLt to be computed for the passed sparse L matrix.
+     *
+     * @param theL A sparse matrix holding the values of L.
+     * @param theMinValue The smallest entry kept, at least 1.
+     * @param theTopK The most entries kept in each row, those with the
+     *  largest values and, among equal values, the lowest columns; 0 to
+     *  keep every entry of at least the smallest value.
+     * @param thePool The pool to compute on, or null to compute serially.
+     */
+    public PrunedLLt(final SparseMatrix theL, final int theMinValue,
+                     final int theTopK, final ForkJoinPool thePool) {
+        if (theMinValue < 1 || theTopK < 0) {
+            throw new IllegalArgumentException("Smallest entry must be"
+                                               + " positive and K must not"
+                                               + " be negative");
+        }//END if
+
+        myL = theL;
+        myLVals = theL.values();
+        myMinValue = theMinValue;
+        myTopK = theTopK;
+        myPool = thePool;
+        myRowsDone = null;
+        myListener = null;
+        myNonZeros = 0;
+
+        final int aRows = theL.getRowCount();
+        myScratch = new ThreadLocal<Scratch>() {
+            @Override
+            protected Scratch initialValue() {
+                return new Scratch(aRows);
+            }//END initialValue() METHOD
+        };
+    }//END constructor
+
+
+    /**
+     * Method to give a counter which is advanced as rows are done, so that
+     *  the progress of a long computation can be followed from another
+     *  thread.
+     *
+     * @param theRowsDone The counter to advance, or null for none.
+     */
+    public void setProgress(final AtomicLong theRowsDone) {
+        myRowsDone = theRowsDone;
+    }//END setProgress() METHOD
+
+    /**
+     * Method to give a sink which is sent every row as soon as it is
+     *  pruned, from the thread which computed it and in no particular
+     *  order, so it must be safe to call from several threads at once.
+     *
+     * @param theListener The sink to send the rows to, or null for none.
+     */
+    public void setListener(final RowSink theListener) {
+        myListener = theListener;
+    }//END setListener() METHOD
+
+    /**
+     * Method to return the number of entries kept by the last computation.
+     *
+     * @return myNonZeros The number of entries sent to the sink.
+     */
+    public long getNonZeroCount() {
+        return myNonZeros;
+    }//END getNonZeroCount() METHOD
+
+    /**
+     * Method to compute every row of the pruned LLt and send it, in order,
+     *  to the passed sink, as well as to the listener if there is one.
+     *
+     * @param theSink The sink the rows are sent to, or null to send them
+     *  only to the listener, in which case no rows are held.
+     * @throws IOException If the sink or listener cannot take a row.
+     */
+    public void compute(final RowSink theSink) throws IOException {
+        final int aRows = myL.getRowCount();
+        final SparseMatrix aLt = new MatTranspose(myL).getSparseLt();
+        final int aChunks = (aRows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+
+        int aWave = 1;
+        if (theSink == null) {
+            aWave = Math.max(aChunks, 1);
+        } else if (myPool != null) {
+            aWave = CHUNKS_PER_THREAD * myPool.getParallelism();
+        }//END if
+
+        myNonZeros = 0;
+        for (int c = 0; c < aChunks; c += aWave) {
+            final int aFirst = c;
+            final SparseMatrix[] aParts = new SparseMatrix[Math.min(aWave,
+                                                          aChunks - c)];
+            final long[] someKept = new long[aParts.length];
+            try {
+                ChunkTask.runAll(myPool, aParts.length, new ChunkTask.Body() {
+                    @Override
+                    public void run(final int theChunk) {
+                        final int aFrom = (aFirst + theChunk) * CHUNK_ROWS;
+                        final int aTo = Math.min(aFrom + CHUNK_ROWS, aRows);
+
+                        final SparseMatrix aPart = pruneRows(aLt, aFrom, aTo);
+                        someKept[theChunk] = aPart.getNonZeroCount();
+                        listen(aPart, aFrom);
+                        if (theSink != null) {
+                            aParts[theChunk] = aPart;
+                        }//END if
+                        advance(aTo - aFrom);
+                    }//END run() METHOD
+                });
+            } catch (final UncheckedIOException e) {
+                throw e.getCause();
+            }//END try/catch BLOCK
+
+            for (final long aKept : someKept) {
+                myNonZeros += aKept;
+            }//END for
+            for (int p = 0; theSink != null && p < aParts.length; p++) {
+                sendRows(aParts[p], (aFirst + p) * CHUNK_ROWS, theSink);
+            }//END for (INDEX p)
+        }//END for (INDEX c)
+    }//END compute() METHOD
+
+    /**
+     * Private helper to send the rows of a chunk to the listener, if there
+     *  is one.
+     *
+     * @param thePart The pruned rows of the chunk.
+     * @param theFrom The index of the chunk's first row.
+     */
+    private void listen(final SparseMatrix thePart, final int theFrom) {
+        if (myListener != null) {
+            try {
+                sendRows(thePart, theFrom, myListener);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }//END try/catch BLOCK
+        }//END if
+    }//END listen() METHOD
+
+    /**
+     * Private helper to send the rows of a chunk to a sink, with their
+     *  values in longs if the chunk holds them so.
+     *
+     * @param thePart The pruned rows of the chunk.
+     * @param theFrom The index of the chunk's first row.
+     * @param theSink The sink the rows are sent to.
+     * @throws IOException If the sink cannot take a row.
+     */
+    private static void sendRows(final SparseMatrix thePart,
+                                 final int theFrom, final RowSink theSink)
+            throws IOException {
+        final int[] someCols = thePart.colIdx();
+        if (thePart.getValueWidth() == Long.BYTES) {
+            final long[] someVals = thePart.longValues();
+            for (int r = 0; r < thePart.getRowCount(); r++) {
+                theSink.addRow(theFrom + r, someCols, someVals,
+                               thePart.getRowStart(r), thePart.getRowEnd(r));
+            }//END for (INDEX r)
+        } else {
+            final int[] someVals = thePart.values();
+            for (int r = 0; r < thePart.getRowCount(); r++) {
+                theSink.addRow(theFrom + r, someCols, someVals,
+                               thePart.getRowStart(r), thePart.getRowEnd(r));
+            }//END for (INDEX r)
+        }//END if
+    }//END sendRows() METHOD
+
+    /**
+     * Private helper to compute the pruned rows of LLt for a range of rows.
+     *  The entries of a row are gathered in a dense accumulator, and only
+     *  the columns touched are looked at again to prune them.
+     *
+     * @param theLt The transpose of L.
+     * @param theFrom The first row.
+     * @param theTo The row just past the range.
+     * @return The pruned rows, with their columns numbered as in LLt.
+     */
+    private SparseMatrix pruneRows(final SparseMatrix theLt, final int theFrom,
+                                   final int theTo) {
+        final int aRows = myL.getRowCount();
+        final int[] aPtr = myL.rowPtr();
+        final int[] aCols = myL.colIdx();
+        final int[] aVals = myLVals;
+        final int[] tPtr = theLt.rowPtr();
+        final int[] tCols = theLt.colIdx();
+        final int[] tVals = theLt.values();
+
+        final SparseMatrixBuilder aBuilder = new SparseMatrixBuilder(aRows);
+        final Scratch aScratch = myScratch.get();
+        final long[] anAcc = aScratch.myAcc;
+        final boolean[] isSeen = aScratch.mySeen;
+        int[] aTouched = aScratch.myTouched;
+        int[] aKept = aScratch.myKept;
+        long[] aRowVals = aScratch.myRowVals;
+
+        for (int i = theFrom; i < theTo; i++) {
+            int aCount = 0;
+            for (int k = aPtr[i]; k < aPtr[i + 1]; k++) {
+                final int aValue = aVals[k];
+                final int aCol = aCols[k];
+                for (int t = tPtr[aCol]; t < tPtr[aCol + 1]; t++) {
+                    final int j = tCols[t];
+                    if (!isSeen[j]) {
+                        isSeen[j] = true;
+                        if (aCount == aTouched.length) {
+                            aTouched = Arrays.copyOf(aTouched, 2 * aCount);
+                        }//END if
+                        aTouched[aCount++] = j;
+                    }//END if
+                    anAcc[j] += (long) aValue * tVals[t];
+                }//END for (INDEX t)
+            }//END for (INDEX k)
+
+            if (aKept.length < aCount) {
+                aKept = new int[aTouched.length];
+                aRowVals = new long[aTouched.length];
+            }//END if
+
+            int aKeptCnt = 0;
+            for (int k = 0; k < aCount; k++) {
+                final int j = aTouched[k];
+                if (j != i && anAcc[j] >= myMinValue) {
+                    if (myTopK == 0 || aKeptCnt < myTopK) {
+                        aKept[aKeptCnt++] = j;
+                        if (aKeptCnt == myTopK) {
+                            heapify(aKept, aKeptCnt, anAcc);
+                        }//END if
+                    } else if (isWorse(aKept[0], j, anAcc)) {
+                        aKept[0] = j;
+                        siftDown(aKept, aKeptCnt, 0, anAcc);
+                    }//END if
+                }//END if
+            }//END for (INDEX k)
+
+            Arrays.sort(aKept, 0, aKeptCnt);
+            for (int k = 0; k < aKeptCnt; k++) {
+                aRowVals[k] = anAcc[aKept[k]];
+            }//END for (INDEX k)
+            for (int k = 0; k < aCount; k++) {
+                anAcc[aTouched[k]] = 0;
+                isSeen[aTouched[k]] = false;
+            }//END for (INDEX k)
+
+            aBuilder.addRow(aKept, aRowVals, 0, aKeptCnt);
+        }//END for (INDEX i)
+
+        aScratch.myTouched = aTouched;
+        aScratch.myKept = aKept;
+        aScratch.myRowVals = aRowVals;
+
+        return aBuilder.build();
+    }//END pruneRows() METHOD
+
+    /**
+     * Private helper to order columns by their entries: a column is worse
+     *  than another if its entry is smaller or, for equal entries, if its
+     *  index is larger.
+     *
+     * @param theA The first column.
+     * @param theB The second column.
+     * @param theAcc Long array holding the entry of each column.
+     * @return True if theA is worse than theB.
+     */
+    private static boolean isWorse(final int theA, final int theB,
+                                   final long[] theAcc) {
+        return theAcc[theA] < theAcc[theB]
+               || (theAcc[theA] == theAcc[theB] && theA > theB);
+    }//END isWorse() METHOD
+
+    /**
+     * Private helper to arrange columns into a heap with the worst first.
+     *
+     * @param theHeap Integer array holding the columns.
+     * @param theSize The number of columns in the heap.
+     * @param theAcc Long array holding the entry of each column.
+     */
+    private static void heapify(final int[] theHeap, final int theSize,
+                                final long[] theAcc) {
+        for (int p = theSize / 2 - 1; p >= 0; p--) {
+            siftDown(theHeap, theSize, p, theAcc);
+        }//END for (INDEX p)
+    }//END heapify() METHOD
+
+    /**
+     * Private helper to move a column down the heap until no child is worse.
+     *
+     * @param theHeap Integer array holding the columns.
+     * @param theSize The number of columns in the heap.
+     * @param thePos The position of the column to move.
+     * @param theAcc Long array holding the entry of each column.
+     */
+    private static void siftDown(final int[] theHeap, final int theSize,
+                                 final int thePos, final long[] theAcc) {
+        final int aCol = theHeap[thePos];
+        int aPos = thePos;
+
+        int aChild = 2 * aPos + 1;
+        while (aChild < theSize) {
+            if (aChild + 1 < theSize
+                    && isWorse(theHeap[aChild + 1], theHeap[aChild], theAcc)) {
+                aChild++;
+            }//END if
+            if (!isWorse(theHeap[aChild], aCol, theAcc)) {
+                break;
+            }//END if
+
+            theHeap[aPos] = theHeap[aChild];
+            aPos = aChild;
+            aChild = 2 * aPos + 1;
+        }//END while LOOP
+
+        theHeap[aPos] = aCol;
+    }//END siftDown() METHOD
+
+    /**
+     * Private helper to advance the progress counter, if there is one.
+     *
+     * @param theRows The number of rows done.
+     */
+    private void advance(final int theRows) {
+        if (myRowsDone != null) {
+            myRowsDone.addAndGet(theRows);
+        }//END if
+    }//END advance() METHOD
+
+
+    /**
+     * Private class for the scratch arrays one thread reuses for every row
+     *  it computes.  The accumulator and seen marks are left cleared after
+     *  each row; the other arrays grow as rows need.
+     */
+    private static final class Scratch {
+
+        /** Long array holding the entries of the current row. */
+        private final long[] myAcc;
+
+        /** Boolean array marking the columns the current row touched. */
+        private final boolean[] mySeen;
+
+        /** Integer array holding the columns the current row touched. */
+        private int[] myTouched;
+
+        /** Integer array holding the columns kept for the current row. */
+        private int[] myKept;
+
+        /** Long array holding the values of the current row. */
+        private long[] myRowVals;
+
+        /**
+         * Creates scratch arrays for rows of the passed length.
+         *
+         * @param theRows The length of a row of LLt.
+         */
+        private Scratch(final int theRows) {
+            myAcc = new long[theRows];
+            mySeen = new boolean[theRows];
+            myTouched = new int[CHUNK_ROWS];
+            myKept = new int[CHUNK_ROWS];
+            myRowVals = new long[CHUNK_ROWS];
+        }//END constructor
+
+    }//END Scratch CLASS
+
+}//END PrunedLLt.java CLASS
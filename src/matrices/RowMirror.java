@@ -0,0 +1,501 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Package private class which turns the upper triangle rows of a symmetric
+ *  matrix, taken in order, into its full rows as soon as each is known.
+ *  Every off-diagonal entry (i, j) of an upper row is kept as the entry
+ *  (j, i) of the later row j, and since the rows come in increasing order
+ *  these kept entries are already sorted by column when row j arrives and
+ *  is sent on with them in front.  The entries kept for a row are dropped
+ *  once it is sent, so only those still waiting for their row are held.
+ *
+ * <p>Those can be a quarter of the matrix, so once more than a set number
+ *  of entries are held, the entries kept from each later block of upper
+ *  rows are instead written, sorted by row, as a segment of a temporary
+ *  file.  Every segment is read back a buffer at a time as its rows come
+ *  up, and since the segments follow the blocks they came from, the
+ *  entries of a row read from them in turn stay sorted by column.  The
+ *  file is deleted when the mirror is closed.</p>
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.2
+ */
+final class RowMirror implements Closeable {
+
+    /** Constant for the room first given to the entries kept for a row. */
+    private static final int INITIAL_ROOM = 4;
+
+    /** Constant for the most entries held before the rest are spilled. */
+    private static final long DEFAULT_MAX_HELD = 1L << 20;
+
+    /** Constant for the size of the buffer writing the segments. */
+    private static final int WRITE_BUFFER = 1 << 16;
+
+    /** Constant for the size of the buffer reading each segment. */
+    private static final int READ_BUFFER = 1 << 13;
+
+    /** Constant marking the end of a segment in place of a row. */
+    private static final int END_OF_SEGMENT = -1;
+
+    /** A 2D integer array holding the columns kept for each later row. */
+    private final int[][] myLowerCols;
+
+    /** A 2D integer array holding the values kept for each later row. */
+    private final int[][] myLowerVals;
+
+    /** Integer array holding the number of entries kept for each row. */
+    private final int[] myLowerCnt;
+
+    /** Long representing the most entries held before spilling. */
+    private final long myMaxHeld;
+
+    /** Long representing the number of entries held. */
+    private long myHeld;
+
+    /** Integer array reused to hold the columns of a full row. */
+    private int[] myRowCols;
+
+    /** Integer array reused to hold the values of a full row. */
+    private int[] myRowVals;
+
+    /** Integer representing the next row to be taken. */
+    private int myNextRow;
+
+    /** The temporary file spilled to, or null before the first spill. */
+    private Path mySpillFile;
+
+    /** The channel of the spill file, or null before the first spill. */
+    private FileChannel myChannel;
+
+    /** The buffer the segments are written through, or null. */
+    private ByteBuffer myOut;
+
+    /** Long representing the length written to the spill file. */
+    private long myEnd;
+
+    /** The segments with rows still to be read, oldest first. */
+    private final List<Segment> mySegments;
+
+
+    /**
+     * Creates a mirror for a square matrix with the passed number of rows.
+     *
+     * @param theRows The number of rows, and columns, of the matrix.
+     */
+    RowMirror(final int theRows) {
+        this(theRows, DEFAULT_MAX_HELD);
+    }//END constructor
+
+    /**
+     * Creates a mirror for a square matrix with the passed number of rows,
+     *  spilling once more than the passed number of entries are held.
+     *
+     * @param theRows The number of rows, and columns, of the matrix.
+     * @param theMaxHeld The most entries held before spilling.
+     */
+    RowMirror(final int theRows, final long theMaxHeld) {
+        myLowerCols = new int[theRows][];
+        myLowerVals = new int[theRows][];
+        myLowerCnt = new int[theRows];
+        myMaxHeld = theMaxHeld;
+        myHeld = 0;
+        myRowCols = new int[INITIAL_ROOM];
+        myRowVals = new int[INITIAL_ROOM];
+        myNextRow = 0;
+        mySpillFile = null;
+        myChannel = null;
+        myOut = null;
+        myEnd = 0;
+        mySegments = new ArrayList<Segment>();
+    }//END constructor
+
+
+    /**
+     * Method to take the next upper triangle rows, in order, and send the
+     *  full row of each to the sink.
+     *
+     * @param theUpper The upper triangle rows, following those already
+     *  taken, with their columns numbered as in the full matrix.
+     * @param theSink The sink the full rows are sent to.
+     * @throws IOException If the sink cannot take a row, or the spill file
+     *  cannot be written or read.
+     */
+    void addUpperRows(final SparseMatrix theUpper, final RowSink theSink)
+            throws IOException {
+        if (myChannel == null && myHeld > myMaxHeld) {
+            openSpill();
+        }//END if
+
+        if (myChannel == null) {
+            addHeldRows(theUpper, theSink);
+        } else {
+            addSpilledRows(theUpper, theSink);
+        }//END if
+    }//END addUpperRows() METHOD
+
+    /**
+     * Method to delete the spill file, if there is one.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        mySegments.clear();
+        if (myChannel != null) {
+            try {
+                myChannel.close();
+            } finally {
+                Files.deleteIfExists(mySpillFile);
+            }//END try/finally BLOCK
+        }//END if
+    }//END close() METHOD
+
+    /**
+     * Private helper to send the full rows of a block of upper rows, keeping
+     *  the mirrored entries for the later rows in memory.
+     *
+     * @param theUpper The upper triangle rows.
+     * @param theSink The sink the full rows are sent to.
+     * @throws IOException If the sink cannot take a row.
+     */
+    private void addHeldRows(final SparseMatrix theUpper,
+                             final RowSink theSink) throws IOException {
+        final int[] uCols = theUpper.colIdx();
+        final int[] uVals = theUpper.values();
+
+        for (int r = 0; r < theUpper.getRowCount(); r++) {
+            final int i = myNextRow++;
+            final int aStart = theUpper.getRowStart(r);
+            final int anEnd = theUpper.getRowEnd(r);
+
+            int aCount = takeHeld(i, anEnd - aStart);
+            System.arraycopy(uCols, aStart, myRowCols, aCount, anEnd - aStart);
+            System.arraycopy(uVals, aStart, myRowVals, aCount, anEnd - aStart);
+            aCount += anEnd - aStart;
+
+            for (int k = aStart; k < anEnd; k++) {
+                if (uCols[k] != i) {
+                    keep(uCols[k], i, uVals[k]);
+                }//END if
+            }//END for (INDEX k)
+
+            theSink.addRow(i, myRowCols, myRowVals, 0, aCount);
+        }//END for (INDEX r)
+    }//END addHeldRows() METHOD
+
+    /**
+     * Private helper to send the full rows of a block of upper rows once
+     *  spilling, writing the mirrored entries for the rows after the block
+     *  as a new segment.  The entries a row of the block has in front of
+     *  its upper row are those held from before the spilling began, then
+     *  those of each segment, then those mirrored from the block itself.
+     *
+     * @param theUpper The upper triangle rows.
+     * @param theSink The sink the full rows are sent to.
+     * @throws IOException If the sink cannot take a row, or the spill file
+     *  cannot be written or read.
+     */
+    private void addSpilledRows(final SparseMatrix theUpper,
+                                final RowSink theSink) throws IOException {
+        final int[] uCols = theUpper.colIdx();
+        final int[] uVals = theUpper.values();
+        final int aFirst = myNextRow;
+        final int aRows = myLowerCnt.length - aFirst;
+        final int aBlockEnd = aFirst + theUpper.getRowCount();
+
+        // Sort the mirrored entries of the block by row, in column order.
+        final int[] someStarts = new int[aRows + 1];
+        for (int r = 0; r < theUpper.getRowCount(); r++) {
+            for (int k = theUpper.getRowStart(r);
+                    k < theUpper.getRowEnd(r); k++) {
+                if (uCols[k] != aFirst + r) {
+                    someStarts[uCols[k] - aFirst + 1]++;
+                }//END if
+            }//END for (INDEX k)
+        }//END for (INDEX r)
+        for (int j = 0; j < aRows; j++) {
+            someStarts[j + 1] += someStarts[j];
+        }//END for (INDEX j)
+        final int[] someNext = Arrays.copyOf(someStarts, aRows);
+        final int[] tCols = new int[someStarts[aRows]];
+        final int[] tVals = new int[tCols.length];
+        for (int r = 0; r < theUpper.getRowCount(); r++) {
+            for (int k = theUpper.getRowStart(r);
+                    k < theUpper.getRowEnd(r); k++) {
+                if (uCols[k] != aFirst + r) {
+                    final int aPos = someNext[uCols[k] - aFirst]++;
+                    tCols[aPos] = aFirst + r;
+                    tVals[aPos] = uVals[k];
+                }//END if
+            }//END for (INDEX k)
+        }//END for (INDEX r)
+
+        for (int r = 0; r < theUpper.getRowCount(); r++) {
+            final int i = myNextRow++;
+            final int aStart = theUpper.getRowStart(r);
+            final int anEnd = theUpper.getRowEnd(r);
+            final int aMirrored = someStarts[r + 1] - someStarts[r];
+
+            int aCount = takeHeld(i, aMirrored + anEnd - aStart);
+            for (int s = 0; s < mySegments.size(); s++) {
+                final Segment aSegment = mySegments.get(s);
+                if (aSegment.myRow == i) {
+                    aCount = readRow(aSegment, aCount);
+                    if (aSegment.myRow == END_OF_SEGMENT) {
+                        mySegments.remove(s--);
+                    }//END if
+                }//END if
+            }//END for (INDEX s)
+
+            room(aCount + aMirrored + anEnd - aStart);
+            System.arraycopy(tCols, someStarts[r], myRowCols, aCount,
+                             aMirrored);
+            System.arraycopy(tVals, someStarts[r], myRowVals, aCount,
+                             aMirrored);
+            aCount += aMirrored;
+            System.arraycopy(uCols, aStart, myRowCols, aCount, anEnd - aStart);
+            System.arraycopy(uVals, aStart, myRowVals, aCount, anEnd - aStart);
+            aCount += anEnd - aStart;
+
+            theSink.addRow(i, myRowCols, myRowVals, 0, aCount);
+        }//END for (INDEX r)
+
+        writeSegment(tCols, tVals, someStarts, aFirst, aBlockEnd - aFirst);
+    }//END addSpilledRows() METHOD
+
+    /**
+     * Private helper to move the entries held for a row to the front of the
+     *  reused row arrays, making room for more after them, and drop them.
+     *
+     * @param theRow The row.
+     * @param theMore The number of entries to make room for after them.
+     * @return aLower The number of entries moved.
+     */
+    private int takeHeld(final int theRow, final int theMore) {
+        final int aLower = myLowerCnt[theRow];
+        room(aLower + theMore);
+
+        if (aLower > 0) {
+            System.arraycopy(myLowerCols[theRow], 0, myRowCols, 0, aLower);
+            System.arraycopy(myLowerVals[theRow], 0, myRowVals, 0, aLower);
+            myLowerCols[theRow] = null;
+            myLowerVals[theRow] = null;
+            myHeld -= aLower;
+        }//END if
+
+        return aLower;
+    }//END takeHeld() METHOD
+
+    /**
+     * Private helper to grow the reused row arrays, keeping their entries,
+     *  so they hold at least the passed number of entries.
+     *
+     * @param theCount The number of entries.
+     */
+    private void room(final int theCount) {
+        if (myRowCols.length < theCount) {
+            final int aRoom = Math.max(theCount, 2 * myRowCols.length);
+            myRowCols = Arrays.copyOf(myRowCols, aRoom);
+            myRowVals = Arrays.copyOf(myRowVals, aRoom);
+        }//END if
+    }//END room() METHOD
+
+    /**
+     * Private helper to keep an entry for a later row.
+     *
+     * @param theRow The later row.
+     * @param theCol The column of the entry, the row it was mirrored from.
+     * @param theValue The value of the entry.
+     */
+    private void keep(final int theRow, final int theCol, final int theValue) {
+        final int aCount = myLowerCnt[theRow];
+        if (myLowerCols[theRow] == null) {
+            myLowerCols[theRow] = new int[INITIAL_ROOM];
+            myLowerVals[theRow] = new int[INITIAL_ROOM];
+        } else if (aCount == myLowerCols[theRow].length) {
+            myLowerCols[theRow] = Arrays.copyOf(myLowerCols[theRow],
+                                                2 * aCount);
+            myLowerVals[theRow] = Arrays.copyOf(myLowerVals[theRow],
+                                                2 * aCount);
+        }//END if
+
+        myLowerCols[theRow][aCount] = theCol;
+        myLowerVals[theRow][aCount] = theValue;
+        myLowerCnt[theRow] = aCount + 1;
+        myHeld++;
+    }//END keep() METHOD
+
+    /**
+     * Private helper to create the spill file, deleted when the mirror is
+     *  closed.
+     *
+     * @throws IOException If the file cannot be created.
+     */
+    private void openSpill() throws IOException {
+        mySpillFile = Files.createTempFile("mirror-", ".tmp");
+        myChannel = FileChannel.open(mySpillFile, StandardOpenOption.READ,
+                                     StandardOpenOption.WRITE);
+        myOut = ByteBuffer.allocate(WRITE_BUFFER);
+    }//END openSpill() METHOD
+
+    /**
+     * Private helper to write the mirrored entries of a block for the rows
+     *  after it to the end of the spill file as a segment, each row with
+     *  any entries as its index, its number of entries, and then each
+     *  entry's column and value, followed by the end mark.
+     *
+     * @param theCols The columns of the mirrored entries, sorted by row.
+     * @param theVals The values of the mirrored entries.
+     * @param theStarts The start of each row's entries, from theFirst on,
+     *  and their end.
+     * @param theFirst The first row of the block.
+     * @param theBlockRows The number of rows in the block.
+     * @throws IOException If the file cannot be written.
+     */
+    private void writeSegment(final int[] theCols, final int[] theVals,
+                              final int[] theStarts, final int theFirst,
+                              final int theBlockRows) throws IOException {
+        final long aStart = myEnd;
+        for (int j = theBlockRows; j < theStarts.length - 1; j++) {
+            if (theStarts[j + 1] > theStarts[j]) {
+                putInt(theFirst + j);
+                putInt(theStarts[j + 1] - theStarts[j]);
+                for (int k = theStarts[j]; k < theStarts[j + 1]; k++) {
+                    putInt(theCols[k]);
+                    putInt(theVals[k]);
+                }//END for (INDEX k)
+            }//END if
+        }//END for (INDEX j)
+        putInt(END_OF_SEGMENT);
+        flush();
+
+        final Segment aSegment = new Segment(aStart, myEnd);
+        aSegment.myRow = aSegment.getInt();
+        if (aSegment.myRow != END_OF_SEGMENT) {
+            mySegments.add(aSegment);
+        }//END if
+    }//END writeSegment() METHOD
+
+    /**
+     * Private helper to read the entries of a segment's next row into the
+     *  reused row arrays, and then the index of its row after.
+     *
+     * @param theSegment The segment, at the start of the row's entries.
+     * @param theCount The number of entries already in the row arrays.
+     * @return The number of entries in the row arrays after reading.
+     * @throws IOException If the file cannot be read.
+     */
+    private int readRow(final Segment theSegment, final int theCount)
+            throws IOException {
+        final int anEntries = theSegment.getInt();
+        room(theCount + anEntries);
+        for (int k = theCount; k < theCount + anEntries; k++) {
+            myRowCols[k] = theSegment.getInt();
+            myRowVals[k] = theSegment.getInt();
+        }//END for (INDEX k)
+        theSegment.myRow = theSegment.getInt();
+
+        return theCount + anEntries;
+    }//END readRow() METHOD
+
+    /**
+     * Private helper to add an integer to the segment being written.
+     *
+     * @param theValue The integer.
+     * @throws IOException If the file cannot be written.
+     */
+    private void putInt(final int theValue) throws IOException {
+        if (myOut.remaining() < Integer.BYTES) {
+            flush();
+        }//END if
+        myOut.putInt(theValue);
+    }//END putInt() METHOD
+
+    /**
+     * Private helper to write the buffered bytes to the end of the file.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    private void flush() throws IOException {
+        myOut.flip();
+        while (myOut.hasRemaining()) {
+            myEnd += myChannel.write(myOut, myEnd);
+        }//END while LOOP
+        myOut.clear();
+    }//END flush() METHOD
+
+
+    /**
+     * Private class for one segment of the spill file, read a buffer at a
+     *  time from its start to its end.
+     */
+    private final class Segment {
+
+        /** The buffer of bytes read but not yet taken. */
+        private final ByteBuffer myBuffer;
+
+        /** Long representing the position in the file read up to. */
+        private long myPos;
+
+        /** Long representing the end of the segment in the file. */
+        private final long mySegmentEnd;
+
+        /** Integer representing the next row with entries, or the mark. */
+        private int myRow;
+
+        /**
+         * Creates a segment.
+         *
+         * @param theStart The start of the segment in the file.
+         * @param theEnd The end of the segment in the file.
+         */
+        private Segment(final long theStart, final long theEnd) {
+            myBuffer = ByteBuffer.allocate(READ_BUFFER);
+            myBuffer.flip();
+            myPos = theStart;
+            mySegmentEnd = theEnd;
+            myRow = END_OF_SEGMENT;
+        }//END constructor
+
+        /**
+         * Method to take the next integer of the segment.
+         *
+         * @return The integer.
+         * @throws IOException If the file cannot be read.
+         */
+        private int getInt() throws IOException {
+            if (myBuffer.remaining() < Integer.BYTES) {
+                myBuffer.compact();
+                final int aWanted = (int) Math.min(myBuffer.remaining(),
+                                                   mySegmentEnd - myPos);
+                myBuffer.limit(myBuffer.position() + aWanted);
+                while (myBuffer.hasRemaining()) {
+                    final int aRead = myChannel.read(myBuffer, myPos);
+                    if (aRead < 0) {
+                        throw new IOException("Spill file ended early");
+                    }//END if
+                    myPos += aRead;
+                }//END while LOOP
+                myBuffer.flip();
+            }//END if
+
+            return myBuffer.getInt();
+        }//END getInt() METHOD
+
+    }//END Segment CLASS
+
+}//END RowMirror.java CLASS
@@ -0,0 +1,49 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.io.IOException;
+
+/**
+ * Interface for somewhere the rows of a matrix are sent, in order, as they
+ *  are finished, such as a file they are streamed to, so that the matrix
+ *  never has to be held whole.  The arrays are reused for the next row, so
+ *  they must not be kept.  A row whose values may pass the integer range
+ *  is sent with its values in longs instead.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.2
+ */
+public interface RowSink {
+
+    /**
+     * Method to take the next row.
+     *
+     * @param theRow The index of the row.
+     * @param theCols Integer array holding the row's column indices, in
+     *  increasing order.
+     * @param theValues Integer array holding the row's values.
+     * @param theFrom The position of the row's first entry in the arrays.
+     * @param theTo The position just past the row's last entry.
+     * @throws IOException If the row cannot be written.
+     */
+    void addRow(int theRow, int[] theCols, int[] theValues, int theFrom,
+                int theTo) throws IOException;
+
+    /**
+     * Method to take the next row, with values which may pass the integer
+     *  range.
+     *
+     * @param theRow The index of the row.
+     * @param theCols Integer array holding the row's column indices, in
+     *  increasing order.
+     * @param theValues Long array holding the row's values.
+     * @param theFrom The position of the row's first entry in the arrays.
+     * @param theTo The position just past the row's last entry.
+     * @throws IOException If the row cannot be written.
+     */
+    void addRow(int theRow, int[] theCols, long[] theValues, int theFrom,
+                int theTo) throws IOException;
+
+}//END RowSink.java INTERFACE
@@ -0,0 +1,404 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Class holding what is needed to score new words against a fixed
+ *  vocabulary, kept warm between queries: the N-grams compiled into an
+ *  automaton, L, and its transpose, the posting list of each N-gram.  The
+ *  row of L of a new word is counted with one scan of the automaton, and
+ *  its similarity to each word of the vocabulary, their entry of LLt, is
+ *  gathered by walking the posting lists of its N-grams, so a query costs
+ *  the words it shares N-grams with rather than the whole vocabulary.
+ *  Queries are answered a batch at a time, in chunks on the pool, and the
+ *  scratch arrays sized by the dictionary and the vocabulary are kept for
+ *  the next batch rather than allocated for each.  Scores are summed in
+ *  longs, and a query whose scores could pass even that range, as found
+ *  from the sums of squares of its row and of the rows of L, is refused.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.3
+ */
+public class SimilarityIndex {
+
+    /** Constant for the number of queries in each chunk of work. */
+    private static final int CHUNK_QUERIES = 32;
+
+    /** The automaton compiled from the N-grams. */
+    private final NgramAutomaton myAutomaton;
+
+    /** Sparse matrix holding the transpose of L. */
+    private final SparseMatrix myLt;
+
+    /** Integer array holding the values of the transpose, fetched once. */
+    private final int[] myLtVals;
+
+    /** Integer representing the number of N-grams, the columns of L. */
+    private final int myNgramCnt;
+
+    /** Integer representing the number of words of the vocabulary. */
+    private final int myWordCnt;
+
+    /** The pool queries are answered on, or null to answer serially. */
+    private final ForkJoinPool myPool;
+
+    /** Scratch arrays of counts, columns and values per N-gram, free. */
+    private final ConcurrentLinkedQueue<int[][]> myNgramScratch;
+
+    /** Scratch arrays of one score and one mark per word, free. */
+    private final ConcurrentLinkedQueue<WordScratch> myWordScratch;
+
+
+    /**
+     * Allows new words to be scored against the vocabulary of the passed L.
+     *
+     * @param theNgrams The dictionary of the N-grams, the columns of L.
+     * @param theL A sparse matrix holding the values of L.
+     * @param thePool The pool to answer on, or null to answer serially.
+     * @throws ArithmeticException If the sum of squares of a row of L is
+     *  past the long range, so scores could pass it.
+     */
+    public SimilarityIndex(final NgramDictionary theNgrams,
+                           final SparseMatrix theL,
+                           final ForkJoinPool thePool) {
+        // Every score is bounded by the larger of the sums of squares of
+        // the query's row and of the word's row, so checking both fit a
+        // long keeps each sum from wrapping.
+        LLtMaker.maxSquares(theL);
+
+        myAutomaton = new NgramAutomaton(theNgrams);
+        myLt = new MatTranspose(theL).getSparseLt();
+        myLtVals = myLt.values();
+        myNgramCnt = theNgrams.getCount();
+        myWordCnt = theL.getRowCount();
+        myPool = thePool;
+        myNgramScratch = new ConcurrentLinkedQueue<int[][]>();
+        myWordScratch = new ConcurrentLinkedQueue<WordScratch>();
+    }//END constructor
+
+
+    /**
+     * Method to return the number of words of the vocabulary.
+     *
+     * @return myWordCnt The number of words.
+     */
+    public int getWordCount() {
+        return myWordCnt;
+    }//END getWordCount() METHOD
+
+    /**
+     * Method to count the rows of L of a batch of words.
+     *
+     * @param theWords String array holding the words.
+     * @param theCount The number of words of the array in the batch.
+     * @return A sparse matrix holding one row of L per word, with a column
+     *  per N-gram.
+     */
+    public SparseMatrix getRows(final String[] theWords, final int theCount) {
+        final int aChunks = (theCount + CHUNK_QUERIES - 1) / CHUNK_QUERIES;
+        final SparseMatrix[] aParts = new SparseMatrix[aChunks];
+
+        ChunkTask.runAll(myPool, aChunks, new ChunkTask.Body() {
+            @Override
+            public void run(final int theChunk) {
+                final int aFrom = theChunk * CHUNK_QUERIES;
+                final int aTo = Math.min(aFrom + CHUNK_QUERIES, theCount);
+
+                int[][] aScratch = myNgramScratch.poll();
+                if (aScratch == null) {
+                    aScratch = new int[3][myNgramCnt];
+                }//END if
+                final int[] aCounts = aScratch[0];
+                final int[] aCols = aScratch[1];
+                final int[] aVals = aScratch[2];
+                final SparseMatrixBuilder aBuilder;
+                aBuilder = new SparseMatrixBuilder(myNgramCnt);
+                for (int q = aFrom; q < aTo; q++) {
+                    final int aTouched = myAutomaton.countInto(theWords[q],
+                                                               aCounts, aCols,
+                                                               0);
+                    Arrays.sort(aCols, 0, aTouched);
+                    for (int k = 0; k < aTouched; k++) {
+                        aVals[k] = aCounts[aCols[k]];
+                        aCounts[aCols[k]] = 0;
+                    }//END for (INDEX k)
+                    aBuilder.addRow(aCols, aVals, aTouched);
+                }//END for (INDEX q)
+                myNgramScratch.offer(aScratch);
+
+                aParts[theChunk] = aBuilder.build();
+            }//END run() METHOD
+        });
+
+        return join(aParts, myNgramCnt);
+    }//END getRows() METHOD
+
+    /**
+     * Method to find, for each row of L of a batch of words, the words of
+     *  the vocabulary sharing the most N-gram occurrences with it, the
+     *  largest entries of its row of LLt.  Among equal scores the words
+     *  earlier in the vocabulary are kept.
+     *
+     * @param theRows The rows of L of the batch, as from getRows().
+     * @param theTopK The most words kept for each row.
+     * @return For each row, the kept words and their scores, highest score
+     *  first.
+     * @throws ArithmeticException If the scores of a row could pass the
+     *  long range.
+     */
+    public TopSimilar getTopSimilar(final SparseMatrix theRows,
+                                    final int theTopK) {
+        final int aCount = theRows.getRowCount();
+        final int aChunks = (aCount + CHUNK_QUERIES - 1) / CHUNK_QUERIES;
+        final int[][] someWords = new int[aCount][];
+        final long[][] someScores = new long[aCount][];
+
+        ChunkTask.runAll(myPool, aChunks, new ChunkTask.Body() {
+            @Override
+            public void run(final int theChunk) {
+                final int aFrom = theChunk * CHUNK_QUERIES;
+                final int aTo = Math.min(aFrom + CHUNK_QUERIES, aCount);
+
+                WordScratch aScratch = myWordScratch.poll();
+                if (aScratch == null) {
+                    aScratch = new WordScratch(myWordCnt);
+                }//END if
+                try {
+                    for (int q = aFrom; q < aTo; q++) {
+                        scoreRow(theRows, q, theTopK, aScratch, someWords,
+                                 someScores);
+                    }//END for (INDEX q)
+                } finally {
+                    myWordScratch.offer(aScratch);
+                }//END try/finally BLOCK
+            }//END run() METHOD
+        });
+
+        return join(someWords, someScores);
+    }//END getTopSimilar() METHOD
+
+    /**
+     * Private helper to score one row against the vocabulary along the
+     *  posting lists and keep its top words, highest score first, in a
+     *  heap of the kept words whose root is the worst of them.
+     *
+     * @param theRows The rows of L of the batch.
+     * @param theRow The row to score.
+     * @param theTopK The most words kept.
+     * @param theScratch Scratch arrays of zeros and clear marks, left so.
+     * @param theWords Array receiving the kept words of the row.
+     * @param theScores Array receiving the scores of the kept words.
+     * @throws ArithmeticException If the scores could pass the long range.
+     */
+    private void scoreRow(final SparseMatrix theRows, final int theRow,
+                          final int theTopK, final WordScratch theScratch,
+                          final int[][] theWords, final long[][] theScores) {
+        final int[] tPtr = myLt.rowPtr();
+        final int[] tCols = myLt.colIdx();
+        final int[] tVals = myLtVals;
+        final long[] someAcc = theScratch.myScores;
+        final boolean[] isTouched = theScratch.myTouched;
+
+        final int aFirst = theRows.getRowStart(theRow);
+        final int anEnd = theRows.getRowEnd(theRow);
+        long aSquares = 0;
+        for (int k = aFirst; k < anEnd; k++) {
+            final long aValue = theRows.getValue(k);
+            aSquares = Math.addExact(aSquares,
+                                     Math.multiplyExact(aValue, aValue));
+        }//END for (INDEX k)
+
+        int[] aTouched = new int[CHUNK_QUERIES];
+        int aCount = 0;
+        for (int k = aFirst; k < anEnd; k++) {
+            final int aCol = theRows.getColumn(k);
+            final long aValue = theRows.getValue(k);
+            for (int t = tPtr[aCol]; t < tPtr[aCol + 1]; t++) {
+                final int j = tCols[t];
+                if (!isTouched[j]) {
+                    isTouched[j] = true;
+                    if (aCount == aTouched.length) {
+                        aTouched = Arrays.copyOf(aTouched, 2 * aCount);
+                    }//END if
+                    aTouched[aCount++] = j;
+                }//END if
+                someAcc[j] += aValue * tVals[t];
+            }//END for (INDEX t)
+        }//END for (INDEX k)
+
+        final int aKept = Math.max(0, Math.min(theTopK, aCount));
+        final int[] aHeap = new int[aKept];
+        int aSize = 0;
+        for (int k = 0; k < aCount; k++) {
+            final int j = aTouched[k];
+            if (aSize < aKept) {
+                aHeap[aSize++] = j;
+                siftUp(aHeap, aSize - 1, someAcc);
+            } else if (aKept > 0 && isBefore(j, aHeap[0], someAcc)) {
+                aHeap[0] = j;
+                siftDown(aHeap, aSize, someAcc);
+            }//END if
+        }//END for (INDEX k)
+
+        // Taking the worst each time fills the row from its end.
+        final int[] someWords = new int[aKept];
+        final long[] someScores = new long[aKept];
+        for (int n = aKept - 1; n >= 0; n--) {
+            someWords[n] = aHeap[0];
+            someScores[n] = someAcc[aHeap[0]];
+            aSize--;
+            aHeap[0] = aHeap[aSize];
+            siftDown(aHeap, aSize, someAcc);
+        }//END for (INDEX n)
+        theWords[theRow] = someWords;
+        theScores[theRow] = someScores;
+
+        for (int k = 0; k < aCount; k++) {
+            someAcc[aTouched[k]] = 0;
+            isTouched[aTouched[k]] = false;
+        }//END for (INDEX k)
+    }//END scoreRow() METHOD
+
+    /**
+     * Private helper to return whether one word ranks before another, by a
+     *  higher score or, among equal scores, by coming earlier.
+     *
+     * @param theWord The word.
+     * @param theOther The other word.
+     * @param theScores The score of every word.
+     * @return True if theWord ranks before theOther.
+     */
+    private static boolean isBefore(final int theWord, final int theOther,
+                                    final long[] theScores) {
+        return theScores[theWord] > theScores[theOther]
+               || (theScores[theWord] == theScores[theOther]
+                   && theWord < theOther);
+    }//END isBefore() METHOD
+
+    /**
+     * Private helper to move a word of the heap up until no word above it
+     *  ranks after it.
+     *
+     * @param theHeap The heap, whose root is its worst word.
+     * @param thePos The position of the word.
+     * @param theScores The score of every word.
+     */
+    private static void siftUp(final int[] theHeap, final int thePos,
+                               final long[] theScores) {
+        int aPos = thePos;
+        while (aPos > 0) {
+            final int aParent = (aPos - 1) / 2;
+            if (!isBefore(theHeap[aParent], theHeap[aPos], theScores)) {
+                break;
+            }//END if
+            final int aWord = theHeap[aParent];
+            theHeap[aParent] = theHeap[aPos];
+            theHeap[aPos] = aWord;
+            aPos = aParent;
+        }//END while LOOP
+    }//END siftUp() METHOD
+
+    /**
+     * Private helper to move the root of the heap down until no word below
+     *  it ranks before it.
+     *
+     * @param theHeap The heap, whose root is its worst word.
+     * @param theSize The number of words in the heap.
+     * @param theScores The score of every word.
+     */
+    private static void siftDown(final int[] theHeap, final int theSize,
+                                 final long[] theScores) {
+        int aPos = 0;
+        while (2 * aPos + 1 < theSize) {
+            int aChild = 2 * aPos + 1;
+            if (aChild + 1 < theSize && isBefore(theHeap[aChild],
+                                                 theHeap[aChild + 1],
+                                                 theScores)) {
+                aChild++;
+            }//END if
+            if (!isBefore(theHeap[aPos], theHeap[aChild], theScores)) {
+                break;
+            }//END if
+            final int aWord = theHeap[aChild];
+            theHeap[aChild] = theHeap[aPos];
+            theHeap[aPos] = aWord;
+            aPos = aChild;
+        }//END while LOOP
+    }//END siftDown() METHOD
+
+    /**
+     * Private helper to join the kept words of each row of a batch into
+     *  one result.
+     *
+     * @param theWords The kept words of each row.
+     * @param theScores The scores of the kept words of each row.
+     * @return The joined result.
+     */
+    private static TopSimilar join(final int[][] theWords,
+                                   final long[][] theScores) {
+        final int[] aRowPtr = new int[theWords.length + 1];
+        for (int q = 0; q < theWords.length; q++) {
+            aRowPtr[q + 1] = aRowPtr[q] + theWords[q].length;
+        }//END for (INDEX q)
+
+        final int[] someWords = new int[aRowPtr[theWords.length]];
+        final long[] someScores = new long[someWords.length];
+        for (int q = 0; q < theWords.length; q++) {
+            System.arraycopy(theWords[q], 0, someWords, aRowPtr[q],
+                             theWords[q].length);
+            System.arraycopy(theScores[q], 0, someScores, aRowPtr[q],
+                             theScores[q].length);
+        }//END for (INDEX q)
+
+        return new TopSimilar(aRowPtr, someWords, someScores);
+    }//END join() METHOD
+
+    /**
+     * Private helper to join the parts of a batch into one matrix.
+     *
+     * @param theParts The parts, in order.
+     * @param theCols The number of columns.
+     * @return The joined matrix.
+     */
+    private static SparseMatrix join(final SparseMatrix[] theParts,
+                                     final int theCols) {
+        final SparseMatrixBuilder aBuilder = new SparseMatrixBuilder(theCols);
+        for (final SparseMatrix aPart : theParts) {
+            aBuilder.addRows(aPart);
+        }//END for
+
+        return aBuilder.build();
+    }//END join() METHOD
+
+
+    /**
+     * Private class for the scratch arrays of one chunk of queries, sized
+     *  by the vocabulary: the score of each word and whether the query
+     *  being scored has touched it yet.
+     */
+    private static final class WordScratch {
+
+        /** Long array holding the score of each word, zero when free. */
+        private final long[] myScores;
+
+        /** Boolean array marking the words touched by the query. */
+        private final boolean[] myTouched;
+
+        /**
+         * Creates the scratch arrays for the passed number of words.
+         *
+         * @param theWords The number of words.
+         */
+        private WordScratch(final int theWords) {
+            myScores = new long[theWords];
+            myTouched = new boolean[theWords];
+        }//END constructor
+
+    }//END WordScratch CLASS
+
+}//END SimilarityIndex.java CLASS
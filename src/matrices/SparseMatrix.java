@@ -0,0 +1,534 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.util.Arrays;
+
+/**
+ * Class holding an integer matrix in compressed sparse row (CSR) form, so
+ *  that only the non-zero entries are stored.  The entries of row i are found
+ *  at positions getRowStart(i) through getRowEnd(i) - 1, with their column
+ *  indices in increasing order.  The values may be packed into bytes or
+ *  shorts when every one of them fits, since the counts held are most
+ *  often small, and are widened again as they are read.  Values past the
+ *  integer range, such as the entries of an LLt of very large counts, are
+ *  held in longs and read with getLongValue().
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.5
+ */
+public class SparseMatrix {
+
+    /** Constant for the starting value of the content hash. */
+    private static final long HASH_SEED = 0xCBF29CE484222325L;
+
+    /** Constant for the multiplier of the content hash. */
+    private static final long HASH_PRIME = 0x100000001B3L;
+
+    /** Integer representing the number of rows in the matrix. */
+    private final int myRows;
+
+    /** Integer representing the number of columns in the matrix. */
+    private final int myCols;
+
+    /** Integer array giving where each row starts, with one extra entry. */
+    private final int[] myRowPtr;
+
+    /** Integer array holding the column index of each non-zero entry. */
+    private final int[] myColIdx;
+
+    /** Integer array holding the value of each entry, or null if packed. */
+    private final int[] myValues;
+
+    /** Short array holding the value of each entry, if packed in shorts. */
+    private final short[] myShortValues;
+
+    /** Byte array holding the value of each entry, if packed in bytes. */
+    private final byte[] myByteValues;
+
+    /** Long array holding the value of each entry, if held in longs. */
+    private final long[] myLongValues;
+
+    /** Integer representing the number of bytes each value is held in. */
+    private final int myValueWidth;
+
+
+    /**
+     * Creates a sparse matrix from its CSR arrays.  The arrays are used as
+     *  passed, not copied, so the caller must not modify them afterwards.
+     *
+     * @param theRows The number of rows in the matrix.
+     * @param theCols The number of columns in the matrix.
+     * @param theRowPtr Integer array of length theRows + 1 giving where each
+     *  row starts in the other two arrays.
+     * @param theColIdx Integer array holding the column indices, increasing
+     *  within each row.
+     * @param theValues Integer array holding the non-zero values.
+     */
+    public SparseMatrix(final int theRows, final int theCols,
+                        final int[] theRowPtr, final int[] theColIdx,
+                        final int[] theValues) {
+        this(theRows, theCols, theRowPtr, theColIdx, theValues, null, null,
+             null, theValues.length);
+    }//END constructor
+
+    /**
+     * Package private constructor for a sparse matrix with its values packed
+     *  in shorts, used as passed.
+     *
+     * @param theRows The number of rows in the matrix.
+     * @param theCols The number of columns in the matrix.
+     * @param theRowPtr Integer array giving where each row starts.
+     * @param theColIdx Integer array holding the column indices.
+     * @param theValues Short array holding the non-zero values.
+     */
+    SparseMatrix(final int theRows, final int theCols, final int[] theRowPtr,
+                 final int[] theColIdx, final short[] theValues) {
+        this(theRows, theCols, theRowPtr, theColIdx, null, theValues, null,
+             null, theValues.length);
+    }//END constructor
+
+    /**
+     * Package private constructor for a sparse matrix with its values packed
+     *  in bytes, used as passed.
+     *
+     * @param theRows The number of rows in the matrix.
+     * @param theCols The number of columns in the matrix.
+     * @param theRowPtr Integer array giving where each row starts.
+     * @param theColIdx Integer array holding the column indices.
+     * @param theValues Byte array holding the non-zero values.
+     */
+    SparseMatrix(final int theRows, final int theCols, final int[] theRowPtr,
+                 final int[] theColIdx, final byte[] theValues) {
+        this(theRows, theCols, theRowPtr, theColIdx, null, null, theValues,
+             null, theValues.length);
+    }//END constructor
+
+    /**
+     * Creates a sparse matrix from its CSR arrays, with its values held in
+     *  longs.  The arrays are used as passed, not copied.
+     *
+     * @param theRows The number of rows in the matrix.
+     * @param theCols The number of columns in the matrix.
+     * @param theRowPtr Integer array giving where each row starts.
+     * @param theColIdx Integer array holding the column indices.
+     * @param theValues Long array holding the non-zero values.
+     */
+    public SparseMatrix(final int theRows, final int theCols,
+                        final int[] theRowPtr, final int[] theColIdx,
+                        final long[] theValues) {
+        this(theRows, theCols, theRowPtr, theColIdx, null, null, null,
+             theValues, theValues.length);
+    }//END constructor
+
+    /**
+     * Private constructor checking the CSR arrays and keeping the one value
+     *  array passed which is not null.
+     *
+     * @param theRows The number of rows in the matrix.
+     * @param theCols The number of columns in the matrix.
+     * @param theRowPtr Integer array giving where each row starts.
+     * @param theColIdx Integer array holding the column indices.
+     * @param theInts Integer array holding the values, or null.
+     * @param theShorts Short array holding the values, or null.
+     * @param theBytes Byte array holding the values, or null.
+     * @param theLongs Long array holding the values, or null.
+     * @param theValueCnt The length of the value array passed.
+     */
+    private SparseMatrix(final int theRows, final int theCols,
+                         final int[] theRowPtr, final int[] theColIdx,
+                         final int[] theInts, final short[] theShorts,
+                         final byte[] theBytes, final long[] theLongs,
+                         final int theValueCnt) {
+        if (theRowPtr.length != theRows + 1
+                || theColIdx.length < theRowPtr[theRows]
+                || theValueCnt < theRowPtr[theRows]) {
+            throw new IllegalArgumentException("Inconsistent CSR arrays");
+        }//END if
+
+        myRows = theRows;
+        myCols = theCols;
+        myRowPtr = theRowPtr;
+        myColIdx = theColIdx;
+        myValues = theInts;
+        myShortValues = theShorts;
+        myByteValues = theBytes;
+        myLongValues = theLongs;
+
+        if (theBytes != null) {
+            myValueWidth = Byte.BYTES;
+        } else if (theShorts != null) {
+            myValueWidth = Short.BYTES;
+        } else if (theLongs != null) {
+            myValueWidth = Long.BYTES;
+        } else {
+            myValueWidth = Integer.BYTES;
+        }//END if
+    }//END constructor
+
+
+    /**
+     * Method to return the number of rows in the matrix.
+     *
+     * @return myRows The number of rows.
+     */
+    public int getRowCount() {
+        return myRows;
+    }//END getRowCount() METHOD
+
+    /**
+     * Method to return the number of columns in the matrix.
+     *
+     * @return myCols The number of columns.
+     */
+    public int getColCount() {
+        return myCols;
+    }//END getColCount() METHOD
+
+    /**
+     * Method to return the number of non-zero entries stored in the matrix.
+     *
+     * @return The number of stored entries.
+     */
+    public int getNonZeroCount() {
+        return myRowPtr[myRows];
+    }//END getNonZeroCount() METHOD
+
+    /**
+     * Method to return the position of the first entry of a row.
+     *
+     * @param theRow The row index.
+     * @return The position of the row's first entry.
+     */
+    public int getRowStart(final int theRow) {
+        return myRowPtr[theRow];
+    }//END getRowStart() METHOD
+
+    /**
+     * Method to return the position just past the last entry of a row.
+     *
+     * @param theRow The row index.
+     * @return The position just past the row's last entry.
+     */
+    public int getRowEnd(final int theRow) {
+        return myRowPtr[theRow + 1];
+    }//END getRowEnd() METHOD
+
+    /**
+     * Method to return the column index of the entry at a position.
+     *
+     * @param thePos The position of the entry.
+     * @return The entry's column index.
+     */
+    public int getColumn(final int thePos) {
+        return myColIdx[thePos];
+    }//END getColumn() METHOD
+
+    /**
+     * Method to return the value of the entry at a position, which must be
+     *  in the integer range.
+     *
+     * @param thePos The position of the entry.
+     * @return The entry's value.
+     * @throws ArithmeticException If the value is past the integer range.
+     */
+    public int getValue(final int thePos) {
+        final int aValue;
+        if (myByteValues != null) {
+            aValue = myByteValues[thePos];
+        } else if (myShortValues != null) {
+            aValue = myShortValues[thePos];
+        } else if (myLongValues != null) {
+            aValue = Math.toIntExact(myLongValues[thePos]);
+        } else {
+            aValue = myValues[thePos];
+        }//END if
+
+        return aValue;
+    }//END getValue() METHOD
+
+    /**
+     * Method to return the value of the entry at a position, however wide
+     *  it is held.
+     *
+     * @param thePos The position of the entry.
+     * @return The entry's value.
+     */
+    public long getLongValue(final int thePos) {
+        final long aValue;
+        if (myLongValues != null) {
+            aValue = myLongValues[thePos];
+        } else {
+            aValue = getValue(thePos);
+        }//END if
+
+        return aValue;
+    }//END getLongValue() METHOD
+
+    /**
+     * Method to return the number of bytes each value is held in, which is
+     *  1 or 2 when the values are packed, 8 when they are held in longs and
+     *  4 otherwise.
+     *
+     * @return myValueWidth The bytes per value.
+     */
+    public int getValueWidth() {
+        return myValueWidth;
+    }//END getValueWidth() METHOD
+
+    /**
+     * Method to return the same matrix with its values held in the fewest
+     *  bytes which fit every one of them.  The row and column arrays are
+     *  shared, so only the values are copied.
+     *
+     * @return aPacked The packed matrix, or this matrix if already packed
+     *  as far as it can be.
+     */
+    public SparseMatrix pack() {
+        final int aNonZeros = getNonZeroCount();
+        long aMin = 0;
+        long aMax = 0;
+        for (int k = 0; k < aNonZeros; k++) {
+            aMin = Math.min(aMin, getLongValue(k));
+            aMax = Math.max(aMax, getLongValue(k));
+        }//END for (INDEX k)
+
+        final int aWidth = widthFor(aMin, aMax);
+        SparseMatrix aPacked = this;
+        if (aWidth == Byte.BYTES && aWidth < myValueWidth) {
+            final byte[] someVals = new byte[aNonZeros];
+            for (int k = 0; k < aNonZeros; k++) {
+                someVals[k] = (byte) getLongValue(k);
+            }//END for (INDEX k)
+            aPacked = new SparseMatrix(myRows, myCols, myRowPtr, myColIdx,
+                                       someVals);
+        } else if (aWidth == Short.BYTES && aWidth < myValueWidth) {
+            final short[] someVals = new short[aNonZeros];
+            for (int k = 0; k < aNonZeros; k++) {
+                someVals[k] = (short) getLongValue(k);
+            }//END for (INDEX k)
+            aPacked = new SparseMatrix(myRows, myCols, myRowPtr, myColIdx,
+                                       someVals);
+        } else if (aWidth == Integer.BYTES && aWidth < myValueWidth) {
+            final int[] someVals = new int[aNonZeros];
+            for (int k = 0; k < aNonZeros; k++) {
+                someVals[k] = (int) getLongValue(k);
+            }//END for (INDEX k)
+            aPacked = new SparseMatrix(myRows, myCols, myRowPtr, myColIdx,
+                                       someVals);
+        }//END if
+
+        return aPacked;
+    }//END pack() METHOD
+
+    /**
+     * Method to return the value at a row and column, which is 0 for any
+     *  entry that is not stored.
+     *
+     * @param theRow The row index.
+     * @param theCol The column index.
+     * @return The value at (theRow, theCol).
+     */
+    public int get(final int theRow, final int theCol) {
+        final int aPos = Arrays.binarySearch(myColIdx, myRowPtr[theRow],
+                                             myRowPtr[theRow + 1], theCol);
+
+        int aValue = 0;
+        if (aPos >= 0) {
+            aValue = getValue(aPos);
+        }//END if
+
+        return aValue;
+    }//END get() METHOD
+
+    /**
+     * Method to return a 64 bit hash of the shape and entries of the matrix,
+     *  so that results computed from it can be matched to it later.  Equal
+     *  matrices always give the same hash, however their values are held.
+     *
+     * @return aHash The hash of the matrix.
+     */
+    public long contentHash() {
+        long aHash = HASH_SEED;
+        aHash = mixHash(aHash, myRows);
+        aHash = mixHash(aHash, myCols);
+        for (int i = 0; i < myRows; i++) {
+            aHash = mixHash(aHash, myRowPtr[i + 1] - myRowPtr[i]);
+            for (int k = myRowPtr[i]; k < myRowPtr[i + 1]; k++) {
+                aHash = mixHash(aHash, myColIdx[k]);
+                final long aValue = getLongValue(k);
+                aHash = mixHash(aHash, (int) aValue);
+                if (aValue != (int) aValue) {
+                    aHash = mixHash(aHash, (int) (aValue >>> Integer.SIZE));
+                }//END if
+            }//END for (INDEX k)
+        }//END for (INDEX i)
+
+        return aHash;
+    }//END contentHash() METHOD
+
+    /**
+     * Package private method giving the kernels in this package direct
+     *  access to the row pointer array.
+     *
+     * @return myRowPtr The row pointer array, not a copy.
+     */
+    int[] rowPtr() {
+        return myRowPtr;
+    }//END rowPtr() METHOD
+
+    /**
+     * Package private method giving the kernels in this package direct
+     *  access to the column index array.
+     *
+     * @return myColIdx The column index array, not a copy.
+     */
+    int[] colIdx() {
+        return myColIdx;
+    }//END colIdx() METHOD
+
+    /**
+     * Package private method giving the kernels in this package direct
+     *  access to the value array.  Packed values are widened into a new
+     *  array each call, so a kernel should fetch them once, when it is set
+     *  up, rather than per row or per product.
+     *
+     * @return aValues The value array, not a copy unless packed.
+     * @throws ArithmeticException If a value is past the integer range.
+     */
+    int[] values() {
+        int[] aValues = myValues;
+        if (aValues == null) {
+            aValues = new int[getNonZeroCount()];
+            copyValues(0, aValues, 0, aValues.length);
+        }//END if
+
+        return aValues;
+    }//END values() METHOD
+
+    /**
+     * Package private method giving the kernels in this package direct
+     *  access to the values as longs.  Values not held in longs are widened
+     *  into a new array.
+     *
+     * @return aValues The long value array, not a copy unless narrower.
+     */
+    long[] longValues() {
+        long[] aValues = myLongValues;
+        if (aValues == null) {
+            aValues = new long[getNonZeroCount()];
+            copyValues(0, aValues, 0, aValues.length);
+        }//END if
+
+        return aValues;
+    }//END longValues() METHOD
+
+    /**
+     * Package private method to copy a run of values into an integer array,
+     *  widening packed values as they are copied, so that no widened copy
+     *  of the whole value array is made.
+     *
+     * @param theFrom The position of the first value copied.
+     * @param theDest Integer array receiving the values.
+     * @param theDestPos The position in theDest of the first value.
+     * @param theCount The number of values copied.
+     * @throws ArithmeticException If a value is past the integer range.
+     */
+    void copyValues(final int theFrom, final int[] theDest,
+                    final int theDestPos, final int theCount) {
+        if (myValues != null) {
+            System.arraycopy(myValues, theFrom, theDest, theDestPos,
+                             theCount);
+        } else if (myShortValues != null) {
+            for (int k = 0; k < theCount; k++) {
+                theDest[theDestPos + k] = myShortValues[theFrom + k];
+            }//END for (INDEX k)
+        } else if (myByteValues != null) {
+            for (int k = 0; k < theCount; k++) {
+                theDest[theDestPos + k] = myByteValues[theFrom + k];
+            }//END for (INDEX k)
+        } else {
+            for (int k = 0; k < theCount; k++) {
+                theDest[theDestPos + k] = Math.toIntExact(
+                        myLongValues[theFrom + k]);
+            }//END for (INDEX k)
+        }//END if
+    }//END copyValues() METHOD
+
+    /**
+     * Package private method to copy a run of values into a long array,
+     *  widening them as they are copied.
+     *
+     * @param theFrom The position of the first value copied.
+     * @param theDest Long array receiving the values.
+     * @param theDestPos The position in theDest of the first value.
+     * @param theCount The number of values copied.
+     */
+    void copyValues(final int theFrom, final long[] theDest,
+                    final int theDestPos, final int theCount) {
+        if (myLongValues != null) {
+            System.arraycopy(myLongValues, theFrom, theDest, theDestPos,
+                             theCount);
+        } else {
+            for (int k = 0; k < theCount; k++) {
+                theDest[theDestPos + k] = getValue(theFrom + k);
+            }//END for (INDEX k)
+        }//END if
+    }//END copyValues() METHOD
+
+    /**
+     * Package private method to return the same values with other column
+     *  indices, sharing the row pointer and value arrays.
+     *
+     * @param theCols The number of columns of the result.
+     * @param theColIdx Integer array holding the new column indices.
+     * @return The matrix with the new columns.
+     */
+    SparseMatrix withColumns(final int theCols, final int[] theColIdx) {
+        return new SparseMatrix(myRows, theCols, myRowPtr, theColIdx,
+                                myValues, myShortValues, myByteValues,
+                                myLongValues, myRowPtr[myRows]);
+    }//END withColumns() METHOD
+
+    /**
+     * Package private method to return the fewest bytes, 1, 2, 4 or 8,
+     *  which hold every integer in a range.
+     *
+     * @param theMin The least value held.
+     * @param theMax The greatest value held.
+     * @return aWidth The bytes per value.
+     */
+    static int widthFor(final long theMin, final long theMax) {
+        int aWidth = Long.BYTES;
+        if (theMin >= Byte.MIN_VALUE && theMax <= Byte.MAX_VALUE) {
+            aWidth = Byte.BYTES;
+        } else if (theMin >= Short.MIN_VALUE && theMax <= Short.MAX_VALUE) {
+            aWidth = Short.BYTES;
+        } else if (theMin >= Integer.MIN_VALUE
+                   && theMax <= Integer.MAX_VALUE) {
+            aWidth = Integer.BYTES;
+        }//END if
+
+        return aWidth;
+    }//END widthFor() METHOD
+
+    /**
+     * Private helper to fold one integer into a running FNV-1a style hash,
+     *  a byte at a time.
+     *
+     * @param theHash The hash so far.
+     * @param theValue The integer to fold in.
+     * @return aHash The new hash.
+     */
+    private static long mixHash(final long theHash, final int theValue) {
+        long aHash = theHash;
+        for (int b = 0; b < Integer.SIZE; b += Byte.SIZE) {
+            aHash ^= (theValue >>> b) & 0xFF;
+            aHash *= HASH_PRIME;
+        }//END for (INDEX b)
+
+        return aHash;
+    }//END mixHash() METHOD
+
+}//END SparseMatrix.java CLASS
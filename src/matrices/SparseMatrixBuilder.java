@@ -0,0 +1,307 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.util.Arrays;
+
+/**
+ * Class used to assemble a sparse matrix one row at a time, growing its
+ *  primitive arrays as rows are appended.  Values are held in integers
+ *  until a row with a value past the integer range is appended, from when
+ *  they are held in longs.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.4
+ */
+public class SparseMatrixBuilder {
+
+    /** Constant for the initial capacity of the entry arrays. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Integer representing the number of columns in the matrix. */
+    private final int myCols;
+
+    /** Integer representing the number of rows appended so far. */
+    private int myRows;
+
+    /** Integer array giving where each appended row starts. */
+    private int[] myRowPtr;
+
+    /** Integer array holding the column index of each appended entry. */
+    private int[] myColIdx;
+
+    /** Integer array holding the value of each appended entry, or null. */
+    private int[] myValues;
+
+    /** Long array holding the value of each appended entry, or null. */
+    private long[] myLongValues;
+
+
+    /**
+     * Creates an empty builder for a matrix with the passed number of
+     *  columns.
+     *
+     * @param theCols The number of columns in the matrix.
+     */
+    public SparseMatrixBuilder(final int theCols) {
+        myCols = theCols;
+        myRows = 0;
+
+        myRowPtr = new int[INITIAL_CAPACITY];
+        myColIdx = new int[INITIAL_CAPACITY];
+        myValues = new int[INITIAL_CAPACITY];
+        myLongValues = null;
+    }//END constructor
+
+
+    /**
+     * Method to append a row given as parallel arrays of column indices and
+     *  values.  The column indices must be increasing and the values should
+     *  be non-zero.
+     *
+     * @param theCols Integer array holding the row's column indices.
+     * @param theValues Integer array holding the row's values.
+     * @param theCount The number of entries to take from the arrays.
+     */
+    public void addRow(final int[] theCols, final int[] theValues,
+                       final int theCount) {
+        addRow(theCols, theValues, 0, theCount);
+    }//END addRow() METHOD
+
+    /**
+     * Method to append a row given as a range of parallel arrays of column
+     *  indices and values.  The column indices must be increasing and the
+     *  values should be non-zero.
+     *
+     * @param theCols Integer array holding the row's column indices.
+     * @param theValues Integer array holding the row's values.
+     * @param theFrom The position of the row's first entry in the arrays.
+     * @param theTo The position just past the row's last entry.
+     */
+    public void addRow(final int[] theCols, final int[] theValues,
+                       final int theFrom, final int theTo) {
+        final int aCount = theTo - theFrom;
+        final int aStart = myRowPtr[myRows];
+        ensureCapacity(1, aStart + aCount);
+
+        System.arraycopy(theCols, theFrom, myColIdx, aStart, aCount);
+        if (myLongValues == null) {
+            System.arraycopy(theValues, theFrom, myValues, aStart, aCount);
+        } else {
+            for (int k = 0; k < aCount; k++) {
+                myLongValues[aStart + k] = theValues[theFrom + k];
+            }//END for (INDEX k)
+        }//END if
+
+        myRows++;
+        myRowPtr[myRows] = aStart + aCount;
+    }//END addRow() METHOD
+
+    /**
+     * Method to append a row given as a range of parallel arrays of column
+     *  indices and long values.  The column indices must be increasing and
+     *  the values should be non-zero.
+     *
+     * @param theCols Integer array holding the row's column indices.
+     * @param theValues Long array holding the row's values.
+     * @param theFrom The position of the row's first entry in the arrays.
+     * @param theTo The position just past the row's last entry.
+     */
+    public void addRow(final int[] theCols, final long[] theValues,
+                       final int theFrom, final int theTo) {
+        if (myLongValues == null) {
+            for (int k = theFrom; k < theTo; k++) {
+                if (theValues[k] != (int) theValues[k]) {
+                    widenValues();
+                    break;
+                }//END if
+            }//END for (INDEX k)
+        }//END if
+
+        final int aCount = theTo - theFrom;
+        final int aStart = myRowPtr[myRows];
+        ensureCapacity(1, aStart + aCount);
+
+        System.arraycopy(theCols, theFrom, myColIdx, aStart, aCount);
+        if (myLongValues == null) {
+            for (int k = 0; k < aCount; k++) {
+                myValues[aStart + k] = (int) theValues[theFrom + k];
+            }//END for (INDEX k)
+        } else {
+            System.arraycopy(theValues, theFrom, myLongValues, aStart,
+                             aCount);
+        }//END if
+
+        myRows++;
+        myRowPtr[myRows] = aStart + aCount;
+    }//END addRow() METHOD
+
+    /**
+     * Method to append every row of another sparse matrix with the same
+     *  number of columns.  The entries are copied in one run, packed values
+     *  being widened as they are copied.
+     *
+     * @param theMatrix The matrix whose rows are appended.
+     */
+    public void addRows(final SparseMatrix theMatrix) {
+        final int aRows = theMatrix.getRowCount();
+        if (aRows == 0) {
+            return;
+        }//END if
+
+        final int aFirst = theMatrix.getRowStart(0);
+        final int aCount = theMatrix.getRowEnd(aRows - 1) - aFirst;
+        final int aStart = myRowPtr[myRows];
+        if (myLongValues == null && theMatrix.getValueWidth() == Long.BYTES) {
+            widenValues();
+        }//END if
+        ensureCapacity(aRows, aStart + aCount);
+
+        System.arraycopy(theMatrix.colIdx(), aFirst, myColIdx, aStart,
+                         aCount);
+        if (myLongValues == null) {
+            theMatrix.copyValues(aFirst, myValues, aStart, aCount);
+        } else {
+            theMatrix.copyValues(aFirst, myLongValues, aStart, aCount);
+        }//END if
+
+        for (int i = 0; i < aRows; i++) {
+            myRowPtr[myRows + i + 1] = aStart + theMatrix.getRowEnd(i)
+                    - aFirst;
+        }//END for (INDEX i)
+        myRows += aRows;
+    }//END addRows() METHOD
+
+    /**
+     * Method to return the number of rows appended so far.
+     *
+     * @return myRows The number of rows.
+     */
+    public int getRowCount() {
+        return myRows;
+    }//END getRowCount() METHOD
+
+    /**
+     * Method to return the rows appended so far as a sparse matrix, with the
+     *  arrays trimmed to their used length.
+     *
+     * @return A sparse matrix holding the appended rows.
+     */
+    public SparseMatrix build() {
+        return make(myCols, myRowPtr[myRows]);
+    }//END build() METHOD
+
+    /**
+     * Package private method to build the matrix with its columns renumbered,
+     *  dropping every entry whose column is not kept.  The renumbering must
+     *  keep the kept columns in the same order, so each row stays sorted.
+     *  The rows held are compacted in place, so the builder must not be used
+     *  afterwards.
+     *
+     * @param theRemap Integer array giving the new index of each column, or
+     *  -1 for a column which is dropped.
+     * @param theCols The number of columns kept.
+     * @return The matrix with its columns renumbered.
+     */
+    SparseMatrix buildRemapped(final int[] theRemap, final int theCols) {
+        int aPos = 0;
+        int aStart = 0;
+        for (int i = 0; i < myRows; i++) {
+            final int anEnd = myRowPtr[i + 1];
+            for (int k = aStart; k < anEnd; k++) {
+                final int aCol = theRemap[myColIdx[k]];
+                if (aCol >= 0) {
+                    myColIdx[aPos] = aCol;
+                    if (myLongValues == null) {
+                        myValues[aPos] = myValues[k];
+                    } else {
+                        myLongValues[aPos] = myLongValues[k];
+                    }//END if
+                    aPos++;
+                }//END if
+            }//END for (INDEX k)
+            aStart = anEnd;
+            myRowPtr[i + 1] = aPos;
+        }//END for (INDEX i)
+
+        return make(theCols, aPos);
+    }//END buildRemapped() METHOD
+
+    /**
+     * Private helper to return the rows held as a sparse matrix, with the
+     *  arrays trimmed to the passed number of entries.
+     *
+     * @param theCols The number of columns of the matrix.
+     * @param theNonZeros The number of entries held.
+     * @return The matrix.
+     */
+    private SparseMatrix make(final int theCols, final int theNonZeros) {
+        final int[] aRowPtr = Arrays.copyOf(myRowPtr, myRows + 1);
+        final int[] aColIdx = Arrays.copyOf(myColIdx, theNonZeros);
+
+        final SparseMatrix aMatrix;
+        if (myLongValues == null) {
+            aMatrix = new SparseMatrix(myRows, theCols, aRowPtr, aColIdx,
+                                       Arrays.copyOf(myValues, theNonZeros));
+        } else {
+            aMatrix = new SparseMatrix(myRows, theCols, aRowPtr, aColIdx,
+                                       Arrays.copyOf(myLongValues,
+                                                     theNonZeros));
+        }//END if
+
+        return aMatrix;
+    }//END make() METHOD
+
+    /**
+     * Private helper to move the values held into longs, once a value past
+     *  the integer range is appended.
+     */
+    private void widenValues() {
+        myLongValues = new long[myValues.length];
+        for (int k = 0; k < myRowPtr[myRows]; k++) {
+            myLongValues[k] = myValues[k];
+        }//END for (INDEX k)
+        myValues = null;
+    }//END widenValues() METHOD
+
+    /**
+     * Private helper to grow the arrays so that the passed number of rows
+     *  more, with the passed total number of entries, fit.
+     *
+     * @param theRows The number of rows appended.
+     * @param theNonZeros The number of entries which must fit.
+     */
+    private void ensureCapacity(final int theRows, final int theNonZeros) {
+        if (myRows + theRows + 1 > myRowPtr.length) {
+            myRowPtr = Arrays.copyOf(myRowPtr, grow(myRowPtr.length,
+                                                    myRows + theRows + 1));
+        }//END if
+
+        if (theNonZeros > myColIdx.length) {
+            final int aSize = grow(myColIdx.length, theNonZeros);
+            myColIdx = Arrays.copyOf(myColIdx, aSize);
+            if (myLongValues == null) {
+                myValues = Arrays.copyOf(myValues, aSize);
+            } else {
+                myLongValues = Arrays.copyOf(myLongValues, aSize);
+            }//END if
+        }//END if
+    }//END ensureCapacity() METHOD
+
+    /**
+     * Private helper to pick a new array size of at least the needed size,
+     *  growing by half again to keep appends amortized constant time.
+     *
+     * @param theSize The current size.
+     * @param theNeeded The size needed.
+     * @return The new size.
+     */
+    private static int grow(final int theSize, final int theNeeded) {
+        final long aSize = Math.max((long) theNeeded,
+                                    theSize + (long) (theSize >> 1));
+
+        return (int) Math.min(aSize, Integer.MAX_VALUE - 8);
+    }//END grow() METHOD
+
+}//END SparseMatrixBuilder.java CLASS
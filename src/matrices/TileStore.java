@@ -0,0 +1,43 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.io.IOException;
+
+/**
+ * Interface for somewhere the finished tiles of a tiled LLt are kept, such
+ *  as a directory on disk, so that LLt never has to be held whole.  Tiles
+ *  are numbered by their row block and column block, and tiles for
+ *  different blocks may be put from several threads at once.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+public interface TileStore {
+
+    /**
+     * Method to return whether a tile has already been stored, so that it
+     *  need not be computed again.
+     *
+     * @param theRowBlock The row block of the tile.
+     * @param theColBlock The column block of the tile.
+     * @return True if the tile is stored.
+     * @throws IOException If the store cannot be read.
+     */
+    boolean hasTile(int theRowBlock, int theColBlock) throws IOException;
+
+    /**
+     * Method to store a finished tile.  A tile only counts as stored once
+     *  this returns, so a tile being put when a run stops is computed again.
+     *
+     * @param theRowBlock The row block of the tile.
+     * @param theColBlock The column block of the tile.
+     * @param theTile The rows of the tile, with their columns numbered as
+     *  in LLt.
+     * @throws IOException If the tile cannot be stored.
+     */
+    void putTile(int theRowBlock, int theColBlock, SparseMatrix theTile)
+            throws IOException;
+
+}//END TileStore.java INTERFACE
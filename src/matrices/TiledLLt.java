@@ -0,0 +1,216 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class with methods to compute LLt out of core, one tile at a time.  The
+ *  rows of LLt are split into blocks of a fixed number of rows, and tile
+ *  (I, J) holds the entries of LLt with rows in block I and columns in block
+ *  J.  Each tile is handed to a tile store as soon as it is finished, so at
+ *  most one tile per thread is held at once, however large LLt is.  Since
+ *  LLt is symmetric only the tiles with J &gt;= I are computed; each is stored
+ *  along with its transpose as tile (J, I).  Tiles already in the store are
+ *  skipped, so a run which stopped part way resumes from where it was.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+public class TiledLLt {
+
+    /** The maker each tile is computed with. */
+    private final LLtMaker myMaker;
+
+    /** The pool the tiles are computed on, or null to compute serially. */
+    private final ForkJoinPool myPool;
+
+    /** Integer representing the number of rows of LLt. */
+    private final int myRows;
+
+    /** Integer representing the number of rows in each block. */
+    private final int myTileRows;
+
+    /** The counter advanced as tiles are done, or null for none. */
+    private AtomicLong myTilesDone;
+
+    /** Long representing the non-zero entries in the tiles computed. */
+    private final AtomicLong myNonZeros;
+
+
+    /**
+     * Allows LLt to be computed in tiles for the passed sparse L matrix.
+     *
+     * @param theL A sparse matrix holding the values of L.
+     * @param theTileRows The number of rows in each block.
+     * @param thePool The pool to compute on, or null to compute serially.
+     */
+    public TiledLLt(final SparseMatrix theL, final int theTileRows,
+                    final ForkJoinPool thePool) {
+        if (theTileRows <= 0) {
+            throw new IllegalArgumentException("Tiles must have rows");
+        }//END if
+
+        myMaker = new LLtMaker(theL);
+        myPool = thePool;
+        myRows = theL.getRowCount();
+        myTileRows = theTileRows;
+        myTilesDone = null;
+        myNonZeros = new AtomicLong();
+    }//END constructor
+
+
+    /**
+     * Method to give a counter which is advanced by one for every tile
+     *  computed or found already stored, so that the progress of a long
+     *  computation can be followed from another thread.
+     *
+     * @param theTilesDone The counter to advance, or null for none.
+     */
+    public void setProgress(final AtomicLong theTilesDone) {
+        myTilesDone = theTilesDone;
+    }//END setProgress() METHOD
+
+    /**
+     * Method to return the number of row blocks, and so of column blocks.
+     *
+     * @return The number of blocks.
+     */
+    public int getBlockCount() {
+        return (myRows + myTileRows - 1) / myTileRows;
+    }//END getBlockCount() METHOD
+
+    /**
+     * Method to return the number of tiles making up LLt.
+     *
+     * @return The number of tiles.
+     */
+    public long getTileCount() {
+        return (long) getBlockCount() * getBlockCount();
+    }//END getTileCount() METHOD
+
+    /**
+     * Method to return the number of non-zero entries in the tiles computed
+     *  so far, not counting tiles which were already stored.
+     *
+     * @return The number of non-zero entries.
+     */
+    public long getNonZeroCount() {
+        return myNonZeros.get();
+    }//END getNonZeroCount() METHOD
+
+    /**
+     * Method to compute every tile of LLt missing from the passed store and
+     *  put it there.
+     *
+     * @param theStore The store to keep the tiles in.
+     * @return aMissing The number of tiles computed, counting a tile and its
+     *  transpose once.
+     * @throws IOException If the store cannot be read or written.
+     */
+    public int computeTiles(final TileStore theStore) throws IOException {
+        final int aBlocks = getBlockCount();
+
+        // List the upper tiles still to do, as pairs of block indices.
+        int[] aTodo = new int[2 * aBlocks];
+        int aMissing = 0;
+        for (int bi = 0; bi < aBlocks; bi++) {
+            for (int bj = bi; bj < aBlocks; bj++) {
+                if (theStore.hasTile(bi, bj)) {
+                    advance(tileCount(bi, bj));
+                } else {
+                    if (2 * aMissing == aTodo.length) {
+                        aTodo = Arrays.copyOf(aTodo, 2 * aTodo.length);
+                    }//END if
+                    aTodo[2 * aMissing] = bi;
+                    aTodo[2 * aMissing + 1] = bj;
+                    aMissing++;
+                }//END if
+            }//END for (INDEX bj)
+        }//END for (INDEX bi)
+
+        final int[] somePairs = aTodo;
+        try {
+            ChunkTask.runAll(myPool, aMissing, new ChunkTask.Body() {
+                @Override
+                public void run(final int theChunk) {
+                    computeTile(theStore, somePairs[2 * theChunk],
+                                somePairs[2 * theChunk + 1]);
+                }//END run() METHOD
+            });
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }//END try/catch BLOCK
+
+        return aMissing;
+    }//END computeTiles() METHOD
+
+    /**
+     * Private helper to compute one upper tile and store it and, off the
+     *  diagonal, its transpose.  The transpose is stored first, so a stored
+     *  upper tile always means both are stored.
+     *
+     * @param theStore The store to keep the tiles in.
+     * @param theRowBlock The row block of the tile.
+     * @param theColBlock The column block of the tile, no less than the row
+     *  block.
+     */
+    private void computeTile(final TileStore theStore, final int theRowBlock,
+                             final int theColBlock) {
+        final int aRowFrom = theRowBlock * myTileRows;
+        final int aRowTo = Math.min(aRowFrom + myTileRows, myRows);
+        final int aColFrom = theColBlock * myTileRows;
+        final int aColTo = Math.min(aColFrom + myTileRows, myRows);
+
+        final SparseMatrix aTile = myMaker.computeTile(aRowFrom, aRowTo,
+                                                       aColFrom, aColTo);
+        long aNonZeros = aTile.getNonZeroCount();
+        try {
+            if (theColBlock != theRowBlock) {
+                theStore.putTile(theColBlock, theRowBlock,
+                                 LLtMaker.transposeTile(aTile, aColFrom,
+                                                        aColTo, aRowFrom));
+                aNonZeros *= 2;
+            }//END if
+            theStore.putTile(theRowBlock, theColBlock, aTile);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }//END try/catch BLOCK
+
+        myNonZeros.addAndGet(aNonZeros);
+        advance(tileCount(theRowBlock, theColBlock));
+    }//END computeTile() METHOD
+
+    /**
+     * Private helper to return how many tiles an upper tile stands for.
+     *
+     * @param theRowBlock The row block of the tile.
+     * @param theColBlock The column block of the tile.
+     * @return 1 on the diagonal, otherwise 2.
+     */
+    private static int tileCount(final int theRowBlock, final int theColBlock) {
+        int aCount = 2;
+        if (theRowBlock == theColBlock) {
+            aCount = 1;
+        }//END if
+
+        return aCount;
+    }//END tileCount() METHOD
+
+    /**
+     * Private helper to advance the progress counter, if there is one.
+     *
+     * @param theTiles The number of tiles done.
+     */
+    private void advance(final int theTiles) {
+        if (myTilesDone != null) {
+            myTilesDone.addAndGet(theTiles);
+        }//END if
+    }//END advance() METHOD
+
+}//END TiledLLt.java CLASS
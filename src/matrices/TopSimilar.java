@@ -0,0 +1,93 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+/**
+ * Immutable class holding the result of SimilarityIndex.getTopSimilar():
+ *  for each row of a batch, the words of the vocabulary most similar to it
+ *  with their scores, highest score first and, among equal scores, the
+ *  earliest word first.  The scores are held in longs, so no score can
+ *  pass their range.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+public final class TopSimilar {
+
+    /** Integer array giving where each row starts, plus one more entry. */
+    private final int[] myRowPtr;
+
+    /** Integer array holding the words of every row, row by row. */
+    private final int[] myWords;
+
+    /** Long array holding the score of each word. */
+    private final long[] myScores;
+
+
+    /**
+     * Package private constructor, since only a SimilarityIndex makes
+     *  these.
+     *
+     * @param theRowPtr Where each row starts, plus one more entry.
+     * @param theWords The words of every row, in score order in each row.
+     * @param theScores The score of each word.
+     */
+    TopSimilar(final int[] theRowPtr, final int[] theWords,
+               final long[] theScores) {
+        myRowPtr = theRowPtr;
+        myWords = theWords;
+        myScores = theScores;
+    }//END constructor
+
+
+    /**
+     * Method to return the number of rows.
+     *
+     * @return The number of rows.
+     */
+    public int getRowCount() {
+        return myRowPtr.length - 1;
+    }//END getRowCount() METHOD
+
+    /**
+     * Method to return the position of the first entry of a row.
+     *
+     * @param theRow The row index.
+     * @return The position of its first entry.
+     */
+    public int getRowStart(final int theRow) {
+        return myRowPtr[theRow];
+    }//END getRowStart() METHOD
+
+    /**
+     * Method to return the position just past the last entry of a row.
+     *
+     * @param theRow The row index.
+     * @return The position just past its last entry.
+     */
+    public int getRowEnd(final int theRow) {
+        return myRowPtr[theRow + 1];
+    }//END getRowEnd() METHOD
+
+    /**
+     * Method to return the word of an entry, its row of L.
+     *
+     * @param theEntry The position of the entry.
+     * @return The word.
+     */
+    public int getWord(final int theEntry) {
+        return myWords[theEntry];
+    }//END getWord() METHOD
+
+    /**
+     * Method to return the score of an entry, its entry of LLt.
+     *
+     * @param theEntry The position of the entry.
+     * @return The score.
+     */
+    public long getScore(final int theEntry) {
+        return myScores[theEntry];
+    }//END getScore() METHOD
+
+}//END TopSimilar.java CLASS
@@ -0,0 +1,70 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+/**
+ * Immutable class holding the result of a VocabularyBuilder: the kept
+ *  N-grams, the number of words each occurs in, and the L matrix whose
+ *  columns are their ids.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+public final class Vocabulary {
+
+    /** The dictionary of the kept N-grams. */
+    private final NgramDictionary myNgrams;
+
+    /** Integer array holding the number of words each N-gram occurs in. */
+    private final int[] myWordCounts;
+
+    /** Sparse matrix holding L over the kept N-grams. */
+    private final SparseMatrix myL;
+
+
+    /**
+     * Package private constructor, since only a VocabularyBuilder makes
+     *  these.
+     *
+     * @param theNgrams The dictionary of the kept N-grams.
+     * @param theWordCounts The number of words each N-gram occurs in.
+     * @param theL L over the kept N-grams.
+     */
+    Vocabulary(final NgramDictionary theNgrams, final int[] theWordCounts,
+               final SparseMatrix theL) {
+        myNgrams = theNgrams;
+        myWordCounts = theWordCounts;
+        myL = theL;
+    }//END constructor
+
+
+    /**
+     * Method to return the dictionary of the kept N-grams.
+     *
+     * @return myNgrams The dictionary, whose ids are the columns of L.
+     */
+    public NgramDictionary getNgrams() {
+        return myNgrams;
+    }//END getNgrams() METHOD
+
+    /**
+     * Method to return the number of words an N-gram occurs in.
+     *
+     * @param theId The id of the N-gram.
+     * @return The number of words it occurs in.
+     */
+    public int getWordCount(final int theId) {
+        return myWordCounts[theId];
+    }//END getWordCount() METHOD
+
+    /**
+     * Method to return L over the kept N-grams.
+     *
+     * @return myL A sparse matrix containing the values for the L matrix.
+     */
+    public SparseMatrix getL() {
+        return myL;
+    }//END getL() METHOD
+
+}//END Vocabulary.java CLASS
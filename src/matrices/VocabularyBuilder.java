@@ -0,0 +1,332 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+import java.util.Arrays;
+
+/**
+ * Class which derives the N-gram vocabulary from the words themselves and
+ *  builds L over it, in two streamed passes over the words.  In the first
+ *  pass each distinct substring of a word whose length lies in [min, max]
+ *  is interned into a dictionary of every N-gram met, and the number of
+ *  words it occurs in is counted in a primitive array beside it, so no
+ *  row is held.  The N-grams occurring in too few words, or outside the
+ *  most frequent K, are then dropped, and the kept ones numbered in order
+ *  of first occurrence.  In the second pass each word's row of L is built
+ *  straight against the kept N-grams.
+ *
+ * <p>The memory used by the counts grows with the number of distinct
+ *  N-grams met and their lengths, and so with the corpus; only L over the
+ *  kept N-grams is built.  Since each N-gram is keyed on its own chars,
+ *  no two N-grams ever share a count.</p>
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.4
+ */
+public class VocabularyBuilder implements WordSink {
+
+    /** Constant for the initial number of N-grams there is room for. */
+    private static final int INITIAL_NGRAMS = 1 << 12;
+
+    /** Constant for the initial room for the N-grams of one word. */
+    private static final int INITIAL_ROOM = 64;
+
+    /** Constant marking an N-gram which is dropped. */
+    private static final int DROPPED = -1;
+
+    /** Integer representing the shortest N-gram length. */
+    private final int myMinLength;
+
+    /** Integer representing the longest N-gram length. */
+    private final int myMaxLength;
+
+    /** The dictionary of every N-gram met in the first pass. */
+    private final NgramDictionary mySeen;
+
+    /** Integer array holding the number of words each N-gram met is in. */
+    private int[] myWordCounts;
+
+    /** Integer array holding the last word each N-gram met was counted in. */
+    private int[] myLastWord;
+
+    /** Integer representing the number of the current word, from 1. */
+    private int myWordNumber;
+
+    /** Integer array holding the kept id of each N-gram met, or DROPPED. */
+    private int[] myKeptIds;
+
+    /** The dictionary of the kept N-grams, once the counting is done. */
+    private NgramDictionary myDictionary;
+
+    /** Integer array holding the number of words each kept N-gram is in. */
+    private int[] myKeptCounts;
+
+    /** Builder holding the rows of L over the kept N-grams. */
+    private SparseMatrixBuilder myRows;
+
+    /** Integer array holding the count of each kept N-gram in the word. */
+    private int[] myCounts;
+
+    /** Integer array holding the kept ids met in the current word. */
+    private int[] myTouched;
+
+    /** Integer array holding the values of the current row. */
+    private int[] myVals;
+
+    /** Char array holding the current word, when given as a String. */
+    private char[] myWord;
+
+
+    /**
+     * Creates a builder for the N-grams with lengths from theMinLength up to
+     *  theMaxLength, ready for the first pass over the words.
+     *
+     * @param theMinLength The shortest N-gram length, at least 1.
+     * @param theMaxLength The longest N-gram length.
+     */
+    public VocabularyBuilder(final int theMinLength, final int theMaxLength) {
+        if (theMinLength < 1 || theMaxLength < theMinLength) {
+            throw new IllegalArgumentException("N-gram lengths must satisfy"
+                                               + " 1 <= min <= max");
+        }//END if
+
+        myMinLength = theMinLength;
+        myMaxLength = theMaxLength;
+        mySeen = new NgramDictionary();
+        myWordCounts = new int[INITIAL_NGRAMS];
+        myLastWord = new int[INITIAL_NGRAMS];
+        myWordNumber = 0;
+        myKeptIds = null;
+
+        myDictionary = null;
+        myKeptCounts = null;
+        myRows = null;
+        myCounts = null;
+        myTouched = new int[INITIAL_ROOM];
+        myVals = new int[INITIAL_ROOM];
+        myWord = new char[0];
+    }//END constructor
+
+
+    /**
+     * Method to add the next chunk of words: in the first pass counting
+     *  their N-grams, in the second recording their rows.
+     *
+     * @param theWords String array holding the chunk of words.
+     * @param theCount The number of words of the array in the chunk.
+     */
+    @Override
+    public void addWords(final String[] theWords, final int theCount) {
+        for (int i = 0; i < theCount; i++) {
+            final int aLength = theWords[i].length();
+            if (aLength > myWord.length) {
+                myWord = new char[aLength];
+            }//END if
+            theWords[i].getChars(0, aLength, myWord, 0);
+
+            addWord(myWord, 0, aLength);
+        }//END for (INDEX i)
+    }//END addWords() METHOD
+
+    /**
+     * Method to add the next chunk of words, packed into one char array:
+     *  in the first pass counting their N-grams, in the second recording
+     *  their rows.
+     *
+     * @param theChars The char array holding the packed words.
+     * @param theStarts Integer array holding where each word starts, with
+     *  one more entry than there are words.
+     * @param theCount The number of words in the chunk.
+     */
+    @Override
+    public void addWords(final char[] theChars, final int[] theStarts,
+                         final int theCount) {
+        for (int i = 0; i < theCount; i++) {
+            addWord(theChars, theStarts[i], theStarts[i + 1]);
+        }//END for (INDEX i)
+    }//END addWords() METHOD
+
+    /**
+     * Method to return the number of distinct N-grams counted so far.
+     *
+     * @return The number of distinct N-grams.
+     */
+    public int getSeenCount() {
+        return mySeen.getCount();
+    }//END getSeenCount() METHOD
+
+    /**
+     * Method to end the first pass, keeping the N-grams which occur in at
+     *  least theMinWords words and, if theTopK is positive, are among the
+     *  theTopK which occur in the most words, ties going to the N-gram met
+     *  first.  The same words must then be added again, in the same order,
+     *  for the second pass.
+     *
+     * @param theMinWords The fewest words a kept N-gram occurs in.
+     * @param theTopK The most N-grams to keep, or 0 for no limit.
+     * @return aKept The number of N-grams kept.
+     */
+    public int prune(final int theMinWords, final int theTopK) {
+        if (myKeptIds != null) {
+            throw new IllegalStateException("Already pruned");
+        }//END if
+
+        final int aSeen = mySeen.getCount();
+        myKeptIds = new int[aSeen];
+        int aKept = 0;
+        for (int id = 0; id < aSeen; id++) {
+            if (myWordCounts[id] >= theMinWords) {
+                myKeptIds[id] = 0;
+                aKept++;
+            } else {
+                myKeptIds[id] = DROPPED;
+            }//END if
+        }//END for (INDEX id)
+
+        if (theTopK > 0 && aKept > theTopK) {
+            // Most words first, then earliest met, in one primitive sort;
+            // the ids are already in the order the N-grams were first met.
+            final long[] someKeys = new long[aKept];
+            int aKey = 0;
+            for (int id = 0; id < aSeen; id++) {
+                if (myKeptIds[id] != DROPPED) {
+                    someKeys[aKey++] = ((long) (Integer.MAX_VALUE
+                                                - myWordCounts[id]) << 32)
+                            | id;
+                }//END if
+            }//END for (INDEX id)
+            Arrays.sort(someKeys);
+
+            for (int k = theTopK; k < aKept; k++) {
+                myKeptIds[(int) someKeys[k]] = DROPPED;
+            }//END for (INDEX k)
+            aKept = theTopK;
+        }//END if
+
+        myDictionary = new NgramDictionary();
+        myKeptCounts = new int[aKept];
+        for (int id = 0; id < aSeen; id++) {
+            if (myKeptIds[id] != DROPPED) {
+                final int aKeptId = myDictionary.add(mySeen.get(id));
+                myKeptIds[id] = aKeptId;
+                myKeptCounts[aKeptId] = myWordCounts[id];
+            }//END if
+        }//END for (INDEX id)
+        myWordCounts = null;
+        myLastWord = null;
+
+        myCounts = new int[aKept];
+        myRows = new SparseMatrixBuilder(aKept);
+
+        return aKept;
+    }//END prune() METHOD
+
+    /**
+     * Method to end the second pass and return the result.  This is the
+     *  last call to make on the builder.
+     *
+     * @return The kept N-grams, how many words each occurs in, and L over
+     *  them.
+     */
+    public Vocabulary build() {
+        if (myRows == null) {
+            throw new IllegalStateException("Not yet pruned");
+        }//END if
+
+        return new Vocabulary(myDictionary, myKeptCounts,
+                              myRows.build().pack());
+    }//END build() METHOD
+
+    /**
+     * Private helper to add one word, to the counts in the first pass or as
+     *  a row in the second.
+     *
+     * @param theChars The char array holding the word.
+     * @param theFrom The position of the first char of the word.
+     * @param theTo The position just past the last char of the word.
+     */
+    private void addWord(final char[] theChars, final int theFrom,
+                         final int theTo) {
+        if (myRows == null) {
+            countWord(theChars, theFrom, theTo);
+        } else {
+            addRow(theChars, theFrom, theTo);
+        }//END if
+    }//END addWord() METHOD
+
+    /**
+     * Private helper to count each distinct N-gram of one word once.
+     *
+     * @param theChars The char array holding the word.
+     * @param theFrom The position of the first char of the word.
+     * @param theTo The position just past the last char of the word.
+     */
+    private void countWord(final char[] theChars, final int theFrom,
+                           final int theTo) {
+        myWordNumber++;
+        for (int aStart = theFrom; aStart < theTo; aStart++) {
+            final int aLongest = Math.min(myMaxLength, theTo - aStart);
+            for (int aLength = myMinLength; aLength <= aLongest; aLength++) {
+                final int anId = mySeen.add(theChars, aStart,
+                                            aStart + aLength);
+                if (anId == myWordCounts.length) {
+                    myWordCounts = Arrays.copyOf(myWordCounts, 2 * anId);
+                    myLastWord = Arrays.copyOf(myLastWord, 2 * anId);
+                }//END if
+
+                if (myLastWord[anId] != myWordNumber) {
+                    myLastWord[anId] = myWordNumber;
+                    myWordCounts[anId]++;
+                }//END if
+            }//END for (INDEX aLength)
+        }//END for (INDEX aStart)
+    }//END countWord() METHOD
+
+    /**
+     * Private helper to record the row of one word over the kept N-grams.
+     *
+     * @param theChars The char array holding the word.
+     * @param theFrom The position of the first char of the word.
+     * @param theTo The position just past the last char of the word.
+     */
+    private void addRow(final char[] theChars, final int theFrom,
+                        final int theTo) {
+        int aTouched = 0;
+
+        for (int aStart = theFrom; aStart < theTo; aStart++) {
+            final int aLongest = Math.min(myMaxLength, theTo - aStart);
+            for (int aLength = myMinLength; aLength <= aLongest; aLength++) {
+                final int aSeenId = mySeen.indexOf(theChars, aStart,
+                                                   aStart + aLength);
+                if (aSeenId < 0) {
+                    throw new IllegalStateException("Second pass met an"
+                                                    + " N-gram not counted");
+                }//END if
+
+                final int anId = myKeptIds[aSeenId];
+                if (anId == DROPPED) {
+                    continue;
+                }//END if
+
+                if (myCounts[anId] == 0) {
+                    if (aTouched == myTouched.length) {
+                        myTouched = Arrays.copyOf(myTouched, 2 * aTouched);
+                        myVals = Arrays.copyOf(myVals, 2 * aTouched);
+                    }//END if
+                    myTouched[aTouched++] = anId;
+                }//END if
+                myCounts[anId]++;
+            }//END for (INDEX aLength)
+        }//END for (INDEX aStart)
+
+        Arrays.sort(myTouched, 0, aTouched);
+        for (int k = 0; k < aTouched; k++) {
+            myVals[k] = myCounts[myTouched[k]];
+            myCounts[myTouched[k]] = 0;
+        }//END for (INDEX k)
+
+        myRows.addRow(myTouched, myVals, aTouched);
+    }//END addRow() METHOD
+
+}//END VocabularyBuilder.java CLASS
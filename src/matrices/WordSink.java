@@ -0,0 +1,36 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package matrices;
+
+/**
+ * Interface for the classes which turn words, streamed in chunk by chunk,
+ *  into rows of L.  A chunk may be given as Strings or as words packed into
+ *  one char array; neither is kept, so the caller may reuse its arrays.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+public interface WordSink {
+
+    /**
+     * Method to add the next chunk of words.
+     *
+     * @param theWords String array holding the chunk of words.
+     * @param theCount The number of words of the array in the chunk.
+     */
+    void addWords(String[] theWords, int theCount);
+
+    /**
+     * Method to add the next chunk of words, packed back to back into one
+     *  char array.  Word i of the chunk occupies theChars[theStarts[i]] up
+     *  to, but not including, theChars[theStarts[i + 1]].
+     *
+     * @param theChars The char array holding the packed words.
+     * @param theStarts Integer array holding where each word starts, with
+     *  one more entry than there are words.
+     * @param theCount The number of words in the chunk.
+     */
+    void addWords(char[] theChars, int[] theStarts, int theCount);
+
+}//END WordSink.java INTERFACE
@@ -0,0 +1,104 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package metrics;
+
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * Sink which prints each report as a short human readable line, for
+ *  watching a long run from the terminal.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.2
+ */
+public class ConsoleSink implements MetricsSink {
+
+    /** Constant for the number of nanoseconds in a second. */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /** Constant for the number of bytes in a mebibyte. */
+    private static final double BYTES_PER_MIB = 1 << 20;
+
+    /** The stream the lines are printed to. */
+    private final PrintStream myOut;
+
+
+    /**
+     * Creates a sink printing to the passed stream, which is not closed with
+     *  the sink.
+     *
+     * @param theOut The stream to print to.
+     */
+    public ConsoleSink(final PrintStream theOut) {
+        myOut = theOut;
+    }//END constructor
+
+
+    /**
+     * Method to print a finished stage.
+     *
+     * @param theMetrics The measurements of the stage.
+     */
+    @Override
+    public synchronized void stageFinished(final StageMetrics theMetrics) {
+        myOut.println(String.format(Locale.ROOT,
+                "[%s] done in %.2f s (cpu %.2f s), %.1f MiB allocated,"
+                + " %.1f MiB heap used, %d x %d with %d non-zeros,"
+                + " %.0f %s/s",
+                theMetrics.getStage(),
+                theMetrics.getWallNanos() / NANOS_PER_SECOND,
+                theMetrics.getCpuNanos() / NANOS_PER_SECOND,
+                theMetrics.getAllocatedBytes() / BYTES_PER_MIB,
+                theMetrics.getHeapUsedBytes() / BYTES_PER_MIB,
+                theMetrics.getRows(), theMetrics.getCols(),
+                theMetrics.getNonZeros(), theMetrics.getItemsPerSecond(),
+                theMetrics.getUnit()));
+    }//END stageFinished() METHOD
+
+    /**
+     * Method to print the progress of a running stage.
+     *
+     * @param theStage The name of the stage.
+     * @param theDone The number of items done so far.
+     * @param theTotal The total number of items, or -1 if not known.
+     * @param theWallNanos The wall time since the stage started.
+     */
+    @Override
+    public synchronized void progress(final String theStage,
+                                      final long theDone, final long theTotal,
+                                      final long theWallNanos) {
+        final double aSeconds = theWallNanos / NANOS_PER_SECOND;
+
+        if (theTotal > 0) {
+            myOut.println(String.format(Locale.ROOT,
+                    "[%s] %d of %d (%.1f%%) after %.0f s", theStage, theDone,
+                    theTotal, 100.0 * theDone / theTotal, aSeconds));
+        } else {
+            myOut.println(String.format(Locale.ROOT, "[%s] %d after %.0f s",
+                                        theStage, theDone, aSeconds));
+        }//END if
+    }//END progress() METHOD
+
+    /**
+     * Method to print a note about a stage.
+     *
+     * @param theStage The name of the stage.
+     * @param theMessage The note.
+     */
+    @Override
+    public synchronized void note(final String theStage,
+                                  final String theMessage) {
+        myOut.println("[" + theStage + "] " + theMessage);
+    }//END note() METHOD
+
+    /**
+     * Method to flush the stream, which is left open.
+     */
+    @Override
+    public void close() {
+        myOut.flush();
+    }//END close() METHOD
+
+}//END ConsoleSink.java CLASS
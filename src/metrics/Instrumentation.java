@@ -0,0 +1,202 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Class which times the stages of a run and passes their measurements on to
+ *  any number of sinks.  A stage is started with start() and reported when
+ *  its StageTimer is finished; while it runs, its progress is reported to
+ *  the sinks at a fixed period from a background daemon thread.  With no
+ *  sinks nothing is measured beyond the cost of reading the clocks.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.3
+ */
+public class Instrumentation implements Closeable {
+
+    /** The sinks the reports are passed to. */
+    private final List<MetricsSink> mySinks;
+
+    /** Long representing the progress period in milliseconds, 0 for none. */
+    private final long myProgressMillis;
+
+    /** The bean the CPU time and allocations of each thread are read from. */
+    private final ThreadMXBean myThreads;
+
+    /** The thread progress is reported from, once it is needed. */
+    private ScheduledExecutorService myScheduler;
+
+
+    /**
+     * Creates instrumentation which reports to no sinks.
+     */
+    public Instrumentation() {
+        this(new ArrayList<MetricsSink>(), 0);
+    }//END constructor
+
+    /**
+     * Creates instrumentation which reports to the passed sinks.
+     *
+     * @param theSinks The sinks to report to, which are closed with this.
+     * @param theProgressMillis The period between progress reports of a
+     *  running stage in milliseconds, or 0 for none.
+     */
+    public Instrumentation(final List<MetricsSink> theSinks,
+                           final long theProgressMillis) {
+        mySinks = new ArrayList<MetricsSink>(theSinks);
+        myProgressMillis = theProgressMillis;
+        myThreads = ManagementFactory.getThreadMXBean();
+        myScheduler = null;
+    }//END constructor
+
+
+    /**
+     * Method to start timing a stage.
+     *
+     * @param theStage The name of the stage.
+     * @param theTotal The number of items the stage will process, or -1 if
+     *  not known, for the progress reports.
+     * @return A timer for the stage, to be advanced as items are processed
+     *  and finished when the stage ends.
+     */
+    public StageTimer start(final String theStage, final long theTotal) {
+        return new StageTimer(this, theStage, theTotal);
+    }//END start() METHOD
+
+    /**
+     * Method to stop the progress thread and close every sink.
+     *
+     * @throws IOException If a sink cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (myScheduler != null) {
+                myScheduler.shutdownNow();
+            }//END if
+        }//END synchronized BLOCK
+
+        IOException aFailure = null;
+        for (final MetricsSink aSink : mySinks) {
+            try {
+                aSink.close();
+            } catch (final IOException e) {
+                aFailure = e;
+            }//END try/catch BLOCK
+        }//END for
+
+        if (aFailure != null) {
+            throw aFailure;
+        }//END if
+    }//END close() METHOD
+
+    /**
+     * Package private method to return whether there are sinks to report to.
+     *
+     * @return True if there is at least one sink.
+     */
+    boolean isEnabled() {
+        return !mySinks.isEmpty();
+    }//END isEnabled() METHOD
+
+    /**
+     * Package private method to return the bean threads are measured with.
+     *
+     * @return myThreads The thread bean.
+     */
+    ThreadMXBean threads() {
+        return myThreads;
+    }//END threads() METHOD
+
+    /**
+     * Package private method to return the progress period.
+     *
+     * @return myProgressMillis The period in milliseconds, 0 for none.
+     */
+    long getProgressMillis() {
+        return myProgressMillis;
+    }//END getProgressMillis() METHOD
+
+    /**
+     * Package private method to return the thread progress is reported from,
+     *  creating it the first time it is needed.
+     *
+     * @return myScheduler The progress thread.
+     */
+    synchronized ScheduledExecutorService scheduler() {
+        if (myScheduler == null) {
+            myScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(final Runnable theTask) {
+                            final Thread aThread = new Thread(theTask,
+                                                              "progress");
+                            aThread.setDaemon(true);
+                            return aThread;
+                        }//END newThread() METHOD
+                    });
+        }//END if
+
+        return myScheduler;
+    }//END scheduler() METHOD
+
+    /**
+     * Package private method to pass a finished stage to every sink.
+     *
+     * @param theMetrics The measurements of the stage.
+     * @throws IOException If a sink cannot write the report.
+     */
+    void report(final StageMetrics theMetrics) throws IOException {
+        for (final MetricsSink aSink : mySinks) {
+            aSink.stageFinished(theMetrics);
+        }//END for
+    }//END report() METHOD
+
+    /**
+     * Package private method to pass a note about a stage to every sink.
+     *
+     * @param theStage The name of the stage.
+     * @param theMessage The note.
+     * @throws IOException If a sink cannot write the report.
+     */
+    void reportNote(final String theStage, final String theMessage)
+            throws IOException {
+        for (final MetricsSink aSink : mySinks) {
+            aSink.note(theStage, theMessage);
+        }//END for
+    }//END reportNote() METHOD
+
+    /**
+     * Package private method to pass the progress of a stage to every sink.
+     *  A sink which fails only loses the report, since the stage itself
+     *  has not failed; the failure is printed to the error stream, so it
+     *  never mixes with answers written to the standard output.
+     *
+     * @param theStage The name of the stage.
+     * @param theDone The number of items done so far.
+     * @param theTotal The total number of items, or -1 if not known.
+     * @param theWallNanos The wall time since the stage started.
+     */
+    void reportProgress(final String theStage, final long theDone,
+                        final long theTotal, final long theWallNanos) {
+        for (final MetricsSink aSink : mySinks) {
+            try {
+                aSink.progress(theStage, theDone, theTotal, theWallNanos);
+            } catch (final IOException e) {
+                System.err.println("IO output error " + e.getMessage());
+            }//END try/catch BLOCK
+        }//END for
+    }//END reportProgress() METHOD
+
+}//END Instrumentation.java CLASS
@@ -0,0 +1,167 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package metrics;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Sink which appends each report to a file as one JSON object per line,
+ *  with a "type" of "stage", "progress" or "note", so that runs can be
+ *  compared or loaded into other tools line by line.  Every line is
+ *  flushed as it is written, so the file is complete up to the last report
+ *  even if the run is killed.  The file is written in UTF-8, like every
+ *  other file.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.3
+ */
+public class JsonLinesSink implements MetricsSink {
+
+    /** The writer the lines are written through. */
+    private final BufferedWriter myOut;
+
+
+    /**
+     * Opens the file with the passed name, appending to it if it exists.
+     *
+     * @param theFileName Name of the file to write to.
+     * @throws IOException If the file cannot be opened.
+     */
+    public JsonLinesSink(final String theFileName) throws IOException {
+        myOut = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(theFileName, true),
+                StandardCharsets.UTF_8));
+    }//END constructor
+
+
+    /**
+     * Method to write a finished stage as a line.
+     *
+     * @param theMetrics The measurements of the stage.
+     * @throws IOException If the line cannot be written.
+     */
+    @Override
+    public synchronized void stageFinished(final StageMetrics theMetrics)
+            throws IOException {
+        final StringBuilder aLine = new StringBuilder();
+
+        aLine.append("{\"type\":\"stage\",\"stage\":");
+        appendString(aLine, theMetrics.getStage());
+        aLine.append(",\"wallNanos\":").append(theMetrics.getWallNanos());
+        aLine.append(",\"cpuNanos\":").append(theMetrics.getCpuNanos());
+        aLine.append(",\"allocatedBytes\":")
+                .append(theMetrics.getAllocatedBytes());
+        aLine.append(",\"heapUsedBytes\":")
+                .append(theMetrics.getHeapUsedBytes());
+        aLine.append(",\"rows\":").append(theMetrics.getRows());
+        aLine.append(",\"cols\":").append(theMetrics.getCols());
+        aLine.append(",\"nonZeros\":").append(theMetrics.getNonZeros());
+        aLine.append(",\"items\":").append(theMetrics.getItems());
+        aLine.append(",\"unit\":");
+        appendString(aLine, theMetrics.getUnit());
+        aLine.append(",\"perSecond\":").append(String.format(Locale.ROOT,
+                "%.1f", theMetrics.getItemsPerSecond()));
+        aLine.append('}');
+
+        writeLine(aLine.toString());
+    }//END stageFinished() METHOD
+
+    /**
+     * Method to write the progress of a running stage as a line.
+     *
+     * @param theStage The name of the stage.
+     * @param theDone The number of items done so far.
+     * @param theTotal The total number of items, or -1 if not known.
+     * @param theWallNanos The wall time since the stage started.
+     * @throws IOException If the line cannot be written.
+     */
+    @Override
+    public synchronized void progress(final String theStage,
+                                      final long theDone, final long theTotal,
+                                      final long theWallNanos)
+            throws IOException {
+        final StringBuilder aLine = new StringBuilder();
+
+        aLine.append("{\"type\":\"progress\",\"stage\":");
+        appendString(aLine, theStage);
+        aLine.append(",\"done\":").append(theDone);
+        aLine.append(",\"total\":").append(theTotal);
+        aLine.append(",\"wallNanos\":").append(theWallNanos);
+        aLine.append('}');
+
+        writeLine(aLine.toString());
+    }//END progress() METHOD
+
+    /**
+     * Method to write a note about a stage as a line.
+     *
+     * @param theStage The name of the stage.
+     * @param theMessage The note.
+     * @throws IOException If the line cannot be written.
+     */
+    @Override
+    public synchronized void note(final String theStage,
+                                  final String theMessage) throws IOException {
+        final StringBuilder aLine = new StringBuilder();
+
+        aLine.append("{\"type\":\"note\",\"stage\":");
+        appendString(aLine, theStage);
+        aLine.append(",\"message\":");
+        appendString(aLine, theMessage);
+        aLine.append('}');
+
+        writeLine(aLine.toString());
+    }//END note() METHOD
+
+    /**
+     * Method to close the file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        myOut.close();
+    }//END close() METHOD
+
+    /**
+     * Private helper to write and flush one line.
+     *
+     * @param theLine The line, without its terminator.
+     * @throws IOException If the line cannot be written.
+     */
+    private void writeLine(final String theLine) throws IOException {
+        myOut.write(theLine);
+        myOut.newLine();
+        myOut.flush();
+    }//END writeLine() METHOD
+
+    /**
+     * Private helper to append a String as a quoted JSON string.
+     *
+     * @param theLine The line being built.
+     * @param theValue The String to append.
+     */
+    private static void appendString(final StringBuilder theLine,
+                                     final String theValue) {
+        theLine.append('"');
+        for (int c = 0; c < theValue.length(); c++) {
+            final char aChar = theValue.charAt(c);
+            if (aChar == '"' || aChar == '\\') {
+                theLine.append('\\').append(aChar);
+            } else if (aChar < ' ') {
+                theLine.append(String.format(Locale.ROOT, "\\u%04x",
+                                             (int) aChar));
+            } else {
+                theLine.append(aChar);
+            }//END if
+        }//END for (INDEX c)
+        theLine.append('"');
+    }//END appendString() METHOD
+
+}//END JsonLinesSink.java CLASS
@@ -0,0 +1,49 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Interface for the destinations the measurements of each stage of a run
+ *  are reported to.  A sink may be called from the progress thread while a
+ *  stage is running, so its methods must be safe to call from any thread.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.2
+ */
+public interface MetricsSink extends Closeable {
+
+    /**
+     * Method to report a finished stage.
+     *
+     * @param theMetrics The measurements of the stage.
+     * @throws IOException If the report cannot be written.
+     */
+    void stageFinished(StageMetrics theMetrics) throws IOException;
+
+    /**
+     * Method to report how far a running stage has got.
+     *
+     * @param theStage The name of the stage.
+     * @param theDone The number of items done so far.
+     * @param theTotal The total number of items, or -1 if not known.
+     * @param theWallNanos The wall time since the stage started.
+     * @throws IOException If the report cannot be written.
+     */
+    void progress(String theStage, long theDone, long theTotal,
+                  long theWallNanos) throws IOException;
+
+    /**
+     * Method to report something a stage did which its measurements do not
+     *  show, such as input it left out.
+     *
+     * @param theStage The name of the stage.
+     * @param theMessage The note, as a short human readable line.
+     * @throws IOException If the report cannot be written.
+     */
+    void note(String theStage, String theMessage) throws IOException;
+
+}//END MetricsSink.java INTERFACE
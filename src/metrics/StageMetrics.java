@@ -0,0 +1,189 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package metrics;
+
+/**
+ * Immutable class holding the measurements of one finished stage of a run:
+ *  its wall time, the CPU time and allocated bytes summed over every thread,
+ *  the heap in use when it finished, the size of the matrix it produced or
+ *  consumed, and how many items it processed.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.1
+ */
+public final class StageMetrics {
+
+    /** Constant for the number of nanoseconds in a second. */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /** String holding the name of the stage. */
+    private final String myStage;
+
+    /** Long representing the wall time of the stage in nanoseconds. */
+    private final long myWallNanos;
+
+    /** Long representing the CPU time of the stage, or -1 if unknown. */
+    private final long myCpuNanos;
+
+    /** Long representing the bytes allocated by the stage, or -1. */
+    private final long myAllocatedBytes;
+
+    /** Long representing the heap in use after the stage, in bytes. */
+    private final long myHeapUsedBytes;
+
+    /** Integer representing the number of rows of the stage's matrix. */
+    private final int myRows;
+
+    /** Integer representing the number of columns of the stage's matrix. */
+    private final int myCols;
+
+    /** Long representing the non-zero entries of the stage's matrix. */
+    private final long myNonZeros;
+
+    /** Long representing the number of items the stage processed. */
+    private final long myItems;
+
+    /** String holding the name of the items, such as words or cells. */
+    private final String myUnit;
+
+
+    /**
+     * Creates the measurements of a finished stage.
+     *
+     * @param theStage The name of the stage.
+     * @param theWallNanos The wall time in nanoseconds.
+     * @param theCpuNanos The CPU time in nanoseconds, or -1 if unknown.
+     * @param theAllocatedBytes The bytes allocated, or -1 if unknown.
+     * @param theHeapUsedBytes The heap in use after the stage.
+     * @param theRows The number of rows of the stage's matrix.
+     * @param theCols The number of columns of the stage's matrix.
+     * @param theNonZeros The number of non-zero entries of the matrix.
+     * @param theItems The number of items processed.
+     * @param theUnit The name of the items.
+     */
+    public StageMetrics(final String theStage, final long theWallNanos,
+                        final long theCpuNanos, final long theAllocatedBytes,
+                        final long theHeapUsedBytes, final int theRows,
+                        final int theCols, final long theNonZeros,
+                        final long theItems, final String theUnit) {
+        myStage = theStage;
+        myWallNanos = theWallNanos;
+        myCpuNanos = theCpuNanos;
+        myAllocatedBytes = theAllocatedBytes;
+        myHeapUsedBytes = theHeapUsedBytes;
+        myRows = theRows;
+        myCols = theCols;
+        myNonZeros = theNonZeros;
+        myItems = theItems;
+        myUnit = theUnit;
+    }//END constructor
+
+
+    /**
+     * Method to return the name of the stage.
+     *
+     * @return myStage The name of the stage.
+     */
+    public String getStage() {
+        return myStage;
+    }//END getStage() METHOD
+
+    /**
+     * Method to return the wall time of the stage.
+     *
+     * @return myWallNanos The wall time in nanoseconds.
+     */
+    public long getWallNanos() {
+        return myWallNanos;
+    }//END getWallNanos() METHOD
+
+    /**
+     * Method to return the CPU time of the stage, over every thread.
+     *
+     * @return myCpuNanos The CPU time in nanoseconds, or -1 if unknown.
+     */
+    public long getCpuNanos() {
+        return myCpuNanos;
+    }//END getCpuNanos() METHOD
+
+    /**
+     * Method to return the bytes allocated by the stage, over every thread.
+     *
+     * @return myAllocatedBytes The bytes allocated, or -1 if unknown.
+     */
+    public long getAllocatedBytes() {
+        return myAllocatedBytes;
+    }//END getAllocatedBytes() METHOD
+
+    /**
+     * Method to return the heap in use when the stage finished.
+     *
+     * @return myHeapUsedBytes The heap in use in bytes.
+     */
+    public long getHeapUsedBytes() {
+        return myHeapUsedBytes;
+    }//END getHeapUsedBytes() METHOD
+
+    /**
+     * Method to return the number of rows of the stage's matrix.
+     *
+     * @return myRows The number of rows.
+     */
+    public int getRows() {
+        return myRows;
+    }//END getRows() METHOD
+
+    /**
+     * Method to return the number of columns of the stage's matrix.
+     *
+     * @return myCols The number of columns.
+     */
+    public int getCols() {
+        return myCols;
+    }//END getCols() METHOD
+
+    /**
+     * Method to return the number of non-zero entries of the stage's matrix.
+     *
+     * @return myNonZeros The number of non-zero entries.
+     */
+    public long getNonZeros() {
+        return myNonZeros;
+    }//END getNonZeros() METHOD
+
+    /**
+     * Method to return the number of items the stage processed.
+     *
+     * @return myItems The number of items.
+     */
+    public long getItems() {
+        return myItems;
+    }//END getItems() METHOD
+
+    /**
+     * Method to return the name of the items the stage processed.
+     *
+     * @return myUnit The name of the items.
+     */
+    public String getUnit() {
+        return myUnit;
+    }//END getUnit() METHOD
+
+    /**
+     * Method to return the number of items processed per second of wall
+     *  time.
+     *
+     * @return The throughput, or 0 if no time was measured.
+     */
+    public double getItemsPerSecond() {
+        double aRate = 0;
+
+        if (myWallNanos > 0) {
+            aRate = myItems * NANOS_PER_SECOND / myWallNanos;
+        }//END if
+
+        return aRate;
+    }//END getItemsPerSecond() METHOD
+
+}//END StageMetrics.java CLASS
@@ -0,0 +1,250 @@
+/*
+ * Part of a clustering program for data sets consisting of non-disjoint sets.
+ */
+package metrics;
+
+import java.io.IOException;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class which measures one running stage.  The CPU time and allocated bytes
+ *  of every live thread are sampled when the stage starts and again when it
+ *  finishes, so work done on pool threads is counted along with the calling
+ *  thread's; a thread which ends during the stage is not counted.  Progress
+ *  is counted through a shared counter which may be advanced from any
+ *  thread.
+ *
+ * @author Jonathan McFadden (mcfaddja@uw.edu)
+ * @version 0.2
+ */
+public class StageTimer {
+
+    /** Constant for the index of the CPU time in a thread sample. */
+    private static final int CPU = 0;
+
+    /** Constant for the index of the allocated bytes in a thread sample. */
+    private static final int ALLOCATED = 1;
+
+    /** The instrumentation the stage is reported through. */
+    private final Instrumentation myOwner;
+
+    /** String holding the name of the stage. */
+    private final String myStage;
+
+    /** Long representing the total number of items, or -1 if not known. */
+    private volatile long myTotal;
+
+    /** The number of items processed so far. */
+    private final AtomicLong myDone;
+
+    /** Long representing the wall clock when the stage started. */
+    private final long myStartNanos;
+
+    /** The CPU time and allocated bytes of each thread at the start. */
+    private final Map<Long, long[]> myStartSample;
+
+    /** The periodic progress report, or null if there is none. */
+    private final ScheduledFuture<?> myProgress;
+
+
+    /**
+     * Package private constructor which starts timing a stage.
+     *
+     * @param theOwner The instrumentation the stage is reported through.
+     * @param theStage The name of the stage.
+     * @param theTotal The total number of items, or -1 if not known.
+     */
+    StageTimer(final Instrumentation theOwner, final String theStage,
+               final long theTotal) {
+        myOwner = theOwner;
+        myStage = theStage;
+        myTotal = theTotal;
+        myDone = new AtomicLong();
+
+        if (theOwner.isEnabled()) {
+            myStartSample = sample(theOwner.threads());
+        } else {
+            myStartSample = null;
+        }//END if
+        myStartNanos = System.nanoTime();
+
+        final long aPeriod = theOwner.getProgressMillis();
+        if (theOwner.isEnabled() && aPeriod > 0) {
+            myProgress = theOwner.scheduler().scheduleAtFixedRate(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            myOwner.reportProgress(myStage, myDone.get(),
+                                                   myTotal, System.nanoTime()
+                                                            - myStartNanos);
+                        }//END run() METHOD
+                    }, aPeriod, aPeriod, TimeUnit.MILLISECONDS);
+        } else {
+            myProgress = null;
+        }//END if
+    }//END constructor
+
+
+    /**
+     * Method to return the counter of items processed, for passing to code
+     *  which advances it itself from any thread.
+     *
+     * @return myDone The counter of items processed.
+     */
+    public AtomicLong getCounter() {
+        return myDone;
+    }//END getCounter() METHOD
+
+    /**
+     * Method to set the total number of items once it is known.
+     *
+     * @param theTotal The total number of items, or -1 if not known.
+     */
+    public void setTotal(final long theTotal) {
+        myTotal = theTotal;
+    }//END setTotal() METHOD
+
+    /**
+     * Method to count items as processed, for the progress reports.
+     *
+     * @param theItems The number of items processed since the last call.
+     */
+    public void advance(final long theItems) {
+        myDone.addAndGet(theItems);
+    }//END advance() METHOD
+
+    /**
+     * Method to pass a note about the stage to every sink, for something it
+     *  did which its measurements do not show.
+     *
+     * @param theMessage The note, as a short human readable line.
+     * @throws IOException If a sink cannot write the report.
+     */
+    public void note(final String theMessage) throws IOException {
+        myOwner.reportNote(myStage, theMessage);
+    }//END note() METHOD
+
+    /**
+     * Method to finish the stage, stop its progress reports and pass its
+     *  measurements to every sink.  The items the throughput is given in
+     *  need not be those counted for the progress reports; LLt, say, counts
+     *  rows as it goes but is measured in cells.
+     *
+     * @param theRows The number of rows of the stage's matrix.
+     * @param theCols The number of columns of the stage's matrix.
+     * @param theNonZeros The number of non-zero entries of the matrix.
+     * @param theItems The number of items processed.
+     * @param theUnit The name of the items, such as words or cells.
+     * @return aMetrics The measurements of the stage.
+     * @throws IOException If a sink cannot write the report.
+     */
+    public StageMetrics finish(final int theRows, final int theCols,
+                               final long theNonZeros, final long theItems,
+                               final String theUnit)
+            throws IOException {
+        final long aWall = System.nanoTime() - myStartNanos;
+
+        if (myProgress != null) {
+            myProgress.cancel(false);
+        }//END if
+
+        long aCpu = -1;
+        long anAllocated = -1;
+        if (myStartSample != null) {
+            final Map<Long, long[]> anEndSample = sample(myOwner.threads());
+            aCpu = delta(anEndSample, CPU);
+            anAllocated = delta(anEndSample, ALLOCATED);
+        }//END if
+
+        final Runtime aRuntime = Runtime.getRuntime();
+        final StageMetrics aMetrics;
+        aMetrics = new StageMetrics(myStage, aWall, aCpu, anAllocated,
+                                    aRuntime.totalMemory()
+                                    - aRuntime.freeMemory(),
+                                    theRows, theCols, theNonZeros,
+                                    theItems, theUnit);
+        myOwner.report(aMetrics);
+
+        return aMetrics;
+    }//END finish() METHOD
+
+    /**
+     * Private helper to sum the change in one measure over every thread
+     *  which is still alive, counting threads started during the stage
+     *  from zero.
+     *
+     * @param theEndSample The sample taken at the end of the stage.
+     * @param theMeasure The index of the measure in each sample.
+     * @return aTotal The summed change, or -1 if the measure is unknown.
+     */
+    private long delta(final Map<Long, long[]> theEndSample,
+                       final int theMeasure) {
+        long aTotal = 0;
+
+        for (final Map.Entry<Long, long[]> anEntry : theEndSample.entrySet()) {
+            final long anEnd = anEntry.getValue()[theMeasure];
+            if (anEnd < 0) {
+                return -1;
+            }//END if
+
+            long aStart = 0;
+            final long[] aStartValues = myStartSample.get(anEntry.getKey());
+            if (aStartValues != null && aStartValues[theMeasure] >= 0) {
+                aStart = aStartValues[theMeasure];
+            }//END if
+            aTotal += anEnd - aStart;
+        }//END for
+
+        return aTotal;
+    }//END delta() METHOD
+
+    /**
+     * Private helper to read the CPU time and allocated bytes of every live
+     *  thread, each -1 where the JVM does not support or has disabled it.
+     *
+     * @param theThreads The bean to read them from.
+     * @return aSample The two measures of each thread, by thread id.
+     */
+    private static Map<Long, long[]> sample(final ThreadMXBean theThreads) {
+        final long[] someIds = theThreads.getAllThreadIds();
+
+        long[] someAllocated = null;
+        if (theThreads instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean aBean;
+            aBean = (com.sun.management.ThreadMXBean) theThreads;
+            if (aBean.isThreadAllocatedMemorySupported()
+                    && aBean.isThreadAllocatedMemoryEnabled()) {
+                someAllocated = aBean.getThreadAllocatedBytes(someIds);
+            }//END if
+        }//END if
+
+        final boolean hasCpu = theThreads.isThreadCpuTimeSupported()
+                && theThreads.isThreadCpuTimeEnabled();
+
+        final Map<Long, long[]> aSample = new HashMap<Long, long[]>();
+        for (int t = 0; t < someIds.length; t++) {
+            final long[] someValues = {-1, -1};
+            if (hasCpu) {
+                someValues[CPU] = theThreads.getThreadCpuTime(someIds[t]);
+            }//END if
+            if (someAllocated != null) {
+                someValues[ALLOCATED] = someAllocated[t];
+            }//END if
+
+            // A thread which ended since its id was read is left out.
+            final boolean isGone = (hasCpu && someValues[CPU] < 0)
+                    || (someAllocated != null && someValues[ALLOCATED] < 0);
+            if (!isGone) {
+                aSample.put(someIds[t], someValues);
+            }//END if
+        }//END for (INDEX t)
+
+        return aSample;
+    }//END sample() METHOD
+
+}//END StageTimer.java CLASS